@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+# Measures time-to-first-request of the backend: from launching the JVM until the
+# first HTTP response on /actuator/health (any status code counts).
+#
+# Usage: scripts/startup-benchmark.sh [mode] [runs]
+#   plain    java -jar
+#   aot      java -Dspring.aot.enabled=true (jar built with ./mvnw -Pfast-start package)
+#   cds      extracted jar + AppCDS archive, trained on the first run
+#   aot-cds  both of the above
+#   crac     restore from a checkpoint taken on the first run (CRaC JDK, ./mvnw -Pcrac package)
+#
+# The environment (.env or exported variables) must point at reachable MySQL and Redis.
+set -euo pipefail
+
+MODE="${1:-plain}"
+RUNS="${2:-5}"
+PORT="${PORT:-8080}"
+PROFILE="${SPRING_PROFILES_ACTIVE:-faststart}"
+URL="http://localhost:${PORT}/actuator/health"
+WORK="target/startup"
+
+cd "$(dirname "$0")/.."
+JAR="$(ls target/backend-*.jar | grep -v plain | head -n 1)"
+mkdir -p "$WORK"
+
+JAVA_OPTS=(-Dspring.profiles.active="$PROFILE" -Dserver.port="$PORT")
+APP_JAR="$JAR"
+
+case "$MODE" in
+  plain) ;;
+  aot) JAVA_OPTS+=(-Dspring.aot.enabled=true) ;;
+  cds|aot-cds)
+    [[ "$MODE" == "aot-cds" ]] && JAVA_OPTS+=(-Dspring.aot.enabled=true)
+    rm -rf "$WORK/app"
+    java -Djarmode=tools -jar "$JAR" extract --destination "$WORK/app" > /dev/null
+    APP_JAR="$WORK/app/$(basename "$JAR")"
+    # Training run: refresh the context, dump the loaded classes and exit
+    java -XX:ArchiveClassesAtExit="$WORK/app.jsa" -Dspring.context.exit=onRefresh "${JAVA_OPTS[@]}" -jar "$APP_JAR" > "$WORK/training.log" 2>&1
+    JAVA_OPTS+=(-XX:SharedArchiveFile="$WORK/app.jsa")
+    ;;
+  crac)
+    rm -rf "$WORK/checkpoint"
+    # Checkpoint once the context is refreshed, the JVM exits after writing the image
+    java -XX:CRaCCheckpointTo="$WORK/checkpoint" -Dspring.context.checkpoint=onRefresh "${JAVA_OPTS[@]}" -jar "$JAR" > "$WORK/checkpoint.log" 2>&1 || true
+    ;;
+  *) echo "Unknown mode: $MODE" >&2; exit 1 ;;
+esac
+
+total=0
+for run in $(seq 1 "$RUNS"); do
+  start=$(date +%s%N)
+  if [[ "$MODE" == "crac" ]]; then
+    java -XX:CRaCRestoreFrom="$WORK/checkpoint" > "$WORK/run.log" 2>&1 &
+  else
+    java "${JAVA_OPTS[@]}" -jar "$APP_JAR" > "$WORK/run.log" 2>&1 &
+  fi
+  pid=$!
+  until [[ "$(curl -s -o /dev/null -w '%{http_code}' "$URL" || true)" != "000" ]]; do
+    if ! kill -0 "$pid" 2> /dev/null; then
+      echo "Application exited, see $WORK/run.log" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+  echo "run $run: ${elapsed} ms"
+  total=$((total + elapsed))
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+done
+
+echo "$MODE: average time-to-first-request $((total / RUNS)) ms over $RUNS runs"
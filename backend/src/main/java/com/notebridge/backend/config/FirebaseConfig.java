@@ -6,6 +6,7 @@ import com.google.firebase.FirebaseOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 
@@ -24,17 +25,19 @@ public class FirebaseConfig {
     @Value("${firebase.storage-bucket}")
     private String storageBucket;
 
+    // Created when first injected instead of during startup
     @Bean
+    @Lazy
     FirebaseApp firebaseApp() throws IOException {
-        InputStream serviceAccount = getServiceAccountStream();
-
-        FirebaseOptions options = FirebaseOptions.builder()
-                .setProjectId(projectId)
-                .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                .setStorageBucket(storageBucket)
-                .build();
-
-        return FirebaseApp.initializeApp(options);
+        try (InputStream serviceAccount = getServiceAccountStream()) {
+            FirebaseOptions options = FirebaseOptions.builder()
+                    .setProjectId(projectId)
+                    .setCredentials(GoogleCredentials.fromStream(serviceAccount))
+                    .setStorageBucket(storageBucket)
+                    .build();
+
+            return FirebaseApp.initializeApp(options);
+        }
     }
 
     private InputStream getServiceAccountStream() throws IOException {
@@ -0,0 +1,211 @@
+package com.notebridge.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Idempotency-Key support for the create endpoints that mobile clients retry.
+// The first request with a key runs and its response is stored; repeats with the same key
+// (per caller and path) get the stored response without reaching the controller, marked with
+// Idempotent-Replayed: true. A repeat that arrives while the first one still runs gets a 409,
+// a request reusing a key with another method, path or body gets a 422.
+// Failed attempts (statusCode 500 or more, in the status or in the body) are not stored.
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+    private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey == null || idempotencyKey.isBlank() || !isIdempotent(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            write(response, 400, "Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        // Read once for the fingerprint, then handed on to the controller
+        BufferedRequest buffered = new BufferedRequest(request);
+        String key = callerOf(request) + ":" + request.getServletPath() + ":" + idempotencyKey;
+        IdempotencyService.Outcome outcome = idempotencyService.begin(key,
+                IdempotencyService.fingerprint(request.getMethod(), request.getServletPath(), buffered.body));
+        switch (outcome.state()) {
+            case REPLAY -> replay(response, outcome.response());
+            case IN_PROGRESS -> {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                write(response, 409, "A request with this Idempotency-Key is still in progress");
+            }
+            case MISMATCH -> write(response, 422, "This Idempotency-Key was already used for a different request");
+            case STARTED -> run(buffered, response, filterChain, key, outcome.token());
+        }
+    }
+
+    private void run(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+                     String key, String token) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            byte[] body = wrapper.getContentAsByteArray();
+            if (wrapper.getStatus() < 500 && bodyStatus(body, wrapper.getContentType()) < 500) {
+                idempotencyService.complete(key, token,
+                        new IdempotencyService.StoredResponse(wrapper.getStatus(), wrapper.getContentType(), body));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                idempotencyService.release(key, token);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyService.StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    // The *ReqRes responses carry their own statusCode, errors are often sent with HTTP 200
+    private int bodyStatus(byte[] body, String contentType) {
+        if (body.length == 0 || contentType == null) {
+            return 0;
+        }
+        ObjectMapper reader = contentType.contains("cbor") ? CBOR
+                : contentType.contains("smile") ? SMILE
+                : contentType.contains("json") ? JSON
+                : null;
+        if (reader == null) {
+            return 0;
+        }
+        try {
+            return reader.readTree(body).path("statusCode").asInt(0);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Writes an error in the same shape as the *ReqRes responses
+    private void write(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"statusCode\":" + status + ",\"message\":\"" + message + "\"}");
+    }
+
+    // Only the routes below honour the header
+    private boolean isIdempotent(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return false;
+        }
+        String path = request.getServletPath();
+        return path.startsWith("/message/send/") || path.startsWith("/lesson/create/") || path.equals("/admin/lesson/create");
+    }
+
+    private String callerOf(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return "user-" + user.getId();
+        }
+        return "ip-" + request.getRemoteAddr();
+    }
+
+    // Request whose body was read up front and can be read again
+    private static class BufferedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        BufferedRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
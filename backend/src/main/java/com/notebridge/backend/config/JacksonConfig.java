@@ -0,0 +1,18 @@
+package com.notebridge.backend.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+@Configuration
+public class JacksonConfig {
+
+    // Generated accessors (LambdaMetafactory) instead of reflection for property access.
+    // Spring Boot registers every Module bean with the application ObjectMapper.
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
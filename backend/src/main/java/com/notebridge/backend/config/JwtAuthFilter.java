@@ -2,6 +2,8 @@ package com.notebridge.backend.config;
 
 import com.notebridge.backend.service.JwtUtils;
 import com.notebridge.backend.service.OurUserDetailsService;
+import com.notebridge.backend.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,6 +28,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
     OurUserDetailsService ourUserDetailsService;
 
+    @Autowired
+    TokenRevocationService tokenRevocationService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
 
@@ -39,16 +44,20 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
         jwtToken = authHeader.substring(7);
-        userEmail = jwtUtils.extractUsername(jwtToken);
+        // Parse once: verifies the signature and expiry and gives us every claim
+        final Claims claims = jwtUtils.parseClaims(jwtToken);
+        userEmail = claims.getSubject();
 
         // check if:
         // 1, A valid email was extracted
         // 2, The user is not already authenticated
-        if(userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null){
+        // 3, The token has not been revoked (local Bloom filter, Redis only on a hit)
+        if(userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null
+                && !tokenRevocationService.isRevoked(claims.getId())){
             UserDetails userDetails = ourUserDetailsService.loadUserByUsername(userEmail);
 
             // The system lets you in and logs your details in a system (set the Security Context)
-            if (jwtUtils.isTokenValid(jwtToken, userDetails)) {
+            if (userEmail.equals(userDetails.getUsername())) {
                 SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
                 UsernamePasswordAuthenticationToken token = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 token.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
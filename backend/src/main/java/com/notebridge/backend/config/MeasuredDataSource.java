@@ -0,0 +1,115 @@
+package com.notebridge.backend.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+// DataSource wrapper that times every statement it executes.
+// Each execution is recorded in QueryStats, and statements slower than the threshold
+// are logged with their number of bind values. The values themselves (emails, password hashes,
+// message text) are only logged when logParameters is set, for debugging outside production.
+public class MeasuredDataSource extends DelegatingDataSource {
+
+    private final long slowQueryNanos;
+    private final boolean logParameters;
+
+    public MeasuredDataSource(DataSource target, long slowQueryMs) {
+        this(target, slowQueryMs, false);
+    }
+
+    public MeasuredDataSource(DataSource target, long slowQueryMs, boolean logParameters) {
+        super(target);
+        this.slowQueryNanos = slowQueryMs * 1_000_000;
+        this.logParameters = logParameters;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                        return wrapStatement(statement, sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Statement wrapStatement(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                new StatementHandler(statement, sql));
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        // parameter index -> value (only kept when logParameters is set), for the slow-query log
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, logParameters ? args[1] : "?");
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+            if (!name.startsWith("execute")) {
+                return MeasuredDataSource.invoke(target, method, args);
+            }
+
+            String sql = preparedSql != null ? preparedSql
+                    : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            long start = System.nanoTime();
+            try {
+                return MeasuredDataSource.invoke(target, method, args);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                QueryStats.record(sql, elapsed);
+                if (elapsed >= slowQueryNanos) {
+                    System.err.println("Slow query (" + elapsed / 1_000_000 + " ms): " + sql
+                            + (parameters.isEmpty() ? "" : logParameters ? " with " + parameters : " with " + parameters.size() + " parameters"));
+                }
+            }
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.notebridge.backend.config;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// SQL statements executed by the current thread while it is being measured.
+// QueryStatsFilter measures each HTTP request; tests can use measure() to put a
+// budget on a piece of code, e.g. assertTrue(QueryStats.measure(() -> ...).getCount() <= 3).
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern LITERAL = Pattern.compile("'[^']*'|\\b\\d+\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private int count;
+    private long nanos;
+    // statement shape -> executions
+    private final Map<String, Integer> shapes = new HashMap<>();
+
+    private QueryStats() {
+    }
+
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static QueryStats stop() {
+        QueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    // Null when the current thread is not measured
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    // Statements issued by the work, also added to the enclosing measurement if any
+    public static QueryStats measure(Runnable work) {
+        QueryStats outer = CURRENT.get();
+        QueryStats stats = start();
+        try {
+            work.run();
+        } finally {
+            CURRENT.remove();
+            if (outer != null) {
+                outer.merge(stats);
+                CURRENT.set(outer);
+            }
+        }
+        return stats;
+    }
+
+    // Adds statements measured on another thread (e.g. a parallel part of a request)
+    public static void include(QueryStats other) {
+        QueryStats stats = CURRENT.get();
+        if (stats != null && other != null) {
+            stats.merge(other);
+        }
+    }
+
+    static void record(String sql, long elapsedNanos) {
+        QueryStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.count++;
+            stats.nanos += elapsedNanos;
+            stats.shapes.merge(shape(sql), 1, Integer::sum);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTimeMillis() {
+        return nanos / 1_000_000;
+    }
+
+    // Shapes executed at least threshold times, the usual sign of an N+1
+    public Map<String, Integer> repeatedShapes(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        shapes.forEach((shape, executions) -> {
+            if (executions >= threshold) {
+                repeated.put(shape, executions);
+            }
+        });
+        return repeated;
+    }
+
+    // Same statement with different values or IN list sizes gives the same shape
+    static String shape(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String shape = LITERAL.matcher(sql).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim().toLowerCase();
+    }
+
+    private void merge(QueryStats other) {
+        count += other.count;
+        nanos += other.nanos;
+        other.shapes.forEach((shape, executions) -> shapes.merge(shape, executions, Integer::sum));
+    }
+}
@@ -0,0 +1,96 @@
+package com.notebridge.backend.config;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Measures the SQL issued by each request.
+// Wraps the application DataSource in a MeasuredDataSource and records, per request,
+// the statement count and DB time as metrics (tagged with the route pattern).
+// Statement shapes repeated db.n-plus-one-threshold times or more are reported as N+1.
+// The X-DB-Query-Count / X-DB-Query-Time-Ms headers are added by QueryStatsAdvice.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${db.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryStats.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            QueryStats stats = QueryStats.stop();
+            if (stats != null) {
+                report(request, stats);
+            }
+        }
+    }
+
+    private void report(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        DistributionSummary.builder("notebridge.db.queries")
+                .description("SQL statements per request")
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getCount());
+        Timer.builder("notebridge.db.time")
+                .description("Time spent in SQL per request")
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(stats.getTimeMillis(), TimeUnit.MILLISECONDS);
+
+        Map<String, Integer> repeated = stats.repeatedShapes(nPlusOneThreshold);
+        if (!repeated.isEmpty()) {
+            meterRegistry.counter("notebridge.db.n_plus_one", "uri", uri).increment();
+            repeated.forEach((shape, executions) -> System.err.println("Possible N+1 on "
+                    + request.getMethod() + " " + uri + ": " + executions + "x " + shape));
+        }
+    }
+
+    // Puts every DataSource bean behind the measuring wrapper
+    @Component
+    static class DataSourceWrapper implements BeanPostProcessor {
+
+        @Value("${db.slow-query-ms:200}")
+        private long slowQueryMs;
+
+        @Value("${db.slow-query-log-parameters:false}")
+        private boolean logParameters;
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (bean instanceof DataSource dataSource && !(bean instanceof MeasuredDataSource)) {
+                return new MeasuredDataSource(dataSource, slowQueryMs, logParameters);
+            }
+            return bean;
+        }
+    }
+}
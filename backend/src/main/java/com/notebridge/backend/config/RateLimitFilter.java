@@ -0,0 +1,91 @@
+package com.notebridge.backend.config;
+
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.service.RateLimiterService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Admission control for the expensive endpoints.
+// Runs after JwtAuthFilter so authenticated callers are limited per user as well as per IP.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        String route = routeOf(request);
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Both buckets or neither, a request refused for its user leaves the IP's tokens alone
+        Map<String, String> callers = new LinkedHashMap<>();
+        callers.put("ip", request.getRemoteAddr());
+        Long userId = currentUserId();
+        if (userId != null) {
+            callers.put("user", userId.toString());
+        }
+        RateLimiterService.Decision decision = rateLimiterService.tryAcquireAll(route, callers);
+
+        if (!decision.allowed()) {
+            reject(response, decision.retryAfterSeconds());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // Writes a 429 in the same shape as the *ReqRes responses
+    public static void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"statusCode\":429,\"message\":\"Too many requests, retry in "
+                + retryAfterSeconds + " seconds\"}");
+    }
+
+    // Only the routes below are limited, everything else passes untouched
+    private String routeOf(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getServletPath();
+        if (path.equals("/auth/login")) {
+            return "login";
+        }
+        if (path.equals("/auth/register")) {
+            return "register";
+        }
+        if (path.equals("/auth/refresh")) {
+            return "refresh";
+        }
+        if (path.startsWith("/message/send/")) {
+            return "message-send";
+        }
+        return null;
+    }
+
+    private Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
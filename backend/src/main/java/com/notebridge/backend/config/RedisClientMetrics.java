@@ -0,0 +1,86 @@
+package com.notebridge.backend.config;
+
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
+import io.lettuce.core.event.command.CommandFailedEvent;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import io.lettuce.core.event.command.CommandSucceededEvent;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import io.lettuce.core.event.connection.ReconnectFailedEvent;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Client side view of Redis, next to the per command latencies Boot already records
+// (lettuce.command.completion / firstresponse, tagged with the command and the node it ran on,
+// which shows how reads are spread over replicas).
+// notebridge.redis.commands.in_flight is how many commands are waiting for a reply, i.e. how deep
+// concurrent callers are pipelining on the shared connections.
+class RedisClientMetrics implements MeterBinder, CommandListener {
+
+    private final LettuceConnectionFactory connectionFactory;
+    private final ClientResources clientResources;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private Counter succeeded;
+    private Counter failed;
+    private Counter timedOut;
+
+    RedisClientMetrics(LettuceConnectionFactory connectionFactory, ClientResources clientResources) {
+        this.connectionFactory = connectionFactory;
+        this.clientResources = clientResources;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        succeeded = Counter.builder("notebridge.redis.commands").tag("result", "success").register(registry);
+        failed = Counter.builder("notebridge.redis.commands").tag("result", "error").register(registry);
+        timedOut = Counter.builder("notebridge.redis.commands").tag("result", "timeout").register(registry);
+        Gauge.builder("notebridge.redis.commands.in_flight", inFlight, AtomicInteger::get).register(registry);
+        Gauge.builder("notebridge.redis.connections", connections, AtomicInteger::get).register(registry);
+        Counter reconnectFailures = Counter.builder("notebridge.redis.reconnect.failures").register(registry);
+        Counter topologyChanges = Counter.builder("notebridge.redis.cluster.topology.changes").register(registry);
+
+        clientResources.eventBus().get().subscribe(event -> {
+            if (event instanceof ConnectionActivatedEvent) {
+                connections.incrementAndGet();
+            } else if (event instanceof ConnectionDeactivatedEvent) {
+                connections.decrementAndGet();
+            } else if (event instanceof ReconnectFailedEvent) {
+                reconnectFailures.increment();
+            } else if (event instanceof ClusterTopologyChangedEvent) {
+                topologyChanges.increment();
+            }
+        });
+        connectionFactory.getRequiredNativeClient().addListener(this);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        inFlight.decrementAndGet();
+        succeeded.increment();
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        inFlight.decrementAndGet();
+        if (event.getCause() instanceof RedisCommandTimeoutException) {
+            timedOut.increment();
+        } else {
+            failed.increment();
+        }
+    }
+}
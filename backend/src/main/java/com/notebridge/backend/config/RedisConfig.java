@@ -1,68 +1,300 @@
-
 package com.notebridge.backend.config;
 
+import com.notebridge.backend.service.CacheGenerations;
+import com.notebridge.backend.service.LessonGeoIndex;
+import com.notebridge.backend.service.LessonReminderService;
+import com.notebridge.backend.service.LessonScheduleService;
+import com.notebridge.backend.service.PresenceService;
+import com.notebridge.backend.service.SecondLevelCacheSync;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.binder.commonspool2.CommonsObjectPool2Metrics;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.RedisConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 
+// Lettuce client for every Redis user in the app (cache, tokens, presence, rate limits, outbox).
+// By default all threads share one connection per node and Lettuce pipelines whatever they send
+// concurrently on it, so no pool is needed; redis.pool.enabled gives each caller its own pooled
+// connection instead. redis.mode selects standalone, sentinel, cluster or a static
+// master/replica set, and redis.read-from lets the last three serve reads from replicas.
+// In cluster mode each cache's keys carry a {cache-name} hash tag so clearing a cache touches one node.
 @Configuration
 public class RedisConfig {
-    
+
     @Value("${spring.redis.url}")
     private String redisUrl;
-    
+
+    // standalone | sentinel | cluster | replicas
+    @Value("${redis.mode:standalone}")
+    private String mode;
+
+    // host:port list for sentinel, cluster and replicas modes (the URL's host when empty)
+    @Value("${redis.nodes:}")
+    private String nodes;
+
+    @Value("${redis.sentinel.master:mymaster}")
+    private String sentinelMaster;
+
+    // upstream | upstream-preferred | replica | replica-preferred | lowest-latency | any
+    @Value("${redis.read-from:upstream}")
+    private String readFrom;
+
+    @Value("${redis.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${redis.command-timeout-ms:1000}")
+    private long commandTimeoutMs;
+
+    @Value("${redis.shutdown-timeout-ms:100}")
+    private long shutdownTimeoutMs;
+
+    @Value("${redis.pool.enabled:false}")
+    private boolean poolEnabled;
+
+    @Value("${redis.pool.max-active:16}")
+    private int poolMaxActive;
+
+    @Value("${redis.pool.max-idle:8}")
+    private int poolMaxIdle;
+
+    @Value("${redis.pool.min-idle:0}")
+    private int poolMinIdle;
+
+    @Value("${redis.pool.max-wait-ms:500}")
+    private long poolMaxWaitMs;
+
+    // Commands buffered before an explicit pipeline is flushed, 0 flushes once when it is closed
+    @Value("${redis.pipeline.flush-after:0}")
+    private int pipelineFlushAfter;
+
+    @Value("${redis.cluster.max-redirects:3}")
+    private int clusterMaxRedirects;
+
+    @Value("${redis.cluster.refresh-period-ms:30000}")
+    private long clusterRefreshPeriodMs;
+
+    // Every cached entry expires, which is also how superseded versioned entries go away
+    @Value("${cache.ttl-minutes:60}")
+    private long cacheTtlMinutes;
+
+    // Part of every cache key; bumped when a cached response changes shape so old entries are never read
+    @Value("${cache.key-version:2}")
+    private int cacheKeyVersion;
+
     @Bean
-    public RedisConnectionFactory redisConnectionFactory() {
+    public RedisConnectionFactory redisConnectionFactory(ClientResources clientResources) {
         try {
             URI uri = URI.create(redisUrl);
-            RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
-            config.setHostName(uri.getHost());
-            config.setPort(uri.getPort());
-            
-            // Extract username and password from URI if present
-            String userInfo = uri.getUserInfo();
-            if (userInfo != null && userInfo.contains(":")) {
-                String[] credentials = userInfo.split(":");
-                if (credentials.length == 2) {
-                    String username = credentials[0];
-                    String password = credentials[1];
-                    
-                    // Set username if it's not "default" (Redis Cloud often uses "default" as username)
-                    if (!"default".equals(username)) {
-                        config.setUsername(username);
-                    }
-                    config.setPassword(password);
-                }
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                    serverConfiguration(uri), clientConfiguration(uri, clientResources));
+            factory.setShareNativeConnection(!poolEnabled);
+            if (pipelineFlushAfter > 0) {
+                factory.setPipeliningFlushPolicy(LettuceConnection.PipeliningFlushPolicy.buffered(pipelineFlushAfter));
+            } else {
+                factory.setPipeliningFlushPolicy(LettuceConnection.PipeliningFlushPolicy.flushOnClose());
             }
-            
-            return new LettuceConnectionFactory(config);
+            return factory;
         } catch (Exception e) {
             throw new RuntimeException("Failed to create Redis connection factory", e);
         }
     }
-    
+
+    @Bean
+    public RedisClientMetrics redisClientMetrics(RedisConnectionFactory connectionFactory, ClientResources clientResources) {
+        return new RedisClientMetrics((LettuceConnectionFactory) connectionFactory, clientResources);
+    }
+
+    // Active, idle and waiting counts of the connection pool (commons.pool2.* metrics)
+    @Bean
+    @ConditionalOnProperty(name = "redis.pool.enabled", havingValue = "true")
+    public CommonsObjectPool2Metrics redisPoolMetrics() {
+        return new CommonsObjectPool2Metrics();
+    }
+
+    // Used by the Spring Cache manager instead of Boot's default, which has no TTL and the plain key prefix
+    @Bean
+    public RedisCacheConfiguration redisCacheConfiguration(ResourceLoader resourceLoader) {
+        String version = "::v" + cacheKeyVersion + "::";
+        return RedisCacheConfiguration.defaultCacheConfig(resourceLoader.getClassLoader())
+                .entryTtl(Duration.ofMinutes(cacheTtlMinutes))
+                .computePrefixWith(cacheName -> (isCluster() ? "{" + cacheName + "}" : cacheName) + version);
+    }
+
+    private RedisConfiguration serverConfiguration(URI uri) {
+        List<String> hosts = nodeList(uri);
+        RedisConfiguration.WithAuthentication config;
+        switch (mode.toLowerCase()) {
+            case "cluster" -> {
+                RedisClusterConfiguration cluster = new RedisClusterConfiguration(hosts);
+                cluster.setMaxRedirects(clusterMaxRedirects);
+                config = cluster;
+            }
+            case "sentinel" -> config = new RedisSentinelConfiguration(sentinelMaster, new HashSet<>(hosts));
+            case "replicas" -> {
+                String[] first = hosts.get(0).split(":");
+                RedisStaticMasterReplicaConfiguration replicas = new RedisStaticMasterReplicaConfiguration(
+                        first[0], Integer.parseInt(first[1]));
+                for (String host : hosts.subList(1, hosts.size())) {
+                    String[] parts = host.split(":");
+                    replicas.node(parts[0], Integer.parseInt(parts[1]));
+                }
+                config = replicas;
+            }
+            case "standalone" -> config = new RedisStandaloneConfiguration(uri.getHost(), uri.getPort());
+            default -> throw new IllegalArgumentException("Unknown redis.mode: " + mode);
+        }
+
+        // Extract username and password from URI if present
+        String userInfo = uri.getUserInfo();
+        if (userInfo != null && userInfo.contains(":")) {
+            String[] credentials = userInfo.split(":");
+            if (credentials.length == 2) {
+                String username = credentials[0];
+                String password = credentials[1];
+
+                // Set username if it's not "default" (Redis Cloud often uses "default" as username)
+                if (!"default".equals(username)) {
+                    config.setUsername(username);
+                }
+                config.setPassword(password);
+            }
+        }
+        return (RedisConfiguration) config;
+    }
+
+    private LettuceClientConfiguration clientConfiguration(URI uri, ClientResources clientResources) {
+        SocketOptions socketOptions = SocketOptions.builder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .keepAlive(true)
+                .build();
+        // Fail fast while disconnected instead of queueing commands until Redis is back
+        ClientOptions clientOptions;
+        if (isCluster()) {
+            clientOptions = ClusterClientOptions.builder()
+                    .socketOptions(socketOptions)
+                    .timeoutOptions(TimeoutOptions.enabled())
+                    .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                    .maxRedirects(clusterMaxRedirects)
+                    .topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+                            .enablePeriodicRefresh(Duration.ofMillis(clusterRefreshPeriodMs))
+                            .enableAllAdaptiveRefreshTriggers()
+                            .build())
+                    .build();
+        } else {
+            clientOptions = ClientOptions.builder()
+                    .socketOptions(socketOptions)
+                    .timeoutOptions(TimeoutOptions.enabled())
+                    .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                    .build();
+        }
+
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder;
+        if (poolEnabled) {
+            GenericObjectPoolConfig<StatefulConnection<?, ?>> poolConfig = new GenericObjectPoolConfig<>();
+            poolConfig.setMaxTotal(poolMaxActive);
+            poolConfig.setMaxIdle(poolMaxIdle);
+            poolConfig.setMinIdle(poolMinIdle);
+            poolConfig.setMaxWait(Duration.ofMillis(poolMaxWaitMs));
+            poolConfig.setJmxNamePrefix("redis");
+            builder = LettucePoolingClientConfiguration.builder().poolConfig(poolConfig);
+        } else {
+            builder = LettuceClientConfiguration.builder();
+        }
+        if ("rediss".equalsIgnoreCase(uri.getScheme())) {
+            builder.useSsl();
+        }
+        builder.clientResources(clientResources)
+                .clientOptions(clientOptions)
+                .commandTimeout(Duration.ofMillis(commandTimeoutMs))
+                .shutdownTimeout(Duration.ofMillis(shutdownTimeoutMs));
+        if (!"standalone".equalsIgnoreCase(mode)) {
+            builder.readFrom(ReadFrom.valueOf(readFrom.replace("-", "")));
+        }
+        return builder.build();
+    }
+
+    private List<String> nodeList(URI uri) {
+        List<String> hosts = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            if (!node.isBlank()) {
+                hosts.add(node.trim());
+            }
+        }
+        if (hosts.isEmpty()) {
+            hosts.add(uri.getHost() + ":" + uri.getPort());
+        }
+        return hosts;
+    }
+
+    private boolean isCluster() {
+        return "cluster".equalsIgnoreCase(mode);
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
-        
+
         // Use String serializer for keys
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
-        
+
         // Use JSON serializer for values
         template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
-        
+
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    // Delivers presence and typing events, cache generation bumps, second-level cache evictions,
+    // reminder, schedule and geo index changes published by any instance
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory, PresenceService presenceService,
+                                                                       CacheGenerations cacheGenerations, SecondLevelCacheSync secondLevelCacheSync,
+                                                                       LessonReminderService lessonReminderService,
+                                                                       LessonScheduleService lessonScheduleService,
+                                                                       LessonGeoIndex lessonGeoIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(presenceService, new ChannelTopic(PresenceService.CHANNEL));
+        container.addMessageListener(cacheGenerations, new ChannelTopic(CacheGenerations.CHANNEL));
+        container.addMessageListener(secondLevelCacheSync, new ChannelTopic(SecondLevelCacheSync.CHANNEL));
+        container.addMessageListener(lessonReminderService, new ChannelTopic(LessonReminderService.CHANNEL));
+        container.addMessageListener(lessonScheduleService, new ChannelTopic(LessonScheduleService.CHANNEL));
+        container.addMessageListener(lessonGeoIndex, new ChannelTopic(LessonGeoIndex.CHANNEL));
+        return container;
+    }
+}
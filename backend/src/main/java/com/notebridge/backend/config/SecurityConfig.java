@@ -2,6 +2,7 @@ package com.notebridge.backend.config;
 
 import com.notebridge.backend.service.OurUserDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -16,6 +17,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
@@ -28,6 +30,15 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthFilter jwtAuthFilter;
 
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
+    @Autowired
+    private IdempotencyFilter idempotencyFilter;
+
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity httpSecurity) throws Exception {
         httpSecurity.csrf(AbstractHttpConfigurer::disable) // Turn off CSRF (not needed for API)
@@ -36,17 +47,23 @@ public class SecurityConfig {
                 .authorizeHttpRequests(request -> 
                     request.requestMatchers(
                             "/auth/**",
-                            "/public/**"
+                            "/public/**",
+                            "/actuator/health",
+                            "/actuator/health/liveness",
+                            "/actuator/health/readiness"
                         ).permitAll() // Public paths
                         .requestMatchers(
-                            "/admin/**"
+                            "/admin/**",
+                            "/actuator/**"
                         ).hasAnyAuthority("ADMIN") // Admin-only paths
                         .requestMatchers(
                             "/user/**", 
                             "/file/**",
                             "/lesson/**",
                             "/message/**",
-                            "/chat/**"
+                            "/chat/**",
+                            "/presence/**",
+                            "/dashboard/**"
                         ).hasAnyAuthority("STUDENT", "TEACHER", "ADMIN") // Student, Teacher and Admin paths
                         .anyRequest().authenticated()) // All other paths need login
                 // Don't store the sessions on the server (stateless)
@@ -54,7 +71,11 @@ public class SecurityConfig {
                 // Use a Custom authentication provider
                 .authenticationProvider(authenticationProvider())
                 // Adds the JWTAuthFilter to validate tokens before the UsernamePasswordAuthenticationFilter processes authentication.
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // Rate limits the expensive endpoints once the caller (if any) is known
+                .addFilterAfter(rateLimitFilter, JwtAuthFilter.class)
+                // Replays stored responses of retried creates, only for requests that passed authorization
+                .addFilterAfter(idempotencyFilter, AuthorizationFilter.class);
         return httpSecurity.build();
 
     }
@@ -68,9 +89,10 @@ public class SecurityConfig {
         return daoAuthenticationProvider;
     }
 
+    // Changing the strength is safe, existing hashes are upgraded on the next successful login
     @Bean
     public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 
     @Bean
@@ -0,0 +1,38 @@
+package com.notebridge.backend.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// The connection pools of the primary database and of every shard, by shard name.
+// Owned here rather than by ShardRoutingDataSource, which is wrapped by QueryStatsFilter
+// and would not be closed on shutdown. ChatResharder copies messages through these directly.
+public class ShardDataSources implements AutoCloseable {
+
+    private final Map<String, HikariDataSource> pools;
+
+    ShardDataSources(Map<String, HikariDataSource> pools) {
+        this.pools = new LinkedHashMap<>(pools);
+    }
+
+    public DataSource get(String shard) {
+        DataSource pool = pools.get(shard);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return pool;
+    }
+
+    public Set<String> names() {
+        return pools.keySet();
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(HikariDataSource::close);
+    }
+}
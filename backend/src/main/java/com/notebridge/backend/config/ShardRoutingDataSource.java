@@ -0,0 +1,43 @@
+package com.notebridge.backend.config;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+// The application DataSource when messages are spread over several databases (shards.names).
+// Connections come from the shard selected on the current thread with use(), or from the
+// primary database when none is; ChatShards selects it around each message query.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    public ShardRoutingDataSource(DataSource primary, Map<String, DataSource> shards) {
+        setDefaultTargetDataSource(primary);
+        setTargetDataSources(Map.copyOf(shards));
+        // A shard name without a pool must fail, not quietly read the primary
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    // Routes this thread's next connections to the shard (null = primary), returns the previous selection
+    public static String use(String shard) {
+        String previous = CURRENT.get();
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+        return previous;
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT.get();
+    }
+}
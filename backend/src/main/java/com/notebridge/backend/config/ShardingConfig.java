@@ -0,0 +1,87 @@
+package com.notebridge.backend.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import com.notebridge.backend.service.ChatShards;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Message shards (shards.names). Replaces the auto-configured DataSource with a
+// ShardRoutingDataSource over the primary database (spring.datasource.*) and one pool per shard
+// (shards.<name>.url, username and password default to the primary's, shards.<name>.hikari.*).
+// Shards only hold the messages table, created from db/shard-schema.sql on startup.
+// Without shards.names nothing here is loaded and the app runs on the primary alone.
+@Configuration
+@ConditionalOnExpression("!'${shards.names:}'.isBlank()")
+public class ShardingConfig {
+
+    @Value("${shards.names}")
+    private List<String> names;
+
+    @Value("${shards.initialize-schema:true}")
+    private boolean initializeSchema;
+
+    @Bean
+    public ShardDataSources shardDataSources(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry) {
+        Binder binder = Binder.get(environment);
+        Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+        try {
+            HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+            pools.put(ChatShards.PRIMARY, configure(primary, ChatShards.PRIMARY, meterRegistry));
+
+            for (String name : names) {
+                String prefix = "shards." + name;
+                HikariDataSource shard = new HikariDataSource();
+                shard.setJdbcUrl(environment.getRequiredProperty(prefix + ".url"));
+                shard.setUsername(environment.getProperty(prefix + ".username", properties.determineUsername()));
+                shard.setPassword(environment.getProperty(prefix + ".password", properties.determinePassword()));
+                shard.setDriverClassName(properties.determineDriverClassName());
+                binder.bind(prefix + ".hikari", Bindable.ofInstance(shard));
+                pools.put(name, configure(shard, name, meterRegistry));
+                if (initializeSchema) {
+                    new ResourceDatabasePopulator(new ClassPathResource("db/shard-schema.sql")).execute(shard);
+                }
+            }
+        } catch (RuntimeException e) {
+            pools.values().forEach(HikariDataSource::close);
+            throw e;
+        }
+        return new ShardDataSources(pools);
+    }
+
+    // Picked up by JPA and every other DataSource user; QueryStatsFilter wraps it like the single pool before
+    @Bean
+    public DataSource dataSource(ShardDataSources shardDataSources) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (String name : names) {
+            shards.put(name, shardDataSources.get(name));
+        }
+        return new ShardRoutingDataSource(shardDataSources.get(ChatShards.PRIMARY), shards);
+    }
+
+    // Pool metrics are bound here, Spring Boot only binds them for HikariDataSource beans
+    private static HikariDataSource configure(HikariDataSource pool, String name, MeterRegistry meterRegistry) {
+        if (pool.getPoolName() == null) {
+            pool.setPoolName("shard-" + name);
+        }
+        pool.setMetricRegistry(meterRegistry);
+        return pool;
+    }
+}
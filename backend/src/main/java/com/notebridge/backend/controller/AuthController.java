@@ -3,11 +3,16 @@ package com.notebridge.backend.controller;
 import com.notebridge.backend.dto.AuthReqRes;
 import com.notebridge.backend.entity.User;
 import com.notebridge.backend.service.AuthService;
+import com.notebridge.backend.service.RateLimiterService;
 import com.notebridge.backend.repository.UsersRepo;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,16 +27,33 @@ public class AuthController {
     @Autowired
     private AuthService usersManagementService;
 
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
     // Register
     @PostMapping("/auth/register")
     public ResponseEntity<AuthReqRes> register(@RequestBody AuthReqRes reg){
-        return ResponseEntity.ok(usersManagementService.register(reg));
+        return withRetryAfter(usersManagementService.register(reg));
     }
 
     // Login
+    // Returns a future so the request thread is released while the password is verified
     @PostMapping("/auth/login")
-    public ResponseEntity<AuthReqRes> login(@RequestBody AuthReqRes req){
-        return ResponseEntity.ok(usersManagementService.login(req));
+    public CompletableFuture<ResponseEntity<AuthReqRes>> login(@RequestBody AuthReqRes req, HttpServletRequest request){
+        // Per-account limit on top of the per-IP one, slows down guessing a single password
+        String account = req.getEmail() != null ? req.getEmail().trim().toLowerCase() : null;
+        RateLimiterService.Decision decision = rateLimiterService.tryAcquire("login", "account", account);
+        if (!decision.allowed()) {
+            // The filter already took the IP's token, a refused account leaves it to the others behind that IP
+            rateLimiterService.release("login", "ip", request.getRemoteAddr());
+            AuthReqRes response = new AuthReqRes();
+            response.setStatusCode(429);
+            response.setMessage("Too many login attempts, retry in " + decision.retryAfterSeconds() + " seconds");
+            return CompletableFuture.completedFuture(ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                    .body(response));
+        }
+        return usersManagementService.login(req).thenApply(AuthController::withRetryAfter);
     }
 
     // Refresh Token
@@ -40,6 +62,14 @@ public class AuthController {
         return ResponseEntity.ok(usersManagementService.refreshToken(req));
     }
 
+    // Logout (revokes the refresh token family and the current access token)
+    @PostMapping("/auth/logout")
+    public ResponseEntity<AuthReqRes> logout(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                             @RequestBody(required = false) AuthReqRes req){
+        String accessToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        return ResponseEntity.ok(usersManagementService.logout(accessToken, req));
+    }
+
     // Get all users - permit only to admin
     @GetMapping("/admin/get-all-users")
     public ResponseEntity<AuthReqRes> getAllUsers(){
@@ -55,7 +85,7 @@ public class AuthController {
     // Update user
     @PutMapping("/user/update/{userId}")
     public ResponseEntity<AuthReqRes> updateUser(@PathVariable Long userId, @RequestBody AuthReqRes req){
-        return ResponseEntity.ok(usersManagementService.updateUser(userId, req));
+        return withRetryAfter(usersManagementService.updateUser(userId, req));
     }
 
     // Get the profile
@@ -86,5 +116,12 @@ public class AuthController {
         return ResponseEntity.ok(usersManagementService.deleteUser(userId));
     }
 
+    // Password hashing was shed (its queue is full): a real 503 so clients back off and retry
+    private static ResponseEntity<AuthReqRes> withRetryAfter(AuthReqRes response) {
+        if (response.getStatusCode() == 503) {
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1").body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
 
 }
@@ -1,8 +1,10 @@
 package com.notebridge.backend.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.notebridge.backend.dto.ChatsReqRes;
 import com.notebridge.backend.service.ChatsService;
@@ -64,4 +66,25 @@ public class ChatsController {
             @RequestBody ChatsReqRes chatRequest) {
         return ResponseEntity.ok(chatsService.updateChatSubject(chat_id, user_id, chatRequest.getSubject()));
     }
+
+    // Stream of presence and typing events for a chat (Server-Sent Events)
+    @GetMapping(value = "/{chat_id}/events/user/{user_id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToChatEvents(
+            @PathVariable Long chat_id,
+            @PathVariable Long user_id) {
+        SseEmitter emitter = chatsService.subscribeToChatEvents(chat_id, user_id);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Typing indicator
+    @PutMapping("/{chat_id}/typing/user/{user_id}")
+    public ResponseEntity<ChatsReqRes> sendTypingEvent(
+            @PathVariable Long chat_id,
+            @PathVariable Long user_id,
+            @RequestParam(defaultValue = "true") boolean typing) {
+        return ResponseEntity.ok(chatsService.sendTypingEvent(chat_id, user_id, typing));
+    }
 }
@@ -0,0 +1,22 @@
+package com.notebridge.backend.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.notebridge.backend.dto.DashboardReqRes;
+import com.notebridge.backend.service.DashboardService;
+
+@RestController
+@RequestMapping("/dashboard")
+public class DashboardController {
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    // Profile, own lessons (teachers), chats and unread count in one call
+    @GetMapping("/user/{user_id}")
+    public ResponseEntity<DashboardReqRes> getDashboard(@PathVariable Long user_id) {
+        return ResponseEntity.ok(dashboardService.getDashboard(user_id));
+    }
+}
@@ -0,0 +1,30 @@
+package com.notebridge.backend.controller;
+
+import com.notebridge.backend.dto.ImportReqRes;
+import com.notebridge.backend.service.BulkImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+@RestController
+@RequestMapping("/admin/import")
+public class ImportController {
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    // Create users from a CSV or JSON file - admin only
+    @PostMapping("/users")
+    public ResponseEntity<ImportReqRes> importUsers(@RequestParam MultipartFile file,
+                                                    @RequestParam(required = false) String format) {
+        return ResponseEntity.ok(bulkImportService.importUsers(file, format));
+    }
+
+    // Create lessons from a CSV or JSON file - admin only
+    @PostMapping("/lessons")
+    public ResponseEntity<ImportReqRes> importLessons(@RequestParam MultipartFile file,
+                                                      @RequestParam(required = false) String format) {
+        return ResponseEntity.ok(bulkImportService.importLessons(file, format));
+    }
+}
@@ -1,10 +1,14 @@
 package com.notebridge.backend.controller;
 
+import java.time.LocalDateTime;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.service.CacheWarmupService;
 import com.notebridge.backend.service.LessonsService;
 
 @RestController
@@ -13,16 +17,35 @@ public class LessonsController {
     @Autowired
     private LessonsService lessonsService;
 
+    @Autowired
+    private CacheWarmupService cacheWarmupService;
+
     // Get all lessons
     @GetMapping("/lesson")
     public ResponseEntity<LessonsReqRes> getAllLessons(){
         return ResponseEntity.ok(lessonsService.getAllLessons());
     }    
     
+    // Get in-person lessons near a point
+    @GetMapping("/lesson/nearby")
+    public ResponseEntity<LessonsReqRes> getNearbyLessons(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "10") double radiusKm,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size){
+        return ResponseEntity.ok(lessonsService.getNearbyLessons(lat, lng, radiusKm, page, size));
+    }
+
     // Get lesson by id
     @GetMapping("/lesson/{lesson_id}")
     public ResponseEntity<LessonsReqRes> getLessonById(@PathVariable Long lesson_id){
-        return ResponseEntity.ok(lessonsService.getLessonById(lesson_id));
+        LessonsReqRes resp = lessonsService.getLessonById(lesson_id);
+        // Only lessons that exist are ranked
+        if (resp.getStatusCode() == 200) {
+            cacheWarmupService.recordView(lesson_id);
+        }
+        return ResponseEntity.ok(resp);
     }
 
     // Get lessons by teacher
@@ -31,6 +54,21 @@ public class LessonsController {
         return ResponseEntity.ok(lessonsService.getLessonsByTeacher(teacher_id));
     }
 
+    // Get a teacher's lesson occurrences within a time window
+    @GetMapping("/lesson/teacher/{teacher_id}/schedule")
+    public ResponseEntity<LessonsReqRes> getTeacherSchedule(
+            @PathVariable Long teacher_id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to){
+        return ResponseEntity.ok(lessonsService.getTeacherSchedule(teacher_id, from, to));
+    }
+
+    // Check whether a lesson would conflict with the teacher's existing lessons
+    @PostMapping("/lesson/check-conflict/{teacher_id}")
+    public ResponseEntity<LessonsReqRes> checkConflicts(@RequestBody LessonsReqRes lessonsRequest, @PathVariable Long teacher_id){
+        return ResponseEntity.ok(lessonsService.checkConflicts(lessonsRequest, teacher_id));
+    }
+
     // Create lesson (for teachers)
     @PostMapping("/lesson/create/{teacher_id}")
     public ResponseEntity<LessonsReqRes> createLesson(@RequestBody LessonsReqRes lessonsRequest, @PathVariable Long teacher_id){
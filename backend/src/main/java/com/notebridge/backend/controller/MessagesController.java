@@ -5,6 +5,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.service.MessageJournal;
+import com.notebridge.backend.service.MessageSearchService;
 import com.notebridge.backend.service.MessagesService;
 
 @RestController
@@ -14,14 +16,35 @@ public class MessagesController {
     @Autowired
     private MessagesService messagesService;
 
-    // Send message using request body
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private MessageJournal messageJournal;
+
+    // Send message using request body, through the local journal when it is enabled
     @PostMapping("/send/user/{sender_id}")
     public ResponseEntity<MessagesReqRes> sendMessage(
             @PathVariable Long sender_id,
             @RequestBody MessagesReqRes messageRequest) {
+        if (messageJournal.isEnabled()) {
+            // Accepted, written to MySQL later
+            MessagesReqRes resp = messagesService.journalMessage(messageRequest, sender_id);
+            return resp.getStatusCode() == 202 ? ResponseEntity.accepted().body(resp) : ResponseEntity.ok(resp);
+        }
         return ResponseEntity.ok(messagesService.sendMessage(messageRequest, sender_id));
     }
 
+    // Search the messages of every chat the user takes part in
+    @GetMapping("/search/user/{user_id}")
+    public ResponseEntity<MessagesReqRes> searchMessages(
+            @PathVariable Long user_id,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(messageSearchService.search(user_id, q, page, size));
+    }
+
     // Get chat messages with pagination
     @GetMapping("/chat/{chat_id}/user/{user_id}")
     public ResponseEntity<MessagesReqRes> getChatMessages(
@@ -0,0 +1,71 @@
+package com.notebridge.backend.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.notebridge.backend.dto.PresenceReqRes;
+import com.notebridge.backend.service.PresenceService;
+
+@RestController
+@RequestMapping("/presence")
+public class PresenceController {
+
+    @Autowired
+    private PresenceService presenceService;
+
+    // Heartbeat, clients send this every ~20 seconds while open
+    @PutMapping("/heartbeat/user/{user_id}")
+    public ResponseEntity<PresenceReqRes> heartbeat(
+            @PathVariable Long user_id,
+            @RequestParam(defaultValue = "ONLINE") String status) {
+        PresenceReqRes resp = new PresenceReqRes();
+        try {
+            resp.setUserId(user_id);
+            resp.setStatus(presenceService.heartbeat(user_id, status));
+            resp.setStatusCode(200);
+            resp.setMessage("Heartbeat received");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return ResponseEntity.ok(resp);
+    }
+
+    // Explicit sign-off
+    @PutMapping("/offline/user/{user_id}")
+    public ResponseEntity<PresenceReqRes> goOffline(@PathVariable Long user_id) {
+        PresenceReqRes resp = new PresenceReqRes();
+        try {
+            presenceService.goOffline(user_id);
+            resp.setUserId(user_id);
+            resp.setStatus("OFFLINE");
+            resp.setStatusCode(200);
+            resp.setMessage("User is offline");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return ResponseEntity.ok(resp);
+    }
+
+    // Current status of several users
+    @GetMapping("/users")
+    public ResponseEntity<PresenceReqRes> getPresence(@RequestParam List<Long> ids) {
+        PresenceReqRes resp = new PresenceReqRes();
+        try {
+            resp.setPresence(presenceService.getPresence(ids));
+            resp.setStatusCode(200);
+            resp.setMessage("Presence retrieved successfully");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return ResponseEntity.ok(resp);
+    }
+}
@@ -0,0 +1,21 @@
+package com.notebridge.backend.controller;
+
+import com.notebridge.backend.dto.ChatsReqRes;
+import com.notebridge.backend.service.ChatResharder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/admin/chat")
+public class ShardsController {
+
+    @Autowired
+    private ChatResharder chatResharder;
+
+    // Move a chat's messages to another shard - admin only, returns once they are moved
+    @PostMapping("/move/{chat_id}")
+    public ResponseEntity<ChatsReqRes> moveChat(@PathVariable Long chat_id, @RequestParam String shard) {
+        return ResponseEntity.ok(chatResharder.moveChat(chat_id, shard));
+    }
+}
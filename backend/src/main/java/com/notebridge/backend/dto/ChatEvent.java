@@ -0,0 +1,25 @@
+package com.notebridge.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Ephemeral event pushed to chat subscribers, never persisted
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ChatEvent {
+    // presence, typing
+    private String type;
+    private Long chatId; // only for typing events
+    private Long userId;
+    private String status; // ONLINE, AWAY, OFFLINE (presence)
+    private Boolean typing; // typing
+    private LocalDateTime at;
+}
@@ -0,0 +1,22 @@
+package com.notebridge.backend.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import com.notebridge.backend.entity.Chat;
+
+// Chat as returned by the API, participants are referenced by id (see ChatsReqRes.users)
+public record ChatView(
+        Long id,
+        Long teacherId,
+        Long studentId,
+        String subject,
+        LocalDateTime createdAt,
+        LocalDateTime lastMessageAt
+) implements Serializable {
+
+    public static ChatView of(Chat chat) {
+        return new ChatView(chat.getId(), chat.getTeacher().getId(), chat.getStudent().getId(),
+                chat.getSubject(), chat.getCreatedAt(), chat.getLastMessageAt());
+    }
+}
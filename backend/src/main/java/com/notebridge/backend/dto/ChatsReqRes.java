@@ -3,11 +3,11 @@ package com.notebridge.backend.dto;
 import lombok.Data;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.notebridge.backend.entity.Chat;
 import com.notebridge.backend.entity.User;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -18,7 +18,7 @@ public class ChatsReqRes {
     private String error;
     private String message;
 
-    // Chat fields
+    // Chat fields (teacher and student are only read from requests, as {"id": ...})
     private Long id;
     private User teacher;
     private User student;
@@ -26,12 +26,17 @@ public class ChatsReqRes {
     private LocalDateTime createdAt;
     private LocalDateTime lastMessageAt;
     
-    // Chat operations
-    private Chat chat;
-    private List<Chat> chatsList;
+    // Chat operations, participants are sideloaded in users (id -> user)
+    private ChatView chat;
+    private List<ChatView> chatsList;
+    private Map<Long, UserSummary> users;
     
     // Additional fields for API responses
     private Long unreadMessageCount;
     private Boolean isNewChat; // To indicate if a chat was newly created or retrieved
 
+    // Resharding (admin): the shard holding the chat's messages and how many were moved there
+    private String shard;
+    private Long movedMessageCount;
+
 }
@@ -0,0 +1,26 @@
+package com.notebridge.backend.dto;
+
+import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DashboardReqRes {
+    // Response fields
+    private int statusCode;
+    private String error;
+    private String message;
+
+    // Dashboard parts, a part that failed or timed out is left out and listed in failedParts
+    private UserProfile profile;
+    private List<LessonView> lessonsList; // teachers only
+    private List<ChatView> chatsList;
+    private Long unreadMessageCount;
+    private Map<Long, UserSummary> users; // everyone referenced by the lessons and chats
+    private Map<String, String> failedParts; // part name -> reason
+}
@@ -0,0 +1,29 @@
+package com.notebridge.backend.dto;
+
+import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk import: rows are numbered from 1, not counting the CSV header
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ImportReqRes {
+    private int statusCode;
+    private String error;
+    private String message;
+
+    private int rowCount;
+    private int importedCount;
+    private int failedCount;
+    private List<Long> importedIds = new ArrayList<>();
+    // At most import.max-errors entries, failedCount has the full number
+    private List<RowError> errors = new ArrayList<>();
+
+    // field is null when the row failed as a whole (e.g. the database rejected it)
+    public record RowError(int row, String field, String message) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.notebridge.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// One concrete session of a (possibly recurring) lesson
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonOccurrence implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long lessonId;
+    private String title;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+}
@@ -0,0 +1,12 @@
+package com.notebridge.backend.dto;
+
+import java.time.LocalDateTime;
+
+// Application event fired shortly before an occurrence of a lesson starts
+public record LessonReminder(
+        Long lessonId,
+        Long teacherId,
+        String title,
+        LocalDateTime startTime
+) {
+}
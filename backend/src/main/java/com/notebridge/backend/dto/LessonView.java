@@ -0,0 +1,52 @@
+package com.notebridge.backend.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.notebridge.backend.entity.Lesson;
+
+// Lesson as returned by the API, the teacher is referenced by id (see LessonsReqRes.users)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LessonView(
+        Long id,
+        Long teacherId,
+        String title,
+        String instrument,
+        String description,
+        @JsonSerialize(using = SignedUrlSerializer.class) String imageUrl,
+        String location,
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        String recurrence,
+        String meetingLink,
+        String physicalAddress,
+        Double latitude,
+        Double longitude,
+        boolean isCancelled
+) implements Serializable {
+
+    public static LessonView of(Lesson lesson) {
+        return new LessonView(
+                lesson.getId(),
+                lesson.getTeacher() != null ? lesson.getTeacher().getId() : null,
+                lesson.getTitle(),
+                lesson.getInstrument(),
+                lesson.getDescription(),
+                lesson.getImageUrl(),
+                lesson.getLocation(),
+                lesson.getStartTime(),
+                lesson.getEndTime(),
+                lesson.getStartDate(),
+                lesson.getEndDate(),
+                lesson.getRecurrence(),
+                lesson.getMeetingLink(),
+                lesson.getPhysicalAddress(),
+                lesson.getLatitude(),
+                lesson.getLongitude(),
+                lesson.isCancelled());
+    }
+}
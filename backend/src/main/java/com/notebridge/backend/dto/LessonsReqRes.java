@@ -4,18 +4,18 @@ import lombok.Data;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.List;
+import java.util.Map;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.notebridge.backend.entity.Lesson;
 import com.notebridge.backend.entity.User;
 
 @Data
 @JsonInclude(JsonInclude.Include.NON_NULL) // Exclude null fields from JSON
 @JsonIgnoreProperties(ignoreUnknown = true) // Ignore the "not defined" fields in my JSON file
 public class LessonsReqRes implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
     
     // Response fields
     private int statusCode;
@@ -32,12 +32,24 @@ public class LessonsReqRes implements Serializable {
     private LocalDateTime endTime;
     private LocalDateTime startDate;
     private LocalDateTime endDate;
+    private String recurrence;
     private String meetingLink;
     private String physicalAddress;
+    private Double latitude;
+    private Double longitude;
     private Boolean isCancelled;
 
-    // Lessons
-    Lesson lesson;
-    List<Lesson> lessonsList;
+    // Lessons, teachers are sideloaded in users (id -> user)
+    private LessonView lesson;
+    private List<LessonView> lessonsList;
+    private Map<Long, UserSummary> users;
+
+    // Schedule
+    private List<LessonOccurrence> occurrencesList;
+    private List<Long> conflictingLessonIds;
+
+    // Nearby search
+    private List<NearbyLesson> nearbyLessons;
+    private Long totalCount;
 
 }
@@ -0,0 +1,16 @@
+package com.notebridge.backend.dto;
+
+import java.util.List;
+
+// One search result: the message, its score and an excerpt around the matched words.
+// highlights are [start, end) offsets into snippet, so clients mark them up without parsing HTML.
+public record MessageSearchHit(
+        MessageView message,
+        double score,
+        String snippet,
+        List<Span> highlights
+) {
+
+    public record Span(int start, int end) {
+    }
+}
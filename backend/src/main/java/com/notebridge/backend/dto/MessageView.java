@@ -0,0 +1,22 @@
+package com.notebridge.backend.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import com.notebridge.backend.entity.Message;
+
+// Message as returned by the API, chat and sender are referenced by id (see MessagesReqRes.users)
+public record MessageView(
+        Long id,
+        Long chatId,
+        Long senderId,
+        String content,
+        LocalDateTime sentAt,
+        boolean isRead
+) implements Serializable {
+
+    public static MessageView of(Message message) {
+        return new MessageView(message.getId(), message.getChat().getId(), message.getSender().getId(),
+                message.getContent(), message.getSentAt(), message.isRead());
+    }
+}
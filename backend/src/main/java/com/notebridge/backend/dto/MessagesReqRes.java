@@ -3,12 +3,10 @@ package com.notebridge.backend.dto;
 import lombok.Data;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.notebridge.backend.entity.Message;
-import com.notebridge.backend.entity.Chat;
-import com.notebridge.backend.entity.User;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -21,15 +19,17 @@ public class MessagesReqRes {
 
     // Message fields
     private Long id;
-    private Chat chat;
-    private User sender;
     private String content;
     private LocalDateTime sentAt;
     private Boolean isRead;
     
-    // Message operations
-    private Message messageObject;
-    private List<Message> messagesList;
+    // Message operations, senders are sideloaded in users (id -> user)
+    private MessageView messageObject;
+    private List<MessageView> messagesList;
+    private Map<Long, UserSummary> users;
+
+    // Message search, best match first
+    private List<MessageSearchHit> searchResults;
     
     // Additional fields for API responses
     private Long unreadMessageCount;
@@ -0,0 +1,18 @@
+package com.notebridge.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// A lesson returned by the nearby search, with its distance from the search point
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyLesson implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private LessonView lesson;
+    private double distanceKm;
+}
@@ -0,0 +1,22 @@
+package com.notebridge.backend.dto;
+
+import lombok.Data;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PresenceReqRes {
+    // Response fields
+    private int statusCode;
+    private String error;
+    private String message;
+
+    // Presence fields
+    private Long userId;
+    private String status; // ONLINE, AWAY, OFFLINE
+    private Map<Long, String> presence; // user id -> status
+}
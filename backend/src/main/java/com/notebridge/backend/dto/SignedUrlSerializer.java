@@ -0,0 +1,33 @@
+package com.notebridge.backend.dto;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.notebridge.backend.service.FilesService;
+
+// Writes a stored picture reference as a signed URL. Views keep the reference, also when they are
+// cached, and the URL is minted when the response is written. Spring creates the serializer for
+// the application's ObjectMappers; a plain ObjectMapper writes the reference unchanged.
+public class SignedUrlSerializer extends StdSerializer<String> {
+
+    @Autowired
+    private FilesService filesService;
+
+    public SignedUrlSerializer() {
+        super(String.class);
+    }
+
+    @Override
+    public void serialize(String value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        String url = filesService != null ? filesService.signedUrl(value) : value;
+        if (url == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(url);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.notebridge.backend.dto;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.notebridge.backend.entity.User;
+
+// The signed-in user's own profile, without credentials
+public record UserProfile(
+        Long id,
+        String email,
+        String role,
+        String firstName,
+        String lastName,
+        String bio,
+        String phoneNumber,
+        @JsonSerialize(using = SignedUrlSerializer.class) String profileUrl
+) implements Serializable {
+
+    public static UserProfile of(User user) {
+        return new UserProfile(user.getId(), user.getEmail(), user.getRole(), user.getFirstName(),
+                user.getLastName(), user.getBio(), user.getPhoneNumber(), user.getProfileUrl());
+    }
+}
@@ -0,0 +1,33 @@
+package com.notebridge.backend.dto;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.notebridge.backend.entity.User;
+
+// Public part of a user, sideloaded once per response in the "users" map
+public record UserSummary(
+        Long id,
+        String firstName,
+        String lastName,
+        String role,
+        @JsonSerialize(using = SignedUrlSerializer.class) String profileUrl
+) implements Serializable {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getId(), user.getFirstName(), user.getLastName(), user.getRole(), user.getProfileUrl());
+    }
+
+    // Users keyed by id, each one only once however often it is referenced
+    public static Map<Long, UserSummary> mapOf(Iterable<User> users) {
+        Map<Long, UserSummary> map = new LinkedHashMap<>();
+        for (User user : users) {
+            if (user != null) {
+                map.computeIfAbsent(user.getId(), id -> of(user));
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,29 @@
+package com.notebridge.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Shard holding the messages of a chat (ChatShards). Chats without a row are on the primary.
+// Kept apart from Chat so saving a cached Chat can never put back an older shard.
+@Entity
+@Table(name = "chat_shards")
+@Data
+public class ChatShard {
+
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(nullable = false, length = 64)
+    private String shard;
+
+    // Set while ChatResharder copies the chat's messages; sends and read marks wait until it is done
+    @Column(nullable = false)
+    private boolean moving;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+}
@@ -5,8 +5,10 @@ import lombok.Data;
 
 import java.time.LocalDateTime;
 
+// One stored object per distinct content. Uploads of the same bytes share the object and
+// only add a reference; referenceCount is the number of users and lessons pointing at it.
 @Entity
-@Table(name = "files")
+@Table(name = "files", uniqueConstraints = @UniqueConstraint(name = "uk_files_unique_id", columnNames = "unique_id"))
 @Data
 public class FileMetaData {
 
@@ -14,7 +16,8 @@ public class FileMetaData {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "unique_id", nullable = false)
+    // SHA-256 of the content, hex encoded
+    @Column(name = "unique_id", nullable = false, length = 64)
     private String uniqueId;
 
     @Column(name = "object_name", nullable = false)
@@ -23,12 +26,17 @@ public class FileMetaData {
     @Column(name = "upload_date", nullable = false)
     private LocalDateTime uploadDate;
 
-    @ManyToOne
-    @JoinColumn(name = "user_id")
-    private User user;
+    @Column(name = "content_type", length = 100)
+    private String contentType;
 
-    @ManyToOne
-    @JoinColumn(name = "lesson_id")
-    private Lesson lesson;
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
 
-}
\ No newline at end of file
+    @Column(name = "reference_count", nullable = false)
+    private int referenceCount;
+
+    // Last change of referenceCount, OrphanFileCollector only removes files unreferenced for a while
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+}
@@ -0,0 +1,23 @@
+package com.notebridge.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Next free id of a sequence shared by all databases (MessageIds), kept on the primary
+@Entity
+@Table(name = "id_blocks")
+@Data
+public class IdBlock {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "next_id", nullable = false)
+    private long nextId;
+
+    // Ids below it were assigned by each database on its own before the sequence existed
+    @Column(name = "first_id", nullable = false)
+    private long firstId;
+
+}
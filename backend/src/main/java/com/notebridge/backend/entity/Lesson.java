@@ -1,7 +1,11 @@
 package com.notebridge.backend.entity;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.notebridge.backend.dto.SignedUrlSerializer;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -9,6 +13,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "lessons")
 @Data
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "entity-lessons")
 public class Lesson implements Serializable{
     private static final long serialVersionUID = 1L;
 
@@ -29,6 +35,8 @@ public class Lesson implements Serializable{
     @Column(length = 1000)
     private String description;
 
+    // Stored reference, written out as a signed URL
+    @JsonSerialize(using = SignedUrlSerializer.class)
     private String imageUrl;
 
     // ONLINE, IN_PERSON, HYBRID
@@ -43,10 +51,18 @@ public class Lesson implements Serializable{
 
     private LocalDateTime endDate;
 
+    // NONE, DAILY, WEEKLY, BIWEEKLY (treated as WEEKLY when not set)
+    private String recurrence;
+
     private String meetingLink;
 
     private String physicalAddress;
 
+    // Coordinates of physicalAddress, used for the nearby lesson search
+    private Double latitude;
+
+    private Double longitude;
+
     private boolean isCancelled = false;
 
 }
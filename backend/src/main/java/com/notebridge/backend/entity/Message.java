@@ -2,22 +2,26 @@ package com.notebridge.backend.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.data.domain.Persistable;
+
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "messages")
 @Data
-public class Message {
+public class Message implements Persistable<Long> {
     
+    // From MessageIds, unique across the message shards
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
-    @ManyToOne
+    // Lazy: on a message shard (ChatShards) there are no chats or users to join, only their ids are read
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chat_id", nullable = false)
     private Chat chat;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id", nullable = false)
     private User sender;
     
@@ -29,5 +33,25 @@ public class Message {
     
     @Column(nullable = false)
     private boolean isRead = false;
+
+    // Id of the journal entry the message was written from (MessageJournal), so a replayed entry is saved once
+    @Column(name = "journal_id", length = 36, unique = true)
+    private String journalId;
+
+    // The id is set before the first save, so it cannot tell Spring Data whether to insert
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
     
 }
@@ -0,0 +1,50 @@
+package com.notebridge.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// Change recorded in the same transaction as the change itself, delivered later by OutboxRelay
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_pending", columnList = "publishedAt, failedAt, id"),
+        @Index(name = "idx_outbox_aggregate", columnList = "aggregateType, aggregateId, id")})
+@Data
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Lesson, User, Chat, Import; events of one aggregate are delivered in id order
+    @Column(nullable = false, length = 32)
+    private String aggregateType;
+
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Column(nullable = false, length = 64)
+    private String eventType;
+
+    // JSON
+    @Column(length = 2000)
+    private String payload;
+
+    // Comma separated cache::key entries to evict, cache::* clears the cache
+    @Column(length = 1000)
+    private String invalidations;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    private LocalDateTime publishedAt;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    // A failed delivery is retried from then on, the wait doubling with each attempt
+    private LocalDateTime nextAttemptAt;
+
+    // Set after outbox.max-attempts failed deliveries: parked for inspection and no longer relayed
+    private LocalDateTime failedAt;
+}
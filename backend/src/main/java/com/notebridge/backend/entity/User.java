@@ -1,7 +1,11 @@
 package com.notebridge.backend.entity;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.notebridge.backend.dto.SignedUrlSerializer;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -12,6 +16,8 @@ import java.util.List;
 @Entity
 @Table(name = "users")
 @Data
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "entity-users")
 public class User implements UserDetails {
 
     @Id
@@ -34,6 +40,8 @@ public class User implements UserDetails {
     private String firstName;
     private String lastName;
     private String phoneNumber;
+    // Stored reference, written out as a signed URL
+    @JsonSerialize(using = SignedUrlSerializer.class)
     private String profileUrl;
 
     @Override
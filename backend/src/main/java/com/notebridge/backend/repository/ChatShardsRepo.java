@@ -0,0 +1,51 @@
+package com.notebridge.backend.repository;
+
+import com.notebridge.backend.entity.ChatShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ChatShardsRepo extends JpaRepository<ChatShard, Long> {
+
+    interface Placement {
+        String getShard();
+        Boolean getMoving();
+    }
+
+    // Reads the chat's row with a shared lock, held until the caller's transaction ends: startMove waits
+    // for it. A projection, so a row already loaded in the session cannot hide a newer state
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "SELECT shard, moving FROM chat_shards WHERE chat_id = :chatId LOCK IN SHARE MODE", nativeQuery = true)
+    Optional<Placement> lockPlacement(Long chatId);
+
+    // Places a new chat; a chat already placed keeps its shard
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO chat_shards (chat_id, shard, moving, updated_at) VALUES (:chatId, :shard, false, :now)", nativeQuery = true)
+    int place(Long chatId, String shard, LocalDateTime now);
+
+    // Marks the chat as moving unless a move is already running, returns 0 in that case
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatShard s SET s.moving = true, s.updatedAt = :now WHERE s.chatId = :chatId AND s.moving = false")
+    int startMove(Long chatId, LocalDateTime now);
+
+    // Takes over a move whose instance stopped before finishing it
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatShard s SET s.updatedAt = :now WHERE s.chatId = :chatId AND s.moving = true AND s.updatedAt < :staleBefore")
+    int resumeMove(Long chatId, LocalDateTime staleBefore, LocalDateTime now);
+
+    // Ends a move, on the new shard or (when the copy failed) on the old one
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatShard s SET s.shard = :shard, s.moving = false, s.updatedAt = :now WHERE s.chatId = :chatId AND s.moving = true")
+    int finishMove(Long chatId, String shard, LocalDateTime now);
+}
@@ -3,7 +3,10 @@ package com.notebridge.backend.repository;
 import com.notebridge.backend.entity.Chat;
 import com.notebridge.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
 
 import java.util.List;
 import java.util.Optional;
@@ -11,9 +14,17 @@ import java.util.Optional;
 @Repository
 public interface ChatsRepo extends JpaRepository<Chat, Long> {
     
-    // Find chat between specific teacher and student
+    // Find chat between specific teacher and student (query cache)
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Chat> findByTeacherAndStudent(User teacher, User student);
     
     // Find all chats for a user (either as teacher or student)
     List<Chat> findByTeacherOrStudentOrderByLastMessageAtDesc(User teacher, User student);
+
+    // Ids of a user's chats, for queries gathered from the message shards
+    @Query("SELECT c.id FROM Chat c WHERE c.teacher = :user OR c.student = :user")
+    List<Long> findIdsByParticipant(User user);
+
+    // Find a teacher's chats about a subject (lesson reminders)
+    List<Chat> findByTeacherIdAndSubject(Long teacherId, String subject);
 }
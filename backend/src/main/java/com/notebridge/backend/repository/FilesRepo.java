@@ -0,0 +1,45 @@
+package com.notebridge.backend.repository;
+
+import com.notebridge.backend.entity.FileMetaData;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FilesRepo extends JpaRepository<FileMetaData, Long> {
+
+    Optional<FileMetaData> findByUniqueId(String uniqueId);
+
+    // Records the file with one reference, or adds one if another upload recorded it first.
+    // Returns 1 when the row was inserted and 2 when an existing row was updated (MySQL).
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO files (unique_id, object_name, upload_date, content_type, size_bytes, reference_count, updated_at) "
+            + "VALUES (:uniqueId, :objectName, :uploadDate, :contentType, :sizeBytes, 1, :uploadDate) "
+            + "ON DUPLICATE KEY UPDATE reference_count = reference_count + 1, updated_at = VALUES(updated_at)", nativeQuery = true)
+    int addReference(String uniqueId, String objectName, LocalDateTime uploadDate, String contentType, Long sizeBytes);
+
+    // Files at zero references are kept until OrphanFileCollector runs, a later upload of the same bytes can still use them
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetaData f SET f.referenceCount = f.referenceCount - 1, f.updatedAt = :now "
+            + "WHERE f.objectName = :objectName AND f.referenceCount > 0")
+    int releaseReference(String objectName, LocalDateTime now);
+
+    @Query("SELECT f.objectName FROM FileMetaData f WHERE f.objectName IN :objectNames")
+    List<String> findObjectNames(Collection<String> objectNames);
+
+    // Rows without references since before the given time; a row an upload is adding a reference to stays
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileMetaData f WHERE f.objectName IN :objectNames AND f.referenceCount = 0 "
+            + "AND (f.updatedAt IS NULL OR f.updatedAt < :before)")
+    int deleteUnreferenced(Collection<String> objectNames, LocalDateTime before);
+}
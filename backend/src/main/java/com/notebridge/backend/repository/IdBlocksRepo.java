@@ -0,0 +1,25 @@
+package com.notebridge.backend.repository;
+
+import com.notebridge.backend.entity.IdBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+// Used inside the transaction of MessageIds, reserve and lastInsertId must share its connection
+@Repository
+public interface IdBlocksRepo extends JpaRepository<IdBlock, String> {
+
+    // Starts a sequence; one already started is left as it is
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO id_blocks (name, next_id, first_id) VALUES (:name, :firstId, :firstId)", nativeQuery = true)
+    int create(String name, long firstId);
+
+    // Moves the sequence past a block of size ids, LAST_INSERT_ID(expr) keeps the new value for lastInsertId
+    @Modifying
+    @Query(value = "UPDATE id_blocks SET next_id = LAST_INSERT_ID(next_id + :size) WHERE name = :name", nativeQuery = true)
+    int reserve(String name, long size);
+
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    long lastInsertId();
+}
@@ -3,6 +3,7 @@ package com.notebridge.backend.repository;
 import com.notebridge.backend.entity.Lesson;
 import com.notebridge.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -27,4 +28,17 @@ public interface LessonsRepo extends JpaRepository<Lesson, Long> {
 
     // Find non-cancelled lessons in the future
     List<Lesson> findByStartTimeAfterAndIsCancelledFalse(LocalDateTime now);
+
+    // Find non-cancelled lessons that have coordinates (spatial index bootstrap)
+    List<Lesson> findByLatitudeIsNotNullAndIsCancelledFalse();
+
+    // Find non-cancelled lessons whose date range overlaps [from, to) (reminder windows)
+    @Query("SELECT l FROM Lesson l WHERE l.isCancelled = false"
+            + " AND COALESCE(l.startDate, l.startTime) < :to AND COALESCE(l.endDate, l.endTime) >= :from")
+    List<Lesson> findActiveBetween(LocalDateTime from, LocalDateTime to);
+
+    // Same for one teacher (booking conflict checks)
+    @Query("SELECT l FROM Lesson l WHERE l.teacher.id = :teacherId AND l.isCancelled = false"
+            + " AND COALESCE(l.startDate, l.startTime) < :to AND COALESCE(l.endDate, l.endTime) >= :from")
+    List<Lesson> findActiveByTeacherBetween(Long teacherId, LocalDateTime from, LocalDateTime to);
 }
@@ -11,6 +11,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -22,6 +24,26 @@ public interface MessagesRepo extends JpaRepository<Message, Long> {
     // Get latest messages for a chat
     List<Message> findTop50ByChatOrderBySentAtDesc(Chat chat);
     
+    // What the search index needs from a message
+    interface IndexedMessage {
+        Long getId();
+        LocalDateTime getSentAt();
+        String getContent();
+    }
+
+    // All messages of a chat, to build its search index
+    List<IndexedMessage> findByChatOrderByIdAsc(Chat chat);
+
+    // Messages of a chat sent since a point in time, to bring its search index up to date
+    List<IndexedMessage> findByChatAndSentAtGreaterThanEqualOrderByIdAsc(Chat chat, LocalDateTime since);
+    
+    // Where the message id sequence starts (MessageIds)
+    @Query("SELECT COALESCE(MAX(m.id), 0) FROM Message m")
+    long highestId();
+
+    // Whether a journaled send was already written (MessageJournalReplayer)
+    boolean existsByJournalId(String journalId);
+
     // Count unread messages for a user in a chat
     @Query("SELECT COUNT(m) FROM Message m WHERE m.chat = :chat AND m.sender != :user AND m.isRead = false")
     long countUnreadMessages(Chat chat, User user);
@@ -32,6 +54,10 @@ public interface MessagesRepo extends JpaRepository<Message, Long> {
     @Query("UPDATE Message m SET m.isRead = true WHERE m.chat = :chat AND m.sender != :user AND m.isRead = false")
     void markMessagesAsRead(Chat chat, User user);
     
+    // Count unread messages for a user in some of their chats (a shard's share of countTotalUnreadMessages)
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.chat.id IN :chatIds AND m.sender != :user AND m.isRead = false")
+    long countUnreadMessagesInChats(Collection<Long> chatIds, User user);
+
     // Count total unread messages for a user
     @Query("SELECT COUNT(m) FROM Message m WHERE (m.chat.teacher = :user OR m.chat.student = :user) AND m.sender != :user AND m.isRead = false")
     long countTotalUnreadMessages(User user);
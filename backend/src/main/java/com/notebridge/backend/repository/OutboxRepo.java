@@ -0,0 +1,50 @@
+package com.notebridge.backend.repository;
+
+import com.notebridge.backend.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxRepo extends JpaRepository<OutboxEvent, Long> {
+
+    // Next undelivered events that are due, oldest first. Events waiting to be retried are left out,
+    // and so are the later events of their aggregate, which would otherwise overtake them
+    @Query("SELECT e FROM OutboxEvent e WHERE e.publishedAt IS NULL AND e.failedAt IS NULL"
+            + " AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)"
+            + " AND NOT EXISTS (SELECT p.id FROM OutboxEvent p WHERE p.publishedAt IS NULL AND p.failedAt IS NULL"
+            + " AND p.aggregateType = e.aggregateType AND p.aggregateId = e.aggregateId AND p.id < e.id"
+            + " AND p.nextAttemptAt > :now)"
+            + " ORDER BY e.id")
+    List<OutboxEvent> findDue(LocalDateTime now, Pageable pageable);
+
+    long countByPublishedAtIsNullAndFailedAtIsNull();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.publishedAt = :publishedAt WHERE e.id IN :ids")
+    void markPublished(Collection<Long> ids, LocalDateTime publishedAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :nextAttemptAt WHERE e.id = :id")
+    void retryLater(Long id, LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.failedAt = :failedAt WHERE e.id = :id")
+    void markFailed(Long id, LocalDateTime failedAt);
+
+    // Delivered events are only kept for troubleshooting
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxEvent e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(LocalDateTime before);
+}
@@ -1,14 +1,45 @@
 package com.notebridge.backend.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 import com.notebridge.backend.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 // JpaRepository: Provides CRUD operations out of the box
 // existsByEmail: Checks if a user with a specific email exists
-// findByEmail: Fetches a user by email
+// findByEmail: Fetches a user by email (query cache, runs for every authenticated request)
+// findPasswordById: The stored hash, always from the database (login must not verify against a cached copy)
+// updatePasswordHash: Replaces the hash only if it is still the one that was verified
+// findExistingEmails / findByEmailIn: One query for a whole chunk of a bulk import
+// lockForBooking: Locks the teacher's row until commit, so bookings of one teacher run one at a time
 public interface UsersRepo extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<User> findByEmail(String email);
+
+    @Query("SELECT u.password FROM User u WHERE u.id = :id")
+    Optional<String> findPasswordById(Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :oldHash")
+    int updatePasswordHash(Long id, String oldHash, String newHash);
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(Collection<String> emails);
+
+    List<User> findByEmailIn(Collection<String> emails);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> lockForBooking(Long id);
 }
@@ -1,17 +1,16 @@
 package com.notebridge.backend.service;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.notebridge.backend.dto.AuthReqRes;
 import com.notebridge.backend.entity.User;
@@ -26,10 +25,19 @@ public class AuthService {
     private JwtUtils jwtUtils;
 
     @Autowired
-    private AuthenticationManager authenticationManager;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private FilesService filesService;
 
     // User Registration
     public AuthReqRes register(AuthReqRes registrationRequest){
@@ -67,7 +75,7 @@ public class AuthService {
                 User ourUser = new User();
                 ourUser.setEmail(registrationRequest.getEmail());
                 ourUser.setRole(registrationRequest.getRole());
-                ourUser.setPassword(passwordEncoder.encode(registrationRequest.getPassword()));
+                ourUser.setPassword(passwordHashingService.hash(registrationRequest.getPassword()).join());
                 
                 // Optional fields - safe to be null
                 ourUser.setBio(registrationRequest.getBio());
@@ -86,6 +94,11 @@ public class AuthService {
 
         }
         catch (Exception e){
+            if (PasswordHashingService.isRejected(e)) {
+                resp.setStatusCode(503);
+                resp.setMessage("Too many password operations in progress, please retry shortly");
+                return resp;
+            }
             resp.setStatusCode(500);
             resp.setError(e.getMessage());
         }
@@ -93,28 +106,104 @@ public class AuthService {
     }
 
     // User login
-    public AuthReqRes login(AuthReqRes loginRequest) {
+    // User lookup on the request thread, then the BCrypt check on the hashing pool.
+    // The returned future lets the controller release the Tomcat thread while BCrypt runs.
+    // The user may come from the second-level cache, the hash is always read from the database so a
+    // password changed through another instance is never checked against the old one.
+    public CompletableFuture<AuthReqRes> login(AuthReqRes loginRequest) {
+        Optional<User> userOptional;
+        String storedHash;
+        try {
+            userOptional = loginRequest.getEmail() != null ? usersRepo.findByEmail(loginRequest.getEmail()) : Optional.empty();
+            storedHash = userOptional.isPresent() ? usersRepo.findPasswordById(userOptional.get().getId()).orElse(null) : null;
+        } catch (Exception e) {
+            AuthReqRes response = new AuthReqRes();
+            response.setStatusCode(500);
+            response.setMessage(e.getMessage());
+            return CompletableFuture.completedFuture(response);
+        }
+
+        return passwordHashingService.verify(loginRequest.getPassword(), storedHash)
+                .handle((matches, error) -> {
+                    AuthReqRes response = new AuthReqRes();
+                    if (error != null) {
+                        if (PasswordHashingService.isRejected(error)) {
+                            response.setStatusCode(503);
+                            response.setMessage("Too many logins in progress, please retry shortly");
+                        } else {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                            response.setStatusCode(500);
+                            response.setMessage(cause.getMessage());
+                        }
+                        return response;
+                    }
+                    if (!matches || userOptional.isEmpty()) {
+                        response.setStatusCode(401);
+                        response.setMessage("Bad credentials");
+                        return response;
+                    }
+
+                    User user = userOptional.get();
+                    if (passwordHashingService.needsRehash(storedHash)) {
+                        rehashInBackground(user.getId(), storedHash, loginRequest.getPassword());
+                    }
+
+                    String jwt = jwtUtils.generateToken(user);
+                    String refreshToken = refreshTokenService.issue(user.getEmail(),
+                            jwtUtils.extractTokenId(jwt), jwtUtils.extractExpirationMillis(jwt));
+
+                    response.setStatusCode(200);
+                    response.setToken(jwt);
+                    response.setRefreshToken(refreshToken);
+                    response.setRole(user.getRole());
+                    response.setExpirationTime("24Hrs");
+                    response.setMessage("Successfully logged in");
+                    return response;
+                });
+    }
+
+    // Re-encodes the password with the configured BCrypt cost at low priority.
+    // If the queue is full it is simply retried on a later login.
+    private void rehashInBackground(Long userId, String oldHash, String rawPassword) {
+        passwordHashingService.hash(rawPassword, PasswordHashingService.PRIORITY_BACKGROUND)
+                .thenAccept(newHash -> usersRepo.updatePasswordHash(userId, oldHash, newHash))
+                .exceptionally(e -> {
+                    System.err.println("Password rehash skipped for user " + userId + ": " + e.getMessage());
+                    return null;
+                });
+    }
+
+    // 1, Consume the refresh token (each one is single use) and get the next one of its family
+    // 2, Generate a new JWT for continued access
+    // A reused refresh token revokes its whole family, see RefreshTokenService
+    public AuthReqRes refreshToken(AuthReqRes refreshTokenRequest) {
         AuthReqRes response = new AuthReqRes();
         try {
-            
-            // Validates user credentials using AuthenticationManager
-            authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                    loginRequest.getEmail(), 
-                    loginRequest.getPassword()
-                )
-            );
-
-            User user = usersRepo.findByEmail(loginRequest.getEmail()).orElseThrow();
-            String jwt = jwtUtils.generateToken(user);
-            String refreshToken = jwtUtils.generateRefreshToken(new HashMap<>(), user);
+            String presented = refreshTokenRequest.getRefreshToken() != null
+                    ? refreshTokenRequest.getRefreshToken()
+                    : refreshTokenRequest.getToken();
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(presented);
+            if (rotation == null) {
+                response.setStatusCode(401);
+                response.setMessage("Invalid or expired refresh token");
+                return response;
+            }
+
+            User user = usersRepo.findByEmail(rotation.email()).orElse(null);
+            if (user == null) {
+                response.setStatusCode(401);
+                response.setMessage("Invalid or expired refresh token");
+                return response;
+            }
 
+            String newJwt = jwtUtils.generateToken(user);
+            refreshTokenService.trackAccessToken(rotation.familyId(),
+                    jwtUtils.extractTokenId(newJwt), jwtUtils.extractExpirationMillis(newJwt));
             response.setStatusCode(200);
-            response.setToken(jwt);
-            response.setRefreshToken(refreshToken);
-            response.setRole(user.getRole());
+            response.setToken(newJwt);
+            response.setRefreshToken(rotation.refreshToken());
             response.setExpirationTime("24Hrs");
-            response.setMessage("Successfully logged in");
+            response.setMessage("Successfully refreshed the token");
         } catch (Exception e) {
             response.setStatusCode(500);
             response.setMessage(e.getMessage());
@@ -122,22 +211,20 @@ public class AuthService {
         return response;
     }
 
-    // 1, Check if the refresh token is valid and matches the user
-    // 2, Generate a new JWT for continued access
-    public AuthReqRes refreshToken(AuthReqRes refreshTokenRequest) {
+    // Logout: revokes the refresh token family and the presented access token
+    public AuthReqRes logout(String accessToken, AuthReqRes logoutRequest) {
         AuthReqRes response = new AuthReqRes();
         try {
-            String email = jwtUtils.extractUsername(refreshTokenRequest.getToken());
-            User user = usersRepo.findByEmail(email).orElseThrow();
-
-            if (jwtUtils.isTokenValid(refreshTokenRequest.getToken(), user)) {
-                String newJwt = jwtUtils.generateToken(user);
-                response.setStatusCode(200);
-                response.setToken(newJwt);
-                response.setRefreshToken(refreshTokenRequest.getToken());
-                response.setExpirationTime("24Hrs");
-                response.setMessage("Successfully refreshed the token");
+            refreshTokenService.revoke(logoutRequest != null ? logoutRequest.getRefreshToken() : null);
+            if (accessToken != null) {
+                try {
+                    tokenRevocationService.revoke(jwtUtils.extractTokenId(accessToken), jwtUtils.extractExpirationMillis(accessToken));
+                } catch (Exception e) {
+                    // Invalid or expired access tokens need no revocation
+                }
             }
+            response.setStatusCode(200);
+            response.setMessage("Successfully logged out");
         } catch (Exception e) {
             response.setStatusCode(500);
             response.setMessage(e.getMessage());
@@ -182,7 +269,7 @@ public class AuthService {
     }
 
     // Delete User
-    @CacheEvict(value = "users", key = "#userId")
+    @Transactional
     public AuthReqRes deleteUser(Long userId){
         AuthReqRes reqRes = new AuthReqRes();
 
@@ -190,7 +277,9 @@ public class AuthService {
             Optional<User> userOptional = usersRepo.findById(userId);
 
             if(userOptional.isPresent()){
+                filesService.releaseReference(userOptional.get().getProfileUrl());
                 usersRepo.deleteById(userId);
+                recordUserEvent("UserDeleted", userOptional.get());
                 reqRes.setStatusCode(200);
                 reqRes.setMessage("User deleted successfully");
             }else{
@@ -199,6 +288,7 @@ public class AuthService {
             }
 
         }catch (Exception e){
+            OutboxService.rollbackOnly();
             reqRes.setStatusCode(500);
             reqRes.setMessage("Error Occurred while deleting user : " + e.getMessage());
         }
@@ -207,7 +297,7 @@ public class AuthService {
     }
 
     // update User
-    @CachePut(value = "users", key = "#userId")
+    @Transactional
     public AuthReqRes updateUser(Long userId, AuthReqRes updatedUserRequest){
         AuthReqRes reqRes = new AuthReqRes();
         try {
@@ -238,10 +328,11 @@ public class AuthService {
                 // Check if password is present in the request
                 if(updatedUserRequest.getPassword() != null && !updatedUserRequest.getPassword().isEmpty()){
                     // Encode the password and update it
-                    existingUser.setPassword(passwordEncoder.encode(updatedUserRequest.getPassword()));
+                    existingUser.setPassword(passwordHashingService.hash(updatedUserRequest.getPassword()).join());
                 }
 
                 User savedUser = usersRepo.save(existingUser);
+                recordUserEvent("UserUpdated", savedUser);
                 reqRes.setUser(savedUser);
                 reqRes.setStatusCode(200);
                 reqRes.setMessage("User updated successfully");
@@ -251,6 +342,12 @@ public class AuthService {
             }
 
         }catch (Exception e){
+            OutboxService.rollbackOnly();
+            if (PasswordHashingService.isRejected(e)) {
+                reqRes.setStatusCode(503);
+                reqRes.setMessage("Too many password operations in progress, please retry shortly");
+                return reqRes;
+            }
             reqRes.setStatusCode(500);
             reqRes.setMessage("Error Occurred while updating the user : " + e.getMessage());
         }
@@ -279,5 +376,13 @@ public class AuthService {
         return reqRes;
     }
 
-
+    // Publishes the change through the outbox. Lessons sideload their teacher, so a teacher's lesson lists go too.
+    private void recordUserEvent(String eventType, User user) {
+        List<String> invalidations = new ArrayList<>(List.of("users::" + user.getId()));
+        if ("TEACHER".equals(user.getRole())) {
+            invalidations.add("teacher-lessons::" + user.getId());
+            invalidations.add("lessons::all-active");
+        }
+        outboxService.record("User", user.getId(), eventType, Map.of("userId", user.getId()), invalidations);
+    }
 }
@@ -0,0 +1,706 @@
+package com.notebridge.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notebridge.backend.dto.ImportReqRes;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.UsersRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Creates users and lessons in bulk from an uploaded CSV or JSON file (admin onboarding).
+// Rows are read and validated one at a time; valid rows are collected into chunks of
+// import.chunk-size and each chunk is written in its own transaction with JDBC batch inserts,
+// so a failed chunk only fails its own rows. Passwords are hashed in parallel on the BCrypt pool
+// at background priority, leaving logins ahead of the import. Lesson events go through the
+// outbox like single creates, but the cached lesson lists are evicted once, after the last chunk.
+@Service
+public class BulkImportService {
+
+    private static final Set<String> ROLES = Set.of("STUDENT", "TEACHER", "ADMIN");
+    private static final Set<String> LOCATIONS = Set.of("ONLINE", "IN_PERSON", "HYBRID");
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final int MAX_TEXT = 255;
+    private static final int MAX_LONG_TEXT = 1000;
+    // Length of the outbox invalidations column
+    private static final int MAX_INVALIDATIONS_LENGTH = 1000;
+    private static final int HASH_RETRIES = 20;
+    private static final long HASH_RETRY_DELAY_MS = 50;
+
+    private static final String INSERT_USER = "INSERT INTO users (email, password, role, first_name, last_name, phone_number, bio)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LESSON = "INSERT INTO lessons (teacher_id, title, instrument, description, location,"
+            + " start_time, end_time, start_date, end_date, recurrence, meeting_link, physical_address, latitude, longitude, is_cancelled)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false)";
+    private static final String INSERT_OUTBOX_EVENT = "INSERT INTO outbox_events (aggregate_type, aggregate_id, event_type, payload, created_at, attempts)"
+            + " VALUES (?, ?, ?, ?, ?, 0)";
+
+    @Autowired
+    private UsersRepo usersRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private LessonScheduleService lessonScheduleService;
+
+    @Autowired
+    private LessonGeoIndex lessonGeoIndex;
+
+    @Autowired
+    private LessonReminderService lessonReminderService;
+
+    @Autowired
+    private Geocoder geocoder;
+
+    @Autowired
+    private SecondLevelCacheSync secondLevelCacheSync;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${import.max-rows:50000}")
+    private int maxRows;
+
+    @Value("${import.max-errors:1000}")
+    private int maxErrors;
+
+    // Import hashes waiting on or running in the BCrypt pool at a time
+    @Value("${import.hash-concurrency:8}")
+    private int hashConcurrency;
+
+    private interface RowParser<T> {
+        // Returns null and adds to errors when the row is invalid
+        T parse(int row, Map<String, String> values, List<ImportReqRes.RowError> errors);
+    }
+
+    private interface ChunkWriter<T> {
+        void write(List<T> chunk, Report report);
+    }
+
+    private record UserRow(int row, User user, String rawPassword) {
+    }
+
+    private record LessonRow(int row, Lesson lesson, Long teacherId, String teacherEmail) {
+    }
+
+    // Counts and errors of one import
+    private final class Report {
+        final ImportReqRes resp = new ImportReqRes();
+        final String type;
+
+        Report(String type) {
+            this.type = type;
+        }
+
+        void imported(Long id) {
+            resp.setImportedCount(resp.getImportedCount() + 1);
+            resp.getImportedIds().add(id);
+            meterRegistry.counter("notebridge.import.rows", "type", type, "result", "imported").increment();
+        }
+
+        void reject(int row, String field, String message) {
+            reject(List.of(new ImportReqRes.RowError(row, field, message)));
+        }
+
+        void reject(List<ImportReqRes.RowError> errors) {
+            resp.setFailedCount(resp.getFailedCount() + 1);
+            for (ImportReqRes.RowError error : errors) {
+                if (resp.getErrors().size() < maxErrors) {
+                    resp.getErrors().add(error);
+                }
+            }
+            meterRegistry.counter("notebridge.import.rows", "type", type, "result", "failed").increment();
+        }
+    }
+
+    public ImportReqRes importUsers(MultipartFile file, String format) {
+        Set<String> seenEmails = new HashSet<>();
+        ImportReqRes resp = run(file, format, "users", (row, values, errors) -> parseUser(row, values, errors, seenEmails), this::writeUsers);
+        if (resp.getImportedCount() > 0) {
+            // The rows bypassed Hibernate, so query results cached by any instance may be missing them
+            secondLevelCacheSync.evictQueryRegionsEverywhere();
+        }
+        return resp;
+    }
+
+    public ImportReqRes importLessons(MultipartFile file, String format) {
+        Set<Long> teacherIds = new LinkedHashSet<>();
+        ImportReqRes resp = run(file, format, "lessons", this::parseLesson, (chunk, report) -> writeLessons(chunk, report, teacherIds));
+        if (resp.getImportedCount() > 0) {
+            recordLessonsImported(resp.getImportedIds(), teacherIds);
+        }
+        return resp;
+    }
+
+    private <T> ImportReqRes run(MultipartFile file, String format, String type, RowParser<T> parser, ChunkWriter<T> writer) {
+        Report report = new Report(type);
+        ImportReqRes resp = report.resp;
+
+        ImportRows.Format rowFormat = ImportRows.Format.of(format, file.getOriginalFilename(), file.getContentType());
+        if (rowFormat == null) {
+            resp.setStatusCode(400);
+            resp.setMessage("Unsupported file format, upload a .csv or .json file");
+            return resp;
+        }
+        try (InputStream in = file.getInputStream(); ImportRows rows = ImportRows.open(in, rowFormat, objectMapper)) {
+            List<T> chunk = new ArrayList<>(chunkSize);
+            while (true) {
+                Map<String, String> values;
+                try {
+                    values = rows.next();
+                } catch (IOException | RuntimeException e) {
+                    report.reject(rows.row() + 1, null, "Malformed " + rowFormat + ", the rest of the file was not read: " + e.getMessage());
+                    break;
+                }
+                if (values == null) {
+                    break;
+                }
+                if (rows.row() > maxRows) {
+                    report.reject(rows.row(), null, "More than " + maxRows + " rows, the rest of the file was not read");
+                    break;
+                }
+                List<ImportReqRes.RowError> errors = new ArrayList<>();
+                T parsed = parser.parse(rows.row(), values, errors);
+                if (parsed == null) {
+                    report.reject(errors);
+                    continue;
+                }
+                chunk.add(parsed);
+                if (chunk.size() >= chunkSize) {
+                    writer.write(chunk, report);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writer.write(chunk, report);
+            }
+            resp.setRowCount(rows.row());
+            resp.setStatusCode(200);
+            resp.setMessage("Imported " + resp.getImportedCount() + " of " + resp.getRowCount() + " " + type);
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // ---- Users ----
+
+    private UserRow parseUser(int row, Map<String, String> values, List<ImportReqRes.RowError> errors, Set<String> seenEmails) {
+        String email = values.get("email");
+        if (email == null) {
+            errors.add(new ImportReqRes.RowError(row, "email", "Email is required"));
+        } else if (email.length() > MAX_TEXT || !EMAIL.matcher(email).matches()) {
+            errors.add(new ImportReqRes.RowError(row, "email", "Email is not valid"));
+        } else if (!seenEmails.add(email.toLowerCase(Locale.ROOT))) {
+            errors.add(new ImportReqRes.RowError(row, "email", "Email appears more than once in the file"));
+        }
+        String password = values.get("password");
+        if (password == null) {
+            errors.add(new ImportReqRes.RowError(row, "password", "Password is required"));
+        }
+        String role = values.get("role");
+        if (role == null) {
+            errors.add(new ImportReqRes.RowError(row, "role", "Role is required"));
+        } else if (!ROLES.contains(role.toUpperCase(Locale.ROOT))) {
+            errors.add(new ImportReqRes.RowError(row, "role", "Role must be one of " + ROLES));
+        }
+
+        User user = new User();
+        user.setEmail(email);
+        user.setRole(role != null ? role.toUpperCase(Locale.ROOT) : null);
+        user.setFirstName(text(row, values, "firstName", MAX_TEXT, errors));
+        user.setLastName(text(row, values, "lastName", MAX_TEXT, errors));
+        user.setPhoneNumber(text(row, values, "phoneNumber", MAX_TEXT, errors));
+        user.setBio(text(row, values, "bio", MAX_LONG_TEXT, errors));
+        return errors.isEmpty() ? new UserRow(row, user, password) : null;
+    }
+
+    private void writeUsers(List<UserRow> chunk, Report report) {
+        // Emails already registered, one query for the chunk
+        Set<String> existing = new HashSet<>();
+        for (String email : usersRepo.findExistingEmails(chunk.stream().map(r -> r.user().getEmail()).toList())) {
+            existing.add(email.toLowerCase(Locale.ROOT));
+        }
+        List<UserRow> rows = new ArrayList<>();
+        for (UserRow row : chunk) {
+            if (existing.contains(row.user().getEmail().toLowerCase(Locale.ROOT))) {
+                report.reject(row.row(), "email", "User with this email already exist.");
+            } else {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<String> hashes = hashAll(rows.stream().map(UserRow::rawPassword).toList());
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i).user().setPassword(hashes.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectAll(rows.stream().map(UserRow::row).toList(), report, "Import interrupted");
+            return;
+        } catch (Exception e) {
+            rejectAll(rows.stream().map(UserRow::row).toList(), report, "Password could not be hashed: " + e.getMessage());
+            return;
+        }
+
+        List<Long> ids;
+        try {
+            ids = transactionTemplate.execute(status -> insertReturningIds(INSERT_USER, rows.size(), (ps, i) -> {
+                User user = rows.get(i).user();
+                ps.setString(1, user.getEmail());
+                ps.setString(2, user.getPassword());
+                ps.setString(3, user.getRole());
+                ps.setString(4, user.getFirstName());
+                ps.setString(5, user.getLastName());
+                ps.setString(6, user.getPhoneNumber());
+                ps.setString(7, user.getBio());
+            }));
+        } catch (DataAccessException e) {
+            rejectAll(rows.stream().map(UserRow::row).toList(), report, "Not saved: " + e.getMostSpecificCause().getMessage());
+            return;
+        }
+        ids.forEach(report::imported);
+    }
+
+    // Hashes on the BCrypt pool, at most import.hash-concurrency at a time so its bounded queue keeps
+    // room for logins. A full queue is retried after a short pause rather than failing the import.
+    private List<String> hashAll(List<String> passwords) throws InterruptedException {
+        String[] hashes = new String[passwords.size()];
+        Semaphore window = new Semaphore(Math.max(1, hashConcurrency));
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[passwords.size()];
+        for (int i = 0; i < passwords.size(); i++) {
+            window.acquire();
+            int index = i;
+            futures[i] = submitHash(passwords.get(i)).whenComplete((hash, error) -> {
+                hashes[index] = hash;
+                window.release();
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+        return Arrays.asList(hashes);
+    }
+
+    private CompletableFuture<String> submitHash(String password) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            CompletableFuture<String> hash = passwordHashingService.hash(password, PasswordHashingService.PRIORITY_BACKGROUND);
+            // Rejected submissions fail straight away, accepted ones cannot have finished yet
+            if (!hash.isCompletedExceptionally() || attempt == HASH_RETRIES) {
+                return hash;
+            }
+            Thread.sleep(HASH_RETRY_DELAY_MS * (attempt + 1));
+        }
+    }
+
+    // ---- Lessons ----
+
+    private LessonRow parseLesson(int row, Map<String, String> values, List<ImportReqRes.RowError> errors) {
+        Long teacherId = null;
+        String teacherIdValue = values.get("teacherid");
+        String teacherEmail = values.get("teacheremail");
+        if (teacherIdValue != null) {
+            try {
+                teacherId = Long.valueOf(teacherIdValue);
+            } catch (NumberFormatException e) {
+                errors.add(new ImportReqRes.RowError(row, "teacherId", "Teacher id must be a number"));
+            }
+        } else if (teacherEmail == null) {
+            errors.add(new ImportReqRes.RowError(row, "teacherId", "Teacher id or teacher email is required"));
+        }
+
+        Lesson lesson = new Lesson();
+        lesson.setTitle(required(row, values, "title", MAX_TEXT, errors));
+        lesson.setInstrument(required(row, values, "instrument", MAX_TEXT, errors));
+        lesson.setDescription(text(row, values, "description", MAX_LONG_TEXT, errors));
+        lesson.setMeetingLink(text(row, values, "meetingLink", MAX_TEXT, errors));
+        lesson.setPhysicalAddress(text(row, values, "physicalAddress", MAX_TEXT, errors));
+
+        String location = required(row, values, "location", MAX_TEXT, errors);
+        if (location != null) {
+            location = location.toUpperCase(Locale.ROOT);
+            if (!LOCATIONS.contains(location)) {
+                errors.add(new ImportReqRes.RowError(row, "location", "Location must be one of " + LOCATIONS));
+            }
+            lesson.setLocation(location);
+        }
+        // Optional, WEEKLY like lessons created in the app
+        lesson.setRecurrence(LessonSeries.normalizeRecurrence(text(row, values, "recurrence", MAX_TEXT, errors)));
+        if (lesson.getRecurrence() == null) {
+            errors.add(new ImportReqRes.RowError(row, "recurrence", "Recurrence must be one of " + LessonSeries.RECURRENCES));
+        }
+
+        lesson.setStartTime(dateTime(row, values, "startTime", errors));
+        lesson.setEndTime(dateTime(row, values, "endTime", errors));
+        lesson.setStartDate(dateTime(row, values, "startDate", errors));
+        lesson.setEndDate(dateTime(row, values, "endDate", errors));
+        if (lesson.getStartTime() != null && lesson.getEndTime() != null && !lesson.getEndTime().isAfter(lesson.getStartTime())) {
+            errors.add(new ImportReqRes.RowError(row, "endTime", "End time must be after start time"));
+        }
+        if (lesson.getStartDate() != null && lesson.getEndDate() != null && lesson.getEndDate().isBefore(lesson.getStartDate())) {
+            errors.add(new ImportReqRes.RowError(row, "endDate", "End date must not be before start date"));
+        }
+
+        lesson.setLatitude(coordinate(row, values, "latitude", 90, errors));
+        lesson.setLongitude(coordinate(row, values, "longitude", 180, errors));
+        lesson.setCancelled(false);
+        return errors.isEmpty() ? new LessonRow(row, lesson, teacherId, teacherEmail) : null;
+    }
+
+    private void writeLessons(List<LessonRow> chunk, Report report, Set<Long> teacherIds) {
+        // Teachers of the chunk, one query by id and one by email
+        Map<Long, User> teachersById = new HashMap<>();
+        Map<String, User> teachersByEmail = new HashMap<>();
+        Set<Long> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (LessonRow row : chunk) {
+            if (row.teacherId() != null) {
+                ids.add(row.teacherId());
+            } else {
+                emails.add(row.teacherEmail());
+            }
+        }
+        if (!ids.isEmpty()) {
+            usersRepo.findAllById(ids).forEach(user -> teachersById.put(user.getId(), user));
+        }
+        if (!emails.isEmpty()) {
+            usersRepo.findByEmailIn(emails).forEach(user -> teachersByEmail.put(user.getEmail().toLowerCase(Locale.ROOT), user));
+        }
+
+        List<LessonRow> candidates = new ArrayList<>();
+        for (LessonRow row : chunk) {
+            User teacher = row.teacherId() != null ? teachersById.get(row.teacherId())
+                    : teachersByEmail.get(row.teacherEmail().toLowerCase(Locale.ROOT));
+            String teacherField = row.teacherId() != null ? "teacherId" : "teacherEmail";
+            if (teacher == null) {
+                report.reject(row.row(), teacherField, "Teacher not found");
+                continue;
+            }
+            if (!"TEACHER".equals(teacher.getRole())) {
+                report.reject(row.row(), teacherField, "User " + teacher.getId() + " is not a teacher");
+                continue;
+            }
+            Lesson lesson = row.lesson();
+            lesson.setTeacher(teacher);
+            applyCoordinates(lesson);
+            candidates.add(row);
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        // Booked like a single create: the teachers' rows are locked until the chunk commits (in id order,
+        // so two imports cannot deadlock) and conflicts are read from the database under the locks
+        TransactionTemplate chunkTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        chunkTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        List<LessonRow> rows = new ArrayList<>();
+        // Reported once the chunk commits, a failed chunk reports all of its rows as not saved
+        List<ImportReqRes.RowError> conflicts = new ArrayList<>();
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                candidates.stream().map(row -> row.lesson().getTeacher().getId()).distinct().sorted()
+                        .forEach(usersRepo::lockForBooking);
+                // Accepted rows of this chunk by teacher, not in the database yet
+                Map<Long, List<LessonRow>> accepted = new HashMap<>();
+                for (LessonRow row : candidates) {
+                    Lesson lesson = row.lesson();
+                    List<Long> booked = lessonScheduleService.findBookedConflicts(lesson);
+                    if (!booked.isEmpty()) {
+                        conflicts.add(new ImportReqRes.RowError(row.row(), "startTime", "Lesson conflicts with existing lesson(s): " + booked));
+                        continue;
+                    }
+                    LessonRow conflicting = conflictInChunk(lesson, accepted.getOrDefault(lesson.getTeacher().getId(), List.of()));
+                    if (conflicting != null) {
+                        conflicts.add(new ImportReqRes.RowError(row.row(), "startTime", "Lesson conflicts with row " + conflicting.row()));
+                        continue;
+                    }
+                    accepted.computeIfAbsent(lesson.getTeacher().getId(), id -> new ArrayList<>()).add(row);
+                    rows.add(row);
+                }
+                if (rows.isEmpty()) {
+                    return;
+                }
+
+                List<Long> lessonIds = insertReturningIds(INSERT_LESSON, rows.size(), (ps, i) -> {
+                    Lesson lesson = rows.get(i).lesson();
+                    ps.setLong(1, lesson.getTeacher().getId());
+                    ps.setString(2, lesson.getTitle());
+                    ps.setString(3, lesson.getInstrument());
+                    ps.setString(4, lesson.getDescription());
+                    ps.setString(5, lesson.getLocation());
+                    ps.setTimestamp(6, timestamp(lesson.getStartTime()));
+                    ps.setTimestamp(7, timestamp(lesson.getEndTime()));
+                    ps.setTimestamp(8, timestamp(lesson.getStartDate()));
+                    ps.setTimestamp(9, timestamp(lesson.getEndDate()));
+                    ps.setString(10, lesson.getRecurrence());
+                    ps.setString(11, lesson.getMeetingLink());
+                    ps.setString(12, lesson.getPhysicalAddress());
+                    ps.setObject(13, lesson.getLatitude());
+                    ps.setObject(14, lesson.getLongitude());
+                });
+                for (int i = 0; i < rows.size(); i++) {
+                    rows.get(i).lesson().setId(lessonIds.get(i));
+                }
+                // Same LessonCreated events as a single create, batched with the lessons
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                jdbcTemplate.batchUpdate(INSERT_OUTBOX_EVENT, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Lesson lesson = rows.get(i).lesson();
+                        ps.setString(1, "Lesson");
+                        ps.setLong(2, lesson.getId());
+                        ps.setString(3, "LessonCreated");
+                        ps.setString(4, lessonPayload(lesson));
+                        ps.setTimestamp(5, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                });
+                // Applied once the chunk commits, and on the other instances
+                for (LessonRow row : rows) {
+                    lessonScheduleService.index(row.lesson());
+                    lessonGeoIndex.index(row.lesson());
+                    lessonReminderService.schedule(row.lesson());
+                }
+            });
+        } catch (DataAccessException e) {
+            rows.forEach(row -> row.lesson().setId(null));
+            rejectAll(candidates.stream().map(LessonRow::row).toList(), report, "Not saved: " + e.getMostSpecificCause().getMessage());
+            return;
+        }
+        conflicts.forEach(error -> report.reject(error.row(), error.field(), error.message()));
+        if (rows.isEmpty()) {
+            return;
+        }
+        outboxRelay.wake();
+
+        for (LessonRow row : rows) {
+            teacherIds.add(row.lesson().getTeacher().getId());
+            report.imported(row.lesson().getId());
+        }
+    }
+
+    private LessonRow conflictInChunk(Lesson lesson, List<LessonRow> accepted) {
+        LessonSeries candidate = LessonSeries.of(lesson);
+        if (candidate == null) {
+            return null;
+        }
+        for (LessonRow other : accepted) {
+            LessonSeries existing = LessonSeries.of(other.lesson());
+            if (existing != null && candidate.conflictsWith(existing)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    // The cache evictions of all the LessonCreated events, recorded once after the last chunk.
+    // Split over several events when they do not fit in one invalidations column.
+    private void recordLessonsImported(List<Long> lessonIds, Set<Long> teacherIds) {
+        List<String> invalidations = new ArrayList<>();
+        invalidations.add("lessons::all-active");
+        teacherIds.forEach(teacherId -> invalidations.add("teacher-lessons::" + teacherId));
+        lessonIds.forEach(lessonId -> invalidations.add("lesson::" + lessonId));
+
+        List<List<String>> parts = new ArrayList<>();
+        List<String> part = new ArrayList<>();
+        int length = 0;
+        for (String invalidation : invalidations) {
+            if (!part.isEmpty() && length + 1 + invalidation.length() > MAX_INVALIDATIONS_LENGTH) {
+                parts.add(part);
+                part = new ArrayList<>();
+                length = 0;
+            }
+            length += (part.isEmpty() ? 0 : 1) + invalidation.length();
+            part.add(invalidation);
+        }
+        parts.add(part);
+
+        long importId = System.currentTimeMillis();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < parts.size(); i++) {
+                    Map<String, Object> payload = new LinkedHashMap<>();
+                    payload.put("lessons", lessonIds.size());
+                    payload.put("part", i + 1);
+                    payload.put("parts", parts.size());
+                    outboxService.record("Import", importId, "LessonsImported", payload, parts.get(i));
+                }
+            });
+        } catch (Exception e) {
+            // The lessons are saved; cached lists refresh when their entries expire or change again
+            System.err.println("Failed to record lesson import evictions: " + e.getMessage());
+        }
+    }
+
+    // Coordinates come from the file when given, otherwise from the geocoder for physical lessons
+    private void applyCoordinates(Lesson lesson) {
+        if ((lesson.getLatitude() == null || lesson.getLongitude() == null) && LessonGeoIndex.isPhysical(lesson)) {
+            Optional<double[]> point = geocoder.geocode(lesson.getPhysicalAddress());
+            lesson.setLatitude(point.map(p -> p[0]).orElse(null));
+            lesson.setLongitude(point.map(p -> p[1]).orElse(null));
+        }
+    }
+
+    private String lessonPayload(Lesson lesson) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("lessonId", lesson.getId());
+        payload.put("teacherId", lesson.getTeacher().getId());
+        payload.put("cancelled", false);
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", e);
+        }
+    }
+
+    // ---- Helpers ----
+
+    private interface ParameterSetter {
+        void set(PreparedStatement ps, int i) throws SQLException;
+    }
+
+    // One batch insert, returning the generated ids in row order
+    private List<Long> insertReturningIds(String sql, int rows, ParameterSetter setter) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setter.set(ps, i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows;
+                    }
+                }, keys);
+        List<Long> ids = new ArrayList<>(rows);
+        for (Map<String, Object> key : keys.getKeyList()) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        if (ids.size() != rows) {
+            throw new IllegalStateException("Expected " + rows + " generated ids, got " + ids.size());
+        }
+        return ids;
+    }
+
+    private static void rejectAll(List<Integer> rows, Report report, String message) {
+        for (int row : rows) {
+            report.reject(row, null, message);
+        }
+    }
+
+    private static String text(int row, Map<String, String> values, String field, int maxLength, List<ImportReqRes.RowError> errors) {
+        String value = values.get(ImportRows.normalize(field));
+        if (value != null && value.length() > maxLength) {
+            errors.add(new ImportReqRes.RowError(row, field, "Must be at most " + maxLength + " characters"));
+        }
+        return value;
+    }
+
+    private static String required(int row, Map<String, String> values, String field, int maxLength, List<ImportReqRes.RowError> errors) {
+        String value = text(row, values, field, maxLength, errors);
+        if (value == null) {
+            errors.add(new ImportReqRes.RowError(row, field, field + " is required"));
+        }
+        return value;
+    }
+
+    // ISO-8601 local date-time, as in the lesson endpoints (2025-01-15T17:00:00)
+    private static LocalDateTime dateTime(int row, Map<String, String> values, String field, List<ImportReqRes.RowError> errors) {
+        String value = values.get(ImportRows.normalize(field));
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            errors.add(new ImportReqRes.RowError(row, field, "Expected a date-time like 2025-01-15T17:00:00"));
+            return null;
+        }
+    }
+
+    private static Double coordinate(int row, Map<String, String> values, String field, double limit, List<ImportReqRes.RowError> errors) {
+        String value = values.get(ImportRows.normalize(field));
+        if (value == null) {
+            return null;
+        }
+        try {
+            double coordinate = Double.parseDouble(value);
+            if (coordinate >= -limit && coordinate <= limit) {
+                return coordinate;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        errors.add(new ImportReqRes.RowError(row, field, "Must be a number between " + (int) -limit + " and " + (int) limit));
+        return null;
+    }
+
+    private static Timestamp timestamp(LocalDateTime dateTime) {
+        return dateTime != null ? Timestamp.valueOf(dateTime) : null;
+    }
+}
@@ -0,0 +1,141 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Generation numbers for cache entries that are invalidated by versioning instead of eviction.
+// The key of a versioned entry embeds the current generation of its namespace ("5@g3" is teacher 5's
+// lesson list at generation 3), so invalidating it is a single HINCRBY: readers move on to a new key
+// and the old entry expires through the cache TTL. Generations live in one Redis hash and every
+// instance keeps a copy in memory, updated over pub/sub when they are bumped and re-read after
+// cache.generations.max-age-ms in case a message was missed. A cached read costs no extra round trip.
+@Service
+public class CacheGenerations implements MessageListener {
+
+    public static final String CHANNEL = "cache-generations";
+    private static final String KEY = "cache:generations";
+
+    // Caches whose @Cacheable keys go through versioned(); OutboxRelay bumps these instead of evicting
+    private static final Set<String> VERSIONED_CACHES = Set.of("lessons", "teacher-lessons");
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.generations.max-age-ms:5000}")
+    private long maxAgeMs;
+
+    private record Generation(long value, long readAtMs) {
+    }
+
+    // Namespace ("teacher-lessons::5") to its last known generation
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+
+    private final DefaultRedisScript<List> bumpScript;
+
+    private Counter bumps;
+    private Counter localReads;
+    private Counter redisReads;
+
+    public CacheGenerations() {
+        bumpScript = new DefaultRedisScript<>();
+        bumpScript.setLocation(new ClassPathResource("scripts/cache_generation_bump.lua"));
+        bumpScript.setResultType(List.class);
+    }
+
+    @PostConstruct
+    void start() {
+        bumps = meterRegistry.counter("notebridge.cache.generation.bumps");
+        localReads = meterRegistry.counter("notebridge.cache.generation.reads", "source", "local");
+        redisReads = meterRegistry.counter("notebridge.cache.generation.reads", "source", "redis");
+    }
+
+    public static boolean isVersioned(String cacheName) {
+        return VERSIONED_CACHES.contains(cacheName);
+    }
+
+    // Cache key for a versioned entry, used from SpEL: @cacheGenerations.versioned('teacher-lessons', #teacherId)
+    public String versioned(String cacheName, Object key) {
+        return key + "@g" + current(cacheName + "::" + key);
+    }
+
+    long current(String namespace) {
+        long now = System.currentTimeMillis();
+        Generation known = generations.get(namespace);
+        if (known != null && now - known.readAtMs() < maxAgeMs) {
+            localReads.increment();
+            return known.value();
+        }
+        try {
+            Object stored = stringRedisTemplate.opsForHash().get(KEY, namespace);
+            redisReads.increment();
+            return remember(namespace, stored != null ? Long.parseLong(stored.toString()) : 0L, now);
+        } catch (Exception e) {
+            // Redis is unreachable, and so is the cache: any key will do
+            System.err.println("Cache generation unavailable for " + namespace + ": " + e.getMessage());
+            return known != null ? known.value() : 0L;
+        }
+    }
+
+    // Moves every namespace to a new generation in one round trip. Throws when Redis is unreachable.
+    public void bump(Collection<String> namespaces) {
+        if (namespaces.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(namespaces.size() + 1);
+        args.add(CHANNEL);
+        args.addAll(namespaces);
+        List<?> result = stringRedisTemplate.execute(bumpScript, List.of(KEY), args.toArray());
+        long now = System.currentTimeMillis();
+        int i = 0;
+        for (String namespace : namespaces) {
+            if (result != null && i < result.size()) {
+                remember(namespace, ((Number) result.get(i)).longValue(), now);
+            }
+            i++;
+        }
+        bumps.increment(namespaces.size());
+    }
+
+    // Generations bumped by any instance, one "<generation> <namespace>" per line
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        long now = System.currentTimeMillis();
+        for (String line : new String(message.getBody(), StandardCharsets.UTF_8).split("\n")) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                try {
+                    remember(line.substring(space + 1), Long.parseLong(line.substring(0, space)), now);
+                } catch (NumberFormatException e) {
+                    System.err.println("Dropping malformed cache generation: " + line);
+                }
+            }
+        }
+    }
+
+    // Generations only move forward, whatever order the reads and messages arrive in
+    private long remember(String namespace, long value, long readAtMs) {
+        return generations.merge(namespace, new Generation(value, readAtMs),
+                (old, fresh) -> new Generation(Math.max(old.value(), fresh.value()), fresh.readAtMs())).value();
+    }
+}
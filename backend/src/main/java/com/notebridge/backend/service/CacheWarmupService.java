@@ -0,0 +1,206 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.notebridge.backend.dto.LessonView;
+import com.notebridge.backend.dto.LessonsReqRes;
+
+// Fills the lesson caches before the instance takes traffic.
+// Application runners finish before Spring Boot reports the readiness probe as ACCEPTING_TRAFFIC,
+// so a new instance is only put behind the load balancer once the catalog, the most viewed
+// lessons and the active teachers' lesson lists are cached. Views of existing lessons are
+// counted in memory, for at most tracked-lessons of them between flushes, and flushed to a
+// Redis sorted set, shared by all instances, once a minute.
+@Service
+public class CacheWarmupService implements ApplicationRunner {
+
+    private static final String VIEWS_KEY = "lesson:views";
+
+    @Autowired
+    private LessonsService lessonsService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.top-lessons:200}")
+    private int topLessons;
+
+    @Value("${warmup.teachers:200}")
+    private int teachers;
+
+    // Kept below the connection pool size so requests arriving meanwhile still get a connection
+    @Value("${warmup.parallelism:4}")
+    private int parallelism;
+
+    @Value("${warmup.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${warmup.tracked-lessons:10000}")
+    private int trackedLessons;
+
+    private final Map<Long, LongAdder> pendingViews = new ConcurrentHashMap<>();
+
+    public void recordView(Long lessonId) {
+        LongAdder views = pendingViews.get(lessonId);
+        if (views == null) {
+            // Lessons beyond the cap wait for the next flush; the size check races, which only
+            // lets the map grow a few entries past it
+            if (pendingViews.size() >= trackedLessons) {
+                return;
+            }
+            views = pendingViews.computeIfAbsent(lessonId, id -> new LongAdder());
+        }
+        views.increment();
+    }
+
+    // One pipelined round trip for all the views counted since the last flush
+    @Scheduled(fixedDelayString = "${warmup.view-flush-interval-ms:60000}")
+    public void flushViews() {
+        if (pendingViews.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> views = new HashMap<>();
+        for (Long lessonId : pendingViews.keySet()) {
+            LongAdder adder = pendingViews.remove(lessonId);
+            if (adder != null) {
+                views.put(lessonId, adder.sum());
+            }
+        }
+        byte[] key = VIEWS_KEY.getBytes(StandardCharsets.UTF_8);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                views.forEach((lessonId, count) -> connection.zSetCommands()
+                        .zIncrBy(key, count, String.valueOf(lessonId).getBytes(StandardCharsets.UTF_8)));
+                // Only the head of the ranking is ever read
+                connection.zSetCommands().zRemRange(key, 0, -(trackedLessons + 1L));
+                return null;
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to flush lesson views: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            warm();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Cache warm-up failed: " + e.getMessage());
+        }
+    }
+
+    // Returns the number of entries cached
+    int warm() throws InterruptedException {
+        long started = System.currentTimeMillis();
+        LessonsReqRes catalog = lessonsService.getAllLessons();
+
+        List<Long> mostViewed = mostViewedLessons();
+        List<Callable<LessonsReqRes>> tasks = new ArrayList<>();
+        for (Long lessonId : mostViewed) {
+            tasks.add(() -> lessonsService.getLessonById(lessonId));
+        }
+        for (Long teacherId : activeTeachers(catalog, mostViewed)) {
+            tasks.add(() -> lessonsService.getLessonsByTeacher(teacherId));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), Thread.ofVirtual().factory());
+        int warmed = isCached(catalog) ? 1 : 0;
+        try {
+            long remaining = Math.max(0, timeoutMs - (System.currentTimeMillis() - started));
+            // Whatever is not done by the deadline is cancelled, the instance starts anyway
+            for (Future<LessonsReqRes> future : executor.invokeAll(tasks, remaining, TimeUnit.MILLISECONDS)) {
+                if (succeeded(future)) {
+                    warmed++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("Cache warm-up: " + warmed + " of " + (tasks.size() + 1) + " entries in "
+                + (System.currentTimeMillis() - started) + " ms");
+        return warmed;
+    }
+
+    // Cancelled at the deadline, thrown (a cache error) or answered with an error response: not warmed
+    private static boolean succeeded(Future<LessonsReqRes> future) throws InterruptedException {
+        if (future.isCancelled()) {
+            return false;
+        }
+        try {
+            return isCached(future.get());
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    private static boolean isCached(LessonsReqRes resp) {
+        return resp != null && resp.getStatusCode() == 200;
+    }
+
+    private List<Long> mostViewedLessons() {
+        List<Long> lessonIds = new ArrayList<>();
+        try {
+            Set<String> top = stringRedisTemplate.opsForZSet().reverseRange(VIEWS_KEY, 0, topLessons - 1L);
+            if (top != null) {
+                top.forEach(id -> lessonIds.add(Long.valueOf(id)));
+            }
+        } catch (Exception e) {
+            System.err.println("Lesson views unavailable for warm-up: " + e.getMessage());
+        }
+        return lessonIds;
+    }
+
+    // Teachers with an active lesson in the catalog, those of the most viewed lessons first
+    private Set<Long> activeTeachers(LessonsReqRes catalog, List<Long> mostViewed) {
+        Set<Long> teacherIds = new LinkedHashSet<>();
+        if (catalog.getLessonsList() == null) {
+            return teacherIds;
+        }
+        Map<Long, Long> teacherByLesson = new HashMap<>();
+        for (LessonView lesson : catalog.getLessonsList()) {
+            if (lesson.teacherId() != null) {
+                teacherByLesson.put(lesson.id(), lesson.teacherId());
+            }
+        }
+        for (Long lessonId : mostViewed) {
+            Long teacherId = teacherByLesson.get(lessonId);
+            if (teacherId != null) {
+                teacherIds.add(teacherId);
+            }
+        }
+        teacherIds.addAll(teacherByLesson.values());
+        return teacherIds.stream().limit(teachers).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
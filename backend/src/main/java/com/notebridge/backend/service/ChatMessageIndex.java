@@ -0,0 +1,196 @@
+package com.notebridge.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Inverted index over the messages of one chat.
+// Messages are numbered in the order they are added and each term keeps an ascending array
+// of postings (number << 8 | term frequency), so an indexed word costs about 4 bytes.
+// Queries are conjunctive: the rarest term's postings are walked and the cursors of the
+// others gallop forward to each of its messages.
+class ChatMessageIndex {
+
+    static final int MIN_TERM_LENGTH = 2;
+    static final int MAX_TERM_LENGTH = 40;
+    private static final int MAX_FREQUENCY = 255;
+    // How far back add() looks for a message that is already indexed
+    private static final long DUPLICATE_WINDOW_MS = 60_000L;
+
+    private long[] messageIds = new long[16];
+    private long[] sentAt = new long[16];
+    private int size;
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private final long chatId;
+    // Where the messages were read from (ChatShards), their ids are only unique within it
+    private final String shard;
+    // Messages sent before this were all read from the database when it was set
+    private LocalDateTime syncedAt;
+
+    interface TokenConsumer {
+        void accept(String term, int start, int end);
+    }
+
+    interface MatchConsumer {
+        void accept(long messageId, long sentAtMs, int[] frequencies);
+    }
+
+    private static final class Postings {
+        int[] entries = new int[4];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+
+        // First position at or after `from` whose message is >= doc (galloping, postings are ascending)
+        int advance(int from, int doc) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && entries[high] >>> 8 < doc) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (entries[mid] >>> 8 < doc) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    ChatMessageIndex(long chatId, String shard, LocalDateTime syncedAt) {
+        this.chatId = chatId;
+        this.shard = shard;
+        this.syncedAt = syncedAt;
+    }
+
+    long chatId() {
+        return chatId;
+    }
+
+    String shard() {
+        return shard;
+    }
+
+    synchronized LocalDateTime syncedAt() {
+        return syncedAt;
+    }
+
+    synchronized void markSynced(LocalDateTime syncedAt) {
+        if (syncedAt.isAfter(this.syncedAt)) {
+            this.syncedAt = syncedAt;
+        }
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Adds a message unless it is already indexed (sync and sendMessage may both deliver it)
+    synchronized void add(long messageId, long sentAtMs, String content) {
+        if (contains(messageId, sentAtMs)) {
+            return;
+        }
+        if (size == messageIds.length) {
+            messageIds = Arrays.copyOf(messageIds, size * 2);
+            sentAt = Arrays.copyOf(sentAt, size * 2);
+        }
+        int doc = size++;
+        messageIds[doc] = messageId;
+        sentAt[doc] = sentAtMs;
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        tokenize(content, (term, start, end) -> frequencies.merge(term, 1, Integer::sum));
+        frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new Postings())
+                .add(doc << 8 | Math.min(frequency, MAX_FREQUENCY)));
+    }
+
+    synchronized int documentFrequency(String term) {
+        Postings termPostings = postings.get(term);
+        return termPostings != null ? termPostings.size : 0;
+    }
+
+    // Calls the consumer for every message containing all the terms
+    synchronized void match(String[] terms, MatchConsumer consumer) {
+        Postings[] lists = new Postings[terms.length];
+        int rarest = 0;
+        for (int i = 0; i < terms.length; i++) {
+            lists[i] = postings.get(terms[i]);
+            if (lists[i] == null) {
+                return;
+            }
+            if (lists[i].size < lists[rarest].size) {
+                rarest = i;
+            }
+        }
+        int[] frequencies = new int[terms.length];
+        int[] cursors = new int[terms.length];
+        Postings driver = lists[rarest];
+        outer:
+        for (int p = 0; p < driver.size; p++) {
+            int doc = driver.entries[p] >>> 8;
+            for (int i = 0; i < lists.length; i++) {
+                if (i == rarest) {
+                    frequencies[i] = driver.entries[p] & MAX_FREQUENCY;
+                    continue;
+                }
+                // Both lists are walked forward only, so a query is linear in the postings at worst
+                cursors[i] = lists[i].advance(cursors[i], doc);
+                if (cursors[i] == lists[i].size) {
+                    return;
+                }
+                int entry = lists[i].entries[cursors[i]];
+                if (entry >>> 8 != doc) {
+                    continue outer;
+                }
+                frequencies[i] = entry & MAX_FREQUENCY;
+            }
+            consumer.accept(messageIds[doc], sentAt[doc], frequencies);
+        }
+    }
+
+    private boolean contains(long messageId, long sentAtMs) {
+        for (int doc = size - 1; doc >= 0 && sentAt[doc] >= sentAtMs - DUPLICATE_WINDOW_MS; doc--) {
+            if (messageIds[doc] == messageId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Lowercased runs of letters and digits, with their offsets in the text
+    static void tokenize(String text, TokenConsumer consumer) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int termLength = i - start;
+            if (termLength >= MIN_TERM_LENGTH && termLength <= MAX_TERM_LENGTH) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT), start, i);
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.notebridge.backend.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.notebridge.backend.config.ShardDataSources;
+import com.notebridge.backend.dto.ChatsReqRes;
+import com.notebridge.backend.entity.ChatShard;
+import com.notebridge.backend.repository.ChatShardsRepo;
+import com.notebridge.backend.repository.ChatsRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Moves the messages of a chat to another shard while the app keeps serving it (POST /admin/chat/move/{chat_id}).
+// The chat is marked moving: its messages are still read from the old shard, but sends and read marks
+// get a 503 (journaled sends are retried by the replayer). Writers hold a shared lock on the chat's
+// chat_shards row until they commit (ChatShards.write), so the mark waits for the writes in flight and
+// the messages can be copied right after it, in pages of shards.move.batch-size, and counted on both
+// sides. The directory then points at the new shard, and the old rows are deleted once no instance reads
+// them any more (one directory TTL plus shards.move.settle-ms). A failed copy leaves the chat on the old
+// shard; a move left marked by a stopped instance can be run again after shards.move.timeout-ms.
+// Messages keep their ids (MessageIds), only those written before the id sequence get new ones.
+@Service
+public class ChatResharder {
+
+    @Autowired
+    private ChatShards chatShards;
+
+    @Autowired
+    private ChatShardsRepo chatShardsRepo;
+
+    @Autowired
+    private ChatsRepo chatsRepo;
+
+    @Autowired
+    private MessageIds messageIds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Only there when shards.names is set
+    @Autowired(required = false)
+    private ShardDataSources shardDataSources;
+
+    @Value("${shards.move.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${shards.move.settle-ms:1000}")
+    private long settleMs;
+
+    @Value("${shards.move.timeout-ms:600000}")
+    private long timeoutMs;
+
+    private record Row(long id, long senderId, String content, Timestamp sentAt, boolean read, String journalId) {
+    }
+
+    public ChatsReqRes moveChat(Long chatId, String target) {
+        ChatsReqRes resp = new ChatsReqRes();
+
+        try {
+            if (shardDataSources == null) {
+                resp.setStatusCode(400);
+                resp.setMessage("Sharding is not enabled (shards.names)");
+                return resp;
+            }
+            if (target == null || !chatShards.shards().contains(target)) {
+                resp.setStatusCode(400);
+                resp.setMessage("Unknown shard: " + target + ", expected one of " + chatShards.shards());
+                return resp;
+            }
+            if (!chatsRepo.existsById(chatId)) {
+                resp.setStatusCode(404);
+                resp.setMessage("Chat not found with id: " + chatId);
+                return resp;
+            }
+
+            // Chats on the primary have no row until their first move
+            LocalDateTime now = LocalDateTime.now();
+            chatShardsRepo.place(chatId, ChatShards.PRIMARY, now);
+            ChatShard row = chatShardsRepo.findById(chatId).orElseThrow();
+            String source = row.getShard();
+            if (!row.isMoving() && source.equals(target)) {
+                resp.setShard(target);
+                resp.setMovedMessageCount(0L);
+                resp.setStatusCode(200);
+                resp.setMessage("Chat is already on shard " + target);
+                return resp;
+            }
+            boolean started = row.isMoving()
+                    ? chatShardsRepo.resumeMove(chatId, now.minusNanos(timeoutMs * 1_000_000), now) == 1
+                    : chatShardsRepo.startMove(chatId, now) == 1;
+            if (!started) {
+                resp.setStatusCode(409);
+                resp.setMessage("Chat " + chatId + " is already being moved");
+                return resp;
+            }
+            chatShards.forget(chatId);
+
+            long moved;
+            try {
+                moved = copy(chatId, source, target);
+            } catch (Exception e) {
+                chatShardsRepo.finishMove(chatId, source, LocalDateTime.now());
+                chatShards.forget(chatId);
+                if (!source.equals(target)) {
+                    deleteMessagesQuietly(target, chatId);
+                }
+                throw e;
+            }
+            chatShardsRepo.finishMove(chatId, target, LocalDateTime.now());
+            chatShards.forget(chatId);
+            if (!source.equals(target)) {
+                settle();
+                deleteMessagesQuietly(source, chatId);
+            }
+
+            meterRegistry.counter("notebridge.shards.moves", "result", "moved").increment();
+            meterRegistry.counter("notebridge.shards.moved_messages").increment(moved);
+            resp.setShard(target);
+            resp.setMovedMessageCount(moved);
+            resp.setStatusCode(200);
+            resp.setMessage("Chat moved from shard " + source + " to " + target);
+        } catch (Exception e) {
+            meterRegistry.counter("notebridge.shards.moves", "result", "failed").increment();
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Copies the chat's messages in id order and checks both sides hold as many
+    long copy(Long chatId, String source, String target) {
+        if (source.equals(target)) {
+            // Resumed move back to where the messages still are
+            return 0;
+        }
+        JdbcTemplate from = new JdbcTemplate(shardDataSources.get(source));
+        JdbcTemplate to = new JdbcTemplate(shardDataSources.get(target));
+        // Left over from an earlier attempt that failed
+        deleteMessages(to, chatId);
+
+        // Older ids may be taken on the target, the sequence's are unique everywhere
+        long firstId = messageIds.firstId();
+
+        long lastId = 0;
+        long copied = 0;
+        while (true) {
+            List<Row> rows = from.query("SELECT id, sender_id, content, sent_at, is_read, journal_id FROM messages "
+                            + "WHERE chat_id = ? AND id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new Row(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getTimestamp(4), rs.getBoolean(5), rs.getString(6)),
+                    chatId, lastId, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            to.batchUpdate("INSERT INTO messages (id, chat_id, sender_id, content, sent_at, is_read, journal_id) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    rows.stream().map(row -> new Object[] {row.id() < firstId ? messageIds.next() : row.id(), chatId,
+                            row.senderId(), row.content(), row.sentAt(), row.read(), row.journalId()}).toList());
+            lastId = rows.get(rows.size() - 1).id();
+            copied += rows.size();
+        }
+
+        Long expected = from.queryForObject("SELECT COUNT(*) FROM messages WHERE chat_id = ?", Long.class, chatId);
+        Long actual = to.queryForObject("SELECT COUNT(*) FROM messages WHERE chat_id = ?", Long.class, chatId);
+        if (expected == null || !expected.equals(actual)) {
+            throw new IllegalStateException("Copied " + actual + " of " + expected + " messages of chat " + chatId + " to shard " + target);
+        }
+        return copied;
+    }
+
+    private void deleteMessages(JdbcTemplate shard, Long chatId) {
+        while (shard.update("DELETE FROM messages WHERE chat_id = ? LIMIT ?", chatId, batchSize) > 0) {
+            // Deleted in batches, so no single statement locks the whole chat for long
+        }
+    }
+
+    // Rows left behind are never read (the directory points elsewhere) and are removed by the next move
+    private void deleteMessagesQuietly(String shard, Long chatId) {
+        try {
+            deleteMessages(new JdbcTemplate(shardDataSources.get(shard)), chatId);
+        } catch (Exception e) {
+            System.err.println("Failed to delete moved messages of chat " + chatId + " on shard " + shard + ": " + e.getMessage());
+        }
+    }
+
+    private void settle() throws InterruptedException {
+        Thread.sleep(chatShards.directoryTtlMs() + settleMs);
+    }
+}
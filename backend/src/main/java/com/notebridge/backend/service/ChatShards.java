@@ -0,0 +1,315 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.notebridge.backend.config.ShardRoutingDataSource;
+import com.notebridge.backend.entity.ChatShard;
+import com.notebridge.backend.repository.ChatShardsRepo;
+
+import jakarta.annotation.PostConstruct;
+
+// Which database holds the messages of a chat, and running message queries there.
+// Chats stay on the primary (they are few and joined to users and lessons); their messages are
+// spread over the databases in shards.names. chat_shards maps a chat to its shard, chats without
+// a row (all of them before sharding) are on the primary, and each instance caches the mapping
+// for shards.directory.ttl-ms. New chats are placed on a consistent hash ring of the shards in
+// shards.placement, shards.virtual-nodes points each, so a shard added to it only takes new chats
+// from its neighbours; ChatResharder moves existing ones.
+// read/write run a query on the chat's shard in a transaction of its own, the caller's transaction
+// on the primary is suspended meanwhile. For chats on the primary they run inline, as before.
+// write does not trust the cached location: it reads the chat's chat_shards row with a shared lock
+// held until the caller's transaction ends (a chat on the primary gets its row then), so marking a
+// chat as moving waits for the writes in flight and every later write sees the mark.
+@Service
+public class ChatShards {
+
+    public static final String PRIMARY = "primary";
+
+    private static final HashFunction HASH = Hashing.murmur3_32_fixed();
+    private static final Location ON_PRIMARY = new Location(PRIMARY, false, 0);
+
+    @Autowired
+    private ChatShardsRepo chatShardsRepo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${shards.names:}")
+    private List<String> names;
+
+    // Shards new chats are placed on (empty = the primary and all shards)
+    @Value("${shards.placement:}")
+    private List<String> placement;
+
+    @Value("${shards.virtual-nodes:64}")
+    private int virtualNodes;
+
+    @Value("${shards.directory.ttl-ms:5000}")
+    private long directoryTtlMs;
+
+    @Value("${shards.directory.max-cached:100000}")
+    private int maxCached;
+
+    @Value("${shards.gather-timeout-ms:2000}")
+    private long gatherTimeoutMs;
+
+    private final Map<Long, Location> directory = new ConcurrentHashMap<>();
+    private NavigableMap<Integer, String> ring = new TreeMap<>();
+
+    // Where a chat's messages are, and whether they are being moved elsewhere
+    public record Location(String shard, boolean moving, long loadedAtMs) {
+    }
+
+    // Thrown by write while ChatResharder copies the chat, the send or read mark can be retried shortly
+    public static class ChatMovingException extends RuntimeException {
+        public ChatMovingException(Long chatId) {
+            super("Chat " + chatId + " is being moved to another shard, retry shortly");
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        List<String> members = placement.isEmpty() ? shards() : placement;
+        NavigableMap<Integer, String> points = new TreeMap<>();
+        for (String shard : members) {
+            if (!shards().contains(shard)) {
+                throw new IllegalStateException("shards.placement names an unknown shard: " + shard);
+            }
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(HASH.hashString(shard + "#" + i, StandardCharsets.UTF_8).asInt(), shard);
+            }
+        }
+        ring = points;
+    }
+
+    public boolean isEnabled() {
+        return !names.isEmpty();
+    }
+
+    // The primary, then shards.names
+    public List<String> shards() {
+        List<String> shards = new ArrayList<>(names.size() + 1);
+        shards.add(PRIMARY);
+        shards.addAll(names);
+        return shards;
+    }
+
+    public Location locate(Long chatId) {
+        if (!isEnabled()) {
+            return ON_PRIMARY;
+        }
+        long now = System.currentTimeMillis();
+        Location cached = directory.get(chatId);
+        if (cached != null && now - cached.loadedAtMs() < directoryTtlMs) {
+            return cached;
+        }
+        Location loaded = chatShardsRepo.findById(chatId).map(row -> location(row, now)).orElse(new Location(PRIMARY, false, now));
+        remember(chatId, loaded, now);
+        return loaded;
+    }
+
+    // The chats' ids grouped by the shard holding their messages, with one directory query for the uncached ones
+    public Map<String, List<Long>> byShard(Collection<Long> chatIds) {
+        Map<String, List<Long>> groups = new LinkedHashMap<>();
+        if (!isEnabled()) {
+            if (!chatIds.isEmpty()) {
+                groups.put(PRIMARY, List.copyOf(chatIds));
+            }
+            return groups;
+        }
+        long now = System.currentTimeMillis();
+        Map<Long, Location> locations = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long chatId : chatIds) {
+            Location cached = directory.get(chatId);
+            if (cached != null && now - cached.loadedAtMs() < directoryTtlMs) {
+                locations.put(chatId, cached);
+            } else {
+                missing.add(chatId);
+                locations.put(chatId, new Location(PRIMARY, false, now));
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (ChatShard row : chatShardsRepo.findAllById(missing)) {
+                locations.put(row.getChatId(), location(row, now));
+            }
+            missing.forEach(chatId -> remember(chatId, locations.get(chatId), now));
+        }
+        locations.forEach((chatId, location) -> groups.computeIfAbsent(location.shard(), shard -> new ArrayList<>()).add(chatId));
+        return groups;
+    }
+
+    // Places a new chat on the ring. Call in the transaction creating it, so no message can be sent before
+    public void place(Long chatId) {
+        if (!isEnabled() || ring.isEmpty()) {
+            return;
+        }
+        String shard = ringShard(chatId);
+        if (!PRIMARY.equals(shard)) {
+            chatShardsRepo.place(chatId, shard, LocalDateTime.now());
+        }
+        directory.remove(chatId);
+    }
+
+    String ringShard(long chatId) {
+        Map.Entry<Integer, String> point = ring.ceilingEntry(HASH.hashLong(chatId).asInt());
+        return point != null ? point.getValue() : ring.firstEntry().getValue();
+    }
+
+    // Drops the cached location, after this instance changed it
+    public void forget(Long chatId) {
+        directory.remove(chatId);
+    }
+
+    public long directoryTtlMs() {
+        return directoryTtlMs;
+    }
+
+    // Runs a query reading the chat's messages
+    public <T> T read(Long chatId, Supplier<T> query) {
+        return run(locate(chatId).shard(), true, query);
+    }
+
+    // Runs a query changing the chat's messages, refused while they are being moved. Call in a transaction
+    public <T> T write(Long chatId, Supplier<T> query) {
+        return write(chatId, query, null);
+    }
+
+    // Like write, and if the caller's transaction rolls back after the query committed on a shard, undo
+    // runs there with its result. A crash in between still leaves the change in place.
+    public <T> T write(Long chatId, Supplier<T> query, Consumer<T> undo) {
+        Location location = fence(chatId);
+        if (location.moving()) {
+            throw new ChatMovingException(chatId);
+        }
+        T result = run(location.shard(), false, query);
+        if (undo != null && !PRIMARY.equals(location.shard()) && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_ROLLED_BACK) {
+                        return;
+                    }
+                    try {
+                        run(location.shard(), false, () -> {
+                            undo.accept(result);
+                            return null;
+                        });
+                    } catch (Exception e) {
+                        System.err.println("Failed to undo a write to chat " + chatId + " on shard " + location.shard() + ": " + e.getMessage());
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private Location fence(Long chatId) {
+        if (!isEnabled()) {
+            return ON_PRIMARY;
+        }
+        Optional<ChatShardsRepo.Placement> placement = chatShardsRepo.lockPlacement(chatId);
+        if (placement.isEmpty()) {
+            chatShardsRepo.place(chatId, PRIMARY, LocalDateTime.now());
+            placement = chatShardsRepo.lockPlacement(chatId);
+        }
+        long now = System.currentTimeMillis();
+        Location location = placement.map(row -> new Location(row.getShard(), Boolean.TRUE.equals(row.getMoving()), now))
+                .orElseThrow();
+        remember(chatId, location, now);
+        return location;
+    }
+
+    // Runs the query on each shard holding some of the chats, in parallel, with the ids of its chats.
+    // Scatter-gather for per-user queries, whose chats can be on any shard.
+    public <T> List<T> gather(Collection<Long> chatIds, Function<List<Long>, T> query) {
+        Map<String, List<Long>> groups = byShard(chatIds);
+        List<T> results = new ArrayList<>(groups.size());
+        if (groups.size() <= 1) {
+            groups.forEach((shard, ids) -> results.add(run(shard, true, () -> query.apply(ids))));
+            return results;
+        }
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<T>> futures = new ArrayList<>(groups.size());
+            groups.forEach((shard, ids) -> futures.add(executor.submit(() -> run(shard, true, () -> query.apply(ids)))));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(gatherTimeoutMs);
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Shards did not answer within " + gatherTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Runs the query against the shard, in a transaction of its own unless it is the primary
+    public <T> T run(String shard, boolean readOnly, Supplier<T> query) {
+        if (PRIMARY.equals(shard)) {
+            return query.get();
+        }
+        if (!names.contains(shard)) {
+            throw new IllegalStateException("Unknown shard: " + shard);
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.setReadOnly(readOnly);
+        String previous = ShardRoutingDataSource.use(shard);
+        try {
+            return transaction.execute(status -> query.get());
+        } finally {
+            ShardRoutingDataSource.use(previous);
+        }
+    }
+
+    private void remember(Long chatId, Location location, long now) {
+        if (directory.size() >= maxCached) {
+            directory.values().removeIf(cached -> now - cached.loadedAtMs() >= directoryTtlMs);
+            if (directory.size() >= maxCached) {
+                directory.clear();
+            }
+        }
+        directory.put(chatId, location);
+    }
+
+    private static Location location(ChatShard row, long now) {
+        return new Location(row.getShard(), row.isMoving(), now);
+    }
+}
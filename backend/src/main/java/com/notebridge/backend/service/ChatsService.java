@@ -3,11 +3,16 @@ package com.notebridge.backend.service;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.notebridge.backend.dto.ChatView;
 import com.notebridge.backend.dto.ChatsReqRes;
+import com.notebridge.backend.dto.UserSummary;
 import com.notebridge.backend.entity.Chat;
 import com.notebridge.backend.entity.User;
 import com.notebridge.backend.repository.ChatsRepo;
@@ -26,7 +31,14 @@ public class ChatsService {
     @Autowired
     private MessagesRepo messagesRepo;
 
-    // Create or get chat between teacher and student
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private ChatShards chatShards;
+
+    // Create or get chat between teacher and student. A new chat is placed on its message shard in the same transaction
+    @Transactional
     public ChatsReqRes createOrGetChat(Long teacherId, Long studentId, String subject) {
         ChatsReqRes resp = new ChatsReqRes();
         
@@ -51,8 +63,8 @@ public class ChatsService {
             if (existingChat.isPresent()) {
                 // Chat exists, return it
                 Chat chat = existingChat.get();
-                resp.setChat(chat);
-                resp.setUnreadMessageCount(messagesRepo.countUnreadMessages(chat, teacher)); // Assuming current user is teacher
+                setChat(resp, chat);
+                resp.setUnreadMessageCount(chatShards.read(chat.getId(), () -> messagesRepo.countUnreadMessages(chat, teacher))); // Assuming current user is teacher
                 resp.setIsNewChat(false);
                 resp.setStatusCode(200);
                 resp.setMessage("Chat retrieved successfully");
@@ -66,13 +78,15 @@ public class ChatsService {
                 newChat.setLastMessageAt(LocalDateTime.now());
                 
                 Chat savedChat = chatsRepo.save(newChat);
-                resp.setChat(savedChat);
+                chatShards.place(savedChat.getId());
+                setChat(resp, savedChat);
                 resp.setUnreadMessageCount(0L);
                 resp.setIsNewChat(true);
                 resp.setStatusCode(201);
                 resp.setMessage("Chat created successfully");
             }
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -91,11 +105,24 @@ public class ChatsService {
                 resp.setMessage("User not found with id: " + userId);
                 return resp;
             }
-            
+            return getUserChats(user);
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Get chats of an already resolved user
+    public ChatsReqRes getUserChats(User user) {
+        ChatsReqRes resp = new ChatsReqRes();
+        
+        try {
             List<Chat> chatsList = chatsRepo.findByTeacherOrStudentOrderByLastMessageAtDesc(user, user);
             
             if (!chatsList.isEmpty()) {
-                resp.setChatsList(chatsList);
+                setChats(resp, chatsList);
                 resp.setStatusCode(200);
                 resp.setMessage("Chats retrieved successfully");
             } else {
@@ -136,8 +163,8 @@ public class ChatsService {
                 return resp;
             }
             
-            resp.setChat(chat);
-            resp.setUnreadMessageCount(messagesRepo.countUnreadMessages(chat, user));
+            setChat(resp, chat);
+            resp.setUnreadMessageCount(chatShards.read(chatId, () -> messagesRepo.countUnreadMessages(chat, user)));
             resp.setStatusCode(200);
             resp.setMessage("Chat retrieved successfully");
         } catch (Exception e) {
@@ -170,7 +197,7 @@ public class ChatsService {
             chat.setSubject(newSubject);
             Chat updatedChat = chatsRepo.save(chat);
             
-            resp.setChat(updatedChat);
+            setChat(resp, updatedChat);
             resp.setStatusCode(200);
             resp.setMessage("Chat subject updated successfully");
         } catch (Exception e) {
@@ -180,4 +207,64 @@ public class ChatsService {
         }
         return resp;
     }
+
+    // Open a presence / typing event stream for a chat, null if the chat does not exist or the user is not part of it
+    public SseEmitter subscribeToChatEvents(Long chatId, Long userId) {
+        Chat chat = chatsRepo.findById(chatId).orElse(null);
+        if (chat == null || !isParticipant(chat, userId)) {
+            return null;
+        }
+        return presenceService.subscribe(chat);
+    }
+
+    // Broadcast a typing indicator. The chat is looked up at most once per instance, later events stay in memory
+    public ChatsReqRes sendTypingEvent(Long chatId, Long userId, boolean typing) {
+        ChatsReqRes resp = new ChatsReqRes();
+
+        try {
+            List<Long> participants = presenceService.knownParticipants(chatId);
+            if (participants == null) {
+                Chat chat = chatsRepo.findById(chatId).orElse(null);
+                if (chat == null) {
+                    resp.setStatusCode(404);
+                    resp.setMessage("Chat not found with id: " + chatId);
+                    return resp;
+                }
+                presenceService.rememberParticipants(chat);
+                participants = presenceService.knownParticipants(chatId);
+            }
+
+            if (!participants.contains(userId)) {
+                resp.setStatusCode(403);
+                resp.setMessage("You don't have access to this chat");
+                return resp;
+            }
+
+            presenceService.typing(chatId, userId, typing);
+            resp.setStatusCode(200);
+            resp.setMessage("Typing event sent");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Responses carry chat views, with the participants sideloaded once
+    private void setChat(ChatsReqRes resp, Chat chat) {
+        resp.setChat(ChatView.of(chat));
+        resp.setUsers(UserSummary.mapOf(List.of(chat.getTeacher(), chat.getStudent())));
+    }
+
+    private void setChats(ChatsReqRes resp, List<Chat> chats) {
+        resp.setChatsList(chats.stream().map(ChatView::of).toList());
+        resp.setUsers(UserSummary.mapOf(chats.stream()
+                .flatMap(chat -> Stream.of(chat.getTeacher(), chat.getStudent()))
+                .toList()));
+    }
+
+    private boolean isParticipant(Chat chat, Long userId) {
+        return chat.getTeacher().getId().equals(userId) || chat.getStudent().getId().equals(userId);
+    }
 }
@@ -0,0 +1,157 @@
+package com.notebridge.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.notebridge.backend.config.QueryStats;
+import com.notebridge.backend.dto.ChatsReqRes;
+import com.notebridge.backend.dto.DashboardReqRes;
+import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.dto.UserProfile;
+import com.notebridge.backend.dto.UserSummary;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.UsersRepo;
+
+// Everything the dashboard shows, in one request.
+// The user is resolved once and shared by the parts, which run concurrently on virtual threads.
+// Each part has its own timeout (dashboard.<part>.timeout-ms, falling back to dashboard.timeout-ms);
+// a part that fails or times out is reported in failedParts and the others are still returned.
+// StructuredTaskScope is still a preview API in Java 21, so the parts run on a per-request
+// executor that is shut down (interrupting stragglers) before the response is returned.
+@Service
+public class DashboardService {
+
+    @Autowired
+    private UsersRepo usersRepo;
+
+    @Autowired
+    private LessonsService lessonsService;
+
+    @Autowired
+    private ChatsService chatsService;
+
+    @Autowired
+    private MessagesService messagesService;
+
+    @Autowired
+    private Environment environment;
+
+    public DashboardReqRes getDashboard(Long userId) {
+        DashboardReqRes resp = new DashboardReqRes();
+
+        try {
+            User user = usersRepo.findById(userId).orElse(null);
+            if (user == null) {
+                resp.setStatusCode(404);
+                resp.setMessage("User not found with id: " + userId);
+                return resp;
+            }
+            resp.setProfile(UserProfile.of(user));
+
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            try {
+                // Teacher lessons go through the cached lookup, on a hit it needs no query at all
+                Part<LessonsReqRes> lessons = "TEACHER".equals(user.getRole())
+                        ? submit(executor, "lessons", () -> lessonsService.getLessonsByTeacher(user.getId()), LessonsReqRes::getStatusCode)
+                        : null;
+                Part<ChatsReqRes> chats = submit(executor, "chats", () -> chatsService.getUserChats(user), ChatsReqRes::getStatusCode);
+                Part<MessagesReqRes> unread = submit(executor, "unread", () -> messagesService.getTotalUnreadMessageCount(user), MessagesReqRes::getStatusCode);
+
+                Map<String, String> failedParts = new LinkedHashMap<>();
+                Map<Long, UserSummary> users = new LinkedHashMap<>();
+
+                if (lessons != null) {
+                    LessonsReqRes lessonsResp = lessons.join(failedParts);
+                    if (lessonsResp != null) {
+                        resp.setLessonsList(lessonsResp.getLessonsList());
+                        if (lessonsResp.getUsers() != null) {
+                            users.putAll(lessonsResp.getUsers());
+                        }
+                    }
+                }
+                ChatsReqRes chatsResp = chats.join(failedParts);
+                if (chatsResp != null) {
+                    resp.setChatsList(chatsResp.getChatsList());
+                    if (chatsResp.getUsers() != null) {
+                        users.putAll(chatsResp.getUsers());
+                    }
+                }
+                MessagesReqRes unreadResp = unread.join(failedParts);
+                if (unreadResp != null) {
+                    resp.setUnreadMessageCount(unreadResp.getUnreadMessageCount());
+                }
+
+                resp.setUsers(users);
+                if (failedParts.isEmpty()) {
+                    resp.setMessage("Dashboard retrieved successfully");
+                } else {
+                    resp.setFailedParts(failedParts);
+                    resp.setMessage("Dashboard partially retrieved");
+                }
+                resp.setStatusCode(200);
+            } finally {
+                // Not close(): it would wait for a part that ignores the interrupt
+                executor.shutdownNow();
+            }
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    private <T> Part<T> submit(ExecutorService executor, String name, Supplier<T> work, ToIntFunction<T> statusCode) {
+        long timeoutMs = environment.getProperty("dashboard." + name + ".timeout-ms", Long.class,
+                environment.getProperty("dashboard.timeout-ms", Long.class, 2000L));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Future<Measured<T>> future = executor.submit(() -> {
+            Object[] result = new Object[1];
+            QueryStats stats = QueryStats.measure(() -> result[0] = work.get());
+            @SuppressWarnings("unchecked")
+            T value = (T) result[0];
+            return new Measured<>(value, stats);
+        });
+        return new Part<>(name, future, deadline, statusCode);
+    }
+
+    private record Measured<T>(T value, QueryStats stats) {
+    }
+
+    private record Part<T>(String name, Future<Measured<T>> future, long deadline, ToIntFunction<T> statusCode) {
+
+        // The part's result, or null after recording why it is missing
+        T join(Map<String, String> failedParts) throws InterruptedException {
+            try {
+                Measured<T> measured = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                // Statements of the part count towards the request
+                QueryStats.include(measured.stats());
+                T value = measured.value();
+                if (value == null || statusCode.applyAsInt(value) >= 400) {
+                    failedParts.put(name, "error");
+                    return null;
+                }
+                return value;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                failedParts.put(name, "timeout");
+            } catch (ExecutionException e) {
+                failedParts.put(name, "error");
+            }
+            return null;
+        }
+    }
+}
@@ -1,20 +1,24 @@
 package com.notebridge.backend.service;
 
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.cloud.storage.Acl;
-import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
+import com.notebridge.backend.entity.FileMetaData;
 import com.notebridge.backend.entity.Lesson;
 import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.FilesRepo;
 import com.notebridge.backend.repository.LessonsRepo;
 import com.notebridge.backend.repository.UsersRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
@@ -23,32 +27,100 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
-
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Pictures are private objects. Users and lessons store a "gs://bucket/object" reference and
+// responses carry a V4 signed URL for it (see dto.SignedUrlSerializer). Signing uses the service
+// account key and needs no network call; each URL is kept and handed out again until shortly
+// before it expires, so browsers and a CDN see the same URL for a long while.
+// Objects are content addressed: the name is the SHA-256 of the bytes and the files table counts
+// the references to each one, so uploading a picture that is already stored writes nothing.
 @Service
 public class FilesService {
 
-    private Storage storage;
+    private static final String GS_PREFIX = "gs://";
+    private static final String PUBLIC_PREFIX = "https://storage.googleapis.com/";
+    static final String OBJECT_PREFIX = "pictures/";
+
+    // Built on first use, reading the service account and creating the client is slow
+    private final Supplier<Storage> storage = Suppliers.memoize(this::createStorage);
     private UsersRepo userRepository;
     private LessonsRepo lessonRepository;
-    
+    private OutboxService outboxService;
+    private FilesRepo filesRepo;
+
     @Value("${firebase.storage-bucket}")
     private String bucketName;
 
+    @Value("${files.signed-url.ttl-minutes:1440}")
+    private long signedUrlTtlMinutes;
+
+    // A cached URL is replaced once it has less than this left
+    @Value("${files.signed-url.refresh-margin-minutes:60}")
+    private long refreshMarginMinutes;
+
+    @Value("${files.signed-url.max-cached:10000}")
+    private int maxCachedUrls;
+
+    // Custom domain in front of the bucket (a CDN), signed URLs point there when set
+    @Value("${files.url-host:}")
+    private String urlHost;
+
+    // Object names are content hashes, so the content behind a name never changes
+    @Value("${files.cache-control:public, max-age=31536000, immutable}")
+    private String cacheControl;
+
     @Autowired
-    public FilesService(UsersRepo userRepository, LessonsRepo lessonRepository) throws IOException {
+    private MeterRegistry meterRegistry;
+
+    private record SignedUrl(String url, long expiresAtMs) {
+    }
+
+    // Stored reference to its signed URL
+    private final Map<String, SignedUrl> signedUrls = new ConcurrentHashMap<>();
+
+    private Counter urlsSigned;
+    private Counter urlsReused;
+    private Counter uploadsStored;
+    private Counter uploadsDeduplicated;
+
+    @Autowired
+    public FilesService(UsersRepo userRepository, LessonsRepo lessonRepository, OutboxService outboxService, FilesRepo filesRepo) {
         this.userRepository = userRepository;
         this.lessonRepository = lessonRepository;
+        this.outboxService = outboxService;
+        this.filesRepo = filesRepo;
+    }
 
-        InputStream serviceAccount = getServiceAccountStream();
+    @PostConstruct
+    void registerMetrics() {
+        urlsSigned = meterRegistry.counter("notebridge.files.signed_urls", "source", "signed");
+        urlsReused = meterRegistry.counter("notebridge.files.signed_urls", "source", "cached");
+        uploadsStored = meterRegistry.counter("notebridge.files.uploads", "result", "stored");
+        uploadsDeduplicated = meterRegistry.counter("notebridge.files.uploads", "result", "deduplicated");
+    }
 
-        GoogleCredentials credentials = GoogleCredentials.fromStream(serviceAccount)
-                .createScoped(Lists.newArrayList("https://www.googleapis.com/auth/cloud-platform"));
+    private Storage createStorage() {
+        try (InputStream serviceAccount = getServiceAccountStream()) {
+            GoogleCredentials credentials = GoogleCredentials.fromStream(serviceAccount)
+                    .createScoped(Lists.newArrayList("https://www.googleapis.com/auth/cloud-platform"));
 
-        this.storage = StorageOptions.newBuilder().setCredentials(credentials).build().getService();
+            return StorageOptions.newBuilder().setCredentials(credentials).build().getService();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to initialize Google Cloud Storage client", e);
+        }
     }
 
     private InputStream getServiceAccountStream() throws IOException {
@@ -66,8 +138,8 @@ public class FilesService {
 
 
 
-    @Transactional
-    @CacheEvict(value = "users", key = "#userId")
+    // Rolls back on IOException too, so a failed upload leaves the reference counts as they were
+    @Transactional(rollbackFor = Exception.class)
     public String uploadProfilePicture(MultipartFile file, Long userId) throws IOException {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File is empty. Please upload a valid file.");
@@ -77,32 +149,24 @@ public class FilesService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found with ID: " + userId));
 
-        String uniqueID = UUID.randomUUID().toString();
-        String objectName = "profile_pictures/" + uniqueID + "_" + file.getOriginalFilename();
-        BlobId blobId = BlobId.of(bucketName, objectName);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType(file.getContentType())
-                .build();
-
         try {
-            // Upload to Firebase
-            storage.create(blobInfo, file.getBytes());
-
-            // Make the file publicly readable
-            String url = makeFilePublicAndGetUrl(blobId, objectName);
+            String reference = storePicture(file);
 
-            // Save url to MySQL User (field: profileUrl)
-            user.setProfileUrl(url);
+            // Save the object reference to MySQL User (field: profileUrl), the old picture loses a reference
+            releaseReference(user.getProfileUrl());
+            user.setProfileUrl(reference);
             userRepository.save(user);
+            outboxService.record("User", userId, "UserUpdated", Map.of("userId", userId),
+                    List.of("users::" + userId));
 
-            return url;
+            return signedUrl(reference);
         } catch (Exception e) {
-            cleanupAfterFailedUserUpload(uniqueID, blobId, e, user);
+            System.err.println("User upload failed: " + e.getMessage());
             throw e; // Re-throw the original exception
         }
     }
 
-    @Transactional
+    @Transactional(rollbackFor = Exception.class)
     public String uploadLessonPicture(MultipartFile file, Long lessonId) throws IOException {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File is empty. Please upload a valid file.");
@@ -112,77 +176,139 @@ public class FilesService {
         Lesson lesson = lessonRepository.findById(lessonId)
                 .orElseThrow(() -> new IllegalArgumentException("Lesson not found with ID: " + lessonId));
 
-        String uniqueID = UUID.randomUUID().toString();
-        String objectName = "lesson_pictures/" + uniqueID + "_" + file.getOriginalFilename();
-        BlobId blobId = BlobId.of(bucketName, objectName);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType(file.getContentType())
-                .build();
-
         try {
-            // Upload to Firebase
-            storage.create(blobInfo, file.getBytes());
-
-            // Make the file publicly readable
-            String url = makeFilePublicAndGetUrl(blobId, objectName);
+            String reference = storePicture(file);
 
-            // Save url to MySQL Lesson (field: imageUrl)
-            lesson.setImageUrl(url);
+            // Save the object reference to MySQL Lesson (field: imageUrl), the old picture loses a reference
+            releaseReference(lesson.getImageUrl());
+            lesson.setImageUrl(reference);
             lessonRepository.save(lesson);
+            outboxService.record("Lesson", lessonId, "LessonUpdated", Map.of("lessonId", lessonId),
+                    List.of("lessons::all-active", "lesson::" + lessonId, "teacher-lessons::" + lesson.getTeacher().getId()));
 
-            return url;
+            return signedUrl(reference);
         } catch (Exception e) {
-            cleanupAfterFailedLessonUpload(uniqueID, blobId, e, lesson);
+            System.err.println("Lesson upload failed: " + e.getMessage());
             throw e; // Re-throw the original exception
         }
     }
 
-    private void cleanupAfterFailedUserUpload(String uniqueID, BlobId blobId, Exception e, User user) {
-        System.err.println("User upload failed: " + e.getMessage() + "\ntrying to clean up db and firebase");
-        try {
-            // Delete from Firebase Storage
-            storage.delete(blobId);
-            
-            // Reset user profile URL to null
-            user.setProfileUrl(null);
-            userRepository.save(user);
-            
-            System.out.println("Successfully cleaned up after failed user upload");
+    // Stores the picture unless the same bytes are already stored, and returns its reference.
+    // An object written here stays when the transaction rolls back: nothing refers to it, and
+    // the next upload of the same bytes finds it in place (or OrphanFileCollector removes it).
+    String storePicture(MultipartFile file) throws IOException {
+        String hash = sha256(file);
+        String objectName = filesRepo.findByUniqueId(hash).map(FileMetaData::getObjectName).orElse(null);
+        boolean stored = objectName != null;
+        if (!stored) {
+            objectName = OBJECT_PREFIX + hash;
+            upload(objectName, file);
+        }
+        int changed = filesRepo.addReference(hash, objectName, LocalDateTime.now(), file.getContentType(), file.getSize());
+        if (stored && changed == 1) {
+            // The row was collected after it was read, the object may be going too: write it again
+            upload(objectName, file);
+        } else if (stored) {
+            uploadsDeduplicated.increment();
+        }
+        return GS_PREFIX + bucketName + "/" + objectName;
+    }
 
-        } catch (Exception ex) {
-            System.err.println("Failed to clean up resources after user upload failure: " + ex.getMessage());
+    // Writes a new generation of the object. Concurrent uploads of the same bytes may both write it,
+    // which is harmless, and OrphanFileCollector only deletes the generation it listed.
+    void upload(String objectName, MultipartFile file) throws IOException {
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, objectName))
+                .setContentType(file.getContentType())
+                .setCacheControl(cacheControl)
+                .build();
+        storage.get().create(blobInfo, file.getBytes());
+        uploadsStored.increment();
+    }
+
+    // Called when a user or lesson stops pointing at a stored picture (replaced or deleted)
+    public void releaseReference(String stored) {
+        String objectName = objectName(stored);
+        if (objectName != null) {
+            filesRepo.releaseReference(objectName, LocalDateTime.now());
         }
     }
 
-    private void cleanupAfterFailedLessonUpload(String uniqueID, BlobId blobId, Exception e, Lesson lesson) {
-        System.err.println("Lesson upload failed: " + e.getMessage() + "\ntrying to clean up db and firebase");
+    // Read in chunks, the upload is not loaded into memory when it turns out to be a duplicate
+    static String sha256(MultipartFile file) throws IOException {
+        MessageDigest digest;
         try {
-            // Delete from Firebase Storage
-            storage.delete(blobId);
-            
-            // Reset lesson image URL to null
-            lesson.setImageUrl(null);
-            lessonRepository.save(lesson);
-            
-            System.out.println("Successfully cleaned up after failed lesson upload");
-
-        } catch (Exception ex) {
-            System.err.println("Failed to clean up resources after lesson upload failure: " + ex.getMessage());
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = file.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
         }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
-    private String makeFilePublicAndGetUrl(BlobId blobId, String objectName) {
-        // Make the file publicly readable
-        Blob blob = storage.get(blobId);
-        if (blob == null || !blob.exists()) {
-            throw new IllegalArgumentException("File not found in storage after upload");
+    // URL a client can load a stored picture from. References to this bucket, including the public
+    // URLs saved before pictures were private, get a signed URL; anything else is returned as it is.
+    public String signedUrl(String stored) {
+        String objectName = objectName(stored);
+        if (objectName == null) {
+            return stored;
+        }
+        long now = System.currentTimeMillis();
+        SignedUrl cached = signedUrls.get(objectName);
+        if (cached != null && now < cached.expiresAtMs() - TimeUnit.MINUTES.toMillis(refreshMarginMinutes)) {
+            urlsReused.increment();
+            return cached.url();
         }
-        blob.createAcl(Acl.of(Acl.User.ofAllUsers(), Acl.Role.READER));
+        try {
+            URL url = sign(objectName);
+            if (signedUrls.size() >= maxCachedUrls) {
+                signedUrls.values().removeIf(entry -> entry.expiresAtMs() <= now);
+                if (signedUrls.size() >= maxCachedUrls) {
+                    signedUrls.clear();
+                }
+            }
+            signedUrls.put(objectName, new SignedUrl(url.toString(), now + TimeUnit.MINUTES.toMillis(signedUrlTtlMinutes)));
+            urlsSigned.increment();
+            return url.toString();
+        } catch (Exception e) {
+            System.err.println("Failed to sign url for " + objectName + ": " + e.getMessage());
+            return cached != null ? cached.url() : null;
+        }
+    }
+
+    Storage storage() {
+        return storage.get();
+    }
 
-        // Generate and print public URL
-        String url = String.format("https://storage.googleapis.com/%s/%s", bucketName, objectName);
-        System.out.println("Publicly available url: " + url);
-        return url;
+    String bucketName() {
+        return bucketName;
+    }
+
+    URL sign(String objectName) {
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, objectName)).build();
+        Storage.SignUrlOption[] options = urlHost.isBlank()
+                ? new Storage.SignUrlOption[]{Storage.SignUrlOption.withV4Signature()}
+                : new Storage.SignUrlOption[]{Storage.SignUrlOption.withV4Signature(),
+                        Storage.SignUrlOption.withBucketBoundHostname(urlHost)};
+        return storage.get().signUrl(blobInfo, signedUrlTtlMinutes, TimeUnit.MINUTES, options);
+    }
+
+    // Object name within this bucket, null when the value does not point into it
+    String objectName(String stored) {
+        if (stored == null) {
+            return null;
+        }
+        for (String prefix : new String[]{GS_PREFIX + bucketName + "/", PUBLIC_PREFIX + bucketName + "/"}) {
+            if (stored.startsWith(prefix) && stored.length() > prefix.length()) {
+                return stored.substring(prefix.length());
+            }
+        }
+        return null;
     }
 
     // public FilesReqRes retrieveFile(String fileId) {
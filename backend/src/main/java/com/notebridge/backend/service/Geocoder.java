@@ -0,0 +1,10 @@
+package com.notebridge.backend.service;
+
+import java.util.Optional;
+
+// Resolves a free-text address to coordinates, used when a lesson is saved without them
+public interface Geocoder {
+
+    // Returns {latitude, longitude} or empty when the address cannot be resolved
+    Optional<double[]> geocode(String address);
+}
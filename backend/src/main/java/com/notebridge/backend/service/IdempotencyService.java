@@ -0,0 +1,195 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Responses of requests sent with an Idempotency-Key, kept for idempotency.ttl-hours so a retry
+// gets the same response without running the request again. While the first request runs, its
+// key holds a short lock (idempotency.lock-seconds) and concurrent duplicates are told so.
+// The key also records a fingerprint of the request (method, path and body), a request reusing
+// the key with a different fingerprint is a MISMATCH. Completing or releasing a key only
+// replaces the lock when it still holds the caller's token (a Lua compare-and-set), so a
+// request that outlived its lock cannot overwrite the key of the one that took it over.
+// With idempotency.store=redis (default) every instance sees the same keys; with store=local
+// each instance keeps its own. If Redis is unreachable the local store takes over.
+@Service
+public class IdempotencyService {
+
+    // v2: stored responses carry the request fingerprint
+    private static final String PREFIX = "idempotency:v2:";
+    private static final String PENDING = "pending:";
+    private static final int LOCAL_CLEANUP_THRESHOLD = 100_000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${idempotency.store:redis}")
+    private String store;
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.lock-seconds:30}")
+    private long lockSeconds;
+
+    private record LocalEntry(String value, long expiresAtMs) {
+    }
+
+    private final Map<String, LocalEntry> local = new ConcurrentHashMap<>();
+    private final AtomicLong callsSinceCleanup = new AtomicLong();
+    private final DefaultRedisScript<Long> swapScript;
+
+    public IdempotencyService() {
+        swapScript = new DefaultRedisScript<>();
+        swapScript.setLocation(new ClassPathResource("scripts/idempotency_swap.lua"));
+        swapScript.setResultType(Long.class);
+    }
+
+    // Response as it was written, replayed byte for byte
+    public record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    // What the key holds once the request ran
+    private record Completed(String fingerprint, StoredResponse response) {
+    }
+
+    // STARTED: the caller runs the request and then completes or releases the key with the token.
+    // REPLAY: the request already ran, response holds what it returned. IN_PROGRESS: it is running.
+    // MISMATCH: the key was used for a different request.
+    public enum State { STARTED, REPLAY, IN_PROGRESS, MISMATCH }
+
+    public record Outcome(State state, String token, StoredResponse response) {
+    }
+
+    // SHA-256 of the parts of a request that must be the same for a retry
+    public static String fingerprint(String method, String path, byte[] body) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update((method + " " + path + "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha256.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Outcome begin(String key, String fingerprint) {
+        // pending:<fingerprint>:<uuid>
+        String token = PENDING + fingerprint + ":" + UUID.randomUUID();
+        String existing = "redis".equals(store) ? beginInRedis(PREFIX + key, token) : beginLocally(PREFIX + key, token);
+        Outcome outcome;
+        if (existing == null) {
+            outcome = new Outcome(State.STARTED, token, null);
+        } else if (existing.startsWith(PENDING)) {
+            outcome = existing.startsWith(PENDING + fingerprint + ":") || existing.equals(PENDING)
+                    ? new Outcome(State.IN_PROGRESS, null, null)
+                    : new Outcome(State.MISMATCH, null, null);
+        } else {
+            Completed completed = parse(existing);
+            outcome = fingerprint.equals(completed.fingerprint())
+                    ? new Outcome(State.REPLAY, null, completed.response())
+                    : new Outcome(State.MISMATCH, null, null);
+        }
+        meterRegistry.counter("notebridge.idempotency.requests", "outcome", outcome.state().name().toLowerCase()).increment();
+        return outcome;
+    }
+
+    public void complete(String key, String token, StoredResponse response) {
+        String fingerprint = token.substring(PENDING.length(), token.lastIndexOf(':'));
+        try {
+            swap(PREFIX + key, token, objectMapper.writeValueAsString(new Completed(fingerprint, response)), Duration.ofHours(ttlHours));
+        } catch (Exception e) {
+            // Not kept, a retry runs the request again
+            System.err.println("Failed to store idempotent response: " + e.getMessage());
+            release(key, token);
+        }
+    }
+
+    // Lets the next request with the key run, used when this one failed
+    public void release(String key, String token) {
+        swap(PREFIX + key, token, null, null);
+    }
+
+    // Sets the lock when the key is free and returns null, otherwise returns what the key holds
+    private String beginInRedis(String key, String token) {
+        try {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, token, Duration.ofSeconds(lockSeconds)))) {
+                    return null;
+                }
+                String existing = stringRedisTemplate.opsForValue().get(key);
+                if (existing != null) {
+                    return existing;
+                }
+                // Expired in between, try once more
+            }
+            return PENDING;
+        } catch (Exception e) {
+            meterRegistry.counter("notebridge.idempotency.store.errors").increment();
+            System.err.println("Idempotency store falling back to local: " + e.getMessage());
+            return beginLocally(key, token);
+        }
+    }
+
+    private String beginLocally(String key, String token) {
+        long now = System.currentTimeMillis();
+        if (callsSinceCleanup.incrementAndGet() % 10_000 == 0 && local.size() > LOCAL_CLEANUP_THRESHOLD) {
+            local.values().removeIf(entry -> entry.expiresAtMs() <= now);
+        }
+        LocalEntry mine = new LocalEntry(token, now + lockSeconds * 1000);
+        LocalEntry entry = local.compute(key, (k, existing) -> existing == null || existing.expiresAtMs() <= now ? mine : existing);
+        return entry == mine ? null : entry.value();
+    }
+
+    // Replaces the lock with value (deletes the key when null) if the key still holds token
+    private void swap(String key, String token, String value, Duration ttl) {
+        if ("redis".equals(store)) {
+            try {
+                Long swapped = stringRedisTemplate.execute(swapScript, List.of(key), token,
+                        value != null ? value : "", ttl != null ? String.valueOf(ttl.toMillis()) : "0");
+                if (swapped == null || swapped != 1L) {
+                    // The lock expired first, the key is left to whoever holds it now
+                    meterRegistry.counter("notebridge.idempotency.lost.locks").increment();
+                }
+                return;
+            } catch (Exception e) {
+                System.err.println("Idempotency store falling back to local: " + e.getMessage());
+            }
+        }
+        local.computeIfPresent(key, (k, entry) -> !token.equals(entry.value()) ? entry
+                : value == null ? null
+                : new LocalEntry(value, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    private Completed parse(String value) {
+        try {
+            return objectMapper.readValue(value, Completed.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable idempotent response", e);
+        }
+    }
+}
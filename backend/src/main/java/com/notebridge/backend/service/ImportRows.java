@@ -0,0 +1,98 @@
+package com.notebridge.backend.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+// Reads the rows of an uploaded CSV file (header line first) or JSON file (an array of objects,
+// or one object per line) one at a time, so the upload is never held in memory as a whole.
+// Column names are matched loosely: "first_name", "First Name" and "firstName" are the same column.
+class ImportRows implements Closeable {
+
+    enum Format {
+        CSV, JSON;
+
+        // From the explicit format parameter, else the file extension, else the content type
+        static Format of(String format, String filename, String contentType) {
+            String hint = format != null && !format.isBlank() ? format
+                    : filename != null && filename.contains(".") ? filename.substring(filename.lastIndexOf('.') + 1)
+                    : contentType;
+            if (hint == null) {
+                return null;
+            }
+            hint = hint.toLowerCase(Locale.ROOT);
+            if (hint.contains("csv")) {
+                return CSV;
+            }
+            if (hint.contains("json")) {
+                return JSON;
+            }
+            return null;
+        }
+    }
+
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.TRIM_SPACES)
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .build();
+
+    private final MappingIterator<Map<String, Object>> iterator;
+    private int row;
+
+    private ImportRows(MappingIterator<Map<String, Object>> iterator) {
+        this.iterator = iterator;
+    }
+
+    static ImportRows open(InputStream in, Format format, ObjectMapper objectMapper) throws IOException {
+        MappingIterator<Map<String, Object>> iterator = format == Format.CSV
+                ? CSV_MAPPER.readerFor(Map.class).with(CsvSchema.emptySchema().withHeader()).readValues(in)
+                : objectMapper.readerFor(Map.class).readValues(in);
+        return new ImportRows(iterator);
+    }
+
+    // Next row with normalized column names and blank values dropped, null after the last one.
+    // Throws IOException when the input is malformed; the rest of the file cannot be read then.
+    Map<String, String> next() throws IOException {
+        if (!iterator.hasNextValue()) {
+            return null;
+        }
+        row++;
+        Map<String, String> values = new HashMap<>();
+        iterator.nextValue().forEach((column, value) -> {
+            if (value != null && !value.toString().isBlank()) {
+                values.put(normalize(column), value.toString().trim());
+            }
+        });
+        return values;
+    }
+
+    // 1-based number of the row last returned by next()
+    int row() {
+        return row;
+    }
+
+    static String normalize(String column) {
+        StringBuilder name = new StringBuilder(column.length());
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                name.append(Character.toLowerCase(c));
+            }
+        }
+        return name.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        iterator.close();
+    }
+}
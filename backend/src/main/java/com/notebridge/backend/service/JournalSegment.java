@@ -0,0 +1,140 @@
+package com.notebridge.backend.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// One file of the message journal, mapped into memory as a whole. Records are appended back to
+// back as [length][crc32c][body]; the file is zero filled when created, so a zero length marks
+// the end. A record whose checksum does not match (a write torn by a crash) ends the segment too.
+// Writes use absolute puts, so the flusher can force one range while the next records are written.
+class JournalSegment implements Closeable {
+
+    static final int HEADER_BYTES = 8;
+
+    private final Path path;
+    private final long firstSeq;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePos;
+    private int forcedPos;
+    private long lastSeq;
+
+    private JournalSegment(Path path, long firstSeq, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSeq = firstSeq;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastSeq = firstSeq - 1;
+    }
+
+    static Path pathOf(Path dir, long firstSeq) {
+        return dir.resolve(String.format("segment-%020d.log", firstSeq));
+    }
+
+    static long firstSeqOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    static JournalSegment create(Path dir, long firstSeq, int size) throws IOException {
+        Path path = pathOf(dir, firstSeq);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(path, firstSeq, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    // Maps an existing segment and finds where its valid records end
+    static JournalSegment open(Path path, int maxRecordBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JournalSegment segment = new JournalSegment(path, firstSeqOf(path), channel,
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        int pos = 0;
+        ByteBuffer body;
+        while ((body = segment.read(pos)) != null) {
+            segment.lastSeq = body.getLong(0);
+            pos += HEADER_BYTES + body.capacity();
+        }
+        // Clear what a torn write left behind, so later appends are not followed by stale bytes
+        int end = Math.min(segment.buffer.capacity(), pos + maxRecordBytes);
+        for (int i = pos; i < end; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.writePos = pos;
+        segment.forcedPos = 0;
+        return segment;
+    }
+
+    // Appends a record whose body starts with its sequence number; false when the segment is full
+    boolean append(long seq, byte[] body) {
+        if (writePos + HEADER_BYTES + body.length > buffer.capacity()) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        buffer.put(writePos + HEADER_BYTES, body);
+        buffer.putInt(writePos + 4, (int) crc.getValue());
+        buffer.putInt(writePos, body.length);
+        writePos += HEADER_BYTES + body.length;
+        lastSeq = seq;
+        return true;
+    }
+
+    // Body of the record at pos, null at the end of the segment
+    ByteBuffer read(int pos) {
+        if (pos + HEADER_BYTES > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(pos);
+        if (length <= 0 || pos + HEADER_BYTES + length > buffer.capacity()) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice(pos + HEADER_BYTES, length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+            return null;
+        }
+        return body;
+    }
+
+    // Range written since the last force, as {from, to}
+    int[] unforced() {
+        return forcedPos < writePos ? new int[]{forcedPos, writePos} : null;
+    }
+
+    void force(int from, int to) {
+        buffer.force(from, to - from);
+    }
+
+    void forced(int to) {
+        forcedPos = Math.max(forcedPos, to);
+    }
+
+    long firstSeq() {
+        return firstSeq;
+    }
+
+    long lastSeq() {
+        return lastSeq;
+    }
+
+    int writePos() {
+        return writePos;
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
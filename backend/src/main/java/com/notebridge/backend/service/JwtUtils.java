@@ -3,8 +3,7 @@ package com.notebridge.backend.service;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.UUID;
 import java.util.function.Function;
 
 import javax.crypto.SecretKey;
@@ -20,10 +19,12 @@ import io.jsonwebtoken.Jwts;
 @Component
 public class JwtUtils {
     private SecretKey key;
-    private static final Long EXPIRATION_TIME = 86400000L;
+    private final long expirationTime;
 
 
-    public JwtUtils(@Value("${jwt.secret}") String secretString){
+    public JwtUtils(@Value("${jwt.secret}") String secretString,
+                    @Value("${jwt.access-expiration-ms:86400000}") long expirationTime){
+        this.expirationTime = expirationTime;
 
         // decode string into binary format
         byte[] keyBytes = Base64.getDecoder().decode(secretString.getBytes(StandardCharsets.UTF_8));
@@ -31,28 +32,35 @@ public class JwtUtils {
         this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
     }
 
+    // Every access token gets a unique id (jti) so it can be revoked individually
     public String generateToken(UserDetails userDetails){
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
+                .expiration(new Date(System.currentTimeMillis() + expirationTime))
                 .signWith(this.key)
                 .compact();
                 
     }
 
-    public String generateRefreshToken(HashMap<String, Objects> claims, UserDetails userDetails){
-        // Map<String, Objects> claims
-        // Purpose: Allows adding custom data (claims) to the token.
-        return Jwts.builder()
-                // Claims are custom key-value pairs added to the refresh token to store additional data like roles or permissions.
-                // These are included to provide extra information about the user/session without querying the database.
-                .claims(claims) 
-                .subject(userDetails.getUsername())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(this.key)
-                .compact();
+    // Refresh tokens are opaque and stored in Redis, see RefreshTokenService
+
+    // Verifies the signature and returns all claims, throws if the token is invalid or expired
+    public Claims parseClaims(String token){
+        return Jwts.parser()
+                .verifyWith(this.key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    public String extractTokenId(String token){
+        return extractClaims(token, Claims::getId);
+    }
+
+    public long extractExpirationMillis(String token){
+        return extractClaims(token, Claims::getExpiration).getTime();
     }
 
     public String extractUsername(String token){
@@ -63,13 +71,7 @@ public class JwtUtils {
         // Function<Claims, T> claimsTFunction:
         // This represents the specific logic for extracting a claim.
         // Example: If you want the username, you provide a function to get the subject (Claims::getSubject).
-        return claimsTFunction.apply(
-            Jwts.parser()
-                    .verifyWith(this.key)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload()
-        );
+        return claimsTFunction.apply(parseClaims(token));
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails){
@@ -0,0 +1,242 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.repository.LessonsRepo;
+
+// In-memory spatial index of active IN_PERSON / HYBRID lessons.
+// Each lesson is bucketed into a coarse (~156km) and a fine (~4.9km) geohash cell;
+// a radius query walks the cells covering the bounding box at the finest level that
+// keeps the cell count small, then filters the candidates by exact distance.
+// The index is built from the lessons that have coordinates on first use. LessonsService
+// changes it once the transaction commits, and each change is published as
+// "<instance> <S|C> <lesson id>" on a Redis channel so the other instances read the lesson
+// again (S) or drop it (C). Pub/sub does not retry: hits that turn out stale when their
+// lessons are loaded are corrected through refresh.
+@Service
+public class LessonGeoIndex implements MessageListener {
+
+    public static final String CHANNEL = "lesson-geo";
+
+    private static final int[] PRECISIONS = {3, 5};
+    private static final int MAX_CELLS_PER_QUERY = 256;
+
+    @Autowired
+    private LessonsRepo lessonsRepo;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<Long, double[]> points = new ConcurrentHashMap<>();
+    private final List<Map<String, Set<Long>>> cellsByPrecision = new ArrayList<>();
+    private volatile boolean loaded = false;
+
+    public LessonGeoIndex() {
+        for (int i = 0; i < PRECISIONS.length; i++) {
+            cellsByPrecision.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    // A lesson found by a radius query
+    public record Hit(Long lessonId, double distanceKm) {
+    }
+
+    public static boolean isPhysical(Lesson lesson) {
+        return "IN_PERSON".equals(lesson.getLocation()) || "HYBRID".equals(lesson.getLocation());
+    }
+
+    // Adds, moves or drops a lesson depending on its state, once the transaction commits, on every instance
+    public void index(Lesson lesson) {
+        if (lesson.getId() == null) {
+            return;
+        }
+        Long lessonId = lesson.getId();
+        // Read inside the transaction, the entity may be detached by the time it commits
+        double[] point = pointOf(lesson);
+        afterCommit(() -> {
+            ensureLoaded();
+            put(lessonId, point);
+            publish("S", lessonId);
+        });
+    }
+
+    public void remove(Long lessonId) {
+        afterCommit(() -> {
+            ensureLoaded();
+            drop(lessonId);
+            publish("C", lessonId);
+        });
+    }
+
+    // Corrects a stale hit from its lesson as just loaded (null when deleted), on this instance only:
+    // the change that made it stale was announced already
+    public void refresh(Long lessonId, Lesson lesson) {
+        put(lessonId, lesson != null ? pointOf(lesson) : null);
+    }
+
+    // Changes announced by any instance, this one's own included (and skipped)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(" ");
+        if (parts.length != 3) {
+            System.err.println("Dropping malformed geo index change: " + String.join(" ", parts));
+            return;
+        }
+        if (instanceId.equals(parts[0]) || !loaded) {
+            // Not loaded yet, the first use reads the saved rows
+            return;
+        }
+        try {
+            Long lessonId = Long.valueOf(parts[2]);
+            Lesson lesson = "S".equals(parts[1]) ? lessonsRepo.findById(lessonId).orElse(null) : null;
+            put(lessonId, lesson != null ? pointOf(lesson) : null);
+        } catch (Exception e) {
+            System.err.println("Failed to apply geo index change " + String.join(" ", parts) + ": " + e.getMessage());
+        }
+    }
+
+    // Active physical lessons within radiusKm of the point, nearest first
+    public List<Hit> within(double latitude, double longitude, double radiusKm) {
+        ensureLoaded();
+        double latDelta = Math.toDegrees(radiusKm / GeoHash.EARTH_RADIUS_KM);
+        double minLat = Math.max(-90, latitude - latDelta);
+        double maxLat = Math.min(90, latitude + latDelta);
+        double widest = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double lngDelta = widest >= 89.9 ? 180 : latDelta / Math.cos(Math.toRadians(widest));
+        lngDelta = Math.min(180, lngDelta);
+
+        int level = PRECISIONS.length - 1;
+        while (level > 0 && cellCount(PRECISIONS[level], maxLat - minLat, 2 * lngDelta) > MAX_CELLS_PER_QUERY) {
+            level--;
+        }
+        int precision = PRECISIONS[level];
+        Map<String, Set<Long>> cells = cellsByPrecision.get(level);
+
+        Set<Long> candidates = new HashSet<>();
+        double height = GeoHash.cellHeight(precision);
+        double width = GeoHash.cellWidth(precision);
+        for (double lat = minLat; lat < maxLat + height; lat += height) {
+            double cellLat = Math.min(lat, maxLat);
+            for (double lng = longitude - lngDelta; lng < longitude + lngDelta + width; lng += width) {
+                double cellLng = GeoHash.normalizeLongitude(Math.min(lng, longitude + lngDelta));
+                Set<Long> ids = cells.get(GeoHash.encode(cellLat, cellLng, precision));
+                if (ids != null) {
+                    candidates.addAll(ids);
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (Long lessonId : candidates) {
+            double[] point = points.get(lessonId);
+            if (point == null) {
+                continue;
+            }
+            double distance = GeoHash.distanceKm(latitude, longitude, point[0], point[1]);
+            if (distance <= radiusKm) {
+                hits.add(new Hit(lessonId, distance));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(Hit::distanceKm).thenComparing(Hit::lessonId));
+        return hits;
+    }
+
+    private long cellCount(int precision, double latSpan, double lngSpan) {
+        return (long) (Math.ceil(latSpan / GeoHash.cellHeight(precision)) + 1)
+                * (long) (Math.ceil(lngSpan / GeoHash.cellWidth(precision)) + 1);
+    }
+
+    // Where an active physical lesson is, null for the lessons the index leaves out
+    static double[] pointOf(Lesson lesson) {
+        if (lesson.isCancelled() || !isPhysical(lesson) || lesson.getLatitude() == null || lesson.getLongitude() == null) {
+            return null;
+        }
+        return new double[] {lesson.getLatitude(), lesson.getLongitude()};
+    }
+
+    private synchronized void put(Long lessonId, double[] point) {
+        drop(lessonId);
+        if (point == null) {
+            return;
+        }
+        points.put(lessonId, point);
+        for (int i = 0; i < PRECISIONS.length; i++) {
+            cellsByPrecision.get(i)
+                    .computeIfAbsent(GeoHash.encode(point[0], point[1], PRECISIONS[i]), key -> ConcurrentHashMap.newKeySet())
+                    .add(lessonId);
+        }
+    }
+
+    private synchronized void drop(Long lessonId) {
+        double[] point = points.remove(lessonId);
+        if (point == null) {
+            return;
+        }
+        for (int i = 0; i < PRECISIONS.length; i++) {
+            String cell = GeoHash.encode(point[0], point[1], PRECISIONS[i]);
+            Set<Long> ids = cellsByPrecision.get(i).get(cell);
+            if (ids != null) {
+                ids.remove(lessonId);
+                if (ids.isEmpty()) {
+                    cellsByPrecision.get(i).remove(cell);
+                }
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            for (Lesson lesson : lessonsRepo.findByLatitudeIsNotNullAndIsCancelledFalse()) {
+                put(lesson.getId(), pointOf(lesson));
+            }
+            loaded = true;
+        }
+    }
+
+    private void publish(String change, Long lessonId) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, instanceId + " " + change + " " + lessonId);
+        } catch (Exception e) {
+            // The other instances drop the stale hits when they load them
+            System.err.println("Failed to publish geo index change: " + e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,288 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.dto.LessonReminder;
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.entity.Chat;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.repository.ChatsRepo;
+import com.notebridge.backend.repository.LessonsRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Reminders sent reminders.lead-minutes before each lesson occurrence.
+// Occurrences are loaded from MySQL in consecutive windows (reminders.window-hours ahead)
+// and each one becomes a timer on an in-process hashed timing wheel; LessonsService
+// reschedules or cancels a lesson's timers when it changes. Those changes apply once the
+// transaction commits and are published as "<instance> <S|C> <lesson id>" on a Redis channel,
+// so every instance that loaded the same windows holds the same timers; a Redis SETNX makes
+// sure each reminder goes out only once. Pub/sub does not retry, so a timer can be stale:
+// when it fires the lesson is read again and the reminder is dropped unless the lesson is
+// still active with an occurrence at that start. Otherwise a LessonReminder event is
+// published and a message is sent to the teacher's chats about the lesson.
+@Service
+public class LessonReminderService implements MessageListener {
+
+    public static final String CHANNEL = "lesson-reminders";
+
+    private static final String SENT_PREFIX = "reminder:sent:";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    @Autowired
+    private LessonsRepo lessonsRepo;
+
+    @Autowired
+    private ChatsRepo chatsRepo;
+
+    @Autowired
+    private MessagesService messagesService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${reminders.lead-minutes:15}")
+    private long leadMinutes;
+
+    @Value("${reminders.window-hours:24}")
+    private long windowHours;
+
+    @Value("${reminders.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${reminders.wheel-size:4096}")
+    private int wheelSize;
+
+    // Lesson times are wall-clock, this is the zone they are read in (empty = server default)
+    @Value("${reminders.zone:}")
+    private String zone;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private ZoneId zoneId;
+    private ExecutorService executor;
+    private TimingWheel wheel;
+
+    // lesson id -> timers of its loaded occurrences
+    private final Map<Long, List<TimingWheel.Timeout>> timersByLesson = new ConcurrentHashMap<>();
+    // Occurrences starting before this instant (LessonSeries epoch seconds) are on the wheel
+    private long loadedUntil;
+
+    @PostConstruct
+    void start() {
+        zoneId = zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        wheel = new TimingWheel(tickMs, wheelSize, executor);
+        wheel.start();
+        loadedUntil = now();
+        meterRegistry.gauge("notebridge.reminders.pending", wheel, TimingWheel::pending);
+    }
+
+    @PreDestroy
+    void stop() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    // Loads the occurrences between the end of the previous window and window-hours from now
+    @Scheduled(fixedDelayString = "${reminders.load-interval-ms:3600000}")
+    public synchronized void loadNextWindow() {
+        long from = Math.max(loadedUntil, now());
+        long to = now() + Duration.ofHours(windowHours).toSeconds();
+        if (from >= to) {
+            return;
+        }
+        try {
+            // Date ranges only keep the day, so start the query at midnight
+            LocalDateTime fromDay = LessonSeries.fromEpoch(from).toLocalDate().atStartOfDay();
+            for (Lesson lesson : lessonsRepo.findActiveBetween(fromDay, LessonSeries.fromEpoch(to))) {
+                scheduleOccurrences(LessonSeries.of(lesson), from, to);
+            }
+            loadedUntil = to;
+        } catch (Exception e) {
+            System.err.println("Failed to load lesson reminders: " + e.getMessage());
+        }
+        pruneExpired();
+    }
+
+    // Replaces the timers of a saved lesson, for create, update and reactivate, once the change commits
+    public void schedule(Lesson lesson) {
+        Long lessonId = lesson.getId();
+        // Read inside the transaction, the entity may be detached by the time it commits
+        LessonSeries series = lesson.isCancelled() ? null : LessonSeries.of(lesson);
+        afterCommit(() -> {
+            replaceTimers(lessonId, series);
+            publish("S", lessonId);
+        });
+    }
+
+    public void cancel(Long lessonId) {
+        afterCommit(() -> {
+            replaceTimers(lessonId, null);
+            publish("C", lessonId);
+        });
+    }
+
+    // Changes announced by any instance, this one's own included (and skipped)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(" ");
+        if (parts.length != 3) {
+            System.err.println("Dropping malformed reminder change: " + String.join(" ", parts));
+            return;
+        }
+        if (instanceId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Long lessonId = Long.valueOf(parts[2]);
+            Lesson lesson = "S".equals(parts[1]) ? lessonsRepo.findById(lessonId).orElse(null) : null;
+            replaceTimers(lessonId, lesson == null || lesson.isCancelled() ? null : LessonSeries.of(lesson));
+        } catch (Exception e) {
+            System.err.println("Failed to apply reminder change " + String.join(" ", parts) + ": " + e.getMessage());
+        }
+    }
+
+    public int pending() {
+        return wheel.pending();
+    }
+
+    private synchronized void replaceTimers(Long lessonId, LessonSeries series) {
+        List<TimingWheel.Timeout> timers = timersByLesson.remove(lessonId);
+        if (timers != null) {
+            timers.forEach(TimingWheel.Timeout::cancel);
+        }
+        scheduleOccurrences(series, now(), loadedUntil);
+    }
+
+    private void scheduleOccurrences(LessonSeries series, long from, long to) {
+        if (series == null || series.teacherId == null || from >= to) {
+            return;
+        }
+        List<TimingWheel.Timeout> timers = null;
+        for (long start : series.occurrenceStartsIn(from, to)) {
+            // Occurrences already under way are skipped, the rest fire at once if the lead time has passed
+            if (start < from) {
+                continue;
+            }
+            long deadlineMs = toMillis(start - Duration.ofMinutes(leadMinutes).toSeconds());
+            TimingWheel.Timeout timeout = wheel.schedule(deadlineMs,
+                    () -> fire(series.lessonId, start));
+            if (timers == null) {
+                timers = timersByLesson.computeIfAbsent(series.lessonId, id -> new ArrayList<>());
+            }
+            timers.add(timeout);
+        }
+    }
+
+    // Drops the fired timers of series that stay loaded across windows
+    private void pruneExpired() {
+        timersByLesson.values().removeIf(timers -> {
+            timers.removeIf(TimingWheel.Timeout::isExpired);
+            return timers.isEmpty();
+        });
+    }
+
+    void fire(Long lessonId, long start) {
+        LessonSeries series;
+        try {
+            // The timer may predate a change made on another instance
+            Lesson lesson = lessonsRepo.findById(lessonId).orElse(null);
+            series = lesson == null || lesson.isCancelled() ? null : LessonSeries.of(lesson);
+        } catch (Exception e) {
+            System.err.println("Failed to read lesson " + lessonId + " for its reminder: " + e.getMessage());
+            return;
+        }
+        if (series == null || series.teacherId == null || !series.occurrenceStartsIn(start, start + 1).contains(start)) {
+            meterRegistry.counter("notebridge.reminders.stale").increment();
+            return;
+        }
+
+        try {
+            Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(
+                    SENT_PREFIX + lessonId + ":" + start, "1", Duration.ofDays(1));
+            if (Boolean.FALSE.equals(first)) {
+                return;
+            }
+        } catch (Exception e) {
+            // Better twice than never
+            System.err.println("Reminder dedup unavailable: " + e.getMessage());
+        }
+
+        LocalDateTime startTime = LessonSeries.fromEpoch(start);
+        eventPublisher.publishEvent(new LessonReminder(lessonId, series.teacherId, series.title, startTime));
+        String content = "Reminder: \"" + series.title + "\" starts at " + startTime.format(TIME_FORMAT);
+        try {
+            for (Chat chat : chatsRepo.findByTeacherIdAndSubject(series.teacherId, series.title)) {
+                // Sent like any other message: indexed, and announced through the outbox
+                MessagesReqRes sent = messagesService.sendMessage(chat.getId(), series.teacherId, content);
+                if (sent.getStatusCode() != 201) {
+                    System.err.println("Failed to post reminder for lesson " + lessonId + " to chat " + chat.getId()
+                            + ": " + sent.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to post reminder for lesson " + lessonId + ": " + e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void publish(String change, Long lessonId) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, instanceId + " " + change + " " + lessonId);
+        } catch (Exception e) {
+            // The other instances keep their timers, fire() drops the stale ones
+            System.err.println("Failed to publish reminder change: " + e.getMessage());
+        }
+    }
+
+    private long now() {
+        return LessonSeries.toEpoch(LocalDateTime.now(zoneId));
+    }
+
+    private long toMillis(long lessonEpochSecond) {
+        return LessonSeries.fromEpoch(lessonEpochSecond).atZone(zoneId).toInstant().toEpochMilli();
+    }
+}
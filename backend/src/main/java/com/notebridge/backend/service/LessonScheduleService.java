@@ -0,0 +1,250 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.dto.LessonOccurrence;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.LessonsRepo;
+
+// In-memory schedule of active lessons, one interval tree per teacher.
+// Each tree node covers the whole span of a lesson series; occurrences are only
+// expanded for the series that overlap the requested window.
+// A teacher's tree is loaded from the database on first use. LessonsService changes it once the
+// transaction commits, and each change is published as "<instance> <S|C> <lesson id>" on a Redis
+// channel, so the other instances read the lesson again (S) or drop it (C). Pub/sub does not retry,
+// so the trees only serve schedules and dry-run checks: bookings use findBookedConflicts, which reads
+// the overlapping lessons from the database under the teacher's booking lock.
+@Service
+public class LessonScheduleService implements MessageListener {
+
+    public static final String CHANNEL = "lesson-schedule";
+
+    @Autowired
+    private LessonsRepo lessonsRepo;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<Long, TeacherSchedule> schedules = new ConcurrentHashMap<>();
+
+    // Teacher each indexed lesson currently lives under, so reassignment and removal stay O(log n)
+    private final Map<Long, Long> teacherByLesson = new ConcurrentHashMap<>();
+
+    private static final class TeacherSchedule {
+        final IntervalTree<LessonSeries> tree = new IntervalTree<>();
+        final Map<Long, LessonSeries> byLessonId = new HashMap<>();
+
+        synchronized void add(LessonSeries series) {
+            remove(series.lessonId);
+            tree.insert(series.spanStart(), series.spanEnd(), series.lessonId, series);
+            byLessonId.put(series.lessonId, series);
+        }
+
+        synchronized void remove(Long lessonId) {
+            LessonSeries existing = byLessonId.remove(lessonId);
+            if (existing != null) {
+                tree.remove(existing.spanStart(), existing.lessonId);
+            }
+        }
+
+        synchronized List<LessonSeries> overlapping(long from, long to) {
+            return tree.overlapping(from, to);
+        }
+    }
+
+    // Occurrences of the teacher's active lessons that overlap [from, to), ordered by start time
+    public List<LessonOccurrence> getOccurrences(User teacher, LocalDateTime from, LocalDateTime to) {
+        long windowStart = LessonSeries.toEpoch(from);
+        long windowEnd = LessonSeries.toEpoch(to);
+        List<LessonOccurrence> occurrences = new ArrayList<>();
+        for (LessonSeries series : scheduleFor(teacher).overlapping(windowStart, windowEnd)) {
+            for (long start : series.occurrenceStartsIn(windowStart, windowEnd)) {
+                occurrences.add(new LessonOccurrence(series.lessonId, series.title,
+                        LessonSeries.fromEpoch(start), LessonSeries.fromEpoch(start + series.duration)));
+            }
+        }
+        occurrences.sort(Comparator.comparing(LessonOccurrence::getStartTime));
+        return occurrences;
+    }
+
+    // Ids of the teacher's active lessons that would overlap the given lesson.
+    // The lesson itself is ignored, so this can be used for updates as well.
+    public List<Long> findConflicts(Lesson lesson) {
+        List<Long> conflicts = new ArrayList<>();
+        LessonSeries candidate = LessonSeries.of(lesson);
+        if (candidate == null || lesson.getTeacher() == null || lesson.isCancelled()) {
+            return conflicts;
+        }
+        for (LessonSeries existing : scheduleFor(lesson.getTeacher()).overlapping(candidate.spanStart(), candidate.spanEnd())) {
+            if (existing.lessonId.equals(lesson.getId())) {
+                continue;
+            }
+            if (candidate.conflictsWith(existing)) {
+                conflicts.add(existing.lessonId);
+            }
+        }
+        return conflicts;
+    }
+
+    // Ids of the teacher's active lessons that would overlap the given lesson, read from the database
+    // instead of the tree, for bookings checked under the teacher's booking lock. Only the lessons whose
+    // date range overlaps the candidate's span are loaded.
+    public List<Long> findBookedConflicts(Lesson lesson) {
+        List<Long> conflicts = new ArrayList<>();
+        LessonSeries candidate = LessonSeries.of(lesson);
+        if (candidate == null || lesson.getTeacher() == null || lesson.isCancelled()) {
+            return conflicts;
+        }
+        // Dates only keep the day, and a session may end on the day after its date
+        LocalDateTime from = LessonSeries.fromEpoch(candidate.spanStart()).toLocalDate().minusDays(1).atStartOfDay();
+        LocalDateTime to = LessonSeries.fromEpoch(candidate.spanEnd());
+        for (Lesson existing : lessonsRepo.findActiveByTeacherBetween(lesson.getTeacher().getId(), from, to)) {
+            if (existing.getId().equals(lesson.getId())) {
+                continue;
+            }
+            LessonSeries series = LessonSeries.of(existing);
+            if (series != null && candidate.conflictsWith(series)) {
+                conflicts.add(existing.getId());
+            }
+        }
+        return conflicts;
+    }
+
+    // Adds or replaces a saved lesson once the transaction commits, on every instance
+    public void index(Lesson lesson) {
+        if (lesson.getId() == null) {
+            return;
+        }
+        Long lessonId = lesson.getId();
+        // Read inside the transaction, the entity may be detached by the time it commits
+        Long teacherId = lesson.getTeacher() != null ? lesson.getTeacher().getId() : null;
+        LessonSeries series = lesson.isCancelled() ? null : LessonSeries.of(lesson);
+        afterCommit(() -> {
+            apply(lessonId, teacherId, series);
+            publish("S", lessonId);
+        });
+    }
+
+    public void remove(Long lessonId) {
+        afterCommit(() -> {
+            drop(lessonId);
+            publish("C", lessonId);
+        });
+    }
+
+    // Changes announced by any instance, this one's own included (and skipped)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(" ");
+        if (parts.length != 3) {
+            System.err.println("Dropping malformed schedule change: " + String.join(" ", parts));
+            return;
+        }
+        if (instanceId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Long lessonId = Long.valueOf(parts[2]);
+            Lesson lesson = "S".equals(parts[1]) ? lessonsRepo.findById(lessonId).orElse(null) : null;
+            if (lesson == null) {
+                drop(lessonId);
+            } else {
+                apply(lessonId, lesson.getTeacher() != null ? lesson.getTeacher().getId() : null,
+                        lesson.isCancelled() ? null : LessonSeries.of(lesson));
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to apply schedule change " + String.join(" ", parts) + ": " + e.getMessage());
+        }
+    }
+
+    // Moves the series under its teacher, dropping it from the teacher it was previously indexed under
+    private void apply(Long lessonId, Long teacherId, LessonSeries series) {
+        Long previousTeacherId = teacherByLesson.get(lessonId);
+        if (previousTeacherId != null && !previousTeacherId.equals(teacherId)) {
+            drop(lessonId);
+        }
+        TeacherSchedule schedule = teacherId != null ? schedules.get(teacherId) : null;
+        if (schedule == null) {
+            // Not loaded yet, the next load reads the saved row
+            return;
+        }
+        if (series == null) {
+            drop(lessonId);
+        } else {
+            schedule.add(series);
+            teacherByLesson.put(lessonId, teacherId);
+        }
+    }
+
+    private void drop(Long lessonId) {
+        Long teacherId = teacherByLesson.remove(lessonId);
+        TeacherSchedule schedule = teacherId != null ? schedules.get(teacherId) : null;
+        if (schedule != null) {
+            schedule.remove(lessonId);
+        }
+    }
+
+    private void publish(String change, Long lessonId) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, instanceId + " " + change + " " + lessonId);
+        } catch (Exception e) {
+            // Other instances keep a stale tree for schedules and dry runs, bookings read the database
+            System.err.println("Failed to publish schedule change: " + e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private TeacherSchedule scheduleFor(User teacher) {
+        TeacherSchedule schedule = schedules.get(teacher.getId());
+        if (schedule != null) {
+            return schedule;
+        }
+        // Loaded outside the map, a concurrent first use may load it twice but never blocks other teachers
+        TeacherSchedule loaded = load(teacher);
+        TeacherSchedule existing = schedules.putIfAbsent(teacher.getId(), loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private TeacherSchedule load(User teacher) {
+        TeacherSchedule schedule = new TeacherSchedule();
+        for (Lesson lesson : lessonsRepo.findByTeacherAndIsCancelledFalse(teacher)) {
+            LessonSeries series = LessonSeries.of(lesson);
+            if (series != null) {
+                schedule.add(series);
+                teacherByLesson.put(lesson.getId(), teacher.getId());
+            }
+        }
+        return schedule;
+    }
+}
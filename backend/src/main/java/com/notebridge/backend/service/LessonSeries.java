@@ -0,0 +1,163 @@
+package com.notebridge.backend.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import com.notebridge.backend.entity.Lesson;
+
+// A lesson expressed as a periodic series of occurrences.
+// The time of day comes from startTime/endTime, the date range from startDate/endDate,
+// and the cadence from recurrence (NONE, DAILY, WEEKLY, BIWEEKLY). Requests with another value are
+// rejected; a missing one (the frontend never sends it, nor did rows saved before it existed) is WEEKLY.
+// Times are wall-clock, so they are converted to epoch seconds with a fixed UTC offset.
+class LessonSeries {
+
+    private static final long DAY_SECONDS = 86400L;
+
+    static final Set<String> RECURRENCES = Set.of("NONE", "DAILY", "WEEKLY", "BIWEEKLY");
+    static final String DEFAULT_RECURRENCE = "WEEKLY";
+
+    final Long lessonId;
+    final Long teacherId;
+    final String title;
+    final long firstStart;
+    final long duration;
+    final long period;
+    final long count;
+
+    private LessonSeries(Long lessonId, Long teacherId, String title, long firstStart, long duration, long period, long count) {
+        this.lessonId = lessonId;
+        this.teacherId = teacherId;
+        this.title = title;
+        this.firstStart = firstStart;
+        this.duration = duration;
+        this.period = period;
+        this.count = count;
+    }
+
+    // Returns null when the lesson has no usable time window
+    static LessonSeries of(Lesson lesson) {
+        if (lesson.getStartTime() == null || lesson.getEndTime() == null) {
+            return null;
+        }
+        LocalTime dailyStart = lesson.getStartTime().toLocalTime();
+        LocalTime dailyEnd = lesson.getEndTime().toLocalTime();
+        long duration = dailyEnd.toSecondOfDay() - dailyStart.toSecondOfDay();
+        if (duration <= 0) {
+            // The session runs past midnight
+            duration += DAY_SECONDS;
+        }
+
+        LocalDate firstDate = (lesson.getStartDate() != null ? lesson.getStartDate() : lesson.getStartTime()).toLocalDate();
+        LocalDate lastDate = (lesson.getEndDate() != null ? lesson.getEndDate() : lesson.getEndTime()).toLocalDate();
+        long period = periodDays(lesson.getRecurrence()) * DAY_SECONDS;
+        long count = 1;
+        if (period > 0 && lastDate.isAfter(firstDate)) {
+            long days = lastDate.toEpochDay() - firstDate.toEpochDay();
+            count = days / (period / DAY_SECONDS) + 1;
+        }
+
+        Long teacherId = lesson.getTeacher() != null ? lesson.getTeacher().getId() : null;
+        return new LessonSeries(lesson.getId(), teacherId, lesson.getTitle(),
+                toEpoch(firstDate.atTime(dailyStart)), duration, period, count);
+    }
+
+    // The recurrence in upper case, WEEKLY when it is missing, or null when it is unknown
+    static String normalizeRecurrence(String recurrence) {
+        if (recurrence == null || recurrence.isBlank()) {
+            return DEFAULT_RECURRENCE;
+        }
+        String normalized = recurrence.trim().toUpperCase(Locale.ROOT);
+        return RECURRENCES.contains(normalized) ? normalized : null;
+    }
+
+    static long periodDays(String recurrence) {
+        if (recurrence == null) {
+            return 7;
+        }
+        switch (recurrence) {
+            case "NONE":
+                return 0;
+            case "DAILY":
+                return 1;
+            case "BIWEEKLY":
+                return 14;
+            default:
+                return 7;
+        }
+    }
+
+    static long toEpoch(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime fromEpoch(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    long spanStart() {
+        return firstStart;
+    }
+
+    long spanEnd() {
+        return firstStart + (count - 1) * period + duration;
+    }
+
+    long occurrenceStart(long index) {
+        return firstStart + index * period;
+    }
+
+    // Index of the first occurrence that ends after the given instant
+    long firstIndexEndingAfter(long instant) {
+        if (period == 0 || instant < firstStart + duration) {
+            return 0;
+        }
+        return Math.floorDiv(instant - firstStart - duration, period) + 1;
+    }
+
+    // Starts of the occurrences overlapping [from, to), expanded on demand
+    List<Long> occurrenceStartsIn(long from, long to) {
+        List<Long> starts = new ArrayList<>();
+        for (long i = firstIndexEndingAfter(from); i < count; i++) {
+            long start = occurrenceStart(i);
+            if (start >= to) {
+                break;
+            }
+            starts.add(start);
+        }
+        return starts;
+    }
+
+    boolean hasOccurrenceIn(long from, long to) {
+        long i = firstIndexEndingAfter(from);
+        return i < count && occurrenceStart(i) < to;
+    }
+
+    // True if any occurrence of this series overlaps any occurrence of the other
+    boolean conflictsWith(LessonSeries other) {
+        long from = Math.max(spanStart(), other.spanStart());
+        long to = Math.min(spanEnd(), other.spanEnd());
+        if (from >= to) {
+            return false;
+        }
+        // Walk the sparser series and probe the other one in O(1) per occurrence
+        LessonSeries walker = count <= other.count ? this : other;
+        LessonSeries probe = walker == this ? other : this;
+        for (long i = walker.firstIndexEndingAfter(from); i < walker.count; i++) {
+            long start = walker.occurrenceStart(i);
+            if (start >= to) {
+                break;
+            }
+            if (probe.hasOccurrenceIn(start, start + walker.duration)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
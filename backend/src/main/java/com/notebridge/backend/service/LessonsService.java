@@ -1,15 +1,25 @@
 package com.notebridge.backend.service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.notebridge.backend.dto.LessonOccurrence;
 import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.dto.LessonView;
+import com.notebridge.backend.dto.NearbyLesson;
+import com.notebridge.backend.dto.UserSummary;
 import com.notebridge.backend.entity.Lesson;
 import com.notebridge.backend.entity.User;
 import com.notebridge.backend.repository.LessonsRepo;
@@ -24,15 +34,38 @@ public class LessonsService {
     @Autowired
     private LessonsRepo lessonsRepo;
 
+    @Autowired
+    private LessonScheduleService lessonScheduleService;
+
+    @Autowired
+    private LessonGeoIndex lessonGeoIndex;
+
+    @Autowired
+    private LessonReminderService lessonReminderService;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private Geocoder geocoder;
+
+    @Autowired
+    private FilesService filesService;
+
+    // Larger radii are searched as this one, so a single request cannot walk the whole index
+    @Value("${lessons.nearby.max-radius-km:200}")
+    private double maxRadiusKm;
+
     // GET ALL LESSONS - Available to all authenticated users
-    @Cacheable(value = "lessons", key = "'all-active'")
+    // Versioned key: lesson writes bump the catalog's generation instead of evicting it
+    @Cacheable(value = "lessons", key = "@cacheGenerations.versioned('lessons', 'all-active')")
     public LessonsReqRes getAllLessons(){
         LessonsReqRes resp = new LessonsReqRes();
 
         try {
             List<Lesson> lessonsList = lessonsRepo.findByIsCancelledFalse();
             if (!lessonsList.isEmpty()) {
-                resp.setLessonsList(lessonsList);
+                setLessons(resp, lessonsList);
                 resp.setStatusCode(200);
                 resp.setMessage("Lessons retrieved successfully");
             } else {
@@ -54,7 +87,7 @@ public class LessonsService {
         try {
             Lesson lesson = lessonsRepo.findById(lessonId).orElse(null);
             if (lesson != null) {
-                resp.setLesson(lesson);
+                setLesson(resp, lesson);
                 resp.setStatusCode(200);
                 resp.setMessage("Lesson retrieved successfully");
             } else {
@@ -70,7 +103,8 @@ public class LessonsService {
     }
 
     // GET LESSONS BY TEACHER - Available to all authenticated users
-    @Cacheable(value = "teacher-lessons", key = "#teacherId")
+    // Versioned key: a write bumps the teacher's generation (old and new teacher when reassigned)
+    @Cacheable(value = "teacher-lessons", key = "@cacheGenerations.versioned('teacher-lessons', #teacherId)")
     public LessonsReqRes getLessonsByTeacher(Long teacherId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -84,7 +118,7 @@ public class LessonsService {
             
             List<Lesson> lessonsList = lessonsRepo.findByTeacherAndIsCancelledFalse(teacher);
             if (!lessonsList.isEmpty()) {
-                resp.setLessonsList(lessonsList);
+                setLessons(resp, lessonsList);
                 resp.setStatusCode(200);
                 resp.setMessage("Lessons retrieved successfully for teacher: " + teacher.getFirstName() + " " + teacher.getLastName());
             } else {
@@ -100,10 +134,7 @@ public class LessonsService {
     }
 
     // CREATE LESSON - Only teachers can create lessons
-    @Caching(evict = {
-        @CacheEvict(value = "lessons", key = "'all-active'"),
-        @CacheEvict(value = "teacher-lessons", key = "#teacherId")
-    })
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public LessonsReqRes createLesson(LessonsReqRes lessonsRequest, Long teacherId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -125,15 +156,34 @@ public class LessonsService {
             lesson.setEndTime(lessonsRequest.getEndTime());
             lesson.setStartDate(lessonsRequest.getStartDate());
             lesson.setEndDate(lessonsRequest.getEndDate());
+            lesson.setRecurrence(LessonSeries.normalizeRecurrence(lessonsRequest.getRecurrence()));
             lesson.setMeetingLink(lessonsRequest.getMeetingLink());
             lesson.setPhysicalAddress(lessonsRequest.getPhysicalAddress());
             lesson.setCancelled(false);
+
+            if (hasInvalidCoordinates(lessonsRequest)) {
+                return invalidCoordinatesResponse(resp);
+            }
+            if (lesson.getRecurrence() == null) {
+                return invalidRecurrenceResponse(resp);
+            }
+            applyCoordinates(lesson, lessonsRequest);
+
+            List<Long> conflicts = lockAndFindConflicts(lesson);
+            if (!conflicts.isEmpty()) {
+                return conflictResponse(resp, conflicts);
+            }
             
             Lesson savedLesson = lessonsRepo.save(lesson);
-            resp.setLesson(savedLesson);
+            recordLessonEvent("LessonCreated", savedLesson, teacherId);
+            lessonScheduleService.index(savedLesson);
+            lessonGeoIndex.index(savedLesson);
+            lessonReminderService.schedule(savedLesson);
+            setLesson(resp, savedLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson created successfully");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -142,10 +192,7 @@ public class LessonsService {
     }
 
     // CREATE LESSON FOR ADMIN - This is for admin, they could create any lesson and associate the lesson to a teacher
-    @Caching(evict = {
-        @CacheEvict(value = "lessons", key = "'all-active'"),
-        @CacheEvict(value = "teacher-lessons", key = "#lessonsRequest.teacher.id")
-    })
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public LessonsReqRes createLessonForAdmin(LessonsReqRes lessonsRequest) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -167,15 +214,34 @@ public class LessonsService {
             lesson.setEndTime(lessonsRequest.getEndTime());
             lesson.setStartDate(lessonsRequest.getStartDate());
             lesson.setEndDate(lessonsRequest.getEndDate());
+            lesson.setRecurrence(LessonSeries.normalizeRecurrence(lessonsRequest.getRecurrence()));
             lesson.setMeetingLink(lessonsRequest.getMeetingLink());
             lesson.setPhysicalAddress(lessonsRequest.getPhysicalAddress());
             lesson.setCancelled(false);
+
+            if (hasInvalidCoordinates(lessonsRequest)) {
+                return invalidCoordinatesResponse(resp);
+            }
+            if (lesson.getRecurrence() == null) {
+                return invalidRecurrenceResponse(resp);
+            }
+            applyCoordinates(lesson, lessonsRequest);
+
+            List<Long> conflicts = lockAndFindConflicts(lesson);
+            if (!conflicts.isEmpty()) {
+                return conflictResponse(resp, conflicts);
+            }
             
             Lesson savedLesson = lessonsRepo.save(lesson);
-            resp.setLesson(savedLesson);
+            recordLessonEvent("LessonCreated", savedLesson, teacher.getId());
+            lessonScheduleService.index(savedLesson);
+            lessonGeoIndex.index(savedLesson);
+            lessonReminderService.schedule(savedLesson);
+            setLesson(resp, savedLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson created successfully by admin");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -184,13 +250,7 @@ public class LessonsService {
     }
 
     // UPDATE LESSON - Only the teacher who created the lesson can update it
-    @Caching(
-        put = @CachePut(value = "lesson", key = "#lessonId"),
-        evict = {
-            @CacheEvict(value = "lessons", key = "'all-active'"),
-            @CacheEvict(value = "teacher-lessons", key = "#teacherId")
-        }
-    )
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public LessonsReqRes updateLesson(Long lessonId, LessonsReqRes lessonsRequest, Long teacherId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -207,6 +267,20 @@ public class LessonsService {
                 resp.setMessage("You can only update your own lessons");
                 return resp;
             }
+
+            if (hasInvalidCoordinates(lessonsRequest)) {
+                return invalidCoordinatesResponse(resp);
+            }
+            if (hasInvalidRecurrence(lessonsRequest)) {
+                return invalidRecurrenceResponse(resp);
+            }
+
+            // Check the new times on a detached copy so a rejected update leaves the entity untouched
+            List<Long> conflicts = lockAndFindConflicts(
+                    scheduleCandidate(existingLesson, existingLesson.getTeacher(), lessonsRequest));
+            if (!conflicts.isEmpty()) {
+                return conflictResponse(resp, conflicts);
+            }
             
             existingLesson.setTitle(lessonsRequest.getTitle());
             existingLesson.setInstrument(lessonsRequest.getInstrument());
@@ -216,14 +290,21 @@ public class LessonsService {
             existingLesson.setEndTime(lessonsRequest.getEndTime());
             existingLesson.setStartDate(lessonsRequest.getStartDate());
             existingLesson.setEndDate(lessonsRequest.getEndDate());
+            existingLesson.setRecurrence(LessonSeries.normalizeRecurrence(lessonsRequest.getRecurrence()));
             existingLesson.setMeetingLink(lessonsRequest.getMeetingLink());
             existingLesson.setPhysicalAddress(lessonsRequest.getPhysicalAddress());
+            applyCoordinates(existingLesson, lessonsRequest);
             
             Lesson updatedLesson = lessonsRepo.save(existingLesson);
-            resp.setLesson(updatedLesson);
+            recordLessonEvent("LessonUpdated", updatedLesson, teacherId);
+            lessonScheduleService.index(updatedLesson);
+            lessonGeoIndex.index(updatedLesson);
+            lessonReminderService.schedule(updatedLesson);
+            setLesson(resp, updatedLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson updated successfully");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -232,13 +313,7 @@ public class LessonsService {
     }
 
     // UPDATE LESSON FOR ADMIN - This is for admin, they could update any lesson
-    @Caching(
-        put = @CachePut(value = "lesson", key = "#lessonId"),
-        evict = {
-            @CacheEvict(value = "lessons", key = "'all-active'"),
-            @CacheEvict(value = "teacher-lessons", key = "#lessonsRequest.teacher.id")
-        }
-    )
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public LessonsReqRes updateLessonForAdmin(Long lessonId, LessonsReqRes lessonsRequest) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -250,12 +325,29 @@ public class LessonsService {
                 return resp;
             }
             
+            User assignedTeacher = existingLesson.getTeacher();
+            Long previousTeacherId = assignedTeacher.getId();
             if (lessonsRequest.getTeacher() != null && lessonsRequest.getTeacher().getId() != null) {
                 User newTeacher = usersRepo.findById(lessonsRequest.getTeacher().getId()).orElse(null);
                 if (newTeacher != null) {
-                    existingLesson.setTeacher(newTeacher);
+                    assignedTeacher = newTeacher;
                 }
             }
+
+            if (hasInvalidCoordinates(lessonsRequest)) {
+                return invalidCoordinatesResponse(resp);
+            }
+            if (hasInvalidRecurrence(lessonsRequest)) {
+                return invalidRecurrenceResponse(resp);
+            }
+
+            List<Long> conflicts = lockAndFindConflicts(
+                    scheduleCandidate(existingLesson, assignedTeacher, lessonsRequest));
+            if (!conflicts.isEmpty()) {
+                return conflictResponse(resp, conflicts);
+            }
+
+            existingLesson.setTeacher(assignedTeacher);
             existingLesson.setTitle(lessonsRequest.getTitle());
             existingLesson.setInstrument(lessonsRequest.getInstrument());
             existingLesson.setDescription(lessonsRequest.getDescription());
@@ -264,14 +356,21 @@ public class LessonsService {
             existingLesson.setEndTime(lessonsRequest.getEndTime());
             existingLesson.setStartDate(lessonsRequest.getStartDate());
             existingLesson.setEndDate(lessonsRequest.getEndDate());
+            existingLesson.setRecurrence(LessonSeries.normalizeRecurrence(lessonsRequest.getRecurrence()));
             existingLesson.setMeetingLink(lessonsRequest.getMeetingLink());
             existingLesson.setPhysicalAddress(lessonsRequest.getPhysicalAddress());
+            applyCoordinates(existingLesson, lessonsRequest);
             
             Lesson updatedLesson = lessonsRepo.save(existingLesson);
-            resp.setLesson(updatedLesson);
+            recordLessonEvent("LessonUpdated", updatedLesson, previousTeacherId, assignedTeacher.getId());
+            lessonScheduleService.index(updatedLesson);
+            lessonGeoIndex.index(updatedLesson);
+            lessonReminderService.schedule(updatedLesson);
+            setLesson(resp, updatedLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson updated successfully by admin");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -280,13 +379,7 @@ public class LessonsService {
     }
 
     // CANCEL LESSON - Only the teacher who created the lesson could cancel it
-    @Caching(
-        put = @CachePut(value = "lesson", key = "#lessonId"),
-        evict = {
-            @CacheEvict(value = "lessons", key = "'all-active'"),
-            @CacheEvict(value = "teacher-lessons", key = "#teacherId")
-        }
-    )
+    @Transactional
     public LessonsReqRes cancelLesson(Long lessonId, Long teacherId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -306,10 +399,15 @@ public class LessonsService {
             
             existingLesson.setCancelled(true);
             Lesson cancelledLesson = lessonsRepo.save(existingLesson);
-            resp.setLesson(cancelledLesson);
+            recordLessonEvent("LessonCancelled", cancelledLesson, teacherId);
+            lessonScheduleService.remove(lessonId);
+            lessonGeoIndex.remove(lessonId);
+            lessonReminderService.cancel(lessonId);
+            setLesson(resp, cancelledLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson cancelled successfully");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -318,13 +416,7 @@ public class LessonsService {
     }
 
     // CANCEL LESSON FOR ADMIN - This is for Admin, they could cancel any lesson
-    @Caching(
-        put = @CachePut(value = "lesson", key = "#lessonId"),
-        evict = {
-            @CacheEvict(value = "lessons", key = "'all-active'"),
-            @CacheEvict(value = "teacher-lessons", allEntries = true)
-        }
-    )
+    @Transactional
     public LessonsReqRes cancelLessonForAdmin(Long lessonId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -338,10 +430,15 @@ public class LessonsService {
             
             existingLesson.setCancelled(true);
             Lesson cancelledLesson = lessonsRepo.save(existingLesson);
-            resp.setLesson(cancelledLesson);
+            recordLessonEvent("LessonCancelled", cancelledLesson, cancelledLesson.getTeacher().getId());
+            lessonScheduleService.remove(lessonId);
+            lessonGeoIndex.remove(lessonId);
+            lessonReminderService.cancel(lessonId);
+            setLesson(resp, cancelledLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson cancelled successfully by admin");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -350,13 +447,7 @@ public class LessonsService {
     }
 
     // REACTIVATE LESSON - Only the teacher who created the lesson can reactivate it
-    @Caching(
-        put = @CachePut(value = "lesson", key = "#lessonId"),
-        evict = {
-            @CacheEvict(value = "lessons", key = "'all-active'"),
-            @CacheEvict(value = "teacher-lessons", key = "#teacherId")
-        }
-    )
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public LessonsReqRes reactivateLesson(Long lessonId, Long teacherId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -373,13 +464,24 @@ public class LessonsService {
                 resp.setMessage("You can only reactivate your own lessons");
                 return resp;
             }
+
+            // Lessons booked while this one was cancelled may overlap it
+            List<Long> conflicts = lockAndFindConflicts(reactivationCandidate(existingLesson));
+            if (!conflicts.isEmpty()) {
+                return conflictResponse(resp, conflicts);
+            }
             
             existingLesson.setCancelled(false);
             Lesson reactivatedLesson = lessonsRepo.save(existingLesson);
-            resp.setLesson(reactivatedLesson);
+            recordLessonEvent("LessonReactivated", reactivatedLesson, teacherId);
+            lessonScheduleService.index(reactivatedLesson);
+            lessonGeoIndex.index(reactivatedLesson);
+            lessonReminderService.schedule(reactivatedLesson);
+            setLesson(resp, reactivatedLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson reactivated successfully");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -388,13 +490,7 @@ public class LessonsService {
     }
 
     // REACTIVATE LESSON FOR ADMIN - Admin could reactivate any lesson
-    @Caching(
-        put = @CachePut(value = "lesson", key = "#lessonId"),
-        evict = {
-            @CacheEvict(value = "lessons", key = "'all-active'"),
-            @CacheEvict(value = "teacher-lessons", allEntries = true)
-        }
-    )
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public LessonsReqRes reactivateLessonForAdmin(Long lessonId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -405,13 +501,23 @@ public class LessonsService {
                 resp.setMessage("Lesson not found with id: " + lessonId);
                 return resp;
             }
+
+            List<Long> conflicts = lockAndFindConflicts(reactivationCandidate(existingLesson));
+            if (!conflicts.isEmpty()) {
+                return conflictResponse(resp, conflicts);
+            }
             
             existingLesson.setCancelled(false);
             Lesson reactivatedLesson = lessonsRepo.save(existingLesson);
-            resp.setLesson(reactivatedLesson);
+            recordLessonEvent("LessonReactivated", reactivatedLesson, reactivatedLesson.getTeacher().getId());
+            lessonScheduleService.index(reactivatedLesson);
+            lessonGeoIndex.index(reactivatedLesson);
+            lessonReminderService.schedule(reactivatedLesson);
+            setLesson(resp, reactivatedLesson);
             resp.setStatusCode(200);
             resp.setMessage("Lesson reactivated successfully by admin");
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -426,7 +532,7 @@ public class LessonsService {
         try {
             List<Lesson> lessonsList = lessonsRepo.findAll();
             if (!lessonsList.isEmpty()) {
-                resp.setLessonsList(lessonsList);
+                setLessons(resp, lessonsList);
                 resp.setStatusCode(200);
                 resp.setMessage("All lessons (including cancelled) retrieved successfully");
             } else {
@@ -442,13 +548,7 @@ public class LessonsService {
     }
 
     // DELETE LESSON PERMANENTLY - Only admins can permanently delete lessons
-    // When you delete the lesson from database, you also need to delete the 
-    // lesson image (in files repo) associated with the lesson
-    @Caching(evict = {
-        @CacheEvict(value = "lessons", key = "'all-active'"),
-        @CacheEvict(value = "lesson", key = "#lessonId"),
-        @CacheEvict(value = "teacher-lessons", allEntries = true)
-    })
+    @Transactional
     public LessonsReqRes deleteLessonPermanently(Long lessonId) {
         LessonsReqRes resp = new LessonsReqRes();
         
@@ -460,14 +560,73 @@ public class LessonsService {
                 return resp;
             }
             
-            // Note: If there are lesson images associated with the lesson, 
-            // you would need to implement the logic to find and delete them
-            // For example: filesRepo.deleteByLessonId(lessonId);
-            // This depends on your FileMetaData entity structure
-            
+            // The picture may be shared, it only loses this lesson's reference
+            filesService.releaseReference(existingLesson.getImageUrl());
             lessonsRepo.deleteById(lessonId);
+            recordLessonEvent("LessonDeleted", existingLesson, existingLesson.getTeacher().getId());
+            lessonScheduleService.remove(lessonId);
+            lessonGeoIndex.remove(lessonId);
+            lessonReminderService.cancel(lessonId);
             resp.setStatusCode(200);
             resp.setMessage("Lesson deleted permanently");
+        } catch (Exception e) {
+            OutboxService.rollbackOnly();
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // GET TEACHER SCHEDULE - Concrete lesson occurrences of a teacher within [from, to)
+    public LessonsReqRes getTeacherSchedule(Long teacherId, LocalDateTime from, LocalDateTime to) {
+        LessonsReqRes resp = new LessonsReqRes();
+
+        try {
+            if (from == null || to == null || !from.isBefore(to)) {
+                resp.setStatusCode(400);
+                resp.setMessage("A valid time window is required (from must be before to)");
+                return resp;
+            }
+
+            User teacher = usersRepo.findById(teacherId).orElse(null);
+            if (teacher == null) {
+                resp.setStatusCode(404);
+                resp.setMessage("Teacher not found with id: " + teacherId);
+                return resp;
+            }
+
+            List<LessonOccurrence> occurrences = lessonScheduleService.getOccurrences(teacher, from, to);
+            resp.setOccurrencesList(occurrences);
+            resp.setStatusCode(200);
+            resp.setMessage(occurrences.isEmpty() ? "No lessons scheduled in this window" : "Schedule retrieved successfully");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // CHECK CONFLICTS - Would this lesson overlap any active lesson of the teacher
+    public LessonsReqRes checkConflicts(LessonsReqRes lessonsRequest, Long teacherId) {
+        LessonsReqRes resp = new LessonsReqRes();
+
+        try {
+            User teacher = usersRepo.findById(teacherId).orElse(null);
+            if (teacher == null) {
+                resp.setStatusCode(404);
+                resp.setMessage("Teacher not found with id: " + teacherId);
+                return resp;
+            }
+            if (hasInvalidRecurrence(lessonsRequest)) {
+                return invalidRecurrenceResponse(resp);
+            }
+
+            List<Long> conflicts = lessonScheduleService.findConflicts(scheduleCandidate(new Lesson(), teacher, lessonsRequest));
+            resp.setConflictingLessonIds(conflicts);
+            resp.setStatusCode(200);
+            resp.setMessage(conflicts.isEmpty() ? "No conflicts found" : "Lesson conflicts with existing lesson(s)");
         } catch (Exception e) {
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
@@ -476,4 +635,166 @@ public class LessonsService {
         return resp;
     }
 
+    // GET NEARBY LESSONS - Active IN_PERSON / HYBRID lessons within radiusKm of a point, nearest first
+    public LessonsReqRes getNearbyLessons(double latitude, double longitude, double radiusKm, int page, int size) {
+        LessonsReqRes resp = new LessonsReqRes();
+
+        try {
+            if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180 && radiusKm > 0) || page < 0 || size <= 0) {
+                resp.setStatusCode(400);
+                resp.setMessage("Invalid search parameters");
+                return resp;
+            }
+
+            double radius = Math.min(radiusKm, maxRadiusKm);
+            List<LessonGeoIndex.Hit> hits = lessonGeoIndex.within(latitude, longitude, radius);
+            int from = (int) Math.min((long) page * size, hits.size());
+            int to = Math.min(from + size, hits.size());
+            List<LessonGeoIndex.Hit> pageHits = hits.subList(from, to);
+
+            // Only the lessons on the requested page are loaded, by primary key
+            Map<Long, Lesson> lessonsById = new HashMap<>();
+            for (Lesson lesson : lessonsRepo.findAllById(pageHits.stream().map(LessonGeoIndex.Hit::lessonId).toList())) {
+                lessonsById.put(lesson.getId(), lesson);
+            }
+            // The index may lag a change made on another instance: lessons deleted, cancelled, moved
+            // out of the radius or no longer physical are left out and corrected in the index
+            List<NearbyLesson> nearbyLessons = new ArrayList<>();
+            List<Lesson> found = new ArrayList<>();
+            int stale = 0;
+            for (LessonGeoIndex.Hit hit : pageHits) {
+                Lesson lesson = lessonsById.get(hit.lessonId());
+                double[] point = lesson != null ? LessonGeoIndex.pointOf(lesson) : null;
+                double distance = point != null ? GeoHash.distanceKm(latitude, longitude, point[0], point[1]) : Double.MAX_VALUE;
+                if (distance > radius) {
+                    lessonGeoIndex.refresh(hit.lessonId(), lesson);
+                    stale++;
+                    continue;
+                }
+                nearbyLessons.add(new NearbyLesson(LessonView.of(lesson), distance));
+                found.add(lesson);
+            }
+
+            resp.setNearbyLessons(nearbyLessons);
+            resp.setUsers(UserSummary.mapOf(found.stream().map(Lesson::getTeacher).toList()));
+            resp.setTotalCount((long) hits.size() - stale);
+            resp.setStatusCode(200);
+            resp.setMessage(hits.isEmpty() ? "No lessons found nearby" : "Nearby lessons retrieved successfully");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Coordinates come from the client when given, otherwise from the geocoder for physical lessons
+    private void applyCoordinates(Lesson lesson, LessonsReqRes lessonsRequest) {
+        lesson.setLatitude(lessonsRequest.getLatitude());
+        lesson.setLongitude(lessonsRequest.getLongitude());
+        if ((lesson.getLatitude() == null || lesson.getLongitude() == null) && LessonGeoIndex.isPhysical(lesson)) {
+            Optional<double[]> point = geocoder.geocode(lesson.getPhysicalAddress());
+            lesson.setLatitude(point.map(p -> p[0]).orElse(null));
+            lesson.setLongitude(point.map(p -> p[1]).orElse(null));
+        }
+    }
+
+    private boolean hasInvalidCoordinates(LessonsReqRes lessonsRequest) {
+        Double latitude = lessonsRequest.getLatitude();
+        Double longitude = lessonsRequest.getLongitude();
+        return (latitude != null && (latitude < -90 || latitude > 90))
+                || (longitude != null && (longitude < -180 || longitude > 180));
+    }
+
+    private LessonsReqRes invalidCoordinatesResponse(LessonsReqRes resp) {
+        resp.setStatusCode(400);
+        resp.setMessage("Latitude must be between -90 and 90 and longitude between -180 and 180");
+        return resp;
+    }
+
+    private boolean hasInvalidRecurrence(LessonsReqRes lessonsRequest) {
+        return LessonSeries.normalizeRecurrence(lessonsRequest.getRecurrence()) == null;
+    }
+
+    private LessonsReqRes invalidRecurrenceResponse(LessonsReqRes resp) {
+        resp.setStatusCode(400);
+        resp.setMessage("Recurrence must be one of " + LessonSeries.RECURRENCES);
+        return resp;
+    }
+
+    // Bookings of a teacher take turns on the teacher's row (held until commit), and the overlapping
+    // lessons are read from the database under the lock, so a booking just committed by another request
+    // or instance is seen even before its schedule change reaches this instance
+    private List<Long> lockAndFindConflicts(Lesson candidate) {
+        if (candidate.isCancelled()) {
+            return List.of();
+        }
+        usersRepo.lockForBooking(candidate.getTeacher().getId());
+        return lessonScheduleService.findBookedConflicts(candidate);
+    }
+
+    // Detached active copy of a cancelled lesson
+    private Lesson reactivationCandidate(Lesson lesson) {
+        Lesson candidate = new Lesson();
+        candidate.setId(lesson.getId());
+        candidate.setTeacher(lesson.getTeacher());
+        candidate.setTitle(lesson.getTitle());
+        candidate.setStartTime(lesson.getStartTime());
+        candidate.setEndTime(lesson.getEndTime());
+        candidate.setStartDate(lesson.getStartDate());
+        candidate.setEndDate(lesson.getEndDate());
+        candidate.setRecurrence(lesson.getRecurrence());
+        candidate.setCancelled(false);
+        return candidate;
+    }
+
+    // Detached lesson carrying only the fields the schedule needs
+    private Lesson scheduleCandidate(Lesson base, User teacher, LessonsReqRes lessonsRequest) {
+        Lesson candidate = new Lesson();
+        candidate.setId(base.getId());
+        candidate.setTeacher(teacher);
+        candidate.setTitle(lessonsRequest.getTitle());
+        candidate.setStartTime(lessonsRequest.getStartTime());
+        candidate.setEndTime(lessonsRequest.getEndTime());
+        candidate.setStartDate(lessonsRequest.getStartDate());
+        candidate.setEndDate(lessonsRequest.getEndDate());
+        candidate.setRecurrence(LessonSeries.normalizeRecurrence(lessonsRequest.getRecurrence()));
+        candidate.setCancelled(base.isCancelled());
+        return candidate;
+    }
+
+    // Responses carry lesson views, with each teacher sideloaded once
+    private void setLesson(LessonsReqRes resp, Lesson lesson) {
+        resp.setLesson(LessonView.of(lesson));
+        resp.setUsers(UserSummary.mapOf(List.of(lesson.getTeacher())));
+    }
+
+    private void setLessons(LessonsReqRes resp, List<Lesson> lessons) {
+        resp.setLessonsList(lessons.stream().map(LessonView::of).toList());
+        resp.setUsers(UserSummary.mapOf(lessons.stream().map(Lesson::getTeacher).toList()));
+    }
+
+    // Publishes the change through the outbox; the cached lists of the given teachers are evicted after commit
+    private void recordLessonEvent(String eventType, Lesson lesson, Long... teacherIds) {
+        List<String> invalidations = new ArrayList<>(List.of("lessons::all-active", "lesson::" + lesson.getId()));
+        for (Long teacherId : teacherIds) {
+            String invalidation = "teacher-lessons::" + teacherId;
+            if (teacherId != null && !invalidations.contains(invalidation)) {
+                invalidations.add(invalidation);
+            }
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("lessonId", lesson.getId());
+        payload.put("teacherId", lesson.getTeacher() != null ? lesson.getTeacher().getId() : null);
+        payload.put("cancelled", lesson.isCancelled());
+        outboxService.record("Lesson", lesson.getId(), eventType, payload, invalidations);
+    }
+
+    private LessonsReqRes conflictResponse(LessonsReqRes resp, List<Long> conflicts) {
+        resp.setStatusCode(409);
+        resp.setMessage("Lesson conflicts with existing lesson(s): " + conflicts);
+        resp.setConflictingLessonIds(conflicts);
+        return resp;
+    }
+
 }
@@ -0,0 +1,34 @@
+package com.notebridge.backend.service;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Service;
+
+// Stand-in geocoder that makes no network calls.
+// It only understands addresses that are nothing but coordinates ("41.8781, -87.6298");
+// street addresses such as "Room 12, 45 High St" stay unresolved until this class is swapped for a real provider.
+@Service
+public class LocalGeocoder implements Geocoder {
+
+    private static final Pattern COORDINATES = Pattern.compile(
+            "\\s*(-?\\d{1,2}(?:\\.\\d+)?)\\s*,\\s*(-?\\d{1,3}(?:\\.\\d+)?)\\s*");
+
+    @Override
+    public Optional<double[]> geocode(String address) {
+        if (address == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = COORDINATES.matcher(address);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        double latitude = Double.parseDouble(matcher.group(1));
+        double longitude = Double.parseDouble(matcher.group(2));
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            return Optional.empty();
+        }
+        return Optional.of(new double[]{latitude, longitude});
+    }
+}
@@ -0,0 +1,89 @@
+package com.notebridge.backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.notebridge.backend.config.ShardRoutingDataSource;
+import com.notebridge.backend.entity.IdBlock;
+import com.notebridge.backend.repository.IdBlocksRepo;
+import com.notebridge.backend.repository.MessagesRepo;
+
+// Ids of new messages, unique across the primary and the message shards (ChatShards), so a message
+// keeps its id when ChatResharder moves its chat. Each instance reserves blocks of
+// messages.id-block-size ids from the "messages" row of id_blocks on the primary, in a transaction
+// of its own, and hands them out from memory; ids only roughly follow sending order across instances.
+// The sequence starts above the highest message id of every database. Messages written before it
+// have AUTO_INCREMENT ids, only unique on their own database, and get a new id when they move.
+@Service
+public class MessageIds {
+
+    private static final String SEQUENCE = "messages";
+
+    @Autowired
+    private IdBlocksRepo idBlocksRepo;
+
+    @Autowired
+    private MessagesRepo messagesRepo;
+
+    @Autowired
+    private ChatShards chatShards;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${messages.id-block-size:1000}")
+    private int blockSize;
+
+    // Rest of the reserved block, next up to (excluding) end
+    private long next;
+    private long end;
+    private long firstId;
+
+    public synchronized long next() {
+        if (next >= end) {
+            reserve();
+        }
+        return next++;
+    }
+
+    // Messages with a lower id were written before the sequence
+    public synchronized long firstId() {
+        if (firstId == 0) {
+            reserve();
+        }
+        return firstId;
+    }
+
+    private void reserve() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // The sequence is on the primary, whatever shard the caller has selected
+        String previous = ShardRoutingDataSource.use(null);
+        try {
+            long reservedEnd = transaction.execute(status -> {
+                if (idBlocksRepo.reserve(SEQUENCE, blockSize) == 0) {
+                    idBlocksRepo.create(SEQUENCE, highestId() + 1);
+                    idBlocksRepo.reserve(SEQUENCE, blockSize);
+                }
+                return idBlocksRepo.lastInsertId();
+            });
+            next = reservedEnd - blockSize;
+            end = reservedEnd;
+            firstId = idBlocksRepo.findById(SEQUENCE).map(IdBlock::getFirstId).orElseThrow();
+        } finally {
+            ShardRoutingDataSource.use(previous);
+        }
+    }
+
+    private long highestId() {
+        long highest = 0;
+        for (String shard : chatShards.shards()) {
+            highest = Math.max(highest, chatShards.run(shard, true, messagesRepo::highestId));
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,355 @@
+package com.notebridge.backend.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Local write-ahead journal for message sends (messages.journal.enabled). A send is appended to
+// a memory-mapped segment (JournalSegment) and acknowledged once that part of the segment is
+// forced to disk. One flusher thread forces for every send that arrived in the meantime (group
+// commit), so the cost of an fsync is shared. MessageJournalReplayer then writes the entries to
+// MySQL in sequence order and records how far it got in the checkpoint file; segments that are
+// fully applied are deleted. Entries carry a UUID that is stored with the message, so an entry
+// that is replayed twice (after a crash before the checkpoint was written) is only saved once.
+@Service
+public class MessageJournal {
+
+    // Upper bound of an encoded entry: fixed fields plus 1000 characters of up to 4 UTF-8 bytes
+    static final int MAX_RECORD_BYTES = JournalSegment.HEADER_BYTES + 6 * 8 + 4 + 4000;
+    private static final String CHECKPOINT = "checkpoint";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messages.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${messages.journal.dir:data/message-journal}")
+    private String dir;
+
+    @Value("${messages.journal.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    // How long the flusher waits for more sends to join a group before forcing
+    @Value("${messages.journal.group-commit-ms:2}")
+    private long groupCommitMs;
+
+    // A send fails instead of waiting longer than this for its fsync
+    @Value("${messages.journal.sync-timeout-ms:5000}")
+    private long syncTimeoutMs;
+
+    public record Entry(long seq, UUID id, long chatId, long senderId, String content, long sentAtMs) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final List<JournalSegment> segments = new ArrayList<>();
+    private Path directory;
+    private long nextSeq;
+    private long durableSeq;
+    private long appliedSeq;
+    // Replay cursor: segment index and position of the entry after appliedSeq
+    private int readSegment;
+    private int readPos;
+    private volatile boolean running;
+    private Thread flusher;
+    private Counter appends;
+    private Timer fsyncs;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Path.of(dir);
+        Files.createDirectories(directory);
+        appliedSeq = readCheckpoint();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+        for (Path file : files) {
+            JournalSegment segment = JournalSegment.open(file, MAX_RECORD_BYTES);
+            if (segment.lastSeq() <= appliedSeq && file != files.get(files.size() - 1)) {
+                segment.delete();
+            } else {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.add(JournalSegment.create(directory, appliedSeq + 1, (int) segmentSize.toBytes()));
+        }
+        nextSeq = segments.get(segments.size() - 1).lastSeq() + 1;
+        durableSeq = nextSeq - 1;
+        appliedSeq = Math.max(appliedSeq, segments.get(0).firstSeq() - 1);
+
+        appends = meterRegistry.counter("notebridge.journal.appends");
+        fsyncs = meterRegistry.timer("notebridge.journal.fsync");
+        meterRegistry.gauge("notebridge.journal.backlog", this, journal -> journal.backlog());
+        running = true;
+        flusher = Thread.ofPlatform().name("message-journal-flusher").daemon().start(this::flushLoop);
+        System.out.println("Message journal opened at " + directory.toAbsolutePath() + ", " + backlog() + " entries to replay");
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        lock.lock();
+        try {
+            flushRequested.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(syncTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (JournalSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Appends a send and returns once it is on disk
+    public Entry append(long chatId, long senderId, String content) throws IOException {
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IOException("Message journal is closed");
+            }
+            Entry entry = new Entry(nextSeq, UUID.randomUUID(), chatId, senderId, content, System.currentTimeMillis());
+            byte[] body = encode(entry);
+            if (!active().append(entry.seq(), body)) {
+                segments.add(JournalSegment.create(directory, entry.seq(), (int) segmentSize.toBytes()));
+                if (!active().append(entry.seq(), body)) {
+                    throw new IOException("Journal entry does not fit in a segment");
+                }
+            }
+            nextSeq++;
+            appends.increment();
+            flushRequested.signal();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncTimeoutMs);
+            while (durableSeq < entry.seq()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    throw new IOException("Journal fsync timed out");
+                }
+                durable.awaitNanos(left);
+            }
+            return entry;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Up to max durable entries after the last applied one, in sequence order
+    public List<Entry> next(int max) {
+        List<Entry> entries = new ArrayList<>();
+        lock.lock();
+        try {
+            int segment = readSegment;
+            int pos = readPos;
+            long seq = appliedSeq;
+            while (entries.size() < max && seq < durableSeq && segment < segments.size()) {
+                ByteBuffer body = segments.get(segment).read(pos);
+                if (body == null || pos >= segments.get(segment).writePos()) {
+                    segment++;
+                    pos = 0;
+                    continue;
+                }
+                Entry entry = decode(body);
+                pos += JournalSegment.HEADER_BYTES + body.capacity();
+                if (entry.seq() > seq) {
+                    entries.add(entry);
+                    seq = entry.seq();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return entries;
+    }
+
+    // Records that every entry up to seq is in MySQL and drops the segments that are done.
+    // The checkpoint is not forced: losing it only means entries are replayed (and skipped) again.
+    public void applied(long seq) throws IOException {
+        List<JournalSegment> done = new ArrayList<>();
+        lock.lock();
+        try {
+            // Move the read cursor past the applied entries
+            while (readSegment < segments.size()) {
+                JournalSegment segment = segments.get(readSegment);
+                ByteBuffer body = segment.read(readPos);
+                if (body != null && readPos < segment.writePos()) {
+                    if (body.getLong(0) > seq) {
+                        break;
+                    }
+                    readPos += JournalSegment.HEADER_BYTES + body.capacity();
+                } else if (readSegment < segments.size() - 1) {
+                    readSegment++;
+                    readPos = 0;
+                } else {
+                    break;
+                }
+            }
+            appliedSeq = Math.max(appliedSeq, seq);
+            while (segments.size() > 1 && segments.get(0).lastSeq() <= appliedSeq && readSegment > 0) {
+                done.add(segments.remove(0));
+                readSegment--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        Path tmp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(tmp, Long.toString(seq));
+        Files.move(tmp, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (JournalSegment segment : done) {
+            segment.delete();
+        }
+    }
+
+    // Entries on disk but not yet in MySQL
+    public long backlog() {
+        lock.lock();
+        try {
+            return durableSeq - appliedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<JournalSegment> dirty = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>();
+            long target;
+            lock.lock();
+            try {
+                while (running && durableSeq == nextSeq - 1) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (!running && durableSeq == nextSeq - 1) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (groupCommitMs > 0) {
+                try {
+                    Thread.sleep(groupCommitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            lock.lock();
+            try {
+                target = nextSeq - 1;
+                for (JournalSegment segment : segments) {
+                    int[] range = segment.unforced();
+                    if (range != null) {
+                        dirty.add(segment);
+                        ranges.add(range);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                fsyncs.record(() -> {
+                    for (int i = 0; i < dirty.size(); i++) {
+                        dirty.get(i).force(ranges.get(i)[0], ranges.get(i)[1]);
+                    }
+                });
+            } catch (Exception e) {
+                // Senders time out and report the failure; the next round tries again
+                System.err.println("Message journal fsync failed: " + e.getMessage());
+                continue;
+            }
+            lock.lock();
+            try {
+                for (int i = 0; i < dirty.size(); i++) {
+                    dirty.get(i).forced(ranges.get(i)[1]);
+                }
+                durableSeq = Math.max(durableSeq, target);
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private JournalSegment active() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(checkpoint).trim());
+        } catch (NumberFormatException e) {
+            // Replays everything still in the segments, which is harmless
+            return 0;
+        }
+    }
+
+    static byte[] encode(Entry entry) {
+        byte[] content = entry.content().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(6 * 8 + 4 + content.length);
+        body.putLong(entry.seq())
+                .putLong(entry.id().getMostSignificantBits())
+                .putLong(entry.id().getLeastSignificantBits())
+                .putLong(entry.chatId())
+                .putLong(entry.senderId())
+                .putLong(entry.sentAtMs())
+                .putInt(content.length)
+                .put(content);
+        return body.array();
+    }
+
+    static Entry decode(ByteBuffer body) {
+        ByteBuffer in = body.duplicate();
+        long seq = in.getLong();
+        UUID id = new UUID(in.getLong(), in.getLong());
+        long chatId = in.getLong();
+        long senderId = in.getLong();
+        long sentAtMs = in.getLong();
+        byte[] content = new byte[in.getInt()];
+        in.get(content);
+        return new Entry(seq, id, chatId, senderId, new String(content, StandardCharsets.UTF_8), sentAtMs);
+    }
+}
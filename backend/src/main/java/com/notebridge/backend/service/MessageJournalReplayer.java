@@ -0,0 +1,189 @@
+package com.notebridge.backend.service;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Writes the sends in the message journal to MySQL, oldest first, each in its own transaction
+// (MessagesService.applyJournaled). While MySQL is unavailable, or the chat is being moved to
+// another shard, the same entry is retried every retry-interval-ms, so order is kept and nothing
+// is skipped. Any other error is retried max-attempts times. Entries that fail that often, and
+// those that can never be saved (chat deleted, sender not in the chat), are appended to the
+// journal-dead-letters Redis stream and skipped, so one bad entry cannot stall the journal.
+@Service
+public class MessageJournalReplayer {
+
+    public static final String DEAD_LETTERS = "journal-dead-letters";
+
+    @Autowired
+    private MessageJournal messageJournal;
+
+    @Autowired
+    private MessagesService messagesService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${messages.journal.replay-batch-size:100}")
+    private int batchSize;
+
+    @Value("${messages.journal.poll-interval-ms:50}")
+    private long pollIntervalMs;
+
+    @Value("${messages.journal.retry-interval-ms:1000}")
+    private long retryIntervalMs;
+
+    @Value("${messages.journal.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${messages.journal.dead-letter-max-length:100000}")
+    private long deadLetterMaxLength;
+
+    private volatile boolean running;
+    private Thread worker;
+    private Counter replayed;
+    private Counter dropped;
+    private Counter failures;
+
+    // The entry at the head of the journal that keeps failing, and how often it did (worker thread only)
+    private UUID failingEntry;
+    private int failedAttempts;
+
+    @PostConstruct
+    void start() {
+        if (!messageJournal.isEnabled()) {
+            return;
+        }
+        replayed = meterRegistry.counter("notebridge.journal.replayed");
+        dropped = meterRegistry.counter("notebridge.journal.dropped");
+        failures = meterRegistry.counter("notebridge.journal.replay.failures");
+        running = true;
+        worker = Thread.ofPlatform().name("message-journal-replay").daemon().start(this::loop);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(retryIntervalMs);
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                if (replayBatch() == 0) {
+                    Thread.sleep(pollIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                failures.increment();
+                System.err.println("Message journal replay failed, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(retryIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Applies the next batch and returns the number of entries done
+    int replayBatch() throws Exception {
+        List<MessageJournal.Entry> entries = messageJournal.next(batchSize);
+        long last = -1;
+        try {
+            for (MessageJournal.Entry entry : entries) {
+                apply(entry);
+                last = entry.seq();
+            }
+        } finally {
+            if (last >= 0) {
+                messageJournal.applied(last);
+            }
+        }
+        return entries.size();
+    }
+
+    // Throws when the entry is to be tried again
+    private void apply(MessageJournal.Entry entry) throws Exception {
+        boolean saved;
+        try {
+            saved = messagesService.applyJournaled(entry);
+        } catch (Exception e) {
+            if (isTransient(e) || attemptFailed(entry) < maxAttempts) {
+                throw e;
+            }
+            deadLetter(entry, e.getClass().getSimpleName() + ": " + e.getMessage());
+            return;
+        }
+        if (saved) {
+            replayed.increment();
+        } else {
+            deadLetter(entry, "chat or sender not found, or sender not in the chat");
+        }
+        failingEntry = null;
+    }
+
+    private int attemptFailed(MessageJournal.Entry entry) {
+        if (!entry.id().equals(failingEntry)) {
+            failingEntry = entry.id();
+            failedAttempts = 0;
+        }
+        return ++failedAttempts;
+    }
+
+    // Failures that go away without the entry changing: MySQL unreachable or failing over, the chat being moved
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException
+                    || cause instanceof ChatShards.ChatMovingException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Throws when Redis is unavailable, the entry then stays at the head and is retried
+    private void deadLetter(MessageJournal.Entry entry, String reason) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("journalId", entry.id().toString());
+        fields.put("chatId", String.valueOf(entry.chatId()));
+        fields.put("senderId", String.valueOf(entry.senderId()));
+        fields.put("content", entry.content());
+        fields.put("sentAtMs", String.valueOf(entry.sentAtMs()));
+        fields.put("reason", reason);
+        stringRedisTemplate.opsForStream().add(StreamRecords.string(fields).withStreamKey(DEAD_LETTERS),
+                XAddOptions.maxlen(deadLetterMaxLength).approximateTrimming(true));
+        dropped.increment();
+        failingEntry = null;
+        System.err.println("Dead-lettered journaled message " + entry.id() + " for chat " + entry.chatId()
+                + " from user " + entry.senderId() + ": " + reason);
+    }
+}
@@ -0,0 +1,286 @@
+package com.notebridge.backend.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.notebridge.backend.dto.MessageSearchHit;
+import com.notebridge.backend.dto.MessageView;
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.dto.UserSummary;
+import com.notebridge.backend.entity.Chat;
+import com.notebridge.backend.entity.Message;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.ChatsRepo;
+import com.notebridge.backend.repository.MessagesRepo;
+import com.notebridge.backend.repository.UsersRepo;
+
+// Full-text search over the messages of the chats a user takes part in.
+// Each chat has its own in-memory inverted index (ChatMessageIndex), built from MySQL the first
+// time one of its participants searches and kept in an LRU of search.max-chats chats.
+// sendMessage adds new messages straight away; messages sent through other instances are
+// picked up before searching, by reading what was sent since the chat's index was last synced
+// whenever chat.lastMessageAt is newer. Results are ranked by BM25 term weight times a recency
+// boost that halves every search.half-life-days.
+// Messages are read from the shard of their chat (ChatShards). Their ids come from MessageIds and
+// are unique across shards; an index built from another shard than the chat's current one is
+// still rebuilt, as messages written before that sequence get new ids when ChatResharder moves them.
+@Service
+public class MessageSearchService {
+
+    private static final double K1 = 1.2;
+    // Read again when syncing, in case a message committed after a later one was read
+    private static final long SYNC_OVERLAP_SECONDS = 5;
+    private static final int MAX_PAGE_SIZE = 50;
+
+    @Autowired
+    private UsersRepo usersRepo;
+
+    @Autowired
+    private ChatsRepo chatsRepo;
+
+    @Autowired
+    private MessagesRepo messagesRepo;
+
+    @Autowired
+    private ChatShards chatShards;
+
+    @Value("${search.max-chats:10000}")
+    private int maxChats;
+
+    @Value("${search.snippet-chars:120}")
+    private int snippetChars;
+
+    @Value("${search.recency-weight:1.0}")
+    private double recencyWeight;
+
+    @Value("${search.half-life-days:30}")
+    private double halfLifeDays;
+
+    private final Map<Long, ChatMessageIndex> indexes = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, ChatMessageIndex> eldest) {
+                    return size() > maxChats;
+                }
+            });
+
+    record Scored(long chatId, long messageId, double score) {
+    }
+
+    record Ranking(List<Scored> top, int total) {
+    }
+
+    // Called by sendMessage; chats nobody searched yet are indexed on first search instead
+    public void index(Message message) {
+        ChatMessageIndex index = indexes.get(message.getChat().getId());
+        if (index != null) {
+            index.add(message.getId(), toMillis(message.getSentAt()), message.getContent());
+        }
+    }
+
+    public MessagesReqRes search(Long userId, String query, int page, int size) {
+        MessagesReqRes resp = new MessagesReqRes();
+
+        try {
+            Set<String> termSet = new LinkedHashSet<>();
+            ChatMessageIndex.tokenize(query, (term, start, end) -> termSet.add(term));
+            if (termSet.isEmpty()) {
+                resp.setStatusCode(400);
+                resp.setMessage("Search query must contain at least one word of " + ChatMessageIndex.MIN_TERM_LENGTH + " characters");
+                return resp;
+            }
+            User user = usersRepo.findById(userId).orElse(null);
+            if (user == null) {
+                resp.setStatusCode(404);
+                resp.setMessage("User not found with id: " + userId);
+                return resp;
+            }
+            int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+            int offset = Math.max(0, page) * pageSize;
+
+            // Only the chats the user is teacher or student in are searched
+            List<Chat> chats = chatsRepo.findByTeacherOrStudentOrderByLastMessageAtDesc(user, user);
+            List<ChatMessageIndex> chatIndexes = new ArrayList<>(chats.size());
+            for (Chat chat : chats) {
+                chatIndexes.add(indexFor(chat));
+            }
+
+            String[] terms = termSet.toArray(new String[0]);
+            Ranking ranking = rank(chatIndexes, terms, offset + pageSize, System.currentTimeMillis());
+            List<Scored> ranked = ranking.top();
+
+            List<Scored> pageHits = ranked.size() > offset ? ranked.subList(offset, Math.min(ranked.size(), offset + pageSize)) : List.of();
+            // Each shard reads the hits of its chats, grouped by chat as the chat says which shard holds them
+            Map<Long, List<Long>> hitIdsByChat = pageHits.stream().collect(Collectors.groupingBy(Scored::chatId,
+                    Collectors.mapping(Scored::messageId, Collectors.toList())));
+            Map<Long, Map<Long, Message>> messages = new HashMap<>();
+            for (List<Message> found : chatShards.gather(hitIdsByChat.keySet(), chatIds -> messagesRepo.findAllById(
+                    chatIds.stream().flatMap(chatId -> hitIdsByChat.get(chatId).stream()).toList()))) {
+                for (Message message : found) {
+                    messages.computeIfAbsent(message.getChat().getId(), chatId -> new HashMap<>()).put(message.getId(), message);
+                }
+            }
+
+            // Senders are participants of the searched chats
+            Map<Long, User> participants = new HashMap<>();
+            for (Chat chat : chats) {
+                participants.put(chat.getTeacher().getId(), chat.getTeacher());
+                participants.put(chat.getStudent().getId(), chat.getStudent());
+            }
+
+            List<MessageSearchHit> hits = new ArrayList<>();
+            List<User> senders = new ArrayList<>();
+            for (Scored scored : pageHits) {
+                Message message = messages.getOrDefault(scored.chatId(), Map.of()).get(scored.messageId());
+                if (message == null) {
+                    // Deleted since it was indexed
+                    continue;
+                }
+                hits.add(highlight(MessageView.of(message), scored.score(), termSet, snippetChars));
+                senders.add(participants.get(message.getSender().getId()));
+            }
+            resp.setSearchResults(hits);
+            resp.setUsers(UserSummary.mapOf(senders));
+            resp.setTotalMessageCount((long) ranking.total());
+            resp.setStatusCode(200);
+            resp.setMessage("Search completed successfully");
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Top `limit` matches across the chats, best first, and the number of matches
+    Ranking rank(List<ChatMessageIndex> chatIndexes, String[] terms, int limit, long nowMs) {
+        long documents = 0;
+        long[] documentFrequencies = new long[terms.length];
+        for (ChatMessageIndex index : chatIndexes) {
+            documents += index.size();
+            for (int i = 0; i < terms.length; i++) {
+                documentFrequencies[i] += index.documentFrequency(terms[i]);
+            }
+        }
+        double[] idf = new double[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            idf[i] = Math.log(1 + (documents - documentFrequencies[i] + 0.5) / (documentFrequencies[i] + 0.5));
+        }
+
+        double decayPerMs = Math.log(2) / (halfLifeDays * 86_400_000L);
+        PriorityQueue<Scored> top = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        int[] total = new int[1];
+        for (ChatMessageIndex index : chatIndexes) {
+            index.match(terms, (messageId, sentAtMs, frequencies) -> {
+                double score = 0;
+                for (int i = 0; i < frequencies.length; i++) {
+                    score += idf[i] * frequencies[i] * (K1 + 1) / (frequencies[i] + K1);
+                }
+                double age = Math.max(0, nowMs - sentAtMs);
+                score *= 1 + recencyWeight * Math.exp(-age * decayPerMs);
+                total[0]++;
+                if (top.size() < limit) {
+                    top.add(new Scored(index.chatId(), messageId, score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new Scored(index.chatId(), messageId, score));
+                }
+            });
+        }
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingDouble(Scored::score).reversed());
+        return new Ranking(ranked, total[0]);
+    }
+
+    // Excerpt of about maxChars around the first matched word, with every matched word in it highlighted
+    static MessageSearchHit highlight(MessageView message, double score, Set<String> terms, int maxChars) {
+        String content = message.content() != null ? message.content() : "";
+        List<int[]> matches = new ArrayList<>();
+        ChatMessageIndex.tokenize(content, (term, start, end) -> {
+            if (terms.contains(term)) {
+                matches.add(new int[] {start, end});
+            }
+        });
+
+        int from = 0;
+        if (content.length() > maxChars && !matches.isEmpty()) {
+            // Some context before the first match, starting on a word boundary
+            from = Math.max(0, matches.get(0)[0] - maxChars / 3);
+            while (from > 0 && !Character.isWhitespace(content.charAt(from - 1))) {
+                from--;
+            }
+            from = Math.min(from, Math.max(0, content.length() - maxChars));
+        }
+        int to = Math.min(content.length(), from + maxChars);
+        if (to < content.length()) {
+            // End on a word boundary too, unless that would cut the snippet short
+            int boundary = to;
+            while (boundary > from && !Character.isWhitespace(content.charAt(boundary))) {
+                boundary--;
+            }
+            if (boundary > from + maxChars / 2) {
+                to = boundary;
+            }
+        }
+        String prefix = from > 0 ? "…" : "";
+        String suffix = to < content.length() ? "…" : "";
+        String snippet = prefix + content.substring(from, to) + suffix;
+
+        List<MessageSearchHit.Span> spans = new ArrayList<>();
+        for (int[] match : matches) {
+            if (match[0] >= from && match[1] <= to) {
+                spans.add(new MessageSearchHit.Span(match[0] - from + prefix.length(), match[1] - from + prefix.length()));
+            }
+        }
+        return new MessageSearchHit(message, score, snippet, spans);
+    }
+
+    // The chat's index, built or brought up to date with the messages sent since it was last synced
+    private ChatMessageIndex indexFor(Chat chat) {
+        String shard = chatShards.locate(chat.getId()).shard();
+        ChatMessageIndex index = indexes.get(chat.getId());
+        if (index == null || !index.shard().equals(shard)) {
+            LocalDateTime syncedAt = LocalDateTime.now();
+            ChatMessageIndex built = new ChatMessageIndex(chat.getId(), shard, syncedAt);
+            for (MessagesRepo.IndexedMessage message : chatShards.run(shard, true, () -> messagesRepo.findByChatOrderByIdAsc(chat))) {
+                built.add(message.getId(), toMillis(message.getSentAt()), message.getContent());
+            }
+            if (index != null) {
+                // The chat was moved to another shard
+                indexes.put(chat.getId(), built);
+                return built;
+            }
+            ChatMessageIndex existing = indexes.putIfAbsent(chat.getId(), built);
+            return existing != null ? existing : built;
+        }
+        LocalDateTime previous = index.syncedAt();
+        if (chat.getLastMessageAt() != null && !chat.getLastMessageAt().isBefore(previous)) {
+            LocalDateTime syncedAt = LocalDateTime.now();
+            for (MessagesRepo.IndexedMessage message : chatShards.run(shard, true, () -> messagesRepo.findByChatAndSentAtGreaterThanEqualOrderByIdAsc(
+                    chat, previous.minusSeconds(SYNC_OVERLAP_SECONDS)))) {
+                index.add(message.getId(), toMillis(message.getSentAt()), message.getContent());
+            }
+            index.markSynced(syncedAt);
+        }
+        return index;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
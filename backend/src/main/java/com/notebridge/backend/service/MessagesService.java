@@ -1,7 +1,14 @@
 package com.notebridge.backend.service;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -9,8 +16,12 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.notebridge.backend.dto.MessageView;
 import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.dto.UserSummary;
 import com.notebridge.backend.entity.Chat;
 import com.notebridge.backend.entity.Message;
 import com.notebridge.backend.entity.User;
@@ -30,6 +41,21 @@ public class MessagesService {
     @Autowired
     private UsersRepo usersRepo;
 
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private MessageSearchService messageSearchService;
+
+    @Autowired
+    private MessageJournal messageJournal;
+
+    @Autowired
+    private ChatShards chatShards;
+
+    @Autowired
+    private MessageIds messageIds;
+
     // Send message to chat
     @Transactional
     public MessagesReqRes sendMessage(Long chatId, Long senderId, String content) {
@@ -57,24 +83,17 @@ public class MessagesService {
                 return resp;
             }
             
-            // Create new message
-            Message message = new Message();
-            message.setChat(chat);
-            message.setSender(sender);
-            message.setContent(content);
-            message.setSentAt(LocalDateTime.now());
-            message.setRead(false);
-            
-            Message savedMessage = messagesRepo.save(message);
+            Message savedMessage = saveMessage(chat, sender, content, LocalDateTime.now(), null);
             
-            // Update chat's last message time
-            chat.setLastMessageAt(LocalDateTime.now());
-            chatsRepo.save(chat);
-            
-            resp.setMessageObject(savedMessage);
+            resp.setMessageObject(MessageView.of(savedMessage));
+            resp.setUsers(UserSummary.mapOf(List.of(sender)));
             resp.setStatusCode(201);
             resp.setMessage("Message sent successfully");
+        } catch (ChatShards.ChatMovingException e) {
+            resp.setStatusCode(503);
+            resp.setMessage(e.getMessage());
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -88,6 +107,91 @@ public class MessagesService {
         return sendMessage(messageRequest.getChatId(), senderId, messageRequest.getContent());
     }
 
+    // Send message through the local journal (messages.journal.enabled): acknowledged once it is on
+    // local disk and written to MySQL shortly after by MessageJournalReplayer, which checks chat and
+    // sender then. Needs no database, so sends keep working while MySQL fails over.
+    public MessagesReqRes journalMessage(MessagesReqRes messageRequest, Long senderId) {
+        MessagesReqRes resp = new MessagesReqRes();
+        Long chatId = messageRequest.getChatId();
+        String content = messageRequest.getContent();
+        if (chatId == null || content == null || content.isBlank() || content.length() > 1000) {
+            resp.setStatusCode(400);
+            resp.setMessage("chatId and content (at most 1000 characters) are required");
+            return resp;
+        }
+        try {
+            MessageJournal.Entry entry = messageJournal.append(chatId, senderId, content);
+            resp.setMessageObject(new MessageView(null, chatId, senderId, content, toLocalDateTime(entry.sentAtMs()), false));
+            resp.setStatusCode(202);
+            resp.setMessage("Message accepted");
+        } catch (IOException e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Writes a journaled send to MySQL. Returns false when it cannot be saved (chat or sender gone,
+    // sender not in the chat) and throws when MySQL fails, so the entry is tried again.
+    @Transactional
+    public boolean applyJournaled(MessageJournal.Entry entry) {
+        String journalId = entry.id().toString();
+        if (chatShards.read(entry.chatId(), () -> messagesRepo.existsByJournalId(journalId))) {
+            return true;
+        }
+        Chat chat = chatsRepo.findById(entry.chatId()).orElse(null);
+        User sender = usersRepo.findById(entry.senderId()).orElse(null);
+        if (chat == null || sender == null
+                || (!chat.getTeacher().getId().equals(sender.getId()) && !chat.getStudent().getId().equals(sender.getId()))) {
+            return false;
+        }
+        saveMessage(chat, sender, entry.content(), toLocalDateTime(entry.sentAtMs()), journalId);
+        return true;
+    }
+
+    private Message saveMessage(Chat chat, User sender, String content, LocalDateTime sentAt, String journalId) {
+        // Create new message
+        Message message = new Message();
+        message.setChat(chat);
+        message.setSender(sender);
+        message.setContent(content);
+        message.setSentAt(sentAt);
+        message.setRead(false);
+        message.setJournalId(journalId);
+        message.setId(messageIds.next());
+
+        // On a shard the message commits on its own, it is deleted again if the chat update or event
+        // below roll back. Indexed once all of it committed
+        Message savedMessage = chatShards.write(chat.getId(), () -> messagesRepo.save(message),
+                saved -> messagesRepo.deleteById(saved.getId()));
+        afterCommit(() -> messageSearchService.index(savedMessage));
+
+        // Update chat's last message time
+        chat.setLastMessageAt(LocalDateTime.now());
+        chatsRepo.save(chat);
+        outboxService.record("Chat", chat.getId(), "MessageSent",
+                Map.of("messageId", savedMessage.getId(), "chatId", chat.getId(), "senderId", sender.getId()), List.of());
+        return savedMessage;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
     // Get chat messages with pagination
     public MessagesReqRes getChatMessages(Long chatId, Long userId, int page, int size) {
         MessagesReqRes resp = new MessagesReqRes();
@@ -115,11 +219,11 @@ public class MessagesService {
             }
             
             Pageable pageable = PageRequest.of(page, size);
-            Page<Message> messagesPage = messagesRepo.findByChatOrderBySentAtDesc(chat, pageable);
+            Page<Message> messagesPage = chatShards.read(chatId, () -> messagesRepo.findByChatOrderBySentAtDesc(chat, pageable));
             
-            resp.setMessagesList(messagesPage.getContent());
+            setMessages(resp, messagesPage.getContent(), chat);
             resp.setTotalMessageCount(messagesPage.getTotalElements());
-            resp.setUnreadMessageCount(messagesRepo.countUnreadMessages(chat, user));
+            resp.setUnreadMessageCount(chatShards.read(chatId, () -> messagesRepo.countUnreadMessages(chat, user)));
             resp.setStatusCode(200);
             resp.setMessage("Messages retrieved successfully");
         } catch (Exception e) {
@@ -156,11 +260,11 @@ public class MessagesService {
                 return resp;
             }
             
-            List<Message> messages = messagesRepo.findTop50ByChatOrderBySentAtDesc(chat);
+            List<Message> messages = chatShards.read(chatId, () -> messagesRepo.findTop50ByChatOrderBySentAtDesc(chat));
             
-            resp.setMessagesList(messages);
+            setMessages(resp, messages, chat);
             resp.setTotalMessageCount((long) messages.size());
-            resp.setUnreadMessageCount(messagesRepo.countUnreadMessages(chat, user));
+            resp.setUnreadMessageCount(chatShards.read(chatId, () -> messagesRepo.countUnreadMessages(chat, user)));
             resp.setStatusCode(200);
             resp.setMessage("Recent messages retrieved successfully");
         } catch (Exception e) {
@@ -198,17 +302,26 @@ public class MessagesService {
                 return resp;
             }
             
-            // Count unread messages before marking as read
-            long unreadCount = messagesRepo.countUnreadMessages(chat, user);
-            
-            // Mark messages as read
-            messagesRepo.markMessagesAsRead(chat, user);
+            // Count unread messages, then mark them as read
+            long unreadCount = chatShards.write(chatId, () -> {
+                long count = messagesRepo.countUnreadMessages(chat, user);
+                messagesRepo.markMessagesAsRead(chat, user);
+                return count;
+            });
+            if (unreadCount > 0) {
+                outboxService.record("Chat", chatId, "MessagesRead",
+                        Map.of("chatId", chatId, "readerId", userId, "count", unreadCount), List.of());
+            }
             
             resp.setMessagesMarkedAsRead((int) unreadCount);
             resp.setUnreadMessageCount(0L);
             resp.setStatusCode(200);
             resp.setMessage("Messages marked as read successfully");
+        } catch (ChatShards.ChatMovingException e) {
+            resp.setStatusCode(503);
+            resp.setMessage(e.getMessage());
         } catch (Exception e) {
+            OutboxService.rollbackOnly();
             resp.setStatusCode(500);
             resp.setMessage("Internal Server Error");
             resp.setError(e.getMessage());
@@ -242,7 +355,7 @@ public class MessagesService {
                 return resp;
             }
             
-            long unreadCount = messagesRepo.countUnreadMessages(chat, user);
+            long unreadCount = chatShards.read(chatId, () -> messagesRepo.countUnreadMessages(chat, user));
             
             resp.setUnreadMessageCount(unreadCount);
             resp.setStatusCode(200);
@@ -266,8 +379,25 @@ public class MessagesService {
                 resp.setMessage("User not found with id: " + userId);
                 return resp;
             }
-            
-            long totalUnreadCount = messagesRepo.countTotalUnreadMessages(user);
+            return getTotalUnreadMessageCount(user);
+        } catch (Exception e) {
+            resp.setStatusCode(500);
+            resp.setMessage("Internal Server Error");
+            resp.setError(e.getMessage());
+        }
+        return resp;
+    }
+
+    // Get total unread message count of an already resolved user
+    public MessagesReqRes getTotalUnreadMessageCount(User user) {
+        MessagesReqRes resp = new MessagesReqRes();
+        
+        try {
+            // With shards, each one counts the unread messages of the user's chats it holds
+            long totalUnreadCount = chatShards.isEnabled()
+                    ? chatShards.gather(chatsRepo.findIdsByParticipant(user),
+                            chatIds -> messagesRepo.countUnreadMessagesInChats(chatIds, user)).stream().mapToLong(Long::longValue).sum()
+                    : messagesRepo.countTotalUnreadMessages(user);
             
             resp.setUnreadMessageCount(totalUnreadCount);
             resp.setStatusCode(200);
@@ -279,4 +409,14 @@ public class MessagesService {
         }
         return resp;
     }
+
+    // Responses carry message views, with each sender sideloaded once. Senders are participants,
+    // taken from the chat (messages only hold their ids)
+    private void setMessages(MessagesReqRes resp, List<Message> messages, Chat chat) {
+        resp.setMessagesList(messages.stream().map(MessageView::of).toList());
+        Set<Long> senderIds = messages.stream().map(message -> message.getSender().getId()).collect(Collectors.toSet());
+        resp.setUsers(UserSummary.mapOf(Stream.of(chat.getTeacher(), chat.getStudent())
+                .filter(user -> senderIds.contains(user.getId()))
+                .toList()));
+    }
 }
@@ -0,0 +1,200 @@
+package com.notebridge.backend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.google.common.util.concurrent.RateLimiter;
+import com.notebridge.backend.repository.FilesRepo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+// Mark and sweep over the picture objects in the bucket. Mark streams every profileUrl and
+// imageUrl into a set of referenced object names; sweep lists the picture prefixes page by page
+// and deletes what is not referenced, in batch requests and at most max-deletes-per-second.
+// Objects younger than min-age-hours are left alone, their upload may not have committed yet.
+// A content-addressed object (see FilesService) is only deleted together with its files row,
+// and that row only goes when it has had no references for min-age-hours; an upload that reuses
+// the object meanwhile keeps the row and so the object. Deletes name the generation that was
+// listed, so an object written again after the listing survives. One instance runs at a time.
+@Service
+public class OrphanFileCollector {
+
+    private static final String LOCK_KEY = "files:gc:lock";
+    // Object prefixes holding pictures, everything else in the bucket is not ours to collect
+    private static final List<String> PREFIXES = List.of(FilesService.OBJECT_PREFIX, "profile_pictures/", "lesson_pictures/");
+
+    @Autowired
+    private FilesService filesService;
+
+    @Autowired
+    private FilesRepo filesRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${files.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${files.gc.min-age-hours:24}")
+    private long minAgeHours;
+
+    @Value("${files.gc.page-size:1000}")
+    private int pageSize;
+
+    // Storage batch requests take at most 100 calls
+    @Value("${files.gc.delete-batch-size:100}")
+    private int deleteBatchSize;
+
+    @Value("${files.gc.max-deletes-per-second:50}")
+    private double maxDeletesPerSecond;
+
+    @Value("${files.gc.max-deletes-per-run:10000}")
+    private int maxDeletesPerRun;
+
+    @Value("${files.gc.lease-minutes:60}")
+    private long leaseMinutes;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong referenced = new AtomicLong();
+    private Counter scanned;
+    private Counter deleted;
+    private Counter failures;
+    private Timer duration;
+
+    @PostConstruct
+    void start() {
+        scanned = meterRegistry.counter("notebridge.files.gc.scanned");
+        deleted = meterRegistry.counter("notebridge.files.gc.deleted");
+        failures = meterRegistry.counter("notebridge.files.gc.failures");
+        duration = meterRegistry.timer("notebridge.files.gc.duration");
+        meterRegistry.gauge("notebridge.files.gc.referenced", referenced);
+    }
+
+    @Scheduled(initialDelayString = "${files.gc.initial-delay-ms:600000}", fixedDelayString = "${files.gc.interval-ms:86400000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        Duration lease = Duration.ofMinutes(leaseMinutes);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, instanceId, lease))) {
+            return;
+        }
+        try {
+            int count = duration.recordCallable(this::collect);
+            System.out.println("Orphan file collection deleted " + count + " objects");
+        } catch (Exception e) {
+            failures.increment();
+            System.err.println("Orphan file collection failed: " + e.getMessage());
+        } finally {
+            if (instanceId.equals(stringRedisTemplate.opsForValue().get(LOCK_KEY))) {
+                stringRedisTemplate.delete(LOCK_KEY);
+            }
+        }
+    }
+
+    // One mark and sweep, returns the number of objects deleted
+    int collect() {
+        Set<String> marked = mark();
+        referenced.set(marked.size());
+
+        Storage storage = filesService.storage();
+        RateLimiter rateLimiter = RateLimiter.create(maxDeletesPerSecond);
+        OffsetDateTime youngest = OffsetDateTime.now().minusHours(minAgeHours);
+        int total = 0;
+        for (String prefix : PREFIXES) {
+            Page<Blob> page = storage.list(filesService.bucketName(), Storage.BlobListOption.prefix(prefix),
+                    Storage.BlobListOption.pageSize(pageSize));
+            List<Blob> candidates = new ArrayList<>();
+            while (page != null && total < maxDeletesPerRun) {
+                for (Blob blob : page.getValues()) {
+                    if (total >= maxDeletesPerRun) {
+                        break;
+                    }
+                    scanned.increment();
+                    OffsetDateTime created = blob.getCreateTimeOffsetDateTime();
+                    if (!marked.contains(blob.getName()) && created != null && created.isBefore(youngest)) {
+                        candidates.add(blob);
+                    }
+                    if (candidates.size() >= deleteBatchSize) {
+                        total += sweep(storage, candidates, rateLimiter);
+                        candidates.clear();
+                    }
+                }
+                page = page.hasNextPage() ? page.getNextPage() : null;
+            }
+            if (!candidates.isEmpty() && total < maxDeletesPerRun) {
+                total += sweep(storage, candidates, rateLimiter);
+            }
+        }
+        return total;
+    }
+
+    // Object names referenced by any user or lesson, read as a stream
+    Set<String> mark() {
+        Set<String> marked = new HashSet<>();
+        for (String sql : List.of("SELECT profile_url FROM users WHERE profile_url IS NOT NULL",
+                "SELECT image_url FROM lessons WHERE image_url IS NOT NULL")) {
+            jdbcTemplate.query(sql, rs -> {
+                String objectName = filesService.objectName(rs.getString(1));
+                if (objectName != null) {
+                    marked.add(objectName);
+                }
+            });
+        }
+        return marked;
+    }
+
+    // Deletes one batch of unreferenced objects and returns how many went
+    private int sweep(Storage storage, List<Blob> candidates, RateLimiter rateLimiter) {
+        Map<String, Blob> byName = new HashMap<>();
+        candidates.forEach(blob -> byName.put(blob.getName(), blob));
+
+        // Objects with a files row go only if the row can be deleted, i.e. nothing references it (any more)
+        List<String> recorded = filesRepo.findObjectNames(byName.keySet());
+        if (!recorded.isEmpty()) {
+            filesRepo.deleteUnreferenced(recorded, LocalDateTime.now().minusHours(minAgeHours));
+            byName.keySet().removeAll(filesRepo.findObjectNames(recorded));
+        }
+        if (byName.isEmpty()) {
+            return 0;
+        }
+
+        List<BlobId> ids = byName.values().stream()
+                .map(blob -> BlobId.of(blob.getBucket(), blob.getName(), blob.getGeneration()))
+                .toList();
+        rateLimiter.acquire(ids.size());
+        List<Boolean> results = storage.delete(ids);
+        int count = (int) results.stream().filter(Boolean.TRUE::equals).count();
+        deleted.increment(count);
+        return count;
+    }
+}
@@ -0,0 +1,284 @@
+package com.notebridge.backend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.notebridge.backend.entity.OutboxEvent;
+import com.notebridge.backend.repository.OutboxRepo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Delivers outbox events: invalidates the cache entries they list (evicting them, or bumping their
+// generation for versioned caches, see CacheGenerations) and appends the event to the
+// domain-events Redis stream, then marks them published. Delivery is at least once (a crash
+// between delivering and marking repeats the batch), so stream consumers dedupe on outboxId.
+// Events are read in id order and a failed event holds back the later events of the same
+// aggregate, which keeps per-aggregate order. A failed event is retried with a doubling backoff
+// and parked (failed_at) after outbox.max-attempts, so it cannot stall the rest of the outbox.
+// One instance relays at a time (Redis lease).
+@Service
+public class OutboxRelay {
+
+    public static final String STREAM = "domain-events";
+    private static final String LEASE_KEY = "outbox:relay:lease";
+
+    @Autowired
+    private OutboxRepo outboxRepo;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CacheGenerations cacheGenerations;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.lease-seconds:15}")
+    private long leaseSeconds;
+
+    @Value("${outbox.stream-max-length:100000}")
+    private long streamMaxLength;
+
+    @Value("${outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    @Value("${outbox.retry-max-backoff-ms:300000}")
+    private long retryMaxBackoffMs;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final DefaultRedisScript<Long> renewScript;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong oldestAgeMs = new AtomicLong();
+    private ExecutorService executor;
+    private Timer lag;
+    private Counter failures;
+    private Counter parked;
+
+    public OutboxRelay() {
+        renewScript = new DefaultRedisScript<>();
+        renewScript.setLocation(new ClassPathResource("scripts/lease_renew.lua"));
+        renewScript.setResultType(Long.class);
+    }
+
+    @PostConstruct
+    void start() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        lag = Timer.builder("notebridge.outbox.lag")
+                .description("Time from commit to delivery")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        failures = meterRegistry.counter("notebridge.outbox.failures");
+        parked = meterRegistry.counter("notebridge.outbox.parked");
+        meterRegistry.gauge("notebridge.outbox.pending", pending);
+        meterRegistry.gauge("notebridge.outbox.oldest.age.ms", oldestAgeMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    // Called after a commit that wrote events, so invalidations do not wait for the next poll
+    public void wake() {
+        executor.execute(this::relay);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void relay() {
+        requested.set(true);
+        if (!running.compareAndSet(false, true)) {
+            // The running pass will go round once more
+            return;
+        }
+        try {
+            while (requested.getAndSet(false)) {
+                if (!holdsLease()) {
+                    return;
+                }
+                while (deliverBatch() == batchSize) {
+                    // Backlog, keep draining
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Outbox relay failed: " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        try {
+            outboxRepo.deletePublishedBefore(LocalDateTime.now().minusHours(retentionHours));
+        } catch (Exception e) {
+            System.err.println("Outbox cleanup failed: " + e.getMessage());
+        }
+    }
+
+    // Delivers the next batch and returns the number of events delivered
+    int deliverBatch() {
+        List<OutboxEvent> batch = outboxRepo.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            pending.set(0);
+            oldestAgeMs.set(0);
+            return 0;
+        }
+        oldestAgeMs.set(Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now()).toMillis());
+
+        // Every event of the batch is committed, so an entry evicted once is fresh for all of them
+        Set<String> evicted = new HashSet<>();
+        Set<String> blockedAggregates = new HashSet<>();
+        List<Long> delivered = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        for (OutboxEvent event : batch) {
+            String aggregate = event.getAggregateType() + ":" + event.getAggregateId();
+            if (blockedAggregates.contains(aggregate)) {
+                continue;
+            }
+            try {
+                if (event.getInvalidations() != null) {
+                    List<String> namespaces = new ArrayList<>();
+                    for (String invalidation : event.getInvalidations().split(",")) {
+                        if (evicted.contains(invalidation)) {
+                            continue;
+                        }
+                        if (isVersioned(invalidation)) {
+                            namespaces.add(invalidation);
+                        } else {
+                            evict(invalidation);
+                            evicted.add(invalidation);
+                        }
+                    }
+                    // All the versioned entries of the event in one round trip
+                    cacheGenerations.bump(namespaces);
+                    evicted.addAll(namespaces);
+                }
+                append(event);
+                delivered.add(event.getId());
+                lag.record(Duration.between(event.getCreatedAt(), LocalDateTime.now()));
+            } catch (Exception e) {
+                System.err.println("Failed to deliver outbox event " + event.getId() + ": " + e.getMessage());
+                blockedAggregates.add(aggregate);
+                failed.add(event);
+                failures.increment();
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            outboxRepo.markPublished(delivered, LocalDateTime.now());
+        }
+        for (OutboxEvent event : failed) {
+            int attempts = event.getAttempts() + 1;
+            if (attempts >= maxAttempts) {
+                System.err.println("Parking outbox event " + event.getId() + " after " + attempts + " failed deliveries");
+                outboxRepo.markFailed(event.getId(), LocalDateTime.now());
+                parked.increment();
+            } else {
+                outboxRepo.retryLater(event.getId(), LocalDateTime.now().plus(backoff(attempts)));
+            }
+        }
+        pending.set(batch.size() < batchSize ? batch.size() - delivered.size() : outboxRepo.countByPublishedAtIsNullAndFailedAtIsNull());
+        return delivered.size();
+    }
+
+    // retry-backoff-ms after the first failure, doubling up to retry-max-backoff-ms
+    private Duration backoff(int attempts) {
+        long backoffMs = retryBackoffMs << Math.min(attempts - 1, 20);
+        return Duration.ofMillis(Math.min(backoffMs, retryMaxBackoffMs));
+    }
+
+    // A single entry of a versioned cache; clearing a whole cache still goes through evict()
+    private static boolean isVersioned(String invalidation) {
+        int separator = invalidation.indexOf("::");
+        return CacheGenerations.isVersioned(invalidation.substring(0, separator))
+                && !"*".equals(invalidation.substring(separator + 2));
+    }
+
+    private void evict(String invalidation) {
+        int separator = invalidation.indexOf("::");
+        Cache cache = cacheManager.getCache(invalidation.substring(0, separator));
+        if (cache == null) {
+            return;
+        }
+        String key = invalidation.substring(separator + 2);
+        if ("*".equals(key)) {
+            cache.clear();
+        } else {
+            cache.evict(parseKey(key));
+        }
+    }
+
+    // The @Cacheable methods are keyed by Long ids or by string constants
+    private static Object parseKey(String key) {
+        try {
+            return Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            return key;
+        }
+    }
+
+    private void append(OutboxEvent event) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("outboxId", String.valueOf(event.getId()));
+        fields.put("aggregateType", event.getAggregateType());
+        fields.put("aggregateId", String.valueOf(event.getAggregateId()));
+        fields.put("type", event.getEventType());
+        fields.put("payload", event.getPayload() != null ? event.getPayload() : "{}");
+        fields.put("createdAt", event.getCreatedAt().toString());
+        stringRedisTemplate.opsForStream().add(StreamRecords.string(fields).withStreamKey(STREAM),
+                XAddOptions.maxlen(streamMaxLength).approximateTrimming(true));
+    }
+
+    private boolean holdsLease() {
+        Duration ttl = Duration.ofSeconds(leaseSeconds);
+        if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(LEASE_KEY, instanceId, ttl))) {
+            return true;
+        }
+        // Extended only if still ours, in one step so a lease taken over meanwhile is left alone
+        Long renewed = stringRedisTemplate.execute(renewScript, List.of(LEASE_KEY), instanceId, String.valueOf(ttl.toMillis()));
+        return renewed != null && renewed == 1L;
+    }
+}
@@ -0,0 +1,63 @@
+package com.notebridge.backend.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notebridge.backend.entity.OutboxEvent;
+import com.notebridge.backend.repository.OutboxRepo;
+
+// Writes domain events and the cache entries they make stale to the outbox table,
+// inside the caller's transaction: they exist if and only if the change committed.
+// Nothing touches Redis on the request thread, the relay is only woken after commit.
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxRepo outboxRepo;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String aggregateType, Long aggregateId, String eventType,
+                       Map<String, ?> payload, Collection<String> invalidations) {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateId(aggregateId);
+        event.setEventType(eventType);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", e);
+        }
+        event.setInvalidations(invalidations.isEmpty() ? null : String.join(",", invalidations));
+        outboxRepo.save(event);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wake();
+            }
+        });
+    }
+
+    // For services that turn exceptions into error responses: the change and its events are discarded together
+    public static void rollbackOnly() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.notebridge.backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Runs every BCrypt operation on a small dedicated pool instead of on Tomcat threads.
+// The pool is sized to the cores (minus one left for request handling) and its queue is
+// bounded, so a login storm is shed with 503s instead of starving chat and lesson traffic.
+// Verifications and new hashes run before background rehashes.
+@Service
+public class PasswordHashingService {
+
+    // Lower value runs first
+    public static final int PRIORITY_INTERACTIVE = 0;
+    public static final int PRIORITY_BACKGROUND = 10;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${security.bcrypt.strength:10}")
+    private int strength;
+
+    @Value("${security.bcrypt.pool-size:0}")
+    private int poolSize;
+
+    @Value("${security.bcrypt.queue-capacity:64}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    private Semaphore queueSlots;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile String dummyHash;
+
+    @PostConstruct
+    void start() {
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // The priority queue is unbounded, so in-flight work is capped with permits
+        queueSlots = new Semaphore(threads + queueCapacity);
+        meterRegistry.gauge("notebridge.bcrypt.queue.depth", executor, pool -> pool.getQueue().size());
+        meterRegistry.gauge("notebridge.bcrypt.active", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+    }
+
+    // Completes with true when the raw password matches the hash.
+    // A null hash (unknown user) is still checked against a dummy hash so timing does not reveal it.
+    public CompletableFuture<Boolean> verify(String rawPassword, String encodedPassword) {
+        return submit(PRIORITY_INTERACTIVE, () -> {
+            if (rawPassword == null) {
+                return false;
+            }
+            if (encodedPassword == null) {
+                passwordEncoder.matches(rawPassword, dummyHash());
+                return false;
+            }
+            return passwordEncoder.matches(rawPassword, encodedPassword);
+        });
+    }
+
+    public CompletableFuture<String> hash(String rawPassword) {
+        return hash(rawPassword, PRIORITY_INTERACTIVE);
+    }
+
+    public CompletableFuture<String> hash(String rawPassword, int priority) {
+        return submit(priority, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    // True when the hash was made with a different cost than the configured one
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || !encodedPassword.startsWith("$2")) {
+            return false;
+        }
+        try {
+            int cost = Integer.parseInt(encodedPassword.substring(4, 6));
+            return cost != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // True when the work was refused because the queue was full, also when wrapped by join()
+    public static boolean isRejected(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RejectedExecutionException;
+    }
+
+    private String dummyHash() {
+        if (dummyHash == null) {
+            dummyHash = passwordEncoder.encode("notebridge-user-not-found");
+        }
+        return dummyHash;
+    }
+
+    // Fails fast with RejectedExecutionException once the queue is full
+    private <T> CompletableFuture<T> submit(int priority, Supplier<T> work) {
+        if (!queueSlots.tryAcquire()) {
+            meterRegistry.counter("notebridge.bcrypt.rejected").increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Password hashing queue is full"));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(new PrioritizedTask(priority, sequence.getAndIncrement(), () -> {
+                try {
+                    future.complete(work.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    queueSlots.release();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            queueSlots.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // FIFO within the same priority
+    private record PrioritizedTask(int priority, long sequence, Runnable work) implements Runnable, Comparable<PrioritizedTask> {
+        @Override
+        public void run() {
+            work.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int cmp = Integer.compare(priority, other.priority);
+            return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+        }
+    }
+}
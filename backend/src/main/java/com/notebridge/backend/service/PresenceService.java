@@ -0,0 +1,234 @@
+package com.notebridge.backend.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notebridge.backend.dto.ChatEvent;
+import com.notebridge.backend.entity.Chat;
+
+// Online/away state and typing indicators.
+// Heartbeats are Redis keys that expire, so a client that disappears goes OFFLINE on its own.
+// Events cross instances over one Redis pub/sub channel and are then fanned out in memory
+// to the SSE connections subscribed on this instance. Nothing here touches MySQL,
+// except the one chat lookup done by ChatsService when a subscription is opened.
+@Service
+public class PresenceService implements MessageListener {
+
+    public static final String CHANNEL = "chat-events";
+    private static final String PRESENCE_PREFIX = "presence:user:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${presence.ttl-seconds:45}")
+    private long ttlSeconds;
+
+    @Value("${presence.subscription-timeout-ms:1800000}")
+    private long subscriptionTimeoutMs;
+
+    // chat id -> open connections on this instance
+    private final Map<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    // user id -> chats watched on this instance in which the user takes part
+    private final Map<Long, Set<Long>> watchedUsers = new ConcurrentHashMap<>();
+    // last status seen for each watched user, used to detect expiry
+    private final Map<Long, String> lastStatus = new ConcurrentHashMap<>();
+    // chat id -> participants, so typing events can be authorized without a query
+    private final Map<Long, List<Long>> participantsByChat = new ConcurrentHashMap<>();
+
+    // Refreshes the user's heartbeat; publishes an event only when the status changes.
+    // One SET ... EX ... GET, so the key never exists without its expiry.
+    public String heartbeat(Long userId, String status) {
+        String normalized = "AWAY".equals(status) ? "AWAY" : "ONLINE";
+        String previous = stringRedisTemplate.opsForValue().setGet(PRESENCE_PREFIX + userId, normalized, Duration.ofSeconds(ttlSeconds));
+        if (!normalized.equals(previous)) {
+            publish(new ChatEvent("presence", null, userId, normalized, null, LocalDateTime.now()));
+        }
+        return normalized;
+    }
+
+    // Explicit sign-off, no need to wait for the heartbeat to expire
+    public void goOffline(Long userId) {
+        Boolean existed = stringRedisTemplate.delete(PRESENCE_PREFIX + userId);
+        if (Boolean.TRUE.equals(existed)) {
+            publish(new ChatEvent("presence", null, userId, "OFFLINE", null, LocalDateTime.now()));
+        }
+    }
+
+    public void typing(Long chatId, Long userId, boolean typing) {
+        publish(new ChatEvent("typing", chatId, userId, null, typing, LocalDateTime.now()));
+    }
+
+    // Participants of a chat seen before on this instance, null if unknown
+    public List<Long> knownParticipants(Long chatId) {
+        return participantsByChat.get(chatId);
+    }
+
+    public void rememberParticipants(Chat chat) {
+        participantsByChat.put(chat.getId(), List.of(chat.getTeacher().getId(), chat.getStudent().getId()));
+    }
+
+    // Status of each user with a single MGET
+    public Map<Long, String> getPresence(List<Long> userIds) {
+        Map<Long, String> presence = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return presence;
+        }
+        List<String> keys = userIds.stream().map(id -> PRESENCE_PREFIX + id).toList();
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < userIds.size(); i++) {
+            String value = values != null ? values.get(i) : null;
+            presence.put(userIds.get(i), value != null ? value : "OFFLINE");
+        }
+        return presence;
+    }
+
+    // Opens an event stream for a chat the caller is known to take part in
+    public SseEmitter subscribe(Chat chat) {
+        Long chatId = chat.getId();
+        rememberParticipants(chat);
+        List<Long> participants = participantsByChat.get(chatId);
+        SseEmitter emitter = new SseEmitter(subscriptionTimeoutMs);
+
+        subscribers.computeIfAbsent(chatId, id -> ConcurrentHashMap.newKeySet()).add(emitter);
+        for (Long userId : participants) {
+            watchedUsers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(chatId);
+        }
+        Runnable cleanup = () -> unsubscribe(chatId, participants, emitter);
+        emitter.onCompletion(cleanup);
+        emitter.onTimeout(cleanup);
+        emitter.onError(error -> cleanup.run());
+
+        // Initial snapshot so the client does not wait for the next change
+        getPresence(participants).forEach((userId, status) -> {
+            lastStatus.putIfAbsent(userId, status);
+            send(emitter, new ChatEvent("presence", null, userId, status, null, LocalDateTime.now()));
+        });
+        return emitter;
+    }
+
+    // Redis pub/sub callback, events from every instance (including this one) arrive here
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            ChatEvent event = objectMapper.readValue(message.getBody(), ChatEvent.class);
+            fanOut(event);
+        } catch (IOException e) {
+            System.err.println("Dropping malformed chat event: " + e.getMessage());
+        }
+    }
+
+    // Detects heartbeats that expired for the users watched here, and keeps idle connections alive
+    @Scheduled(fixedDelayString = "${presence.sweep-interval-ms:10000}")
+    public void sweep() {
+        List<Long> online = new ArrayList<>();
+        lastStatus.forEach((userId, status) -> {
+            if (!"OFFLINE".equals(status)) {
+                online.add(userId);
+            }
+        });
+        if (!online.isEmpty()) {
+            try {
+                getPresence(online).forEach((userId, status) -> {
+                    if ("OFFLINE".equals(status)) {
+                        fanOut(new ChatEvent("presence", null, userId, "OFFLINE", null, LocalDateTime.now()));
+                    }
+                });
+            } catch (Exception e) {
+                System.err.println("Presence sweep failed: " + e.getMessage());
+            }
+        }
+        for (Set<SseEmitter> emitters : subscribers.values()) {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (Exception e) {
+                    emitter.completeWithError(e);
+                }
+            }
+        }
+    }
+
+    private void publish(ChatEvent event) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            // Still reach the subscribers on this instance
+            System.err.println("Failed to publish chat event: " + e.getMessage());
+            fanOut(event);
+        }
+    }
+
+    private void fanOut(ChatEvent event) {
+        if ("typing".equals(event.getType())) {
+            sendToChat(event.getChatId(), event);
+            return;
+        }
+        Set<Long> chatIds = watchedUsers.get(event.getUserId());
+        if (chatIds == null) {
+            return;
+        }
+        lastStatus.put(event.getUserId(), event.getStatus());
+        for (Long chatId : chatIds) {
+            sendToChat(chatId, event);
+        }
+    }
+
+    private void sendToChat(Long chatId, ChatEvent event) {
+        Set<SseEmitter> emitters = subscribers.get(chatId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(emitter, event);
+        }
+    }
+
+    private void send(SseEmitter emitter, ChatEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name(event.getType()).data(event));
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(Long chatId, List<Long> participants, SseEmitter emitter) {
+        Set<SseEmitter> emitters = subscribers.get(chatId);
+        if (emitters == null) {
+            return;
+        }
+        emitters.remove(emitter);
+        if (emitters.isEmpty()) {
+            subscribers.remove(chatId);
+            for (Long userId : participants) {
+                Set<Long> chatIds = watchedUsers.get(userId);
+                if (chatIds != null) {
+                    chatIds.remove(chatId);
+                    if (chatIds.isEmpty()) {
+                        watchedUsers.remove(userId);
+                        lastStatus.remove(userId);
+                    }
+                }
+            }
+        }
+    }
+}
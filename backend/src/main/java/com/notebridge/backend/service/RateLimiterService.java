@@ -0,0 +1,212 @@
+package com.notebridge.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Token-bucket rate limiting keyed by route and caller (IP, user id or account).
+// With ratelimit.store=redis every instance shares the buckets through an atomic Lua script;
+// with ratelimit.store=local (default) each instance keeps its own buckets in memory.
+// If Redis is unreachable the local buckets take over, so a Redis blip never blocks traffic.
+// The limits of the routes below are checked on startup, a route without a positive capacity and
+// refill rate would never let a request through again.
+@Service
+public class RateLimiterService {
+
+    public static final List<String> ROUTES = List.of("login", "register", "refresh", "message-send");
+
+    private static final int LOCAL_CLEANUP_THRESHOLD = 100_000;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.store:local}")
+    private String store;
+
+    private final Map<String, TokenBucket> localBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Rule> rules = new ConcurrentHashMap<>();
+    private final AtomicLong callsSinceCleanup = new AtomicLong();
+
+    private final DefaultRedisScript<List> tokenBucketScript;
+
+    public RateLimiterService() {
+        tokenBucketScript = new DefaultRedisScript<>();
+        tokenBucketScript.setLocation(new ClassPathResource("scripts/token_bucket.lua"));
+        tokenBucketScript.setResultType(List.class);
+    }
+
+    // Outcome of a rate limit check, retryAfterSeconds is 0 when allowed
+    public record Decision(boolean allowed, long retryAfterSeconds) {
+        static final Decision ALLOW = new Decision(true, 0);
+    }
+
+    // Limits of a route, read from ratelimit.<route>.capacity and ratelimit.<route>.refill-per-minute
+    private record Rule(int capacity, double refillPerSecond) {
+    }
+
+    @PostConstruct
+    void loadRules() {
+        for (String route : ROUTES) {
+            rules.put(route, loadRule(route));
+        }
+    }
+
+    // Takes one token from the bucket of (route, scope, caller)
+    public Decision tryAcquire(String route, String scope, String caller) {
+        return tryAcquireAll(route, Map.of(scope, caller == null ? "" : caller));
+    }
+
+    // Takes one token from each bucket of the route, scope -> caller (blank callers are skipped), or from none.
+    // A token taken from an earlier bucket is put back when a later one is empty, so a request refused for
+    // its user does not use up the allowance of its IP. Each bucket is updated atomically on its own, in
+    // Redis cluster mode they can live on different nodes.
+    public Decision tryAcquireAll(String route, Map<String, String> callers) {
+        if (!enabled) {
+            return Decision.ALLOW;
+        }
+        Rule rule = rules.computeIfAbsent(route, this::loadRule);
+        List<String> taken = new ArrayList<>(callers.size());
+        for (Map.Entry<String, String> caller : callers.entrySet()) {
+            if (caller.getValue() == null || caller.getValue().isEmpty()) {
+                continue;
+            }
+            String key = "ratelimit:" + route + ":" + caller.getKey() + ":" + caller.getValue();
+            Decision decision = acquire(key, rule, 1);
+            if (!decision.allowed()) {
+                taken.forEach(takenKey -> acquire(takenKey, rule, -1));
+                Counter.builder("notebridge.ratelimit.rejected")
+                        .description("Requests rejected by the rate limiter")
+                        .tag("route", route)
+                        .tag("scope", caller.getKey())
+                        .register(meterRegistry)
+                        .increment();
+                return decision;
+            }
+            taken.add(key);
+        }
+        return Decision.ALLOW;
+    }
+
+    // Puts back a token taken by RateLimitFilter, for a request then refused by a bucket only known to
+    // the controller (the login account), so the caller's allowance is not used up by refused requests
+    public void release(String route, String scope, String caller) {
+        if (!enabled || caller == null || caller.isEmpty()) {
+            return;
+        }
+        acquire("ratelimit:" + route + ":" + scope + ":" + caller, rules.computeIfAbsent(route, this::loadRule), -1);
+    }
+
+    private Rule loadRule(String route) {
+        int capacity = environment.getProperty("ratelimit." + route + ".capacity", Integer.class, 60);
+        int perMinute = environment.getProperty("ratelimit." + route + ".refill-per-minute", Integer.class, capacity);
+        if (capacity < 1 || perMinute < 1) {
+            throw new IllegalStateException("ratelimit." + route + ".capacity and .refill-per-minute must be at least 1");
+        }
+        return new Rule(capacity, perMinute / 60.0);
+    }
+
+    // Takes (1) or puts back (-1) a token
+    private Decision acquire(String key, Rule rule, int tokens) {
+        if ("redis".equals(store)) {
+            return acquireFromRedis(key, rule, tokens);
+        }
+        return acquireLocally(key, rule, tokens);
+    }
+
+    private Decision acquireFromRedis(String key, Rule rule, int tokens) {
+        try {
+            List<?> result = stringRedisTemplate.execute(tokenBucketScript, List.of(key),
+                    String.valueOf(rule.capacity()), String.valueOf(rule.refillPerSecond()), String.valueOf(tokens));
+            if (result != null && result.size() == 2) {
+                boolean allowed = ((Number) result.get(0)).longValue() == 1L;
+                long retryMillis = ((Number) result.get(1)).longValue();
+                return allowed ? Decision.ALLOW : new Decision(false, toSeconds(retryMillis));
+            }
+        } catch (Exception e) {
+            meterRegistry.counter("notebridge.ratelimit.store.errors").increment();
+            System.err.println("Rate limiter falling back to local buckets: " + e.getMessage());
+        }
+        return acquireLocally(key, rule, tokens);
+    }
+
+    private Decision acquireLocally(String key, Rule rule, int tokens) {
+        if (callsSinceCleanup.incrementAndGet() % 10_000 == 0 && localBuckets.size() > LOCAL_CLEANUP_THRESHOLD) {
+            // Full buckets carry no state worth keeping
+            long now = System.nanoTime();
+            localBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        TokenBucket bucket = localBuckets.computeIfAbsent(key, k -> new TokenBucket(rule.capacity(), rule.refillPerSecond()));
+        if (tokens < 0) {
+            bucket.putBack(System.nanoTime());
+            return Decision.ALLOW;
+        }
+        long retryMillis = bucket.tryConsume(System.nanoTime());
+        return retryMillis == 0 ? Decision.ALLOW : new Decision(false, toSeconds(retryMillis));
+    }
+
+    private long toSeconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+
+    private static final class TokenBucket {
+        private final int capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        // Returns 0 when a token was taken, otherwise the milliseconds until one is available
+        synchronized long tryConsume(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / refillPerNano / 1_000_000.0);
+        }
+
+        synchronized void putBack(long now) {
+            refill(now);
+            tokens = Math.min(capacity, tokens + 1);
+        }
+
+        synchronized boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+    }
+}
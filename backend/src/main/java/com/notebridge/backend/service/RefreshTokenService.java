@@ -0,0 +1,143 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Opaque, rotating refresh tokens stored in Redis.
+// Every login starts a token family. Each refresh consumes the presented token and issues
+// the next one in the same family. Presenting an already used token means the token was
+// copied, so the whole family is revoked together with its latest access token.
+// Only SHA-256 digests of the tokens are stored.
+@Service
+public class RefreshTokenService {
+
+    private static final String TOKEN_PREFIX = "refresh:token:";
+    private static final String FAMILY_PREFIX = "refresh:family:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.refresh-expiration-ms:1209600000}")
+    private long refreshExpirationMs;
+
+    private final SecureRandom random = new SecureRandom();
+
+    // Result of a successful rotation: the owner and the next refresh token of the family
+    public record Rotation(String email, String familyId, String refreshToken) {
+    }
+
+    // Starts a new family for a fresh login
+    public String issue(String email, String accessTokenId, long accessExpiresAt) {
+        String familyId = UUID.randomUUID().toString();
+        String familyKey = FAMILY_PREFIX + familyId;
+        stringRedisTemplate.opsForHash().putAll(familyKey, Map.of(
+                "email", email,
+                "accessJti", nullToEmpty(accessTokenId),
+                "accessExp", String.valueOf(accessExpiresAt)));
+        stringRedisTemplate.expire(familyKey, Duration.ofMillis(refreshExpirationMs));
+        return newToken(email, familyId);
+    }
+
+    // Consumes the token and returns the next one, or null if it is unknown, expired or reused
+    public Rotation rotate(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return null;
+        }
+        String tokenKey = TOKEN_PREFIX + digest(refreshToken);
+        Map<Object, Object> record = stringRedisTemplate.opsForHash().entries(tokenKey);
+        if (record.isEmpty()) {
+            return null;
+        }
+        String email = (String) record.get("email");
+        String familyId = (String) record.get("family");
+
+        // HINCRBY is atomic, only the first presenter of a token sees 1
+        Long uses = stringRedisTemplate.opsForHash().increment(tokenKey, "used", 1);
+        if (uses == null || uses > 1) {
+            meterRegistry.counter("notebridge.refresh.reuse").increment();
+            System.err.println("Refresh token reuse detected, revoking family " + familyId);
+            revokeFamily(familyId);
+            return null;
+        }
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(FAMILY_PREFIX + familyId))) {
+            return null;
+        }
+        return new Rotation(email, familyId, newToken(email, familyId));
+    }
+
+    // Remembers the access token issued with the latest rotation so a family revoke can kill it
+    public void trackAccessToken(String familyId, String accessTokenId, long accessExpiresAt) {
+        String familyKey = FAMILY_PREFIX + familyId;
+        stringRedisTemplate.opsForHash().putAll(familyKey, Map.of(
+                "accessJti", nullToEmpty(accessTokenId),
+                "accessExp", String.valueOf(accessExpiresAt)));
+        stringRedisTemplate.expire(familyKey, Duration.ofMillis(refreshExpirationMs));
+    }
+
+    // Logout: revokes the family the refresh token belongs to
+    public void revoke(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return;
+        }
+        Object familyId = stringRedisTemplate.opsForHash().get(TOKEN_PREFIX + digest(refreshToken), "family");
+        if (familyId != null) {
+            revokeFamily((String) familyId);
+        }
+    }
+
+    private void revokeFamily(String familyId) {
+        String familyKey = FAMILY_PREFIX + familyId;
+        Map<Object, Object> family = stringRedisTemplate.opsForHash().entries(familyKey);
+        stringRedisTemplate.delete(familyKey);
+        String accessJti = (String) family.get("accessJti");
+        if (accessJti != null && !accessJti.isEmpty()) {
+            tokenRevocationService.revoke(accessJti, Long.parseLong((String) family.get("accessExp")));
+        }
+    }
+
+    private String newToken(String email, String familyId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        String tokenKey = TOKEN_PREFIX + digest(token);
+        stringRedisTemplate.opsForHash().putAll(tokenKey, Map.of(
+                "email", email,
+                "family", familyId,
+                "used", "0"));
+        stringRedisTemplate.expire(tokenKey, Duration.ofMillis(refreshExpirationMs));
+        return token;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,142 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+// Keeps the second-level cache of every instance in step. The Caffeine regions are per JVM and
+// Hibernate only invalidates the ones of the instance making a change, so after each commit that
+// inserted, updated or deleted a cached entity (User, Lesson, Chat) this publishes
+// "<instance> <entity> <id> <I|U|D>" on a Redis channel. The other instances evict the entity and,
+// for inserts and deletes, their query results too, whose update timestamps only see local writes.
+// "<instance> * * Q" evicts the query results alone, after writes made outside Hibernate.
+// Pub/sub does not retry, a missed message is bounded by the region expiry in application.conf.
+@Service
+public class SecondLevelCacheSync implements MessageListener, PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    public static final String CHANNEL = "l2-cache-evictions";
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache cache;
+
+    @PostConstruct
+    void start() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        cache = sessionFactory.getCache();
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().requireService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    // Only entities kept in the cache are announced
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.canWriteToCache();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        announce(event.getPersister(), event.getId(), "I");
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        announce(event.getPersister(), event.getId(), "U");
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        announce(event.getPersister(), event.getId(), "D");
+    }
+
+    // Rolled back, nothing changed
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    // Evicts the query results of every instance, after rows were written without Hibernate
+    public void evictQueryRegionsEverywhere() {
+        cache.evictQueryRegions();
+        publish(instanceId + " * * Q");
+    }
+
+    // Changes announced by any instance, this one's own included (and skipped)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(" ");
+        if (parts.length != 4) {
+            System.err.println("Dropping malformed cache eviction: " + String.join(" ", parts));
+            return;
+        }
+        if (instanceId.equals(parts[0])) {
+            return;
+        }
+        try {
+            if (!"Q".equals(parts[3])) {
+                // Every cached entity has a Long id
+                cache.evictEntityData(parts[1], Long.valueOf(parts[2]));
+            }
+            if (!"U".equals(parts[3])) {
+                cache.evictQueryRegions();
+            }
+            meterRegistry.counter("notebridge.l2.remote_evictions", "change", parts[3]).increment();
+        } catch (Exception e) {
+            System.err.println("Failed to apply cache eviction " + String.join(" ", parts) + ": " + e.getMessage());
+        }
+    }
+
+    private void announce(EntityPersister persister, Object id, String change) {
+        if (persister.canWriteToCache() && id != null) {
+            publish(instanceId + " " + persister.getEntityName() + " " + id + " " + change);
+        }
+    }
+
+    private void publish(String eviction) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, eviction);
+        } catch (Exception e) {
+            // The other instances catch up when their entries expire
+            System.err.println("Failed to publish cache eviction: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.notebridge.backend.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hashed timing wheel (Varghese & Lauck): a ring of buckets, each covering one tick.
+// A timer lands in bucket (deadline / tick) % size and keeps the number of full turns
+// still to wait, so scheduling and cancelling are O(1) and a pending timer is one small
+// node in a doubly linked bucket list, whatever the delay. Millions of timers fit in memory.
+//
+// Only the worker thread touches the buckets. Other threads hand new and cancelled timers
+// over through lock-free queues that the worker drains on every tick. Expired tasks run
+// on the given executor so a slow task never delays the clock.
+class TimingWheel {
+
+    private final long tickMs;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Executor executor;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // Next tick to process, in ticks since the epoch
+    private long currentTick = -1;
+    private volatile Thread worker;
+
+    TimingWheel(long tickMs, int wheelSize, Executor executor) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickMs = tickMs;
+        this.buckets = new Bucket[Math.max(size, 1)];
+        this.mask = buckets.length - 1;
+        this.executor = executor;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    // Schedules the task for the given wall clock time (ms); deadlines in the past fire on the next tick
+    Timeout schedule(long deadlineMs, Runnable task) {
+        Timeout timeout = new Timeout(this, deadlineMs, task);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    int pending() {
+        return pending.get();
+    }
+
+    synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = Thread.ofPlatform().name("timing-wheel").daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                long now = System.currentTimeMillis();
+                advance(now);
+                long sleep = (now / tickMs + 1) * tickMs - System.currentTimeMillis();
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    // Processes every tick up to the given time. Called by the worker, or directly by tests.
+    void advance(long nowMs) {
+        long nowTick = nowMs / tickMs;
+        if (currentTick < 0) {
+            currentTick = nowTick;
+        }
+        while (currentTick <= nowTick) {
+            removeCancelled();
+            transferAdded();
+            expire(buckets[(int) (currentTick & mask)]);
+            currentTick++;
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            long tick = Math.max(timeout.deadlineMs / tickMs, currentTick);
+            timeout.remainingRounds = (tick - currentTick) / buckets.length;
+            buckets[(int) (tick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                    pending.decrementAndGet();
+                    executor.execute(timeout.task);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel wheel;
+        final long deadlineMs;
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        // Owned by the worker thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, long deadlineMs, Runnable task) {
+            this.wheel = wheel;
+            this.deadlineMs = deadlineMs;
+            this.task = task;
+        }
+
+        // False if the task already ran or was cancelled before
+        boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
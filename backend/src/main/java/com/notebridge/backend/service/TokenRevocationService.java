@@ -0,0 +1,107 @@
+package com.notebridge.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+// Revocation list for access tokens, keyed by the token id (jti).
+// Redis holds the source of truth as a sorted set scored by token expiry.
+// Every instance mirrors it into a local Bloom filter, so checking a token that was never
+// revoked (the common case) costs no network hop. Only a Bloom hit is confirmed in Redis.
+// The filter is rebuilt every few seconds, which also drops tokens that have expired.
+@Service
+public class TokenRevocationService {
+
+    private static final String REVOKED_KEY = "revoked:access";
+    private static final String VERSION_KEY = "revoked:access:version";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jwt.revocation.bloom-capacity:100000}")
+    private int bloomCapacity;
+
+    @Value("${jwt.revocation.bloom-fpp:0.001}")
+    private double bloomFpp;
+
+    private volatile BloomFilter<CharSequence> filter;
+    private volatile String syncedVersion;
+    private volatile long lastRebuild;
+
+    @PostConstruct
+    void init() {
+        filter = newFilter();
+    }
+
+    // Revokes an access token until it expires on its own
+    public void revoke(String tokenId, long expiresAtMillis) {
+        if (tokenId == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        // Local first, so this instance rejects the token immediately
+        filter.put(tokenId);
+        try {
+            stringRedisTemplate.opsForZSet().add(REVOKED_KEY, tokenId, expiresAtMillis);
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+            // Again, in case a sync swapped the filter in between
+            filter.put(tokenId);
+        } catch (Exception e) {
+            System.err.println("Failed to store token revocation: " + e.getMessage());
+        }
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        meterRegistry.counter("notebridge.revocation.bloom.hits").increment();
+        try {
+            return stringRedisTemplate.opsForZSet().score(REVOKED_KEY, tokenId) != null;
+        } catch (Exception e) {
+            // Redis is down, trust the filter and fail closed
+            return true;
+        }
+    }
+
+    // Pulls revocations made by other instances
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms:5000}")
+    public void sync() {
+        try {
+            String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            long now = System.currentTimeMillis();
+            if (version != null && version.equals(syncedVersion) && now - lastRebuild < 60_000) {
+                // Unchanged; still rebuild about once a minute to forget expired tokens
+                return;
+            }
+            stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, now);
+            Set<String> revoked = stringRedisTemplate.opsForZSet().rangeByScore(REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+            BloomFilter<CharSequence> rebuilt = newFilter();
+            if (revoked != null) {
+                revoked.forEach(rebuilt::put);
+            }
+            filter = rebuilt;
+            syncedVersion = version;
+            lastRebuild = now;
+        } catch (Exception e) {
+            System.err.println("Token revocation sync failed: " + e.getMessage());
+        }
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), bloomCapacity, bloomFpp);
+    }
+}
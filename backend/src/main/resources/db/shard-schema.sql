@@ -0,0 +1,14 @@
+-- Messages table of a message shard (ShardingConfig, shards.initialize-schema).
+-- Same columns as on the primary; chats and users stay on the primary, so no foreign keys.
+CREATE TABLE IF NOT EXISTS messages (
+    id BIGINT NOT NULL, -- from MessageIds, unique across shards
+    chat_id BIGINT NOT NULL,
+    sender_id BIGINT NOT NULL,
+    content VARCHAR(1000) NOT NULL,
+    sent_at DATETIME(6) NOT NULL,
+    is_read BIT NOT NULL,
+    journal_id VARCHAR(36),
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_messages_journal_id (journal_id),
+    KEY idx_messages_chat_sent_at (chat_id, sent_at)
+);
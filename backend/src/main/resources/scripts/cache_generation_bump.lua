@@ -0,0 +1,14 @@
+-- Bumps the generation of one or more cache namespaces and announces the new values.
+-- KEYS[1]  hash of generations, one field per namespace
+-- ARGV[1]  channel the new generations are published on
+-- ARGV[2..] namespaces
+-- Returns the new generations, in namespace order
+local generations = {}
+local lines = {}
+for i = 2, #ARGV do
+  local generation = redis.call('HINCRBY', KEYS[1], ARGV[i], 1)
+  generations[#generations + 1] = generation
+  lines[#lines + 1] = generation .. ' ' .. ARGV[i]
+end
+redis.call('PUBLISH', ARGV[1], table.concat(lines, '\n'))
+return generations
@@ -0,0 +1,15 @@
+-- Replaces the lock of an idempotency key, only if it is still held with the caller's token.
+-- KEYS[1]  idempotency key
+-- ARGV[1]  lock token
+-- ARGV[2]  stored response, or empty to delete the key
+-- ARGV[3]  time to live of the stored response in milliseconds
+-- Returns 1 when replaced, 0 when the lock expired or was taken by another request
+if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+  return 0
+end
+if ARGV[2] == '' then
+  redis.call('DEL', KEYS[1])
+else
+  redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+end
+return 1
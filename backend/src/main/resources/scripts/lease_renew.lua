@@ -0,0 +1,9 @@
+-- Extends a lease, only if it is still held by the caller.
+-- KEYS[1]  lease key
+-- ARGV[1]  holder id
+-- ARGV[2]  lease time in milliseconds
+-- Returns 1 when extended, 0 when the lease is gone or held by someone else
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
@@ -0,0 +1,40 @@
+-- Atomic token bucket.
+-- KEYS[1]  bucket key
+-- ARGV[1]  capacity (tokens)
+-- ARGV[2]  refill rate (tokens per second)
+-- ARGV[3]  tokens to take, -1 puts back one taken before (default 1)
+-- Returns {allowed (1/0), retry after in milliseconds}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3] or '1')
+
+-- Use the server clock so every instance sees the same time
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1])
+local ts = tonumber(bucket[2])
+if tokens == nil then
+  tokens = capacity
+  ts = now
+end
+
+tokens = math.min(capacity, tokens + (math.max(0, now - ts) * rate / 1000))
+
+local allowed = 0
+local retry = 0
+if cost < 0 then
+  tokens = math.min(capacity, tokens - cost)
+  allowed = 1
+elseif tokens >= cost then
+  tokens = tokens - cost
+  allowed = 1
+else
+  retry = math.ceil((cost - tokens) * 1000 / rate)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+-- Expire once the bucket would be full again, idle clients cost nothing
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return {allowed, retry}
@@ -0,0 +1,138 @@
+package com.notebridge.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notebridge.backend.service.IdempotencyService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+class IdempotencyFilterTests {
+
+	private final IdempotencyService idempotencyService = new IdempotencyService();
+	private final IdempotencyFilter filter = new IdempotencyFilter();
+	private final AtomicInteger sends = new AtomicInteger();
+	private String nextBody = "{\"statusCode\":200,\"message\":\"Message sent\"}";
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(idempotencyService, "stringRedisTemplate", mock(StringRedisTemplate.class));
+		ReflectionTestUtils.setField(idempotencyService, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(idempotencyService, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(idempotencyService, "store", "local");
+		ReflectionTestUtils.setField(idempotencyService, "ttlHours", 24L);
+		ReflectionTestUtils.setField(idempotencyService, "lockSeconds", 30L);
+		ReflectionTestUtils.setField(filter, "idempotencyService", idempotencyService);
+	}
+
+	@Test
+	void repeatsGetTheStoredResponse() throws Exception {
+		MockHttpServletResponse first = send("key-1");
+		MockHttpServletResponse second = send("key-1");
+
+		assertEquals(1, sends.get());
+		assertEquals(first.getContentAsString(), second.getContentAsString());
+		assertEquals(MediaType.APPLICATION_JSON_VALUE, second.getContentType());
+		assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertEquals("true", second.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+
+		// Another key, or no key, runs the request
+		send("key-2");
+		send(null);
+		assertEquals(3, sends.get());
+	}
+
+	@Test
+	void failedAttemptsAreRunAgain() throws Exception {
+		nextBody = "{\"statusCode\":500,\"message\":\"Internal Server Error\"}";
+		send("key-1");
+		nextBody = "{\"statusCode\":200,\"message\":\"Message sent\"}";
+		MockHttpServletResponse retry = send("key-1");
+
+		assertEquals(2, sends.get());
+		assertEquals(nextBody, retry.getContentAsString());
+	}
+
+	@Test
+	void concurrentDuplicatesAreRejectedWhileTheFirstRuns() throws Exception {
+		IdempotencyService.Outcome running = idempotencyService.begin("user-7:/message/send/user/7:key-1", "f1");
+		assertEquals(IdempotencyService.State.STARTED, running.state());
+
+		assertEquals(IdempotencyService.State.IN_PROGRESS, idempotencyService.begin("user-7:/message/send/user/7:key-1", "f1").state());
+		assertEquals(IdempotencyService.State.MISMATCH, idempotencyService.begin("user-7:/message/send/user/7:key-1", "f2").state());
+
+		idempotencyService.release("user-7:/message/send/user/7:key-1", running.token());
+		assertEquals(IdempotencyService.State.STARTED, idempotencyService.begin("user-7:/message/send/user/7:key-1", "f1").state());
+	}
+
+	@Test
+	void reusingAKeyForAnotherBodyIsRejected() throws Exception {
+		send("key-1");
+		MockHttpServletResponse other = send("key-1", "{\"content\":\"bye\"}");
+
+		assertEquals(1, sends.get());
+		assertEquals(422, other.getStatus());
+	}
+
+	@Test
+	void onlyTheLockHolderCompletesTheKey() {
+		IdempotencyService.Outcome expired = idempotencyService.begin("user-7:/lesson/create/7:key-1", "f1");
+		// The lock expired and a retry took the key over
+		idempotencyService.release("user-7:/lesson/create/7:key-1", expired.token());
+		IdempotencyService.Outcome retry = idempotencyService.begin("user-7:/lesson/create/7:key-1", "f1");
+
+		idempotencyService.complete("user-7:/lesson/create/7:key-1", expired.token(),
+				new IdempotencyService.StoredResponse(200, MediaType.APPLICATION_JSON_VALUE, "{}".getBytes()));
+
+		assertEquals(IdempotencyService.State.IN_PROGRESS, idempotencyService.begin("user-7:/lesson/create/7:key-1", "f1").state());
+		idempotencyService.complete("user-7:/lesson/create/7:key-1", retry.token(),
+				new IdempotencyService.StoredResponse(201, MediaType.APPLICATION_JSON_VALUE, "{}".getBytes()));
+		assertEquals(201, idempotencyService.begin("user-7:/lesson/create/7:key-1", "f1").response().status());
+	}
+
+	private MockHttpServletResponse send(String key) throws Exception {
+		return send(key, "{\"content\":\"hi\"}");
+	}
+
+	private MockHttpServletResponse send(String key, String content) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request(key, content), response, new MockFilterChain(new HttpServlet() {
+			@Override
+			protected void service(HttpServletRequest req, HttpServletResponse resp) throws java.io.IOException {
+				// The controller still gets the body the fingerprint was taken of
+				assertEquals(content, new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+				sends.incrementAndGet();
+				resp.setContentType(MediaType.APPLICATION_JSON_VALUE);
+				resp.getWriter().write(nextBody);
+			}
+		}));
+		return response;
+	}
+
+	private static MockHttpServletRequest request(String key, String content) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/message/send/user/7");
+		request.setServletPath("/message/send/user/7");
+		request.setContent(content.getBytes(StandardCharsets.UTF_8));
+		if (key != null) {
+			request.addHeader(IdempotencyFilter.HEADER, key);
+		}
+		return request;
+	}
+}
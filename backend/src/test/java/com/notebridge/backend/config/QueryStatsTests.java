@@ -0,0 +1,95 @@
+package com.notebridge.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+
+class QueryStatsTests {
+
+	@Test
+	void countsStatementsWithinBudget() {
+		DataSource dataSource = new MeasuredDataSource(stubDataSource(), 200);
+
+		QueryStats stats = QueryStats.measure(() -> {
+			try (Connection connection = dataSource.getConnection()) {
+				for (long id = 1; id <= 3; id++) {
+					PreparedStatement statement = connection.prepareStatement("select * from users where id = ?");
+					statement.setLong(1, id);
+					statement.executeQuery();
+				}
+				connection.createStatement().execute("select count(*) from chats");
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		assertTrue(stats.getCount() <= 4);
+		assertEquals(4, stats.getCount());
+		assertEquals(Map.of("select * from users where id = ?", 3), stats.repeatedShapes(3));
+		assertNull(QueryStats.current());
+	}
+
+	@Test
+	void slowQueriesAreLoggedWithoutBindValuesUnlessEnabled() throws SQLException {
+		assertEquals("Slow query: select * from users where email = ? with 1 parameters",
+				slowQueryLog(new MeasuredDataSource(stubDataSource(), 0)));
+		assertEquals("Slow query: select * from users where email = ? with {1=ada@example.com}",
+				slowQueryLog(new MeasuredDataSource(stubDataSource(), 0, true)));
+	}
+
+	@Test
+	void nestedMeasurementAddsToOuter() {
+		QueryStats outer = QueryStats.start();
+		QueryStats inner = QueryStats.measure(() -> QueryStats.record("select 1", 1_000_000));
+		QueryStats.record("select 2", 1_000_000);
+		QueryStats.stop();
+
+		assertEquals(1, inner.getCount());
+		assertEquals(2, outer.getCount());
+	}
+
+	@Test
+	void shapeIgnoresValuesAndInListSize() {
+		assertEquals(QueryStats.shape("select * from lessons where id in (?, ?, ?)"),
+				QueryStats.shape("SELECT *  FROM lessons WHERE id IN (?)"));
+		assertEquals(QueryStats.shape("select * from users where email = 'a@b.c' and id = 7"),
+				QueryStats.shape("select * from users where email = 'x@y.z' and id = 42"));
+	}
+
+	// What the statement logs, without the elapsed time
+	private String slowQueryLog(DataSource dataSource) throws SQLException {
+		PrintStream err = System.err;
+		ByteArrayOutputStream captured = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(captured, true));
+		try (Connection connection = dataSource.getConnection()) {
+			PreparedStatement statement = connection.prepareStatement("select * from users where email = ?");
+			statement.setString(1, "ada@example.com");
+			statement.executeQuery();
+		} finally {
+			System.setErr(err);
+		}
+		return captured.toString().trim().replaceFirst(" \\(\\d+ ms\\)", "");
+	}
+
+	// Minimal driver: every statement succeeds and returns null
+	private DataSource stubDataSource() {
+		PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null);
+		Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{Connection.class}, (proxy, method, args) -> method.getName().endsWith("Statement") ? statement : null);
+		return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{DataSource.class}, (proxy, method, args) -> method.getName().equals("getConnection") ? connection : null);
+	}
+}
@@ -0,0 +1,89 @@
+package com.notebridge.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.service.RateLimiterService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RateLimitFilterTests {
+
+	private final RateLimiterService rateLimiterService = new RateLimiterService();
+	private final RateLimitFilter filter = new RateLimitFilter();
+
+	RateLimitFilterTests() {
+		ReflectionTestUtils.setField(rateLimiterService, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(rateLimiterService, "environment", new MockEnvironment()
+				.withProperty("ratelimit.message-send.capacity", "1")
+				.withProperty("ratelimit.message-send.refill-per-minute", "1"));
+		ReflectionTestUtils.setField(rateLimiterService, "enabled", true);
+		ReflectionTestUtils.setField(rateLimiterService, "store", "local");
+		ReflectionTestUtils.setField(filter, "rateLimiterService", rateLimiterService);
+	}
+
+	@AfterEach
+	void clearAuthentication() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void limitedRoutesGet429WithRetryAfter() throws Exception {
+		assertEquals(200, send("POST", "/message/send/user/3").getStatus());
+		MockHttpServletResponse refused = send("POST", "/message/send/user/3");
+
+		assertEquals(429, refused.getStatus());
+		assertEquals("60", refused.getHeader("Retry-After"));
+		assertTrue(refused.getContentAsString().contains("\"statusCode\":429"));
+		// Reads and other routes are not limited
+		assertEquals(200, send("GET", "/message/send/user/3").getStatus());
+		assertEquals(200, send("POST", "/lesson/create").getStatus());
+	}
+
+	@Test
+	void aUserOverItsLimitDoesNotUseUpTheTokensOfItsIp() throws Exception {
+		rateLimiterService.tryAcquire("message-send", "user", "7");
+
+		signIn(7L);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(429, send("POST", "/message/send/user/3").getStatus());
+		}
+		// The IP's only token is still there for another user behind it
+		signIn(8L);
+		assertEquals(200, send("POST", "/message/send/user/3").getStatus());
+		assertEquals(429, send("POST", "/message/send/user/3").getStatus());
+	}
+
+	private void signIn(Long userId) {
+		User user = new User();
+		user.setId(userId);
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+	}
+
+	private MockHttpServletResponse send(String method, String path) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+		request.setServletPath(path);
+		request.setRemoteAddr("10.0.0.1");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(request, response, chain);
+		if (response.getStatus() == 429) {
+			assertNull(chain.getRequest());
+		}
+		return response;
+	}
+}
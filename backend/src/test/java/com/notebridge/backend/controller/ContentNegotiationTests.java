@@ -0,0 +1,90 @@
+package com.notebridge.backend.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.notebridge.backend.config.ContentNegotiationConfig;
+import com.notebridge.backend.dto.MessageView;
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.dto.UserSummary;
+import com.notebridge.backend.service.MessagesService;
+
+class ContentNegotiationTests {
+
+	private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("jacksonObjectMapperBuilder", Jackson2ObjectMapperBuilder.json());
+		ContentNegotiationConfig config = new ContentNegotiationConfig();
+		ReflectionTestUtils.setField(config, "objectMapperBuilder", beanFactory.getBeanProvider(Jackson2ObjectMapperBuilder.class));
+		List<HttpMessageConverter<?>> converters = new ArrayList<>(List.of(new MappingJackson2HttpMessageConverter()));
+		config.extendMessageConverters(converters);
+
+		MessagesService messagesService = mock(MessagesService.class);
+		when(messagesService.getRecentChatMessages(1L, 1L)).thenReturn(recentMessages());
+		MessagesController controller = new MessagesController();
+		ReflectionTestUtils.setField(controller, "messagesService", messagesService);
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).setMessageConverters(converters.toArray(HttpMessageConverter[]::new)).build();
+	}
+
+	@Test
+	void jsonIsTheDefault() throws Exception {
+		mockMvc.perform(get("/message/chat/1/recent/user/1").accept(MediaType.ALL))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+	}
+
+	@Test
+	void cborAndSmileCarryTheSameResponse() throws Exception {
+		byte[] json = mockMvc.perform(get("/message/chat/1/recent/user/1")).andReturn().getResponse().getContentAsByteArray();
+		byte[] cbor = mockMvc.perform(get("/message/chat/1/recent/user/1").accept(MediaType.APPLICATION_CBOR))
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+				.andReturn().getResponse().getContentAsByteArray();
+		byte[] smile = mockMvc.perform(get("/message/chat/1/recent/user/1").accept(SMILE))
+				.andExpect(content().contentTypeCompatibleWith(SMILE))
+				.andReturn().getResponse().getContentAsByteArray();
+
+		ObjectMapper jsonMapper = new ObjectMapper();
+		assertEquals(jsonMapper.readTree(json), new ObjectMapper(new CBORFactory()).readTree(cbor));
+		assertEquals(jsonMapper.readTree(json), new ObjectMapper(new SmileFactory()).readTree(smile));
+	}
+
+	private MessagesReqRes recentMessages() {
+		MessagesReqRes resp = new MessagesReqRes();
+		resp.setStatusCode(200);
+		resp.setMessagesList(List.of(
+				new MessageView(1L, 1L, 1L, "Hello", LocalDateTime.of(2024, 2, 1, 10, 0), true),
+				new MessageView(2L, 1L, 2L, "Hi!", LocalDateTime.of(2024, 2, 1, 10, 1), false)));
+		resp.setUsers(Map.of(
+				1L, new UserSummary(1L, "Ada", "Lovelace", "TEACHER", null),
+				2L, new UserSummary(2L, "Alan", "Turing", "STUDENT", null)));
+		return resp;
+	}
+}
@@ -0,0 +1,109 @@
+package com.notebridge.backend.controller;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.notebridge.backend.dto.LessonView;
+import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.dto.MessageView;
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.dto.UserSummary;
+
+// Payload size and encode/decode time of JSON, CBOR and Smile for the two hot responses
+// (a 50-message chat page and a 200-lesson list). Not part of the regular test run:
+//   ./mvnw test -Dtest=ResponseEncodingBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ResponseEncodingBenchmark {
+
+	private static final int WARMUP = 2_000;
+	private static final int ITERATIONS = 10_000;
+
+	@Test
+	void compareEncodings() throws Exception {
+		Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+		mappers.put("json", mapper(null));
+		mappers.put("cbor", mapper(new CBORFactory()));
+		mappers.put("smile", mapper(new SmileFactory()));
+
+		System.out.printf("%-14s %-6s %8s %12s %12s%n", "payload", "format", "bytes", "encode us", "decode us");
+		for (Map.Entry<String, Object> payload : payloads().entrySet()) {
+			for (Map.Entry<String, ObjectMapper> mapper : mappers.entrySet()) {
+				run(payload.getKey(), payload.getValue(), mapper.getKey(), mapper.getValue());
+			}
+		}
+	}
+
+	private void run(String payloadName, Object payload, String format, ObjectMapper mapper) throws Exception {
+		byte[] bytes = mapper.writeValueAsBytes(payload);
+		for (int i = 0; i < WARMUP; i++) {
+			mapper.readValue(mapper.writeValueAsBytes(payload), payload.getClass());
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			bytes = mapper.writeValueAsBytes(payload);
+		}
+		long encode = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			mapper.readValue(bytes, payload.getClass());
+		}
+		long decode = System.nanoTime() - start;
+		System.out.printf("%-14s %-6s %8d %12.1f %12.1f%n", payloadName, format, bytes.length,
+				encode / 1000.0 / ITERATIONS, decode / 1000.0 / ITERATIONS);
+	}
+
+	private ObjectMapper mapper(com.fasterxml.jackson.core.JsonFactory factory) {
+		Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json().modulesToInstall(new BlackbirdModule());
+		if (factory != null) {
+			builder.factory(factory);
+		}
+		return builder.build();
+	}
+
+	private Map<String, Object> payloads() {
+		Map<Long, UserSummary> users = Map.of(
+				1L, new UserSummary(1L, "Ada", "Lovelace", "TEACHER", "https://storage.googleapis.com/bucket/profile/1.jpg"),
+				2L, new UserSummary(2L, "Alan", "Turing", "STUDENT", null));
+
+		List<MessageView> messages = new ArrayList<>();
+		for (long i = 0; i < 50; i++) {
+			messages.add(new MessageView(i, 1L, i % 2 + 1, "Can we move Tuesday's lesson to 5pm? Message " + i,
+					LocalDateTime.of(2024, 2, 1, 10, 0).plusMinutes(i), i < 45));
+		}
+		MessagesReqRes chatPage = new MessagesReqRes();
+		chatPage.setStatusCode(200);
+		chatPage.setMessage("Messages retrieved successfully");
+		chatPage.setMessagesList(messages);
+		chatPage.setUsers(users);
+
+		List<LessonView> lessons = new ArrayList<>();
+		for (long i = 0; i < 200; i++) {
+			LocalDateTime start = LocalDateTime.of(2024, 2, 1, 10, 0).plusDays(i);
+			lessons.add(new LessonView(i, 1L, "Piano for beginners " + i, "Piano",
+					"Scales, chords and first pieces, at your own pace.", null, "HYBRID",
+					start, start.plusHours(1), start, start.plusWeeks(8), "WEEKLY", "https://meet.example.com/" + i,
+					"Main Street 1", 52.52, 13.405, false));
+		}
+		LessonsReqRes lessonList = new LessonsReqRes();
+		lessonList.setStatusCode(200);
+		lessonList.setMessage("Lessons retrieved successfully");
+		lessonList.setLessonsList(lessons);
+		lessonList.setUsers(users);
+
+		Map<String, Object> payloads = new LinkedHashMap<>();
+		payloads.put("chat page", chatPage);
+		payloads.put("lesson list", lessonList);
+		return payloads;
+	}
+}
@@ -0,0 +1,108 @@
+package com.notebridge.backend.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.notebridge.backend.entity.Chat;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.entity.Message;
+import com.notebridge.backend.entity.User;
+
+class ResponseViewTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.registerModule(new JavaTimeModule())
+			.registerModule(new BlackbirdModule());
+
+	@Test
+	void messagePageReferencesUsersByIdAndSideloadsThemOnce() throws Exception {
+		List<Message> messages = messagePage(50);
+		MessagesReqRes resp = new MessagesReqRes();
+		resp.setMessagesList(messages.stream().map(MessageView::of).toList());
+		resp.setUsers(UserSummary.mapOf(messages.stream().map(Message::getSender).toList()));
+
+		JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(resp));
+		assertEquals(2, json.get("users").size());
+		assertEquals(1L, json.get("messagesList").get(0).get("chatId").asLong());
+		assertFalse(json.toString().contains("password"));
+
+		// Same page with entities embedded, the way it used to be serialized
+		byte[] entities = objectMapper.writeValueAsBytes(messages);
+		byte[] views = objectMapper.writeValueAsBytes(resp);
+		assertTrue(entities.length > 3 * views.length, entities.length + " vs " + views.length);
+	}
+
+	@Test
+	void lessonViewKeepsFieldNamesAndSurvivesJdkSerialization() throws Exception {
+		Lesson lesson = new Lesson();
+		lesson.setId(7L);
+		lesson.setTeacher(user(1L, "TEACHER"));
+		lesson.setTitle("Piano basics");
+		lesson.setCancelled(true);
+		LessonsReqRes resp = new LessonsReqRes();
+		resp.setLesson(LessonView.of(lesson));
+		resp.setUsers(UserSummary.mapOf(List.of(lesson.getTeacher())));
+
+		JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(resp));
+		assertTrue(json.get("lesson").get("isCancelled").asBoolean());
+		assertEquals(1L, json.get("lesson").get("teacherId").asLong());
+		assertEquals("Ada", json.get("users").get("1").get("firstName").asText());
+
+		// Cached in Redis with JDK serialization
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(resp);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertEquals(resp, in.readObject());
+		}
+	}
+
+	private List<Message> messagePage(int size) {
+		User teacher = user(1L, "TEACHER");
+		User student = user(2L, "STUDENT");
+		Chat chat = new Chat();
+		chat.setId(1L);
+		chat.setTeacher(teacher);
+		chat.setStudent(student);
+		chat.setSubject("Piano");
+		List<Message> messages = new ArrayList<>();
+		for (long i = 0; i < size; i++) {
+			Message message = new Message();
+			message.setId(i);
+			message.setChat(chat);
+			message.setSender(i % 2 == 0 ? teacher : student);
+			message.setContent("See you on Tuesday");
+			message.setSentAt(LocalDateTime.of(2024, 2, 1, 10, 0).plusMinutes(i));
+			messages.add(message);
+		}
+		return messages;
+	}
+
+	private User user(Long id, String role) {
+		User user = new User();
+		user.setId(id);
+		user.setEmail("user" + id + "@example.com");
+		user.setPassword("$2a$10$abcdefghijklmnopqrstuuOe5NnXsa6VnSmmNJUi2T6kZZhc1iUS");
+		user.setRole(role);
+		user.setFirstName("Ada");
+		user.setLastName("Lovelace");
+		user.setBio("Teaches piano and music theory to beginners and advanced students alike.");
+		return user;
+	}
+}
@@ -0,0 +1,178 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notebridge.backend.dto.ImportReqRes;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.UsersRepo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BulkImportTests {
+
+	private final UsersRepo usersRepo = mock(UsersRepo.class);
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+	private final SecondLevelCacheSync secondLevelCacheSync = mock(SecondLevelCacheSync.class);
+	private final BulkImportService importService = new BulkImportService();
+	private final List<Integer> batchSizes = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(importService, "usersRepo", usersRepo);
+		ReflectionTestUtils.setField(importService, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(importService, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+		ReflectionTestUtils.setField(importService, "passwordHashingService", passwordHashingService);
+		ReflectionTestUtils.setField(importService, "secondLevelCacheSync", secondLevelCacheSync);
+		ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(importService, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(importService, "chunkSize", 2);
+		ReflectionTestUtils.setField(importService, "maxRows", 100);
+		ReflectionTestUtils.setField(importService, "maxErrors", 100);
+		ReflectionTestUtils.setField(importService, "hashConcurrency", 4);
+
+		when(passwordHashingService.hash(anyString(), anyInt()))
+				.thenAnswer(invocation -> CompletableFuture.completedFuture("hashed-" + invocation.getArgument(0)));
+
+		// Each batch gets consecutive ids, like an auto-increment column
+		AtomicLong nextId = new AtomicLong(100);
+		doAnswer(invocation -> {
+			BatchPreparedStatementSetter setter = invocation.getArgument(1);
+			KeyHolder keys = invocation.getArgument(2);
+			batchSizes.add(setter.getBatchSize());
+			for (int i = 0; i < setter.getBatchSize(); i++) {
+				setter.setValues(mock(PreparedStatement.class), i);
+				keys.getKeyList().add(Map.of("GENERATED_KEY", nextId.getAndIncrement()));
+			}
+			return new int[setter.getBatchSize()];
+		}).when(jdbcTemplate).batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class), any(KeyHolder.class));
+	}
+
+	@Test
+	void readsCsvAndJsonRowsWithLooseColumnNames() throws Exception {
+		String csv = "Email,First Name,bio\n"
+				+ "ana@example.com,Ana,\"Piano, theory\"\n"
+				+ "\n"
+				+ "ben@example.com,Ben,\n";
+		try (ImportRows rows = ImportRows.open(stream(csv), ImportRows.Format.CSV, new ObjectMapper())) {
+			assertEquals(Map.of("email", "ana@example.com", "firstname", "Ana", "bio", "Piano, theory"), rows.next());
+			assertEquals(Map.of("email", "ben@example.com", "firstname", "Ben"), rows.next());
+			assertNull(rows.next());
+			assertEquals(2, rows.row());
+		}
+
+		String json = "[{\"email\": \"ana@example.com\", \"first_name\": \"Ana\", \"teacherId\": 7}]";
+		try (ImportRows rows = ImportRows.open(stream(json), ImportRows.Format.JSON, new ObjectMapper())) {
+			assertEquals(Map.of("email", "ana@example.com", "firstname", "Ana", "teacherid", "7"), rows.next());
+			assertNull(rows.next());
+		}
+		assertEquals(ImportRows.Format.CSV, ImportRows.Format.of(null, "school.CSV", null));
+		assertEquals(ImportRows.Format.JSON, ImportRows.Format.of(null, null, "application/json"));
+	}
+
+	@Test
+	void importsValidUsersInChunksAndReportsTheRest() {
+		when(usersRepo.findExistingEmails(any())).thenReturn(List.of("taken@example.com"));
+		String csv = "email,password,role,firstName\n"
+				+ "a@example.com,secret1,teacher,Ana\n"
+				+ "not-an-email,secret2,STUDENT,\n"
+				+ "b@example.com,secret3,STUDENT,Ben\n"
+				+ "a@example.com,secret4,STUDENT,\n"
+				+ "taken@example.com,secret5,STUDENT,\n"
+				+ "c@example.com,,PIRATE,\n"
+				+ "d@example.com,secret7,ADMIN,\n";
+
+		ImportReqRes resp = importService.importUsers(new MockMultipartFile("file", "users.csv", "text/csv",
+				csv.getBytes(StandardCharsets.UTF_8)), null);
+
+		assertEquals(200, resp.getStatusCode());
+		assertEquals(7, resp.getRowCount());
+		assertEquals(3, resp.getImportedCount());
+		assertEquals(List.of(100L, 101L, 102L), resp.getImportedIds());
+		assertEquals(4, resp.getFailedCount());
+		// Invalid rows are reported as they are read, duplicates of existing users when their chunk is written
+		assertEquals(List.of("2:email", "4:email", "6:password", "6:role", "5:email"),
+				resp.getErrors().stream().map(error -> error.row() + ":" + error.field()).toList());
+		assertEquals("User with this email already exist.", resp.getErrors().get(4).message());
+		// Rows 1 and 3 in the first chunk, row 7 alone after taken@ was dropped from the second
+		assertEquals(List.of(2, 1), batchSizes);
+		verify(passwordHashingService, times(3)).hash(anyString(), anyInt());
+		verify(secondLevelCacheSync).evictQueryRegionsEverywhere();
+	}
+
+	@Test
+	void lessonsAreCheckedUnderTheTeachersLockAndIndexedWithTheChunk() {
+		User teacher = new User();
+		teacher.setId(7L);
+		teacher.setRole("TEACHER");
+		when(usersRepo.findAllById(any())).thenReturn(List.of(teacher));
+		LessonScheduleService schedule = mock(LessonScheduleService.class);
+		// Guitar overlaps a lesson another request booked for the teacher
+		when(schedule.findBookedConflicts(any())).thenAnswer(invocation ->
+				"Guitar".equals(invocation.<Lesson>getArgument(0).getTitle()) ? List.of(42L) : List.of());
+		ReflectionTestUtils.setField(importService, "lessonScheduleService", schedule);
+		ReflectionTestUtils.setField(importService, "lessonGeoIndex", mock(LessonGeoIndex.class));
+		ReflectionTestUtils.setField(importService, "lessonReminderService", mock(LessonReminderService.class));
+		ReflectionTestUtils.setField(importService, "outboxService", mock(OutboxService.class));
+		ReflectionTestUtils.setField(importService, "outboxRelay", mock(OutboxRelay.class));
+		ReflectionTestUtils.setField(importService, "geocoder", mock(Geocoder.class));
+		String csv = "teacherId,title,instrument,location,startTime,endTime\n"
+				+ "7,Piano,piano,ONLINE,2025-01-15T17:00:00,2025-01-15T18:00:00\n"
+				+ "7,Guitar,guitar,ONLINE,2025-01-16T17:00:00,2025-01-16T18:00:00\n";
+
+		ImportReqRes resp = importService.importLessons(new MockMultipartFile("file", "lessons.csv", "text/csv",
+				csv.getBytes(StandardCharsets.UTF_8)), null);
+
+		assertEquals(List.of(100L), resp.getImportedIds());
+		assertEquals(List.of("2:startTime"), resp.getErrors().stream().map(error -> error.row() + ":" + error.field()).toList());
+		InOrder order = inOrder(usersRepo, schedule);
+		order.verify(usersRepo).lockForBooking(7L);
+		order.verify(schedule, times(2)).findBookedConflicts(any());
+		order.verify(schedule).index(any());
+	}
+
+	@Test
+	void rejectsUnknownFormats() {
+		ImportReqRes resp = importService.importUsers(new MockMultipartFile("file", "users.xlsx", "application/octet-stream",
+				new byte[0]), null);
+
+		assertEquals(400, resp.getStatusCode());
+	}
+
+	private static ByteArrayInputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,74 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CacheGenerationsTests {
+
+	private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+	@SuppressWarnings("unchecked")
+	private final HashOperations<String, Object, Object> hashes = mock(HashOperations.class);
+	private final CacheGenerations generations = new CacheGenerations();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(generations, "stringRedisTemplate", redis);
+		ReflectionTestUtils.setField(generations, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(generations, "maxAgeMs", 60_000L);
+		generations.start();
+		when(redis.<Object, Object>opsForHash()).thenReturn(hashes);
+	}
+
+	@Test
+	void keysEmbedTheGenerationReadOnce() {
+		when(hashes.get("cache:generations", "teacher-lessons::5")).thenReturn("3");
+
+		assertEquals("5@g3", generations.versioned("teacher-lessons", 5L));
+		assertEquals("5@g3", generations.versioned("teacher-lessons", 5L));
+		assertEquals("all-active@g0", generations.versioned("lessons", "all-active"));
+
+		verify(hashes, times(1)).get("cache:generations", "teacher-lessons::5");
+	}
+
+	@Test
+	void bumpsAndAnnouncedGenerationsOnlyMoveForward() {
+		when(hashes.get(anyString(), any())).thenReturn("3");
+		generations.versioned("teacher-lessons", 5L);
+		when(redis.execute(ArgumentMatchers.<RedisScript<List<Long>>>any(), eq(List.of("cache:generations")), any(Object[].class)))
+				.thenReturn(List.of(4L, 1L));
+
+		generations.bump(List.of("teacher-lessons::5", "lessons::all-active"));
+		assertEquals("5@g4", generations.versioned("teacher-lessons", 5L));
+		assertEquals("all-active@g1", generations.versioned("lessons", "all-active"));
+
+		// Bumped through another instance, then a late message with an older generation
+		generations.onMessage(message("7 teacher-lessons::5\n2 lessons::all-active"), null);
+		generations.onMessage(message("6 teacher-lessons::5"), null);
+		assertEquals("5@g7", generations.versioned("teacher-lessons", 5L));
+		assertEquals("all-active@g2", generations.versioned("lessons", "all-active"));
+	}
+
+	private static DefaultMessage message(String body) {
+		return new DefaultMessage(CacheGenerations.CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+	}
+}
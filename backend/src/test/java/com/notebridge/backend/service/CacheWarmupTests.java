@@ -0,0 +1,81 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.dto.LessonView;
+import com.notebridge.backend.dto.LessonsReqRes;
+
+class CacheWarmupTests {
+
+	private final LessonsService lessonsService = mock(LessonsService.class);
+	private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+	private final CacheWarmupService warmup = new CacheWarmupService();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(warmup, "lessonsService", lessonsService);
+		ReflectionTestUtils.setField(warmup, "stringRedisTemplate", redis);
+		ReflectionTestUtils.setField(warmup, "topLessons", 10);
+		ReflectionTestUtils.setField(warmup, "teachers", 10);
+		ReflectionTestUtils.setField(warmup, "parallelism", 2);
+		ReflectionTestUtils.setField(warmup, "timeoutMs", 5000L);
+		ReflectionTestUtils.setField(warmup, "trackedLessons", 2);
+	}
+
+	@Test
+	void pendingViewsAreCapped() {
+		warmup.recordView(1L);
+		warmup.recordView(2L);
+		warmup.recordView(3L);
+		warmup.recordView(1L);
+
+		Map<?, ?> pending = (Map<?, ?>) ReflectionTestUtils.getField(warmup, "pendingViews");
+		assertEquals(2, pending.size());
+		assertEquals(2L, ((LongAdder) pending.get(1L)).sum());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void onlySuccessfulReadsCountAsWarmed() throws InterruptedException {
+		LessonsReqRes catalog = response(200);
+		catalog.setLessonsList(List.of(lesson(1L, 7L), lesson(2L, 8L)));
+		when(lessonsService.getAllLessons()).thenReturn(catalog);
+		ZSetOperations<String, String> zSets = mock(ZSetOperations.class);
+		when(redis.opsForZSet()).thenReturn(zSets);
+		when(zSets.reverseRange(anyString(), anyLong(), anyLong())).thenReturn(new LinkedHashSet<>(List.of("1", "2", "3")));
+		when(lessonsService.getLessonById(1L)).thenReturn(response(200));
+		when(lessonsService.getLessonById(2L)).thenThrow(new IllegalStateException("cache unavailable"));
+		when(lessonsService.getLessonById(3L)).thenReturn(response(404));
+		when(lessonsService.getLessonsByTeacher(7L)).thenReturn(response(200));
+		when(lessonsService.getLessonsByTeacher(8L)).thenReturn(response(500));
+
+		// The catalog, lesson 1 and teacher 7
+		assertEquals(3, warmup.warm());
+	}
+
+	private static LessonsReqRes response(int statusCode) {
+		LessonsReqRes resp = new LessonsReqRes();
+		resp.setStatusCode(statusCode);
+		return resp;
+	}
+
+	private static LessonView lesson(Long id, Long teacherId) {
+		return new LessonView(id, teacherId, "Piano", "piano", null, null, "ONLINE", null, null, null, null,
+				"NONE", null, null, null, null, false);
+	}
+}
@@ -0,0 +1,174 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.config.ShardRoutingDataSource;
+import com.notebridge.backend.entity.ChatShard;
+import com.notebridge.backend.repository.ChatShardsRepo;
+
+class ChatShardsTests {
+
+	private final ChatShardsRepo chatShardsRepo = mock(ChatShardsRepo.class);
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private ChatShards chatShards(List<String> names, List<String> placement) {
+		ChatShards chatShards = new ChatShards();
+		ReflectionTestUtils.setField(chatShards, "chatShardsRepo", chatShardsRepo);
+		ReflectionTestUtils.setField(chatShards, "transactionManager", transactionManager);
+		ReflectionTestUtils.setField(chatShards, "names", names);
+		ReflectionTestUtils.setField(chatShards, "placement", placement);
+		ReflectionTestUtils.setField(chatShards, "virtualNodes", 64);
+		ReflectionTestUtils.setField(chatShards, "directoryTtlMs", 60_000L);
+		ReflectionTestUtils.setField(chatShards, "maxCached", 1000);
+		ReflectionTestUtils.setField(chatShards, "gatherTimeoutMs", 2000L);
+		chatShards.init();
+		return chatShards;
+	}
+
+	private static ChatShardsRepo.Placement placement(String shard, boolean moving) {
+		ChatShardsRepo.Placement placement = mock(ChatShardsRepo.Placement.class);
+		when(placement.getShard()).thenReturn(shard);
+		when(placement.getMoving()).thenReturn(moving);
+		return placement;
+	}
+
+	private static ChatShard row(long chatId, String shard, boolean moving) {
+		ChatShard row = new ChatShard();
+		row.setChatId(chatId);
+		row.setShard(shard);
+		row.setMoving(moving);
+		row.setUpdatedAt(LocalDateTime.now());
+		return row;
+	}
+
+	@Test
+	void withoutShardsEverythingRunsInlineOnThePrimary() {
+		ChatShards chatShards = chatShards(List.of(), List.of());
+
+		assertEquals(ChatShards.PRIMARY, chatShards.locate(7L).shard());
+		assertEquals("done", chatShards.write(7L, () -> "done"));
+		assertEquals(Map.of(ChatShards.PRIMARY, List.of(1L, 2L)), chatShards.byShard(List.of(1L, 2L)));
+		chatShards.place(7L);
+		verifyNoInteractions(chatShardsRepo, transactionManager);
+	}
+
+	@Test
+	void ringSpreadsChatsAndAnAddedShardOnlyTakesChatsFromOthers() {
+		ChatShards two = chatShards(List.of("a"), List.of());
+		ChatShards three = chatShards(List.of("a", "b"), List.of());
+
+		Map<String, Integer> counts = new HashMap<>();
+		int moved = 0;
+		for (long chatId = 1; chatId <= 30_000; chatId++) {
+			String before = two.ringShard(chatId);
+			String after = three.ringShard(chatId);
+			counts.merge(after, 1, Integer::sum);
+			if (!before.equals(after)) {
+				// Only to the new shard, never between the old ones
+				assertEquals("b", after);
+				moved++;
+			}
+		}
+		for (String shard : List.of(ChatShards.PRIMARY, "a", "b")) {
+			assertTrue(counts.get(shard) > 6_000, shard + " got " + counts.get(shard));
+		}
+		assertEquals(counts.get("b"), moved);
+	}
+
+	@Test
+	void placementLimitsWhereNewChatsGo() {
+		ChatShards chatShards = chatShards(List.of("a", "b"), List.of("b"));
+
+		for (long chatId = 1; chatId <= 100; chatId++) {
+			assertEquals("b", chatShards.ringShard(chatId));
+		}
+		assertThrows(IllegalStateException.class, () -> chatShards(List.of("a"), List.of("c")));
+	}
+
+	@Test
+	void queriesRunOnTheChatsShardInTheirOwnTransaction() {
+		ChatShards chatShards = chatShards(List.of("a"), List.of());
+		when(chatShardsRepo.findById(5L)).thenReturn(Optional.of(row(5L, "a", false)));
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+
+		assertEquals("a", chatShards.read(5L, ShardRoutingDataSource::current));
+		assertNull(ShardRoutingDataSource.current());
+		verify(transactionManager).commit(any());
+
+		// Cached for the directory TTL
+		chatShards.read(5L, () -> null);
+		verify(chatShardsRepo, times(1)).findById(5L);
+	}
+
+	@Test
+	void writesAreRefusedWhileTheChatIsMoving() {
+		ChatShards chatShards = chatShards(List.of("a"), List.of());
+		when(chatShardsRepo.findById(5L)).thenReturn(Optional.of(row(5L, ChatShards.PRIMARY, false)));
+		// Marked after this instance cached the chat, writes read the row again
+		assertEquals("read", chatShards.read(5L, () -> "read"));
+		ChatShardsRepo.Placement moving = placement(ChatShards.PRIMARY, true);
+		when(chatShardsRepo.lockPlacement(5L)).thenReturn(Optional.of(moving));
+
+		assertThrows(ChatShards.ChatMovingException.class, () -> chatShards.write(5L, () -> "sent"));
+		// Reads keep going to the old shard
+		assertEquals("read", chatShards.read(5L, () -> "read"));
+	}
+
+	@Test
+	void writeOnAShardIsUndoneWhenTheCallerRollsBack() {
+		ChatShards chatShards = chatShards(List.of("a"), List.of());
+		ChatShardsRepo.Placement onA = placement("a", false);
+		when(chatShardsRepo.lockPlacement(5L)).thenReturn(Optional.of(onA));
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+		List<String> undone = new ArrayList<>();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			assertEquals("sent", chatShards.write(5L, () -> "sent", result -> undone.add(result + " on " + ShardRoutingDataSource.current())));
+			assertTrue(undone.isEmpty());
+			TransactionSynchronizationManager.getSynchronizations()
+					.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(List.of("sent on a"), undone);
+	}
+
+	@Test
+	void gatherRunsOncePerShardWithItsChats() {
+		ChatShards chatShards = chatShards(List.of("a", "b"), List.of());
+		when(chatShardsRepo.findAllById(anyIterable())).thenReturn(List.of(row(2L, "a", false), row(3L, "b", false), row(4L, "a", false)));
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+
+		List<String> results = chatShards.gather(List.of(1L, 2L, 3L, 4L),
+				chatIds -> (ShardRoutingDataSource.current() == null ? ChatShards.PRIMARY : ShardRoutingDataSource.current()) + chatIds);
+
+		assertEquals(List.of("primary[1]", "a[2, 4]", "b[3]"), results);
+		verify(chatShardsRepo, times(1)).findAllById(anyIterable());
+	}
+}
@@ -0,0 +1,90 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.dto.ChatsReqRes;
+import com.notebridge.backend.dto.DashboardReqRes;
+import com.notebridge.backend.dto.LessonView;
+import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.UsersRepo;
+
+class DashboardServiceTests {
+
+	private final UsersRepo usersRepo = mock(UsersRepo.class);
+	private final LessonsService lessonsService = mock(LessonsService.class);
+	private final ChatsService chatsService = mock(ChatsService.class);
+	private final MessagesService messagesService = mock(MessagesService.class);
+	private final DashboardService dashboardService = new DashboardService();
+	private final User teacher = new User();
+
+	@BeforeEach
+	void setUp() {
+		teacher.setId(1L);
+		teacher.setRole("TEACHER");
+		when(usersRepo.findById(1L)).thenReturn(Optional.of(teacher));
+
+		ReflectionTestUtils.setField(dashboardService, "usersRepo", usersRepo);
+		ReflectionTestUtils.setField(dashboardService, "lessonsService", lessonsService);
+		ReflectionTestUtils.setField(dashboardService, "chatsService", chatsService);
+		ReflectionTestUtils.setField(dashboardService, "messagesService", messagesService);
+		ReflectionTestUtils.setField(dashboardService, "environment", new MockEnvironment()
+				.withProperty("dashboard.timeout-ms", "1000")
+				.withProperty("dashboard.chats.timeout-ms", "100"));
+
+		LessonsReqRes lessons = new LessonsReqRes();
+		lessons.setStatusCode(200);
+		lessons.setLessonsList(List.of(new LessonView(5L, 1L, "Piano", "Piano", null, null, "ONLINE",
+				null, null, null, null, "NONE", null, null, null, null, false)));
+		lessons.setUsers(Map.of());
+		when(lessonsService.getLessonsByTeacher(1L)).thenReturn(lessons);
+
+		MessagesReqRes unread = new MessagesReqRes();
+		unread.setStatusCode(200);
+		unread.setUnreadMessageCount(3L);
+		when(messagesService.getTotalUnreadMessageCount(teacher)).thenReturn(unread);
+	}
+
+	@Test
+	void returnsOtherPartsWhenOnePartTimesOut() {
+		when(chatsService.getUserChats(teacher)).thenAnswer(invocation -> {
+			Thread.sleep(5_000);
+			return new ChatsReqRes();
+		});
+
+		long start = System.nanoTime();
+		DashboardReqRes resp = dashboardService.getDashboard(1L);
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		assertEquals(200, resp.getStatusCode());
+		assertEquals(Map.of("chats", "timeout"), resp.getFailedParts());
+		assertNull(resp.getChatsList());
+		assertEquals(1, resp.getLessonsList().size());
+		assertEquals(3L, resp.getUnreadMessageCount());
+		assertTrue(elapsedMs < 1_000, "took " + elapsedMs + " ms");
+	}
+
+	@Test
+	void failedPartIsReportedAsError() {
+		when(chatsService.getUserChats(teacher)).thenThrow(new IllegalStateException("boom"));
+
+		DashboardReqRes resp = dashboardService.getDashboard(1L);
+
+		assertEquals(Map.of("chats", "error"), resp.getFailedParts());
+		assertEquals(3L, resp.getUnreadMessageCount());
+	}
+}
@@ -0,0 +1,103 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.entity.FileMetaData;
+import com.notebridge.backend.repository.FilesRepo;
+import com.notebridge.backend.repository.LessonsRepo;
+import com.notebridge.backend.repository.UsersRepo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FilesServiceTests {
+
+	private final FilesRepo filesRepo = mock(FilesRepo.class);
+	private FilesService filesService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		filesService = spy(new FilesService(mock(UsersRepo.class), mock(LessonsRepo.class), mock(OutboxService.class), filesRepo));
+		ReflectionTestUtils.setField(filesService, "bucketName", "notes");
+		ReflectionTestUtils.setField(filesService, "signedUrlTtlMinutes", 60L);
+		ReflectionTestUtils.setField(filesService, "refreshMarginMinutes", 5L);
+		ReflectionTestUtils.setField(filesService, "maxCachedUrls", 100);
+		ReflectionTestUtils.setField(filesService, "meterRegistry", new SimpleMeterRegistry());
+		filesService.registerMetrics();
+		doReturn(URI.create("https://storage.googleapis.com/notes/a.png?X-Goog-Signature=1").toURL())
+				.when(filesService).sign("profile_pictures/a.png");
+	}
+
+	@Test
+	void signsReferencesToTheBucketOnceUntilCloseToExpiry() {
+		String url = "https://storage.googleapis.com/notes/a.png?X-Goog-Signature=1";
+		assertEquals(url, filesService.signedUrl("gs://notes/profile_pictures/a.png"));
+		// Public URLs saved before pictures were private point at the same object
+		assertEquals(url, filesService.signedUrl("https://storage.googleapis.com/notes/profile_pictures/a.png"));
+		verify(filesService, times(1)).sign("profile_pictures/a.png");
+
+		// Within the refresh margin of its expiry the URL is signed again
+		ReflectionTestUtils.setField(filesService, "refreshMarginMinutes", 61L);
+		filesService.signedUrl("gs://notes/profile_pictures/a.png");
+		verify(filesService, times(2)).sign("profile_pictures/a.png");
+	}
+
+	@Test
+	void leavesOtherValuesAlone() {
+		assertNull(filesService.signedUrl(null));
+		assertEquals("https://example.com/me.png", filesService.signedUrl("https://example.com/me.png"));
+		assertEquals("gs://other/profile_pictures/a.png", filesService.signedUrl("gs://other/profile_pictures/a.png"));
+		verify(filesService, never()).sign(anyString());
+	}
+
+	@Test
+	void storesEachDistinctContentOnce() throws Exception {
+		String hash = FilesService.sha256(picture("same bytes"));
+		assertEquals(64, hash.length());
+		doNothing().when(filesService).upload(anyString(), any());
+
+		assertEquals("gs://notes/pictures/" + hash, filesService.storePicture(picture("same bytes")));
+		verify(filesService).upload(eq("pictures/" + hash), any());
+
+		FileMetaData stored = new FileMetaData();
+		stored.setObjectName("pictures/" + hash);
+		when(filesRepo.findByUniqueId(hash)).thenReturn(Optional.of(stored));
+		assertEquals("gs://notes/pictures/" + hash, filesService.storePicture(picture("same bytes")));
+		// The second upload only adds a reference
+		verify(filesService, times(1)).upload(anyString(), any());
+		verify(filesRepo, times(2)).addReference(eq(hash), eq("pictures/" + hash), any(), eq("image/png"), eq(10L));
+
+		filesService.releaseReference("gs://notes/pictures/" + hash);
+		filesService.releaseReference("https://example.com/me.png");
+		verify(filesRepo, times(1)).releaseReference(anyString(), any());
+
+		// The row was collected between reading and referencing it: the object is written again
+		when(filesRepo.addReference(eq(hash), anyString(), any(), anyString(), any())).thenReturn(1);
+		filesService.storePicture(picture("same bytes"));
+		verify(filesService, times(2)).upload(eq("pictures/" + hash), any());
+	}
+
+	private static MockMultipartFile picture(String content) {
+		return new MockMultipartFile("file", "me.png", "image/png", content.getBytes(StandardCharsets.UTF_8));
+	}
+}
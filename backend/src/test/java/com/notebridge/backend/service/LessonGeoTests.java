@@ -0,0 +1,137 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.repository.LessonsRepo;
+
+class LessonGeoTests {
+
+	private final LocalGeocoder geocoder = new LocalGeocoder();
+	private final LessonsRepo lessonsRepo = mock(LessonsRepo.class);
+	private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+
+	@Test
+	void onlyAddressesThatAreCoordinatesAreGeocoded() {
+		assertArrayEquals(new double[] {41.8781, -87.6298}, geocoder.geocode(" 41.8781, -87.6298 ").orElseThrow());
+		assertTrue(geocoder.geocode("Room 12, 45 High St").isEmpty());
+		assertTrue(geocoder.geocode("Studio 3, 12, 45").isEmpty());
+		assertTrue(geocoder.geocode("95, 10").isEmpty());
+		assertTrue(geocoder.geocode("45, 190").isEmpty());
+		assertTrue(geocoder.geocode(null).isEmpty());
+	}
+
+	@Test
+	void radiusSearchReturnsNearestFirstAndSkipsOnlineLessons() {
+		LessonGeoIndex index = geoIndex();
+		// Chicago Loop, Evanston (~19km), Milwaukee (~130km), and an online lesson in the Loop
+		index.index(lesson(1L, "IN_PERSON", 41.8781, -87.6298));
+		index.index(lesson(2L, "HYBRID", 42.0451, -87.6877));
+		index.index(lesson(3L, "IN_PERSON", 43.0389, -87.9065));
+		index.index(lesson(4L, "ONLINE", 41.8781, -87.6298));
+
+		List<LessonGeoIndex.Hit> hits = index.within(41.88, -87.63, 25);
+		assertEquals(List.of(1L, 2L), hits.stream().map(LessonGeoIndex.Hit::lessonId).toList());
+		assertTrue(hits.get(1).distanceKm() > 15 && hits.get(1).distanceKm() < 25);
+
+		index.remove(2L);
+		assertEquals(List.of(1L, 3L), index.within(41.88, -87.63, 200).stream().map(LessonGeoIndex.Hit::lessonId).toList());
+	}
+
+	@Test
+	void nearbySearchClampsTheRadiusAndRejectsInvalidParameters() {
+		LessonGeoIndex index = mock(LessonGeoIndex.class);
+		LessonsService lessonsService = new LessonsService();
+		ReflectionTestUtils.setField(lessonsService, "lessonGeoIndex", index);
+		ReflectionTestUtils.setField(lessonsService, "lessonsRepo", mock(LessonsRepo.class));
+		ReflectionTestUtils.setField(lessonsService, "maxRadiusKm", 200.0);
+
+		assertEquals(200, lessonsService.getNearbyLessons(41.88, -87.63, 1e9, 0, 10).getStatusCode());
+		verify(index).within(41.88, -87.63, 200.0);
+
+		assertEquals(400, lessonsService.getNearbyLessons(41.88, -87.63, Double.NaN, 0, 10).getStatusCode());
+		assertEquals(400, lessonsService.getNearbyLessons(91, -87.63, 10, 0, 10).getStatusCode());
+		verify(index, never()).within(eq(91.0), anyDouble(), anyDouble());
+	}
+
+	@Test
+	void indexChangesOnlyOnceTheTransactionCommitsAndAreBroadcast() {
+		LessonGeoIndex index = geoIndex();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			index.index(lesson(1L, "IN_PERSON", 41.8781, -87.6298));
+			assertTrue(index.within(41.88, -87.63, 25).isEmpty());
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(1, index.within(41.88, -87.63, 25).size());
+		verify(redis).convertAndSend(eq(LessonGeoIndex.CHANNEL), endsWith(" S 1"));
+
+		// Cancelled on another instance
+		index.onMessage(new DefaultMessage(LessonGeoIndex.CHANNEL.getBytes(StandardCharsets.UTF_8),
+				"other C 1".getBytes(StandardCharsets.UTF_8)), null);
+		assertTrue(index.within(41.88, -87.63, 25).isEmpty());
+	}
+
+	@Test
+	void staleHitsAreLeftOutOfThePageAndTheCount() {
+		LessonGeoIndex index = geoIndex();
+		index.index(lesson(1L, "IN_PERSON", 41.8781, -87.6298));
+		index.index(lesson(2L, "HYBRID", 42.0451, -87.6877));
+		index.index(lesson(3L, "IN_PERSON", 41.8800, -87.6300));
+		// Changed on another instance without this one hearing of it
+		Lesson cancelled = lesson(2L, "HYBRID", 42.0451, -87.6877);
+		cancelled.setCancelled(true);
+		Lesson online = lesson(3L, "ONLINE", 41.8800, -87.6300);
+		when(lessonsRepo.findAllById(any())).thenReturn(List.of(lesson(1L, "IN_PERSON", 41.8781, -87.6298), cancelled, online));
+		LessonsService lessonsService = new LessonsService();
+		ReflectionTestUtils.setField(lessonsService, "lessonGeoIndex", index);
+		ReflectionTestUtils.setField(lessonsService, "lessonsRepo", lessonsRepo);
+		ReflectionTestUtils.setField(lessonsService, "maxRadiusKm", 200.0);
+
+		LessonsReqRes resp = lessonsService.getNearbyLessons(41.88, -87.63, 25, 0, 10);
+
+		assertEquals(List.of(1L), resp.getNearbyLessons().stream().map(nearby -> nearby.getLesson().id()).toList());
+		assertEquals(1L, resp.getTotalCount());
+		assertEquals(1, index.within(41.88, -87.63, 25).size());
+	}
+
+	private LessonGeoIndex geoIndex() {
+		LessonGeoIndex index = new LessonGeoIndex();
+		ReflectionTestUtils.setField(index, "lessonsRepo", lessonsRepo);
+		ReflectionTestUtils.setField(index, "stringRedisTemplate", redis);
+		return index;
+	}
+
+	private static Lesson lesson(Long id, String location, double latitude, double longitude) {
+		Lesson lesson = new Lesson();
+		lesson.setId(id);
+		lesson.setLocation(location);
+		lesson.setLatitude(latitude);
+		lesson.setLongitude(longitude);
+		return lesson;
+	}
+}
@@ -0,0 +1,127 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.dto.MessagesReqRes;
+import com.notebridge.backend.entity.Chat;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.ChatsRepo;
+import com.notebridge.backend.repository.LessonsRepo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LessonReminderTests {
+
+	private final LessonsRepo lessonsRepo = mock(LessonsRepo.class);
+	private final ChatsRepo chatsRepo = mock(ChatsRepo.class);
+	private final MessagesService messagesService = mock(MessagesService.class);
+	private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+	private final LessonReminderService reminders = new LessonReminderService();
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		ValueOperations<String, String> values = mock(ValueOperations.class);
+		when(redis.opsForValue()).thenReturn(values);
+		when(values.setIfAbsent(anyString(), anyString(), any())).thenReturn(true);
+		ReflectionTestUtils.setField(reminders, "lessonsRepo", lessonsRepo);
+		ReflectionTestUtils.setField(reminders, "chatsRepo", chatsRepo);
+		ReflectionTestUtils.setField(reminders, "messagesService", messagesService);
+		ReflectionTestUtils.setField(reminders, "stringRedisTemplate", redis);
+		ReflectionTestUtils.setField(reminders, "eventPublisher", mock(ApplicationEventPublisher.class));
+		ReflectionTestUtils.setField(reminders, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(reminders, "leadMinutes", 15L);
+		ReflectionTestUtils.setField(reminders, "windowHours", 24L);
+		ReflectionTestUtils.setField(reminders, "tickMs", 100L);
+		ReflectionTestUtils.setField(reminders, "wheelSize", 64);
+		ReflectionTestUtils.setField(reminders, "zone", "");
+		reminders.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		reminders.stop();
+	}
+
+	@Test
+	void timersChangeOnlyOnceTheTransactionCommits() {
+		when(lessonsRepo.findActiveBetween(any(), any())).thenReturn(List.of());
+		reminders.loadNextWindow();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			reminders.schedule(lesson(LocalDateTime.now().plusHours(2)));
+			assertEquals(0, reminders.pending());
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		assertEquals(1, reminders.pending());
+		verify(redis).convertAndSend(eq(LessonReminderService.CHANNEL), any(String.class));
+	}
+
+	@Test
+	void firedReminderIsDroppedUnlessTheLessonStillHasThatOccurrence() {
+		LocalDateTime start = LocalDateTime.now().plusMinutes(10).truncatedTo(ChronoUnit.MINUTES);
+		long startEpoch = LessonSeries.toEpoch(start);
+		Chat chat = new Chat();
+		chat.setId(3L);
+		when(chatsRepo.findByTeacherIdAndSubject(7L, "Piano")).thenReturn(List.of(chat));
+		MessagesReqRes sent = new MessagesReqRes();
+		sent.setStatusCode(201);
+		when(messagesService.sendMessage(anyLong(), anyLong(), anyString())).thenReturn(sent);
+
+		// Moved an hour later on another instance
+		when(lessonsRepo.findById(1L)).thenReturn(Optional.of(lesson(start.plusHours(1))));
+		reminders.fire(1L, startEpoch);
+		Lesson cancelled = lesson(start);
+		cancelled.setCancelled(true);
+		when(lessonsRepo.findById(1L)).thenReturn(Optional.of(cancelled));
+		reminders.fire(1L, startEpoch);
+		verify(messagesService, never()).sendMessage(anyLong(), anyLong(), anyString());
+
+		when(lessonsRepo.findById(1L)).thenReturn(Optional.of(lesson(start)));
+		reminders.fire(1L, startEpoch);
+		verify(messagesService).sendMessage(eq(3L), eq(7L), anyString());
+	}
+
+	private static Lesson lesson(LocalDateTime start) {
+		User teacher = new User();
+		teacher.setId(7L);
+		Lesson lesson = new Lesson();
+		lesson.setId(1L);
+		lesson.setTitle("Piano");
+		lesson.setTeacher(teacher);
+		lesson.setStartTime(start);
+		lesson.setEndTime(start.plusHours(1));
+		lesson.setStartDate(start.toLocalDate().atStartOfDay());
+		lesson.setEndDate(start.plusHours(1).toLocalDate().atStartOfDay());
+		lesson.setRecurrence("NONE");
+		return lesson;
+	}
+}
@@ -0,0 +1,212 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.notebridge.backend.dto.LessonsReqRes;
+import com.notebridge.backend.entity.Lesson;
+import com.notebridge.backend.entity.User;
+import com.notebridge.backend.repository.LessonsRepo;
+import com.notebridge.backend.repository.UsersRepo;
+
+class LessonScheduleTests {
+
+	private final LessonsRepo lessonsRepo = mock(LessonsRepo.class);
+	private final UsersRepo usersRepo = mock(UsersRepo.class);
+	private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+
+	@Test
+	void intervalTreeReturnsOnlyOverlappingIntervals() {
+		IntervalTree<Long> tree = new IntervalTree<>();
+		for (long i = 0; i < 100; i++) {
+			tree.insert(i * 10, i * 10 + 5, i, i);
+		}
+		assertEquals(List.of(2L, 3L), tree.overlapping(22, 33).stream().sorted().toList());
+		assertTrue(tree.overlapping(25, 30).isEmpty());
+
+		assertTrue(tree.remove(20, 2));
+		assertFalse(tree.remove(20, 2));
+		assertEquals(List.of(3L), tree.overlapping(22, 33));
+		assertEquals(99, tree.size());
+	}
+
+	@Test
+	void weeklySeriesExpandsLazilyInsideWindow() {
+		LessonSeries series = LessonSeries.of(lesson(1L, "2024-02-01T10:00", "2024-02-29T11:00", "WEEKLY"));
+
+		// Feb 1, 8, 15, 22, 29
+		assertEquals(5, series.count);
+		List<Long> starts = series.occurrenceStartsIn(
+				LessonSeries.toEpoch(LocalDateTime.parse("2024-02-08T10:30")),
+				LessonSeries.toEpoch(LocalDateTime.parse("2024-02-16T00:00")));
+		assertEquals(List.of(
+				LessonSeries.toEpoch(LocalDateTime.parse("2024-02-08T10:00")),
+				LessonSeries.toEpoch(LocalDateTime.parse("2024-02-15T10:00"))), starts);
+	}
+
+	@Test
+	void conflictsOnlyWhenOccurrencesOverlap() {
+		LessonSeries weekly = LessonSeries.of(lesson(1L, "2024-02-01T10:00", "2024-02-29T11:00", "WEEKLY"));
+		LessonSeries sameDayLater = LessonSeries.of(lesson(2L, "2024-02-15T10:30", "2024-02-15T11:30", "NONE"));
+		LessonSeries otherWeekday = LessonSeries.of(lesson(3L, "2024-02-02T10:00", "2024-02-23T11:00", "WEEKLY"));
+		LessonSeries backToBack = LessonSeries.of(lesson(4L, "2024-02-08T11:00", "2024-02-08T12:00", "NONE"));
+
+		assertTrue(weekly.conflictsWith(sameDayLater));
+		assertFalse(weekly.conflictsWith(otherWeekday));
+		assertFalse(weekly.conflictsWith(backToBack));
+	}
+
+	@Test
+	void unknownRecurrenceIsRejected() {
+		assertEquals("BIWEEKLY", LessonSeries.normalizeRecurrence(" biweekly "));
+		assertNull(LessonSeries.normalizeRecurrence("MONTHLY"));
+
+		LessonsReqRes request = new LessonsReqRes();
+		request.setStartTime(LocalDateTime.parse("2024-02-01T10:00"));
+		request.setEndTime(LocalDateTime.parse("2024-02-01T11:00"));
+		request.setRecurrence("MONTHLY");
+		when(usersRepo.findById(7L)).thenReturn(Optional.of(teacher()));
+
+		assertEquals(400, lessonsService().createLesson(request, 7L).getStatusCode());
+		assertEquals(400, lessonsService().checkConflicts(request, 7L).getStatusCode());
+		verify(lessonsRepo, never()).save(any());
+	}
+
+	@Test
+	void createWithoutRecurrenceIsWeekly() {
+		// What the frontend posts, it has no recurrence field
+		LessonsReqRes request = new LessonsReqRes();
+		request.setTitle("Piano");
+		request.setLocation("ONLINE");
+		request.setStartTime(LocalDateTime.parse("2024-02-01T10:00"));
+		request.setEndTime(LocalDateTime.parse("2024-02-01T11:00"));
+		request.setStartDate(LocalDateTime.parse("2024-02-01T00:00"));
+		request.setEndDate(LocalDateTime.parse("2024-02-29T00:00"));
+		when(usersRepo.findById(7L)).thenReturn(Optional.of(teacher()));
+		when(lessonsRepo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		LessonsReqRes resp = lessonsService().createLesson(request, 7L);
+
+		assertEquals(200, resp.getStatusCode());
+		assertEquals("WEEKLY", resp.getLesson().recurrence());
+		verify(usersRepo).lockForBooking(7L);
+	}
+
+	@Test
+	void bookingsAreCheckedAgainstTheDatabaseNotTheTree() {
+		LessonScheduleService schedule = scheduleService();
+		Lesson candidate = lesson(1L, "2024-02-01T10:00", "2024-02-01T11:00", "NONE");
+		when(lessonsRepo.findByTeacherAndIsCancelledFalse(candidate.getTeacher())).thenReturn(List.of());
+		assertTrue(schedule.findConflicts(candidate).isEmpty());
+
+		// Booked through another instance whose schedule change has not arrived yet
+		when(lessonsRepo.findActiveByTeacherBetween(7L, LocalDateTime.parse("2024-01-31T00:00"), LocalDateTime.parse("2024-02-01T11:00")))
+				.thenReturn(List.of(lesson(2L, "2024-02-01T10:30", "2024-02-01T11:30", "NONE")));
+		assertTrue(schedule.findConflicts(candidate).isEmpty());
+		assertEquals(List.of(2L), schedule.findBookedConflicts(candidate));
+		verify(lessonsRepo, times(1)).findByTeacherAndIsCancelledFalse(candidate.getTeacher());
+	}
+
+	@Test
+	void treeChangesOnlyOnceTheTransactionCommitsAndAreBroadcast() {
+		LessonScheduleService schedule = scheduleService();
+		Lesson candidate = lesson(1L, "2024-02-01T10:00", "2024-02-01T11:00", "NONE");
+		when(lessonsRepo.findByTeacherAndIsCancelledFalse(candidate.getTeacher())).thenReturn(List.of());
+		assertTrue(schedule.findConflicts(candidate).isEmpty());
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			schedule.index(lesson(2L, "2024-02-01T10:30", "2024-02-01T11:30", "NONE"));
+			assertTrue(schedule.findConflicts(candidate).isEmpty());
+			TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		assertEquals(List.of(2L), schedule.findConflicts(candidate));
+		verify(redis).convertAndSend(eq(LessonScheduleService.CHANNEL), endsWith(" S 2"));
+
+		// Cancelled on another instance
+		Lesson cancelled = lesson(2L, "2024-02-01T10:30", "2024-02-01T11:30", "NONE");
+		cancelled.setCancelled(true);
+		when(lessonsRepo.findById(2L)).thenReturn(Optional.of(cancelled));
+		schedule.onMessage(new DefaultMessage(LessonScheduleService.CHANNEL.getBytes(StandardCharsets.UTF_8),
+				"other S 2".getBytes(StandardCharsets.UTF_8)), null);
+		assertTrue(schedule.findConflicts(candidate).isEmpty());
+	}
+
+	@Test
+	void reactivationIsRefusedWhenItOverlapsALessonBookedMeanwhile() {
+		Lesson cancelled = lesson(1L, "2024-02-01T10:00", "2024-02-29T11:00", "WEEKLY");
+		cancelled.setCancelled(true);
+		when(lessonsRepo.findById(1L)).thenReturn(Optional.of(cancelled));
+		when(lessonsRepo.findActiveByTeacherBetween(eq(7L), any(), any()))
+				.thenReturn(List.of(lesson(2L, "2024-02-15T10:30", "2024-02-15T11:30", "NONE")));
+
+		LessonsReqRes resp = lessonsService().reactivateLessonForAdmin(1L);
+
+		assertEquals(409, resp.getStatusCode());
+		assertEquals(List.of(2L), resp.getConflictingLessonIds());
+		assertTrue(cancelled.isCancelled());
+		verify(usersRepo).lockForBooking(7L);
+		verify(lessonsRepo, never()).save(any());
+	}
+
+	private LessonScheduleService scheduleService() {
+		LessonScheduleService schedule = new LessonScheduleService();
+		ReflectionTestUtils.setField(schedule, "lessonsRepo", lessonsRepo);
+		ReflectionTestUtils.setField(schedule, "stringRedisTemplate", redis);
+		return schedule;
+	}
+
+	private LessonsService lessonsService() {
+		LessonsService lessonsService = new LessonsService();
+		ReflectionTestUtils.setField(lessonsService, "usersRepo", usersRepo);
+		ReflectionTestUtils.setField(lessonsService, "lessonsRepo", lessonsRepo);
+		ReflectionTestUtils.setField(lessonsService, "lessonScheduleService", scheduleService());
+		ReflectionTestUtils.setField(lessonsService, "lessonGeoIndex", mock(LessonGeoIndex.class));
+		ReflectionTestUtils.setField(lessonsService, "lessonReminderService", mock(LessonReminderService.class));
+		ReflectionTestUtils.setField(lessonsService, "outboxService", mock(OutboxService.class));
+		ReflectionTestUtils.setField(lessonsService, "geocoder", mock(Geocoder.class));
+		return lessonsService;
+	}
+
+	private static User teacher() {
+		User teacher = new User();
+		teacher.setId(7L);
+		return teacher;
+	}
+
+	private Lesson lesson(Long id, String start, String end, String recurrence) {
+		Lesson lesson = new Lesson();
+		lesson.setId(id);
+		lesson.setTeacher(teacher());
+		lesson.setStartTime(LocalDateTime.parse(start));
+		lesson.setEndTime(LocalDateTime.parse(end));
+		lesson.setStartDate(LocalDateTime.parse(start).toLocalDate().atStartOfDay());
+		lesson.setEndDate(LocalDateTime.parse(end).toLocalDate().atStartOfDay());
+		lesson.setRecurrence(recurrence);
+		return lesson;
+	}
+}
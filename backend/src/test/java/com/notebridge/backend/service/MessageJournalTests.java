@@ -0,0 +1,188 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageJournalTests {
+
+	@TempDir
+	Path dir;
+
+	private final List<MessageJournal> opened = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() throws IOException {
+		for (MessageJournal journal : opened) {
+			journal.close();
+		}
+	}
+
+	@Test
+	void replaysEntriesInOrderAndSurvivesARestart() throws Exception {
+		MessageJournal journal = open();
+		ExecutorService senders = Executors.newFixedThreadPool(8);
+		List<Future<MessageJournal.Entry>> sends = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			long chatId = i;
+			sends.add(senders.submit(() -> journal.append(chatId, 7L, "message " + chatId + " é")));
+		}
+		for (Future<MessageJournal.Entry> send : sends) {
+			send.get();
+		}
+		senders.shutdown();
+		assertEquals(200, journal.backlog());
+
+		List<MessageJournal.Entry> first = journal.next(50);
+		assertEquals(50, first.size());
+		for (int i = 0; i < first.size(); i++) {
+			assertEquals(i + 1, first.get(i).seq());
+		}
+		journal.applied(first.get(first.size() - 1).seq());
+		assertEquals(51, journal.next(1).get(0).seq());
+
+		// After a restart the applied entries are gone and the rest is still there
+		journal.close();
+		opened.remove(journal);
+		MessageJournal reopened = open();
+		assertEquals(150, reopened.backlog());
+		List<MessageJournal.Entry> rest = reopened.next(1000);
+		assertEquals(150, rest.size());
+		assertEquals(51, rest.get(0).seq());
+		assertTrue(rest.get(0).content().endsWith("é"));
+		assertEquals(201, reopened.append(1L, 7L, "after restart").seq());
+	}
+
+	@Test
+	void rollsSegmentsAndDeletesTheAppliedOnes() throws Exception {
+		MessageJournal journal = open();
+		for (int i = 0; i < 100; i++) {
+			journal.append(1L, 7L, "x".repeat(100));
+		}
+		assertTrue(segmentFiles().size() > 1);
+
+		journal.applied(100);
+		assertEquals(0, journal.backlog());
+		assertEquals(1, segmentFiles().size());
+	}
+
+	@Test
+	void stopsAtATornRecord() throws Exception {
+		MessageJournal journal = open();
+		journal.append(1L, 7L, "kept");
+		journal.append(1L, 7L, "torn");
+		journal.close();
+		opened.remove(journal);
+
+		// Flip a byte in the body of the second record
+		Path segment = segmentFiles().get(0);
+		int second = JournalSegment.HEADER_BYTES + MessageJournal.encode(new MessageJournal.Entry(1, UUID.randomUUID(), 1, 7, "kept", 0)).length;
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{42}), second + JournalSegment.HEADER_BYTES + 20);
+		}
+
+		MessageJournal reopened = open();
+		List<MessageJournal.Entry> entries = reopened.next(10);
+		assertEquals(1, entries.size());
+		assertEquals("kept", entries.get(0).content());
+		assertEquals(2, reopened.append(1L, 7L, "rewritten").seq());
+		assertEquals(List.of("kept", "rewritten"), reopened.next(10).stream().map(MessageJournal.Entry::content).toList());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void replayRetriesTransientFailuresAndDeadLettersTheRest() throws Exception {
+		MessageJournal journal = open();
+		MessageJournal.Entry rejected = journal.append(1L, 7L, "rejected");
+		MessageJournal.Entry moving = journal.append(2L, 7L, "moving");
+		MessageJournal.Entry orphan = journal.append(3L, 7L, "orphan");
+		AtomicInteger movingAttempts = new AtomicInteger();
+		MessagesService messagesService = mock(MessagesService.class);
+		when(messagesService.applyJournaled(any())).thenAnswer(invocation -> {
+			MessageJournal.Entry entry = invocation.getArgument(0);
+			if (entry.id().equals(rejected.id())) {
+				throw new IllegalArgumentException("content too long");
+			}
+			if (entry.id().equals(moving.id()) && movingAttempts.incrementAndGet() <= 2) {
+				throw new ChatShards.ChatMovingException(2L);
+			}
+			return !entry.id().equals(orphan.id());
+		});
+		StringRedisTemplate redis = mock(StringRedisTemplate.class);
+		StreamOperations<String, Object, Object> streams = mock(StreamOperations.class);
+		when(redis.<Object, Object>opsForStream()).thenReturn(streams);
+
+		MessageJournalReplayer replayer = new MessageJournalReplayer();
+		ReflectionTestUtils.setField(replayer, "messageJournal", journal);
+		ReflectionTestUtils.setField(replayer, "messagesService", messagesService);
+		ReflectionTestUtils.setField(replayer, "stringRedisTemplate", redis);
+		ReflectionTestUtils.setField(replayer, "batchSize", 10);
+		ReflectionTestUtils.setField(replayer, "maxAttempts", 2);
+		ReflectionTestUtils.setField(replayer, "deadLetterMaxLength", 100L);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ReflectionTestUtils.setField(replayer, "replayed", meterRegistry.counter("replayed"));
+		ReflectionTestUtils.setField(replayer, "dropped", meterRegistry.counter("dropped"));
+
+		// Rejected twice, then dead-lettered; the moving chat is retried for as long as it moves
+		assertThrows(IllegalArgumentException.class, replayer::replayBatch);
+		assertThrows(ChatShards.ChatMovingException.class, replayer::replayBatch);
+		assertThrows(ChatShards.ChatMovingException.class, replayer::replayBatch);
+		assertEquals(2, journal.backlog());
+		assertEquals(2, replayer.replayBatch());
+
+		assertEquals(0, journal.backlog());
+		assertEquals(1, meterRegistry.counter("replayed").count());
+		verify(streams, times(2)).add(any(MapRecord.class), any(XAddOptions.class));
+	}
+
+	private MessageJournal open() throws IOException {
+		MessageJournal journal = new MessageJournal();
+		ReflectionTestUtils.setField(journal, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(journal, "enabled", true);
+		ReflectionTestUtils.setField(journal, "dir", dir.toString());
+		ReflectionTestUtils.setField(journal, "segmentSize", DataSize.ofKilobytes(8));
+		ReflectionTestUtils.setField(journal, "groupCommitMs", 1L);
+		ReflectionTestUtils.setField(journal, "syncTimeoutMs", 5000L);
+		journal.open();
+		opened.add(journal);
+		return journal;
+	}
+
+	private List<Path> segmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(path -> path.getFileName().toString().startsWith("segment-")).sorted().toList();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.notebridge.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Index size and query latency for one user with 50 chats of 20,000 messages each (1M messages).
+// Not part of the regular test run:
+//   ./mvnw test -Dtest=MessageSearchBenchmark -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MessageSearchBenchmark {
+
+	private static final int CHATS = 50;
+	private static final int MESSAGES_PER_CHAT = 20_000;
+	private static final int QUERIES = 200;
+	private static final String[] WORDS = ("piano guitar violin lesson practice scales chords tempo rhythm metronome "
+			+ "friday monday tomorrow time reschedule homework recital theory sight reading song chopin bach "
+			+ "mozart etude sonata prelude warmup fingers posture breathing bow strings pedal key minor major").split(" ");
+
+	@Test
+	void searchLatency() {
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		long id = 0;
+		List<ChatMessageIndex> chats = new ArrayList<>();
+		long buildStart = System.nanoTime();
+		for (int c = 0; c < CHATS; c++) {
+			ChatMessageIndex chat = new ChatMessageIndex(c, ChatShards.PRIMARY, LocalDateTime.now());
+			for (int m = 0; m < MESSAGES_PER_CHAT; m++) {
+				StringBuilder content = new StringBuilder();
+				int length = 5 + random.nextInt(20);
+				for (int w = 0; w < length; w++) {
+					content.append(WORDS[(int) Math.abs(random.nextGaussian() * WORDS.length / 3) % WORDS.length]).append(' ');
+				}
+				chat.add(++id, now - (MESSAGES_PER_CHAT - m) * 60_000L, content.toString());
+			}
+			chats.add(chat);
+		}
+		long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+
+		MessageSearchService searchService = new MessageSearchService();
+		ReflectionTestUtils.setField(searchService, "recencyWeight", 1.0);
+		ReflectionTestUtils.setField(searchService, "halfLifeDays", 30.0);
+		long[] latencies = new long[QUERIES];
+		for (int q = 0; q < QUERIES * 2; q++) {
+			String[] terms = {WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)]};
+			long start = System.nanoTime();
+			searchService.rank(chats, terms, 20, now);
+			if (q >= QUERIES) {
+				latencies[q - QUERIES] = System.nanoTime() - start;
+			}
+		}
+		java.util.Arrays.sort(latencies);
+		System.out.printf("indexed %d messages in %d ms%n", id, buildMs);
+		System.out.printf("two-term query: p50 %.1f ms, p99 %.1f ms%n",
+				latencies[QUERIES / 2] / 1e6, latencies[QUERIES * 99 / 100] / 1e6);
+	}
+}
@@ -0,0 +1,84 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.dto.MessageSearchHit;
+import com.notebridge.backend.dto.MessageView;
+
+class MessageSearchTests {
+
+	private static final long DAY = 86_400_000L;
+	private static final long NOW = 1_700_000_000_000L;
+
+	private final MessageSearchService searchService = new MessageSearchService();
+	private final ChatMessageIndex chat = new ChatMessageIndex(1L, ChatShards.PRIMARY, LocalDateTime.now());
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(searchService, "recencyWeight", 1.0);
+		ReflectionTestUtils.setField(searchService, "halfLifeDays", 30.0);
+	}
+
+	@Test
+	void matchesMessagesContainingEveryTerm() {
+		chat.add(1, NOW, "Can we move the piano lesson to Friday?");
+		chat.add(2, NOW, "Piano scales, then the Chopin etude");
+		chat.add(3, NOW, "See you on friday");
+
+		assertEquals(List.of(1L), matches("piano", "friday"));
+		assertEquals(List.of(1L, 3L), matches("friday"));
+		assertEquals(List.of(), matches("guitar"));
+	}
+
+	@Test
+	void ignoresMessagesAddedTwice() {
+		chat.add(1, NOW, "metronome at 60");
+		chat.add(1, NOW, "metronome at 60");
+
+		assertEquals(1, chat.size());
+		assertEquals(1, chat.documentFrequency("metronome"));
+	}
+
+	@Test
+	void ranksByTermWeightAndRecency() {
+		chat.add(1, NOW - 90 * DAY, "scales");
+		chat.add(2, NOW - 90 * DAY, "scales, more scales and then scales again");
+		chat.add(3, NOW - DAY, "scales");
+		chat.add(4, NOW, "something else entirely");
+
+		MessageSearchService.Ranking ranking = searchService.rank(List.of(chat), new String[] {"scales"}, 2, NOW);
+
+		// Yesterday's message first, then the older one that mentions the term more often
+		assertEquals(3, ranking.total());
+		assertEquals(List.of(3L, 2L), ranking.top().stream().map(MessageSearchService.Scored::messageId).toList());
+	}
+
+	@Test
+	void highlightsMatchesInsideTheSnippet() {
+		String content = "We covered a lot today. Next week bring the Bach partita and practise the Gigue slowly, "
+				+ "then we will look at the Bach chorales together.";
+		MessageView message = new MessageView(1L, 2L, 3L, content, LocalDateTime.now(), false);
+
+		MessageSearchHit hit = MessageSearchService.highlight(message, 1.0, Set.of("bach"), 60);
+
+		assertEquals("…Next week bring the Bach partita and practise the Gigue…", hit.snippet());
+		assertEquals(List.of(new MessageSearchHit.Span(21, 25)), hit.highlights());
+		MessageSearchHit.Span span = hit.highlights().get(0);
+		assertEquals("Bach", hit.snippet().substring(span.start(), span.end()));
+	}
+
+	private List<Long> matches(String... terms) {
+		List<Long> ids = new ArrayList<>();
+		chat.match(terms, (messageId, sentAtMs, frequencies) -> ids.add(messageId));
+		return ids;
+	}
+}
@@ -0,0 +1,137 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.Storage;
+import com.notebridge.backend.repository.FilesRepo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OrphanFileCollectorTests {
+
+	private final FilesService filesService = mock(FilesService.class);
+	private final FilesRepo filesRepo = mock(FilesRepo.class);
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final Storage storage = mock(Storage.class);
+	private final OrphanFileCollector collector = new OrphanFileCollector();
+	// Object names with a files row
+	private final Set<String> rows = new HashSet<>(Set.of("pictures/aaa", "pictures/bbb", "pictures/ccc"));
+	private final List<BlobId> deleted = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		ReflectionTestUtils.setField(collector, "filesService", filesService);
+		ReflectionTestUtils.setField(collector, "filesRepo", filesRepo);
+		ReflectionTestUtils.setField(collector, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(collector, "stringRedisTemplate", mock(StringRedisTemplate.class));
+		ReflectionTestUtils.setField(collector, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(collector, "minAgeHours", 24L);
+		ReflectionTestUtils.setField(collector, "pageSize", 1000);
+		ReflectionTestUtils.setField(collector, "deleteBatchSize", 100);
+		ReflectionTestUtils.setField(collector, "maxDeletesPerSecond", 1000.0);
+		ReflectionTestUtils.setField(collector, "maxDeletesPerRun", 100);
+		collector.start();
+
+		when(filesService.storage()).thenReturn(storage);
+		when(filesService.bucketName()).thenReturn("notes");
+		when(filesService.objectName(anyString())).thenAnswer(invocation -> {
+			String stored = invocation.getArgument(0);
+			return stored.startsWith("gs://notes/") ? stored.substring("gs://notes/".length()) : null;
+		});
+		referenced("SELECT profile_url FROM users WHERE profile_url IS NOT NULL", "gs://notes/pictures/aaa", "https://example.com/me.png");
+		referenced("SELECT image_url FROM lessons WHERE image_url IS NOT NULL", "gs://notes/profile_pictures/1_kept.png");
+
+		// ccc is still referenced according to its row (an upload that has not committed yet)
+		when(filesRepo.findObjectNames(any())).thenAnswer(invocation -> {
+			Collection<String> names = invocation.getArgument(0);
+			return names.stream().filter(rows::contains).toList();
+		});
+		when(filesRepo.deleteUnreferenced(any(), any())).thenAnswer(invocation -> rows.remove("pictures/bbb") ? 1 : 0);
+		when(storage.delete(anyIterable())).thenAnswer(invocation -> {
+			List<Boolean> results = new ArrayList<>();
+			for (BlobId id : (Iterable<BlobId>) invocation.getArgument(0)) {
+				deleted.add(id);
+				results.add(true);
+			}
+			return results;
+		});
+	}
+
+	@Test
+	void deletesOnlyOldUnreferencedObjects() {
+		page("pictures/", blob("pictures/aaa", 48), blob("pictures/bbb", 48), blob("pictures/ccc", 48), blob("pictures/ddd", 1));
+		page("profile_pictures/", blob("profile_pictures/1_kept.png", 48), blob("profile_pictures/2_old.png", 48));
+		page("lesson_pictures/");
+
+		assertEquals(2, collector.collect());
+		assertEquals(List.of(BlobId.of("notes", "pictures/bbb", 7L), BlobId.of("notes", "profile_pictures/2_old.png", 7L)),
+				deleted);
+	}
+
+	@Test
+	void stopsAtTheLimitPerRun() {
+		ReflectionTestUtils.setField(collector, "maxDeletesPerRun", 1);
+		ReflectionTestUtils.setField(collector, "deleteBatchSize", 1);
+		page("pictures/");
+		page("profile_pictures/", blob("profile_pictures/2_old.png", 48), blob("profile_pictures/3_old.png", 48));
+		page("lesson_pictures/", blob("lesson_pictures/4_old.png", 48));
+
+		assertEquals(1, collector.collect());
+		assertEquals(1, deleted.size());
+	}
+
+	private void referenced(String sql, String... values) throws Exception {
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (String value : values) {
+				ResultSet rs = mock(ResultSet.class);
+				when(rs.getString(1)).thenReturn(value);
+				handler.processRow(rs);
+			}
+			return null;
+		}).when(jdbcTemplate).query(eq(sql), any(RowCallbackHandler.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void page(String prefix, Blob... blobs) {
+		Page<Blob> page = mock(Page.class);
+		when(page.getValues()).thenReturn(blobs.length == 0 ? Collections.emptyList() : List.of(blobs));
+		when(storage.list(eq("notes"), eq(Storage.BlobListOption.prefix(prefix)), any(Storage.BlobListOption.class)))
+				.thenReturn(page);
+	}
+
+	private static Blob blob(String name, int ageHours) {
+		Blob blob = mock(Blob.class);
+		when(blob.getName()).thenReturn(name);
+		when(blob.getBucket()).thenReturn("notes");
+		when(blob.getGeneration()).thenReturn(7L);
+		when(blob.getCreateTimeOffsetDateTime()).thenReturn(OffsetDateTime.now().minusHours(ageHours));
+		return blob;
+	}
+}
@@ -0,0 +1,156 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.entity.OutboxEvent;
+import com.notebridge.backend.repository.OutboxRepo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboxRelayTests {
+
+	private final OutboxRepo outboxRepo = mock(OutboxRepo.class);
+	private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+	@SuppressWarnings("unchecked")
+	private final ValueOperations<String, String> values = mock(ValueOperations.class);
+	@SuppressWarnings("unchecked")
+	private final StreamOperations<String, Object, Object> streams = mock(StreamOperations.class);
+	private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("lesson", "teacher-lessons");
+	private final CacheGenerations cacheGenerations = mock(CacheGenerations.class);
+	private final OutboxRelay relay = new OutboxRelay();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(relay, "outboxRepo", outboxRepo);
+		ReflectionTestUtils.setField(relay, "cacheManager", cacheManager);
+		ReflectionTestUtils.setField(relay, "cacheGenerations", cacheGenerations);
+		ReflectionTestUtils.setField(relay, "stringRedisTemplate", redis);
+		ReflectionTestUtils.setField(relay, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(relay, "batchSize", 100);
+		ReflectionTestUtils.setField(relay, "leaseSeconds", 15L);
+		ReflectionTestUtils.setField(relay, "streamMaxLength", 1000L);
+		ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+		ReflectionTestUtils.setField(relay, "retryBackoffMs", 1000L);
+		ReflectionTestUtils.setField(relay, "retryMaxBackoffMs", 60000L);
+		relay.start();
+
+		when(redis.opsForValue()).thenReturn(values);
+		when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+		when(redis.<Object, Object>opsForStream()).thenReturn(streams);
+		when(streams.add(any(MapRecord.class), any(XAddOptions.class))).thenReturn(RecordId.autoGenerate());
+	}
+
+	@Test
+	void evictsListedEntriesAndMarksEventsPublished() {
+		cacheManager.getCache("lesson").put(5L, "stale");
+		cacheManager.getCache("lesson").put(6L, "fresh");
+		cacheManager.getCache("teacher-lessons").put(1L, "stale");
+		when(outboxRepo.findDue(any(), any(Pageable.class)))
+				.thenReturn(List.of(event(1L, "Lesson", 5L, "lesson::5,teacher-lessons::*")));
+
+		relay.relay();
+
+		assertNull(cacheManager.getCache("lesson").get(5L));
+		assertNotNull(cacheManager.getCache("lesson").get(6L));
+		assertNull(cacheManager.getCache("teacher-lessons").get(1L));
+		verify(streams).add(argThat(record -> "1".equals(record.getValue().get("outboxId"))), any(XAddOptions.class));
+		verify(outboxRepo).markPublished(eq(List.of(1L)), any());
+	}
+
+	@Test
+	void bumpsVersionedEntriesOncePerBatch() {
+		when(outboxRepo.findDue(any(), any(Pageable.class))).thenReturn(List.of(
+				event(1L, "Lesson", 5L, "lessons::all-active,lesson::5,teacher-lessons::1,teacher-lessons::2"),
+				event(2L, "Lesson", 6L, "lessons::all-active,lesson::6,teacher-lessons::2")));
+
+		relay.relay();
+
+		// One round trip per event, and entries bumped for an earlier event of the batch are not bumped again
+		verify(cacheGenerations).bump(List.of("lessons::all-active", "teacher-lessons::1", "teacher-lessons::2"));
+		verify(cacheGenerations).bump(List.of());
+		verify(outboxRepo).markPublished(eq(List.of(1L, 2L)), any());
+	}
+
+	@Test
+	void failedEventHoldsBackItsAggregateOnly() {
+		when(outboxRepo.findDue(any(), any(Pageable.class))).thenReturn(List.of(
+				event(1L, "Chat", 7L, null),
+				event(2L, "Chat", 8L, null),
+				event(3L, "Chat", 7L, null)));
+		when(streams.add(argThat(record -> record != null && "1".equals(record.getValue().get("outboxId"))), any(XAddOptions.class)))
+				.thenThrow(new IllegalStateException("redis down"));
+
+		assertEquals(1, relay.deliverBatch());
+
+		// Event 3 must wait for event 1 of the same chat
+		verify(outboxRepo).markPublished(eq(List.of(2L)), any());
+		verify(outboxRepo).retryLater(eq(1L), any());
+		verify(streams, times(2)).add(any(MapRecord.class), any(XAddOptions.class));
+	}
+
+	@Test
+	void eventIsParkedAfterMaxAttempts() {
+		OutboxEvent poison = event(1L, "Chat", 7L, null);
+		poison.setAttempts(2);
+		when(outboxRepo.findDue(any(), any(Pageable.class))).thenReturn(List.of(poison, event(2L, "Chat", 8L, null)));
+		when(streams.add(argThat(record -> record != null && "1".equals(record.getValue().get("outboxId"))), any(XAddOptions.class)))
+				.thenThrow(new IllegalStateException("payload rejected"));
+
+		relay.deliverBatch();
+
+		verify(outboxRepo).markFailed(eq(1L), any());
+		verify(outboxRepo, never()).retryLater(any(), any());
+		verify(outboxRepo).markPublished(eq(List.of(2L)), any());
+	}
+
+	@Test
+	void onlyTheLeaseHolderRelays() {
+		when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+		// The renewal script finds the lease held by another instance
+		when(redis.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(Object[].class))).thenReturn(0L);
+
+		relay.relay();
+
+		verify(outboxRepo, never()).findDue(any(), any(Pageable.class));
+	}
+
+	private static OutboxEvent event(Long id, String aggregateType, Long aggregateId, String invalidations) {
+		OutboxEvent event = new OutboxEvent();
+		event.setId(id);
+		event.setAggregateType(aggregateType);
+		event.setAggregateId(aggregateId);
+		event.setEventType("Changed");
+		event.setPayload("{}");
+		event.setInvalidations(invalidations);
+		return event;
+	}
+}
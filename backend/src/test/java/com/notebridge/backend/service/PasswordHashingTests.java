@@ -0,0 +1,90 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.notebridge.backend.controller.AuthController;
+import com.notebridge.backend.dto.AuthReqRes;
+import com.notebridge.backend.repository.UsersRepo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PasswordHashingTests {
+
+	@Test
+	void workBeyondThePoolAndQueueIsRejected() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+		when(slowEncoder.encode(any())).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return "$2a$10$hash";
+		});
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		PasswordHashingService hashing = new PasswordHashingService();
+		ReflectionTestUtils.setField(hashing, "passwordEncoder", slowEncoder);
+		ReflectionTestUtils.setField(hashing, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(hashing, "poolSize", 1);
+		ReflectionTestUtils.setField(hashing, "queueCapacity", 1);
+		hashing.start();
+		try {
+			// One running, one queued
+			CompletableFuture<String> running = hashing.hash("a");
+			CompletableFuture<String> queued = hashing.hash("b");
+			CompletableFuture<String> rejected = hashing.hash("c");
+
+			assertTrue(rejected.isCompletedExceptionally());
+			CompletionException e = assertThrows(CompletionException.class, rejected::join);
+			assertTrue(PasswordHashingService.isRejected(e));
+			assertEquals(1.0, meterRegistry.counter("notebridge.bcrypt.rejected").count());
+
+			release.countDown();
+			assertEquals("$2a$10$hash", running.get(5, TimeUnit.SECONDS));
+			assertEquals("$2a$10$hash", queued.get(5, TimeUnit.SECONDS));
+			// Slots are given back once the work is done
+			assertFalse(hashing.hash("d").isCompletedExceptionally());
+		} finally {
+			hashing.stop();
+		}
+	}
+
+	@Test
+	void registerIsShedWith503AndRetryAfterWhenTheQueueIsFull() {
+		UsersRepo usersRepo = mock(UsersRepo.class);
+		PasswordHashingService hashing = mock(PasswordHashingService.class);
+		when(hashing.hash(any())).thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("Password hashing queue is full")));
+		AuthService authService = new AuthService();
+		ReflectionTestUtils.setField(authService, "usersRepo", usersRepo);
+		ReflectionTestUtils.setField(authService, "passwordHashingService", hashing);
+		AuthController controller = new AuthController();
+		ReflectionTestUtils.setField(controller, "usersManagementService", authService);
+
+		AuthReqRes request = new AuthReqRes();
+		request.setEmail("ada@example.com");
+		request.setPassword("secret");
+		request.setRole("STUDENT");
+		ResponseEntity<AuthReqRes> response = controller.register(request);
+
+		assertEquals(503, response.getStatusCode().value());
+		assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+		assertEquals(503, response.getBody().getStatusCode());
+		verify(usersRepo, never()).save(any());
+	}
+}
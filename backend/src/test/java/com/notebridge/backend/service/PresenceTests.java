@@ -0,0 +1,73 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class PresenceTests {
+
+	@SuppressWarnings("unchecked")
+	private final ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+	private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+	private final PresenceService presence = new PresenceService();
+
+	PresenceTests() {
+		when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+		ReflectionTestUtils.setField(presence, "stringRedisTemplate", stringRedisTemplate);
+		ReflectionTestUtils.setField(presence, "objectMapper", new ObjectMapper().findAndRegisterModules());
+		ReflectionTestUtils.setField(presence, "ttlSeconds", 45L);
+	}
+
+	@Test
+	void heartbeatSetsTheStatusAndItsExpiryInOneCommand() {
+		when(valueOps.setGet("presence:user:7", "ONLINE", Duration.ofSeconds(45))).thenReturn(null, "ONLINE");
+
+		assertEquals("ONLINE", presence.heartbeat(7L, "ONLINE"));
+		assertEquals("ONLINE", presence.heartbeat(7L, "anything else"));
+
+		verify(valueOps, times(2)).setGet("presence:user:7", "ONLINE", Duration.ofSeconds(45));
+		verify(valueOps, never()).getAndSet(anyString(), anyString());
+		verify(stringRedisTemplate, never()).expire(anyString(), any(Duration.class));
+		// Only the change from OFFLINE is published
+		verify(stringRedisTemplate, times(1)).convertAndSend(eq(PresenceService.CHANNEL), contains("\"status\":\"ONLINE\""));
+	}
+
+	@Test
+	void awayAndSignOffArePublished() {
+		when(valueOps.setGet("presence:user:7", "AWAY", Duration.ofSeconds(45))).thenReturn("ONLINE");
+		when(stringRedisTemplate.delete("presence:user:7")).thenReturn(true, false);
+
+		assertEquals("AWAY", presence.heartbeat(7L, "AWAY"));
+		presence.goOffline(7L);
+		presence.goOffline(7L);
+
+		verify(stringRedisTemplate).convertAndSend(eq(PresenceService.CHANNEL), contains("\"status\":\"AWAY\""));
+		verify(stringRedisTemplate, times(1)).convertAndSend(eq(PresenceService.CHANNEL), contains("\"status\":\"OFFLINE\""));
+	}
+
+	@Test
+	void missingHeartbeatsReadAsOffline() {
+		when(valueOps.multiGet(List.of("presence:user:7", "presence:user:8"))).thenReturn(Arrays.asList("AWAY", null));
+
+		assertEquals(Map.of(7L, "AWAY", 8L, "OFFLINE"), presence.getPresence(List.of(7L, 8L)));
+	}
+}
@@ -0,0 +1,132 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RateLimiterTests {
+
+	private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+	private final MockEnvironment environment = new MockEnvironment()
+			.withProperty("ratelimit.login.capacity", "2")
+			.withProperty("ratelimit.login.refill-per-minute", "1");
+
+	private RateLimiterService rateLimiter(String store) {
+		RateLimiterService rateLimiter = new RateLimiterService();
+		ReflectionTestUtils.setField(rateLimiter, "stringRedisTemplate", stringRedisTemplate);
+		ReflectionTestUtils.setField(rateLimiter, "meterRegistry", new SimpleMeterRegistry());
+		ReflectionTestUtils.setField(rateLimiter, "environment", environment);
+		ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+		ReflectionTestUtils.setField(rateLimiter, "store", store);
+		rateLimiter.loadRules();
+		return rateLimiter;
+	}
+
+	@Test
+	void loginRefusedForItsAccountGivesTheIpTokenBack() {
+		RateLimiterService rateLimiter = rateLimiter("local");
+		rateLimiter.tryAcquire("login", "account", "ada@example.com");
+		rateLimiter.tryAcquire("login", "account", "ada@example.com");
+
+		// As RateLimitFilter and then AuthController.login do
+		for (int i = 0; i < 3; i++) {
+			assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+			assertFalse(rateLimiter.tryAcquire("login", "account", "ada@example.com").allowed());
+			rateLimiter.release("login", "ip", "10.0.0.1");
+		}
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+		assertFalse(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+	}
+
+	@Test
+	void localBucketRefusesOnceEmptyWithTheTimeUntilTheNextToken() {
+		RateLimiterService rateLimiter = rateLimiter("local");
+
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+		RateLimiterService.Decision refused = rateLimiter.tryAcquire("login", "ip", "10.0.0.1");
+		assertFalse(refused.allowed());
+		// One token a minute
+		assertTrue(refused.retryAfterSeconds() > 55 && refused.retryAfterSeconds() <= 60, "retry " + refused.retryAfterSeconds());
+
+		// Other callers have buckets of their own, callers without a key are not limited
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.2").allowed());
+		assertTrue(rateLimiter.tryAcquire("login", "account", null).allowed());
+	}
+
+	@Test
+	void aRefusedUserLeavesTheTokensOfItsIp() {
+		RateLimiterService rateLimiter = rateLimiter("local");
+		rateLimiter.tryAcquire("login", "user", "7");
+		rateLimiter.tryAcquire("login", "user", "7");
+
+		for (int i = 0; i < 5; i++) {
+			assertFalse(rateLimiter.tryAcquireAll("login", callers("10.0.0.1", "7")).allowed());
+		}
+		assertTrue(rateLimiter.tryAcquireAll("login", callers("10.0.0.1", "8")).allowed());
+		assertTrue(rateLimiter.tryAcquireAll("login", callers("10.0.0.1", "9")).allowed());
+		assertFalse(rateLimiter.tryAcquireAll("login", callers("10.0.0.1", "10")).allowed());
+	}
+
+	@Test
+	void redisBucketsPutBackTheTokenOfAnEarlierBucket() {
+		RateLimiterService rateLimiter = rateLimiter("redis");
+		when(stringRedisTemplate.execute(ArgumentMatchers.<RedisScript<List>>any(), eq(List.of("ratelimit:login:ip:10.0.0.1")), any(), any(), any()))
+				.thenReturn(List.of(1L, 0L));
+		when(stringRedisTemplate.execute(ArgumentMatchers.<RedisScript<List>>any(), eq(List.of("ratelimit:login:user:7")), any(), any(), any()))
+				.thenReturn(List.of(0L, 1500L));
+
+		RateLimiterService.Decision decision = rateLimiter.tryAcquireAll("login", callers("10.0.0.1", "7"));
+
+		assertFalse(decision.allowed());
+		assertEquals(2, decision.retryAfterSeconds());
+		verify(stringRedisTemplate).execute(ArgumentMatchers.<RedisScript<List>>any(), eq(List.of("ratelimit:login:ip:10.0.0.1")),
+				eq("2"), any(), eq("-1"));
+	}
+
+	@Test
+	void redisErrorsFallBackToLocalBuckets() {
+		RateLimiterService rateLimiter = rateLimiter("redis");
+		when(stringRedisTemplate.execute(ArgumentMatchers.<RedisScript<List>>any(), any(), any(), any(), any()))
+				.thenThrow(new IllegalStateException("connection refused"));
+
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+		assertTrue(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+		assertFalse(rateLimiter.tryAcquire("login", "ip", "10.0.0.1").allowed());
+	}
+
+	@Test
+	void routesWithoutRefillAreRejectedOnStartup() {
+		environment.setProperty("ratelimit.refresh.refill-per-minute", "0");
+
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> rateLimiter("local"));
+		assertTrue(e.getMessage().contains("ratelimit.refresh"));
+	}
+
+	private static Map<String, String> callers(String ip, String userId) {
+		Map<String, String> callers = new LinkedHashMap<>();
+		callers.put("ip", ip);
+		callers.put("user", userId);
+		return callers;
+	}
+}
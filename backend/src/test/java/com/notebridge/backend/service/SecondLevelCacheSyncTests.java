@@ -0,0 +1,100 @@
+package com.notebridge.backend.service;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+
+import org.hibernate.Cache;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SecondLevelCacheSyncTests {
+
+	private static final String LESSON = "com.notebridge.backend.entity.Lesson";
+
+	private final Cache cache = mock(Cache.class);
+	private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+	private final SecondLevelCacheSync sync = new SecondLevelCacheSync();
+
+	SecondLevelCacheSyncTests() {
+		ReflectionTestUtils.setField(sync, "cache", cache);
+		ReflectionTestUtils.setField(sync, "stringRedisTemplate", stringRedisTemplate);
+		ReflectionTestUtils.setField(sync, "meterRegistry", new SimpleMeterRegistry());
+	}
+
+	@Test
+	void committedChangesOfCachedEntitiesAreAnnounced() {
+		EntityPersister lessons = persister(LESSON, true);
+		EntityPersister messages = persister("com.notebridge.backend.entity.Message", false);
+
+		sync.onPostUpdate(new PostUpdateEvent(null, 5L, null, null, null, lessons, null));
+		sync.onPostInsert(new PostInsertEvent(null, 7L, null, messages, null));
+
+		verify(stringRedisTemplate).convertAndSend(eq(SecondLevelCacheSync.CHANNEL), startsWith(instanceId() + " " + LESSON + " 5 U"));
+		verify(stringRedisTemplate, never()).convertAndSend(anyString(), eq(instanceId() + " com.notebridge.backend.entity.Message 7 I"));
+	}
+
+	@Test
+	void updatesFromAnotherInstanceEvictTheEntity() {
+		receive("other " + LESSON + " 5 U");
+
+		verify(cache).evictEntityData(LESSON, 5L);
+		verify(cache, never()).evictQueryRegions();
+	}
+
+	@Test
+	void insertsAndDeletesFromAnotherInstanceAlsoEvictQueryResults() {
+		receive("other com.notebridge.backend.entity.Chat 9 I");
+		verify(cache).evictEntityData("com.notebridge.backend.entity.Chat", 9L);
+		verify(cache).evictQueryRegions();
+
+		receive("other * * Q");
+		verify(cache, never()).evictEntityData("*", 9L);
+	}
+
+	@Test
+	void ownAndMalformedAnnouncementsAreIgnored() {
+		receive(instanceId() + " " + LESSON + " 5 D");
+		receive("garbage");
+
+		verifyNoInteractions(cache);
+	}
+
+	@Test
+	void queryResultsAreEvictedHereAndAnnounced() {
+		sync.evictQueryRegionsEverywhere();
+
+		verify(cache).evictQueryRegions();
+		verify(stringRedisTemplate).convertAndSend(SecondLevelCacheSync.CHANNEL, instanceId() + " * * Q");
+	}
+
+	private void receive(String body) {
+		sync.onMessage(new DefaultMessage(SecondLevelCacheSync.CHANNEL.getBytes(StandardCharsets.UTF_8),
+				body.getBytes(StandardCharsets.UTF_8)), null);
+	}
+
+	private String instanceId() {
+		return (String) ReflectionTestUtils.getField(sync, "instanceId");
+	}
+
+	private static EntityPersister persister(String entityName, boolean cached) {
+		EntityPersister persister = mock(EntityPersister.class);
+		when(persister.getEntityName()).thenReturn(entityName);
+		when(persister.canWriteToCache()).thenReturn(cached);
+		return persister;
+	}
+}
@@ -0,0 +1,84 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTests {
+
+	private static final long T0 = 1_700_000_000_000L;
+
+	private final List<String> fired = new ArrayList<>();
+	// 8 buckets of 100ms, tasks run inline so advance() is deterministic
+	private final TimingWheel wheel = new TimingWheel(100, 8, Runnable::run);
+
+	@Test
+	void firesOnTheTickOfItsDeadline() {
+		wheel.advance(T0);
+		wheel.schedule(T0 + 350, () -> fired.add("a"));
+
+		wheel.advance(T0 + 299);
+		assertTrue(fired.isEmpty());
+		wheel.advance(T0 + 300);
+		assertEquals(List.of("a"), fired);
+		assertEquals(0, wheel.pending());
+	}
+
+	@Test
+	void waitsFullRoundsForDeadlinesBeyondTheWheel() {
+		wheel.advance(T0);
+		// 8 buckets cover 800ms, this one has to go round twice
+		wheel.schedule(T0 + 2_050, () -> fired.add("far"));
+		wheel.schedule(T0 + 50, () -> fired.add("near"));
+
+		wheel.advance(T0 + 1_999);
+		assertEquals(List.of("near"), fired);
+		wheel.advance(T0 + 2_000);
+		assertEquals(List.of("near", "far"), fired);
+	}
+
+	@Test
+	void pastDeadlinesFireOnTheNextTick() {
+		wheel.advance(T0);
+		wheel.schedule(T0 - 10_000, () -> fired.add("late"));
+
+		wheel.advance(T0 + 100);
+		assertEquals(List.of("late"), fired);
+	}
+
+	@Test
+	void cancelledTimersNeverFire() {
+		wheel.advance(T0);
+		TimingWheel.Timeout queued = wheel.schedule(T0 + 500, () -> fired.add("queued"));
+		assertTrue(queued.cancel());
+
+		TimingWheel.Timeout bucketed = wheel.schedule(T0 + 500, () -> fired.add("bucketed"));
+		wheel.advance(T0 + 100);
+		assertTrue(bucketed.cancel());
+		assertFalse(bucketed.cancel());
+		assertEquals(0, wheel.pending());
+
+		wheel.advance(T0 + 1_000);
+		assertTrue(fired.isEmpty());
+	}
+
+	@Test
+	void holdsManyTimers() {
+		wheel.advance(T0);
+		int count = 1_000_000;
+		int[] runs = new int[1];
+		for (int i = 0; i < count; i++) {
+			wheel.schedule(T0 + (i % 10_000), () -> runs[0]++);
+		}
+		assertEquals(count, wheel.pending());
+
+		wheel.advance(T0 + 10_000);
+		assertEquals(count, runs[0]);
+		assertEquals(0, wheel.pending());
+	}
+}
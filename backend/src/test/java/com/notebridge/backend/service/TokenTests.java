@@ -0,0 +1,161 @@
+package com.notebridge.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TokenTests {
+
+	private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+	private final Map<String, Double> revoked = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+	private final StringRedisTemplate stringRedisTemplate = fakeRedis();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void refreshRotatesTheTokenWithinItsFamily() {
+		RefreshTokenService refreshTokens = refreshTokens(revocations());
+		String first = refreshTokens.issue("ada@example.com", "jti-1", future());
+
+		RefreshTokenService.Rotation rotation = refreshTokens.rotate(first);
+		assertNotNull(rotation);
+		assertEquals("ada@example.com", rotation.email());
+		assertNotEquals(first, rotation.refreshToken());
+
+		RefreshTokenService.Rotation next = refreshTokens.rotate(rotation.refreshToken());
+		assertEquals(rotation.familyId(), next.familyId());
+		assertNull(refreshTokens.rotate("unknown"));
+		// Only digests are stored
+		assertTrue(hashes.keySet().stream().noneMatch(key -> key.contains(first)));
+	}
+
+	@Test
+	void reusingAConsumedTokenRevokesTheFamilyAndItsAccessToken() {
+		TokenRevocationService revocations = revocations();
+		RefreshTokenService refreshTokens = refreshTokens(revocations);
+		String first = refreshTokens.issue("ada@example.com", "jti-1", future());
+		RefreshTokenService.Rotation rotation = refreshTokens.rotate(first);
+		refreshTokens.trackAccessToken(rotation.familyId(), "jti-2", future());
+
+		// A copy of the first token shows up again
+		assertNull(refreshTokens.rotate(first));
+
+		assertEquals(1.0, meterRegistry.counter("notebridge.refresh.reuse").count());
+		assertNull(refreshTokens.rotate(rotation.refreshToken()));
+		assertTrue(revocations.isRevoked("jti-2"));
+	}
+
+	@Test
+	void revocationsAreCheckedAgainstTheBloomFilterFirst() {
+		TokenRevocationService revocations = revocations();
+		revocations.revoke("jti-1", future());
+		// Already expired, nothing to revoke
+		revocations.revoke("jti-old", System.currentTimeMillis() - 1000);
+
+		assertTrue(revocations.isRevoked("jti-1"));
+		assertFalse(revocations.isRevoked("jti-2"));
+		assertFalse(revocations.isRevoked("jti-old"));
+		// Misses of the filter never reach Redis
+		verify(stringRedisTemplate.opsForZSet(), never()).score(anyString(), eq("jti-2"));
+
+		// Another instance picks the revocation up on its next sync
+		TokenRevocationService other = revocations();
+		assertFalse(other.isRevoked("jti-1"));
+		other.sync();
+		assertTrue(other.isRevoked("jti-1"));
+	}
+
+	private TokenRevocationService revocations() {
+		TokenRevocationService revocations = new TokenRevocationService();
+		ReflectionTestUtils.setField(revocations, "stringRedisTemplate", stringRedisTemplate);
+		ReflectionTestUtils.setField(revocations, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(revocations, "bloomCapacity", 1000);
+		ReflectionTestUtils.setField(revocations, "bloomFpp", 0.001);
+		revocations.init();
+		return revocations;
+	}
+
+	private RefreshTokenService refreshTokens(TokenRevocationService revocations) {
+		RefreshTokenService refreshTokens = new RefreshTokenService();
+		ReflectionTestUtils.setField(refreshTokens, "stringRedisTemplate", stringRedisTemplate);
+		ReflectionTestUtils.setField(refreshTokens, "tokenRevocationService", revocations);
+		ReflectionTestUtils.setField(refreshTokens, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(refreshTokens, "refreshExpirationMs", 60_000L);
+		return refreshTokens;
+	}
+
+	private static long future() {
+		return System.currentTimeMillis() + 60_000;
+	}
+
+	// Just the hash, sorted set and counter commands the token services use
+	@SuppressWarnings("unchecked")
+	private StringRedisTemplate fakeRedis() {
+		StringRedisTemplate redis = mock(StringRedisTemplate.class);
+		HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+		ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+		ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+		when(redis.<Object, Object>opsForHash()).thenReturn(hashOps);
+		when(redis.opsForZSet()).thenReturn(zSetOps);
+		when(redis.opsForValue()).thenReturn(valueOps);
+
+		doAnswer(invocation -> {
+			hashes.computeIfAbsent(invocation.getArgument(0), key -> new ConcurrentHashMap<>()).putAll(invocation.getArgument(1));
+			return null;
+		}).when(hashOps).putAll(anyString(), any());
+		when(hashOps.entries(anyString())).thenAnswer(invocation -> new HashMap<>(hashes.getOrDefault(invocation.getArgument(0), Map.of())));
+		when(hashOps.get(anyString(), any())).thenAnswer(invocation -> hashes.getOrDefault(invocation.getArgument(0), Map.of()).get(invocation.getArgument(1)));
+		when(hashOps.increment(anyString(), any(), anyLong())).thenAnswer(invocation -> {
+			Map<Object, Object> hash = hashes.computeIfAbsent(invocation.getArgument(0), key -> new ConcurrentHashMap<>());
+			long value = Long.parseLong((String) hash.getOrDefault(invocation.getArgument(1), "0")) + (long) invocation.getArgument(2);
+			hash.put(invocation.getArgument(1), String.valueOf(value));
+			return value;
+		});
+		when(redis.hasKey(anyString())).thenAnswer(invocation -> hashes.containsKey(invocation.getArgument(0)));
+		when(redis.delete(anyString())).thenAnswer(invocation -> hashes.remove(invocation.getArgument(0)) != null);
+
+		when(zSetOps.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation -> revoked.put(invocation.getArgument(1), invocation.getArgument(2)) == null);
+		when(zSetOps.score(anyString(), any())).thenAnswer(invocation -> revoked.get(invocation.getArgument(1)));
+		when(zSetOps.rangeByScore(anyString(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+			Set<String> members = new TreeSet<>();
+			revoked.forEach((member, score) -> {
+				if (score >= (double) invocation.getArgument(1)) {
+					members.add(member);
+				}
+			});
+			return members;
+		});
+		when(valueOps.increment(anyString())).thenAnswer(invocation -> version.incrementAndGet());
+		when(valueOps.get(anyString())).thenAnswer(invocation -> String.valueOf(version.get()));
+		return redis;
+	}
+}
@@ -33,7 +33,7 @@ const Dashboard = () => {
         
         const response = await LessonsService.getAllLessons(token);
         if (response.lessonsList) {
-          setLessons(response.lessonsList);
+          setLessons(LessonsService.withTeachers(response.lessonsList, response.users));
         } else {
           setLessons([]);
         }
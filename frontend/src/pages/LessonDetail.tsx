@@ -35,7 +35,7 @@ const LessonDetail = () => {
         
         const response = await LessonsService.getLessonById(lessonId, token);
         if (response.lesson) {
-          setLesson(response.lesson);
+          setLesson(LessonsService.withTeachers([response.lesson], response.users)[0]);
         } else {
           throw new Error('Lesson not found');
         }
@@ -14,7 +14,8 @@ interface User {
 
 interface Lesson {
   id: number;
-  teacher: User;
+  teacherId: number;
+  teacher: User; // resolved on the client from LessonsReqRes.users, see withTeachers
   title: string;
   instrument: string;
   description?: string;
@@ -49,14 +50,23 @@ interface LessonsReqRes {
   physicalAddress?: string;
   isCancelled?: boolean;
   
-  // Response objects
+  // Response objects, teachers are sent once in users (keyed by id)
   lesson?: Lesson;
   lessonsList?: Lesson[];
+  users?: Record<number, User>;
 }
 
 class LessonsService {
   static BASE_URL = import.meta.env.VITE_API_BASE_URL;
 
+  // Attach each lesson's teacher from the sideloaded users map
+  static withTeachers(lessons: Lesson[], users: Record<number, User> = {}): Lesson[] {
+    return lessons.map(lesson => ({
+      ...lesson,
+      teacher: users[lesson.teacherId] ?? { id: lesson.teacherId, email: "", role: "TEACHER" },
+    }));
+  }
+
   // GET ALL LESSONS - Available to all authenticated users
   static async getAllLessons(token: string): Promise<LessonsReqRes> {
     try {